@@ -0,0 +1,59 @@
+package com.chatflow.bench;
+
+import com.chatflow.client.metrics.MetricsCollector;
+import com.chatflow.client.model.ChatMessage;
+import com.chatflow.client.model.LatencyRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client per-message costs: serialising a ChatMessage and recording its latency. recordLatency is
+ * measured twice: with raw records kept (standalone runs) and aggregates only (distributed workers).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientBenchmark {
+
+    private ChatMessage message;
+    private MetricsCollector withRecords;
+    private MetricsCollector aggregatesOnly;
+    private LatencyRecord record;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        message = new ChatMessage(42, "user42", "Hello everyone!", "TEXT", 7);
+        // Fresh collectors per iteration so the record queue doesn't grow without bound
+        withRecords = new MetricsCollector(true);
+        aggregatesOnly = new MetricsCollector(false);
+        record = new LatencyRecord(System.currentTimeMillis(), "TEXT", 12, "OK", 7);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return message.toJson();
+    }
+
+    @Benchmark
+    public ChatMessage newMessage() {
+        return new ChatMessage(42, "user42", "Hello everyone!", "TEXT", 7);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordLatencyWithRecords() {
+        withRecords.recordSuccess();
+        withRecords.recordLatency(record);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordLatencyAggregatesOnly() {
+        aggregatesOnly.recordSuccess();
+        aggregatesOnly.recordLatency(record);
+    }
+}
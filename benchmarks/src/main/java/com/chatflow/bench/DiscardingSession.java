@@ -0,0 +1,50 @@
+package com.chatflow.bench;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * WebSocketSession that swallows every frame. Lets the handler's full inbound path run with no socket
+ * and no mocking framework in the measurement. The last payload length is kept so the JIT can't
+ * discard the serialisation work.
+ */
+public class DiscardingSession implements WebSocketSession {
+
+    private final String id;
+    private final URI uri;
+    private final Map<String, Object> attributes = new HashMap<>();
+    public long bytesSent;
+
+    public DiscardingSession(String id, String path) {
+        this.id = id;
+        this.uri = URI.create("ws://localhost:8080" + path);
+    }
+
+    @Override public String getId() { return id; }
+    @Override public URI getUri() { return uri; }
+    @Override public HttpHeaders getHandshakeHeaders() { return new HttpHeaders(); }
+    @Override public Map<String, Object> getAttributes() { return attributes; }
+    @Override public Principal getPrincipal() { return null; }
+    @Override public InetSocketAddress getLocalAddress() { return null; }
+    @Override public InetSocketAddress getRemoteAddress() { return null; }
+    @Override public String getAcceptedProtocol() { return null; }
+    @Override public void setTextMessageSizeLimit(int messageSizeLimit) {}
+    @Override public int getTextMessageSizeLimit() { return 8192; }
+    @Override public void setBinaryMessageSizeLimit(int messageSizeLimit) {}
+    @Override public int getBinaryMessageSizeLimit() { return 8192; }
+    @Override public List<WebSocketExtension> getExtensions() { return List.of(); }
+    @Override public void sendMessage(WebSocketMessage<?> message) { bytesSent += message.getPayloadLength(); }
+    @Override public boolean isOpen() { return true; }
+    @Override public void close() {}
+    @Override public void close(CloseStatus status) {}
+}
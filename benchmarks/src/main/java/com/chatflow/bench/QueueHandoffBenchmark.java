@@ -0,0 +1,53 @@
+package com.chatflow.bench;
+
+import com.chatflow.client.model.ChatMessage;
+import com.chatflow.client.scenario.Scenario;
+import com.chatflow.client.scenario.ScenarioGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generator → sender handoff. The real ScenarioGenerator fills the same 10,000-slot LinkedBlockingQueue
+ * the client uses, and benchmark threads drain it as senders would. Throughput is messages handed over
+ * per microsecond. If it isn't far above the server's ack rate, supply is the bottleneck.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueueHandoffBenchmark {
+
+    @Param({"default", "hot-rooms"})
+    public String scenario;
+
+    private BlockingQueue<ChatMessage> queue;
+    private Thread generator;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String json = scenario.equals("hot-rooms")
+                ? "{\"totalMessages\":2000000000,\"roomPopularity\":{\"distribution\":\"zipf\",\"exponent\":1.2},"
+                  + "\"messageSize\":{\"distribution\":\"lognormal\"},\"sessions\":{\"enabled\":true,\"concurrent\":5000},"
+                  + "\"phases\":[{\"threads\":1}]}"
+                : "{\"totalMessages\":2000000000,\"phases\":[{\"threads\":1}]}";
+        queue = new LinkedBlockingQueue<>(10_000);
+        generator = new Thread(new ScenarioGenerator(queue, Scenario.parse(json)), "bench-generator");
+        generator.setDaemon(true);
+        generator.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        generator.interrupt();
+    }
+
+    @Benchmark
+    public ChatMessage take() throws InterruptedException {
+        return queue.take();
+    }
+}
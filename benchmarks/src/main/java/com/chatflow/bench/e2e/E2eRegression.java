@@ -0,0 +1,201 @@
+package com.chatflow.bench.e2e;
+
+import com.chatflow.client.LoadTest;
+import com.chatflow.client.connection.DeflateSettings;
+import com.chatflow.client.metrics.LatencyHistogram;
+import com.chatflow.client.metrics.MetricsCollector;
+import com.chatflow.client.scenario.Scenario;
+import com.chatflow.server.ChatFlowServerApplication;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * End-to-end throughput regression check.
+ *
+ * Boots the real server on an ephemeral port in this JVM. Then runs each fixed scenario from
+ * {@code baselines/e2e.json} through the client-part2 engine and compares the measured phase against the
+ * stored baseline. Exits non-zero if throughput drops or p99 rises beyond the tolerances, or if any
+ * message fails. Each scenario runs {@code runs} times and the medians are compared, because a single run's
+ * throughput varies by about as much as the throughput tolerance.
+ *
+ * The first phase of a scenario is warmup and is not measured. Client and server share the machine, so
+ * baselines only mean something on the box that recorded them. Re-record with {@code -Dperf.update=true}.
+ */
+public class E2eRegression {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    static class Baselines {
+        int runs = 5;                   // per scenario; throughput and percentiles are medians over these
+        Tolerance tolerance = new Tolerance();
+        Map<String, Case> scenarios = new LinkedHashMap<>();
+    }
+
+    static class Tolerance {
+        double throughputDrop = 0.20;   // fail below baseline * (1 - drop)
+        double p99Increase = 0.50;      // fail above baseline * (1 + increase) + slack
+        long p99SlackMs = 5;            // absolute allowance so single-digit p99s aren't flaky
+    }
+
+    static class Case {
+        JsonObject scenario;            // a client-part2 scenario, as in client-part2/scenarios/
+        double throughput;              // msg/s of the measured phase
+        long p99Ms;
+    }
+
+    static class Result {
+        String scenario;
+        long success;
+        long fail;
+        double seconds;
+        double throughput;
+        long p50Ms;
+        long p95Ms;
+        long p99Ms;
+        List<Long> runThroughputs = new ArrayList<>();
+        double baselineThroughput;
+        long baselineP99Ms;
+        List<String> regressions = new ArrayList<>();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path baselineFile = Path.of(args.length > 0 ? args[0] : "baselines/e2e.json");
+        Path resultFile = Path.of(args.length > 1 ? args[1] : "target/e2e-results.json");
+        boolean update = Boolean.getBoolean("perf.update");
+
+        Baselines baselines;
+        try (Reader in = Files.newBufferedReader(baselineFile)) {
+            baselines = GSON.fromJson(in, Baselines.class);
+        }
+
+        ChatFlowServerApplication.applyJvmDefaults(); // same Tomcat buffers as the shipped server
+        var context = (ServletWebServerApplicationContext) SpringApplication.run(
+                ChatFlowServerApplication.class, "--server.port=0", "--logging.level.com.chatflow=WARN");
+        List<Result> results = new ArrayList<>();
+        try {
+            String url = "ws://localhost:" + context.getWebServer().getPort();
+            for (Map.Entry<String, Case> e : baselines.scenarios.entrySet()) {
+                results.add(run(e.getKey(), e.getValue(), url, baselines.runs, baselines.tolerance));
+            }
+        } finally {
+            context.close();
+        }
+
+        Files.createDirectories(resultFile.toAbsolutePath().getParent());
+        try (Writer out = Files.newBufferedWriter(resultFile)) {
+            GSON.toJson(results, out);
+        }
+
+        boolean failed = report(results);
+        if (update) {
+            for (Result r : results) {
+                Case c = baselines.scenarios.get(r.scenario);
+                c.throughput = Math.round(r.throughput);
+                c.p99Ms = r.p99Ms;
+            }
+            try (Writer out = Files.newBufferedWriter(baselineFile)) {
+                GSON.toJson(baselines, out);
+            }
+            System.out.println("Baselines updated: " + baselineFile);
+            return;
+        }
+        if (failed) System.exit(1);
+    }
+
+    private static Result run(String name, Case c, String url, int runs, Tolerance tol) throws Exception {
+        List<Result> samples = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, runs); i++) samples.add(measure(name, c, url));
+
+        // The run with the median throughput, with each percentile the median over all runs
+        samples.sort(Comparator.comparingDouble(s -> s.throughput));
+        Result r = samples.get(samples.size() / 2);
+        r.p50Ms = median(samples, s -> s.p50Ms);
+        r.p95Ms = median(samples, s -> s.p95Ms);
+        r.p99Ms = median(samples, s -> s.p99Ms);
+        r.fail = samples.stream().mapToLong(s -> s.fail).sum();
+        for (Result s : samples) r.runThroughputs.add(Math.round(s.throughput));
+        r.baselineThroughput = c.throughput;
+        r.baselineP99Ms = c.p99Ms;
+
+        if (r.fail > 0) r.regressions.add(r.fail + " failed messages");
+        if (c.throughput > 0 && r.throughput < c.throughput * (1 - tol.throughputDrop)) {
+            r.regressions.add(String.format("throughput %.0f < %.0f (baseline %.0f - %.0f%%)",
+                    r.throughput, c.throughput * (1 - tol.throughputDrop), c.throughput, tol.throughputDrop * 100));
+        }
+        long p99Limit = (long) (c.p99Ms * (1 + tol.p99Increase)) + tol.p99SlackMs;
+        if (c.p99Ms > 0 && r.p99Ms > p99Limit) {
+            r.regressions.add(String.format("p99 %dms > %dms (baseline %dms + %.0f%% + %dms)",
+                    r.p99Ms, p99Limit, c.p99Ms, tol.p99Increase * 100, tol.p99SlackMs));
+        }
+        return r;
+    }
+
+    /** One run of the scenario; only the phase after warmup is measured. */
+    private static Result measure(String name, Case c, String url) throws Exception {
+        Scenario scenario = Scenario.parse(GSON.toJson(c.scenario));
+        MetricsCollector metrics = new MetricsCollector(false);
+        long[] measuredStart = new long[1];
+
+        LoadTest test = new LoadTest(url, scenario, metrics, DeflateSettings.disabled(), 8);
+        test.run(new LoadTest.PhaseGate() {
+            @Override
+            public void beforePhase(int index, Scenario.Phase phase) {
+                if (index == 1) {
+                    metrics.reset();
+                    measuredStart[0] = System.currentTimeMillis();
+                }
+            }
+        });
+        if (measuredStart[0] == 0) measuredStart[0] = test.getStartTime(); // single-phase scenario
+
+        LatencyHistogram h = metrics.getHistogram();
+        Result r = new Result();
+        r.scenario = name;
+        r.success = metrics.getSuccessCount();
+        r.fail = metrics.getFailCount();
+        r.seconds = (test.getEndTime() - measuredStart[0]) / 1000.0;
+        r.throughput = r.success / r.seconds;
+        r.p50Ms = h.percentile(0.50);
+        r.p95Ms = h.percentile(0.95);
+        r.p99Ms = h.percentile(0.99);
+        return r;
+    }
+
+    private static long median(List<Result> samples, ToLongFunction<Result> metric) {
+        long[] values = samples.stream().mapToLong(metric).sorted().toArray();
+        return values[values.length / 2];
+    }
+
+    private static boolean report(List<Result> results) {
+        boolean failed = false;
+        System.out.println();
+        System.out.println("========================================");
+        System.out.println("  E2E Regression Results");
+        System.out.println("========================================");
+        System.out.println("  Scenario         | msg/s (base)      | p99 ms (base) | Verdict");
+        System.out.println("  -----------------+-------------------+---------------+--------");
+        for (Result r : results) {
+            boolean ok = r.regressions.isEmpty();
+            failed |= !ok;
+            System.out.printf("  %-16s | %,7.0f (%,7.0f) | %5d (%5d) | %s%n",
+                    r.scenario, r.throughput, r.baselineThroughput, r.p99Ms, r.baselineP99Ms, ok ? "PASS" : "FAIL");
+            for (String reason : r.regressions) System.out.println("      - " + reason);
+        }
+        System.out.println("========================================");
+        return failed;
+    }
+}
@@ -0,0 +1,120 @@
+package com.chatflow.server.handler;
+
+import com.chatflow.bench.DiscardingSession;
+import com.chatflow.server.config.ChatFlowProperties;
+import com.chatflow.server.model.ChatMessage;
+import com.chatflow.server.model.ChatResponse;
+import com.chatflow.server.outbound.BufferPool;
+import com.chatflow.server.outbound.PooledJsonWriter;
+import com.chatflow.server.room.Room;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server inbound path, whole and in pieces: parse, ChatResponse construction, serialisation (to a String,
+ * and into a pooled buffer), room lookup, and handleTextMessage end to end (parse, validate, dedup, echo)
+ * against a discarding session, for a text session and one that opted into binary frames.
+ *
+ * Lives in the handler's package to reach handleTextMessage and roomOf.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HandlerBenchmark {
+
+    private static final String VALID = """
+            {"userId":"42","username":"user42","message":"Hello everyone!","timestamp":"2026-02-07T12:00:00Z","messageType":"TEXT"}""";
+    private static final String INVALID = """
+            {"userId":"0","username":"ab","message":"","timestamp":"bad","messageType":"PING"}""";
+
+    private ChatWebSocketHandler handler;
+    private DiscardingSession session;
+    private DiscardingSession binarySession;
+    private PooledJsonWriter pooledWriter;
+    private ObjectMapper mapper;
+    private TextMessage valid;
+    private TextMessage invalid;
+    private ChatMessage parsed;
+    private ChatResponse response;
+
+    @Setup
+    public void setup() throws Exception {
+        ChatFlowProperties props = new ChatFlowProperties();
+        props.getDedup().setEnabled(false); // every iteration reuses one payload; dedup would ack it as a retry
+        handler = new ChatWebSocketHandler(props);
+        session = new DiscardingSession("bench", "/chat/7");
+        // What RoomHandshakeInterceptor does for a real upgrade
+        session.getAttributes().put(Room.ATTRIBUTE, handler.getRoomRegistry().room("7"));
+        handler.afterConnectionEstablished(session);
+        binarySession = new DiscardingSession("bench-bin", "/chat/7?binary=true");
+        binarySession.getAttributes().put(Room.ATTRIBUTE, handler.getRoomRegistry().room("7"));
+        handler.afterConnectionEstablished(binarySession);
+        mapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        valid = new TextMessage(VALID);
+        invalid = new TextMessage(INVALID);
+        parsed = mapper.readValue(VALID, ChatMessage.class);
+        response = new ChatResponse(parsed, "OK");
+        pooledWriter = new PooledJsonWriter(mapper, new BufferPool(false));
+    }
+
+    @TearDown
+    public void tearDown() {
+        handler.shutdown();
+    }
+
+    @Benchmark
+    public long handleValid() throws Exception {
+        handler.handleTextMessage(session, valid);
+        return session.bytesSent;
+    }
+
+    @Benchmark
+    public long handleValidBinary() throws Exception {
+        handler.handleTextMessage(binarySession, valid);
+        return binarySession.bytesSent;
+    }
+
+    @Benchmark
+    public long handleInvalid() throws Exception {
+        handler.handleTextMessage(session, invalid);
+        return session.bytesSent;
+    }
+
+    @Benchmark
+    public ChatMessage parse() throws Exception {
+        return mapper.readValue(VALID, ChatMessage.class);
+    }
+
+    @Benchmark
+    public ChatResponse buildResponse() {
+        return new ChatResponse(parsed, "OK");
+    }
+
+    @Benchmark
+    public String serializeResponse() throws Exception {
+        return mapper.writeValueAsString(response);
+    }
+
+    @Benchmark
+    public int serializeResponsePooled() throws Exception {
+        ByteBuffer buf = pooledWriter.write(response);
+        int n = buf.remaining();
+        pooledWriter.getPool().release(buf);
+        return n;
+    }
+
+    @Benchmark
+    public Room roomOf() {
+        return handler.roomOf(session);
+    }
+}
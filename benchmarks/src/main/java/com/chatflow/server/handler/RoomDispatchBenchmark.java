@@ -0,0 +1,100 @@
+package com.chatflow.server.handler;
+
+import com.chatflow.bench.DiscardingSession;
+import com.chatflow.server.config.ChatFlowProperties;
+import com.chatflow.server.room.Room;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Broadcast under skewed room popularity, handled on the calling threads ({@code eventLoops=0}) versus
+ * partitioned over room event loops. 4 threads send into 20 rooms picked by Zipf(1.2), so room 1 takes
+ * about 30% of the traffic; every room has 5 discarding members.
+ *
+ * With event loops the call returns once the message is queued, but each loop's queue is bounded, so
+ * the steady-state rate is what the loops actually deliver. The loops only order and queue; the
+ * (discarding) writes run on the handler's outbound writer pool. Compare on a machine with at least as many
+ * cores as threads; on one core both modes measure the same CPU.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class RoomDispatchBenchmark {
+
+    private static final int ROOMS = 20;
+    private static final int MEMBERS = 5;
+    private static final double EXPONENT = 1.2;
+    private static final TextMessage MESSAGE = new TextMessage("""
+            {"userId":"42","username":"user42","message":"Hello everyone!","timestamp":"2026-02-07T12:00:00Z","messageType":"TEXT"}""");
+
+    @Param({"0", "4"})
+    public int eventLoops;
+
+    ChatWebSocketHandler handler;
+    double[] cdf;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ChatFlowProperties props = new ChatFlowProperties();
+        props.getBroadcast().setEnabled(true);
+        props.getDedup().setEnabled(false); // one payload reused; dedup would ack it as a retry
+        props.getRoom().setEventLoops(eventLoops);
+        handler = new ChatWebSocketHandler(props);
+        for (int room = 1; room <= ROOMS; room++) {
+            for (int m = 0; m < MEMBERS; m++) {
+                handler.afterConnectionEstablished(member("m" + room + "-" + m, room));
+            }
+        }
+        cdf = new double[ROOMS];
+        double sum = 0;
+        for (int k = 1; k <= ROOMS; k++) sum += 1 / Math.pow(k, EXPONENT);
+        double acc = 0;
+        for (int k = 1; k <= ROOMS; k++) {
+            acc += 1 / Math.pow(k, EXPONENT) / sum;
+            cdf[k - 1] = acc;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        handler.shutdown();
+    }
+
+    DiscardingSession member(String id, int room) {
+        DiscardingSession session = new DiscardingSession(id, "/chat/" + room);
+        // What RoomHandshakeInterceptor does for a real upgrade
+        session.getAttributes().put(Room.ATTRIBUTE, handler.getRoomRegistry().room(Integer.toString(room)));
+        return session;
+    }
+
+    /** One sending session per room per benchmark thread, as a socket is only ever read by one thread. */
+    @State(Scope.Thread)
+    public static class Senders {
+        DiscardingSession[] byRoom;
+
+        @Setup(Level.Trial)
+        public void setup(RoomDispatchBenchmark bench) {
+            byRoom = new DiscardingSession[ROOMS];
+            String thread = Long.toString(Thread.currentThread().getId());
+            for (int room = 1; room <= ROOMS; room++) {
+                byRoom[room - 1] = bench.member("s" + thread + "-" + room, room);
+                bench.handler.afterConnectionEstablished(byRoom[room - 1]);
+            }
+        }
+    }
+
+    @Benchmark
+    public void broadcast(Senders senders) throws Exception {
+        double u = ThreadLocalRandom.current().nextDouble();
+        int room = 0;
+        while (room < ROOMS - 1 && cdf[room] < u) room++;
+        handler.handleTextMessage(senders.byRoom[room], MESSAGE);
+    }
+}
@@ -1,116 +1,100 @@
 package com.chatflow.client;
 
-import com.chatflow.client.connection.ConnectionManager;
-import com.chatflow.client.generator.MessageGenerator;
+import com.chatflow.client.connection.DeflateSettings;
+import com.chatflow.client.metrics.JfrProfiler;
 import com.chatflow.client.metrics.MetricsCollector;
-import com.chatflow.client.model.ChatMessage;
-import com.chatflow.client.sender.SenderThread;
+import com.chatflow.client.distributed.Coordinator;
+import com.chatflow.client.distributed.Worker;
+import com.chatflow.client.scenario.Scenario;
 
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.nio.file.Path;
 
 public class ChatClient {
 
     // ============ Configuration ============
     private static final String SERVER_URL = "ws://54.184.109.66:8080";
-    private static final int TOTAL_MESSAGES = 500_000;
-    private static final int QUEUE_CAPACITY = 10_000;
 
-    // Warmup config (assignment requirement: 32 threads × 1000 messages)
-    private static final int WARMUP_THREADS = 32;
-    private static final int WARMUP_MESSAGES_PER_THREAD = 1000;
-    private static final int WARMUP_TOTAL = WARMUP_THREADS * WARMUP_MESSAGES_PER_THREAD;
+    // Workload: -Dchatflow.scenario=scenarios/hot-rooms.json, otherwise the built-in default
+    // (500k messages, warmup 32 threads x 1,000 msgs = 32,000, then 512 threads - the saturation sweet spot on
+    // t3.micro)
 
-    // Main phase config - tuned via benchmarking (512 = server saturation sweet spot on t3.micro)
-    private static final int MAIN_THREADS = 512;
+    // Pooled sockets per room, shared by all senders in every phase; opt in with
+    // -Dchatflow.pool.socketsPerRoom=8 (default 0 = one socket per sender, as before)
+    private static final int SOCKETS_PER_ROOM = Integer.getInteger("chatflow.pool.socketsPerRoom", 0);
+
+    // Receive-only connections per room, on top of the senders (0 = none); e.g. 500 for 100:1 readers
+    private static final int SUBSCRIBERS_PER_ROOM = Integer.getInteger("chatflow.subscribers.perRoom", 0);
+
+    // -Dchatflow.adaptive=true tunes the number of active senders per phase instead of using the fixed
+    // thread counts, which become ceilings (scenario phases can also set "adaptive": true)
+    private static final boolean ADAPTIVE = Boolean.getBoolean("chatflow.adaptive");
 
     // Output files (../results/ is sibling to client-part2/)
     private static final String CSV_FILE = "../results/latency.csv";
     private static final String THROUGHPUT_CSV = "../results/throughput.csv";
 
+    // -Dchatflow.jfr=true records the run with JFR and summarises GC, allocation and lock contention
+    private static final boolean JFR = Boolean.getBoolean("chatflow.jfr");
+    private static final String JFR_FILE = "../results/client.jfr";
+    private static final String JFR_SUMMARY = "../results/jfr-summary-client.txt";
+
+    // Distributed runs: -Dchatflow.mode=coordinator -Dchatflow.workers=N [-Dchatflow.port=7070]
+    //                   -Dchatflow.mode=worker -Dchatflow.coordinator=host:7070
+    private static final String MODE = System.getProperty("chatflow.mode", "standalone");
+
     public static void main(String[] args) throws Exception {
         String serverUrl = args.length > 0 ? args[0] : SERVER_URL;
+        DeflateSettings deflate = DeflateSettings.fromSystemProperties();
+
+        if (MODE.equals("worker")) {
+            new Worker(System.getProperty("chatflow.coordinator", "localhost:7070"), deflate, SOCKETS_PER_ROOM,
+                    SUBSCRIBERS_PER_ROOM).run();
+            return;
+        }
+
+        String scenarioFile = System.getProperty("chatflow.scenario");
+        Scenario scenario = scenarioFile != null ? Scenario.load(Path.of(scenarioFile)) : Scenario.defaults();
+        if (ADAPTIVE) scenario.withAdaptiveConcurrency();
+
+        if (MODE.equals("coordinator")) {
+            new Coordinator(Integer.getInteger("chatflow.port", 7070), Integer.getInteger("chatflow.workers", 2),
+                    serverUrl, scenario).run(THROUGHPUT_CSV);
+            return;
+        }
 
         System.out.println("============================================");
         System.out.println("  ChatFlow Load Test Client - Part 2");
         System.out.println("  Server: " + serverUrl);
-        System.out.println("  Total messages: " + TOTAL_MESSAGES);
-        System.out.println("  Warmup: " + WARMUP_THREADS + " threads × " + WARMUP_MESSAGES_PER_THREAD + " msgs");
-        System.out.println("  Main:   " + MAIN_THREADS + " threads");
+        System.out.println("  Scenario: " + scenario);
+        for (Scenario.Phase phase : scenario.getPhases()) {
+            System.out.println("  " + phase.getName() + ": " + phase.getThreads() + " threads, "
+                    + phase.getMessages() + " msgs"
+                    + (phase.getRatePerSecond() > 0 ? " @ " + phase.getRatePerSecond() + " msg/s" : "")
+                    + (phase.isAdaptive() ? " (adaptive, max)" : ""));
+        }
+        System.out.println("  Pool:   " + (SOCKETS_PER_ROOM > 0
+                ? SOCKETS_PER_ROOM + " sockets/room, shared across phases" : "off (socket per sender)"));
+        System.out.println("  Deflate: " + deflate);
+        if (JFR) System.out.println("  JFR:    recording to " + JFR_FILE);
+        if (SUBSCRIBERS_PER_ROOM > 0) {
+            System.out.println("  Subscribers: " + SUBSCRIBERS_PER_ROOM + " receive-only per room");
+        }
         System.out.println("============================================");
 
         // Create results directory (sibling to client-part2/)
         new java.io.File("../results").mkdirs();
 
-        BlockingQueue<ChatMessage> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
         // Use a single MetricsCollector for all phases to get combined latency data
         MetricsCollector allMetrics = new MetricsCollector();
-
-        // Start message generator thread
-        Thread generatorThread = new Thread(
-                new MessageGenerator(queue, TOTAL_MESSAGES), "msg-generator");
-        generatorThread.start();
-
-        Thread.sleep(500);
-
-        long testStartTime = System.currentTimeMillis();
-
-        // ============ Warmup Phase ============
-        System.out.println("\n>>> Warmup Phase starting...");
-
-        ConnectionManager warmupConnMgr = new ConnectionManager(serverUrl, allMetrics);
-        AtomicInteger warmupCounter = new AtomicInteger(WARMUP_TOTAL);
-
-        // Snapshot before warmup
-        long warmupSuccessBefore = allMetrics.getSuccessCount();
-
-        ExecutorService warmupExecutor = Executors.newFixedThreadPool(WARMUP_THREADS);
-        long warmupStart = System.currentTimeMillis();
-
-        for (int i = 0; i < WARMUP_THREADS; i++) {
-            warmupExecutor.submit(new SenderThread(
-                    queue, warmupConnMgr, allMetrics,
-                    WARMUP_MESSAGES_PER_THREAD, warmupCounter));
-        }
-
-        warmupExecutor.shutdown();
-        warmupExecutor.awaitTermination(10, TimeUnit.MINUTES);
-
-        long warmupEnd = System.currentTimeMillis();
-        long warmupSuccess = allMetrics.getSuccessCount() - warmupSuccessBefore;
-        double warmupSec = (warmupEnd - warmupStart) / 1000.0;
-        System.out.println();
-        System.out.println("========================================");
-        System.out.println("  Warmup Phase Results");
-        System.out.println("========================================");
-        System.out.printf("  Successful messages : %,d%n", warmupSuccess);
-        System.out.printf("  Total runtime       : %.2f seconds%n", warmupSec);
-        System.out.printf("  Throughput          : %,.0f msg/s%n", warmupSuccess / warmupSec);
-        System.out.println("========================================");
-
-        // ============ Main Phase ============
-        int remaining = TOTAL_MESSAGES - (int) allMetrics.getSuccessCount();
-        System.out.println("\n>>> Main Phase: " + MAIN_THREADS + " threads, "
-                + remaining + " remaining messages");
-
-        ConnectionManager mainConnMgr = new ConnectionManager(serverUrl, allMetrics);
-
-        ExecutorService mainExecutor = Executors.newFixedThreadPool(MAIN_THREADS);
-        long mainStart = System.currentTimeMillis();
-
-        for (int i = 0; i < MAIN_THREADS; i++) {
-            mainExecutor.submit(new SenderThread(
-                    queue, mainConnMgr, allMetrics,
-                    -1, null));
-        }
-
-        mainExecutor.shutdown();
-        mainExecutor.awaitTermination(30, TimeUnit.MINUTES);
-
-        long mainEnd = System.currentTimeMillis();
-
-        // Wait for generator
-        generatorThread.join();
+        JfrProfiler profiler = JFR ? new JfrProfiler() : null;
+        if (profiler != null) profiler.start();
+        LoadTest test = new LoadTest(serverUrl, scenario, allMetrics, deflate, SOCKETS_PER_ROOM,
+                SUBSCRIBERS_PER_ROOM);
+        test.run(new LoadTest.PhaseGate() {});
+        String jfrSummary = profiler != null
+                ? profiler.stop(Path.of(JFR_FILE), Path.of(JFR_SUMMARY), allMetrics.getSuccessCount()) : null;
+        long testStartTime = test.getStartTime();
+        long mainEnd = test.getEndTime();
 
         // ============ Overall Results ============
         long totalSuccess = allMetrics.getSuccessCount();
@@ -123,6 +107,22 @@ public class ChatClient {
         System.out.println("========================================");
         System.out.printf("  Total successful    : %,d%n", totalSuccess);
         System.out.printf("  Total failed        : %,d%n", totalFail);
+        System.out.printf("  Duplicate acks      : %,d%n", allMetrics.getDuplicateAcks());
+        System.out.printf("  Stale responses     : %,d%n", allMetrics.getStaleResponses());
+        System.out.printf("  Uncorrelated frames : %,d%n", allMetrics.getUncorrelatedResponses());
+        if (allMetrics.getSequencedFrames() > 0) {
+            System.out.printf("  Sequence gaps       : %,d (of %,d sequenced frames)%n",
+                    allMetrics.getSequenceGaps(), allMetrics.getSequencedFrames());
+            System.out.printf("  Reordered frames    : %,d%n", allMetrics.getReorderedFrames());
+        }
+        if (allMetrics.getReconnectNotices() > 0) {
+            System.out.printf("  Drain notices       : %,d (server asked to reconnect later)%n",
+                    allMetrics.getReconnectNotices());
+        }
+        if (allMetrics.getResumes() > 0) {
+            System.out.printf("  Resumed sessions    : %,d (%,d frames replayed, %,d with a gap too old to fill)%n",
+                    allMetrics.getResumes(), allMetrics.getReplayedFrames(), allMetrics.getIncompleteResumes());
+        }
         System.out.printf("  Total wall time     : %.2f seconds%n", totalTimeSec);
         System.out.printf("  Overall throughput  : %,.0f msg/s%n", totalSuccess / totalTimeSec);
         System.out.println("========================================");
@@ -130,10 +130,21 @@ public class ChatClient {
         // ============ Detailed Statistics ============
         allMetrics.printStatistics();
         allMetrics.printThroughputOverTime(testStartTime);
+        if (!allMetrics.getCompressionStats().isEmpty()) {
+            allMetrics.getCompressionStats().printReport(totalSuccess);
+        }
+        if (!allMetrics.getDeliveryStats().isEmpty()) {
+            allMetrics.getDeliveryStats().printReport();
+        }
 
         // ============ Write CSV Files ============
         allMetrics.writeCsv(CSV_FILE);
         allMetrics.writeThroughputCsv(THROUGHPUT_CSV, testStartTime);
+        if (jfrSummary != null) {
+            System.out.println();
+            System.out.print(jfrSummary);
+            System.out.println("  JFR summary written: " + JFR_SUMMARY);
+        }
 
         System.out.println("\n>>> Done! Check results/ directory for CSV files.");
     }
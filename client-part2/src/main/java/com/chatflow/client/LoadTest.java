@@ -0,0 +1,156 @@
+package com.chatflow.client;
+
+import com.chatflow.client.connection.ConnectionManager;
+import com.chatflow.client.connection.DeflateSettings;
+import com.chatflow.client.connection.SubscriberPool;
+import com.chatflow.client.metrics.MetricsCollector;
+import com.chatflow.client.model.ChatMessage;
+import com.chatflow.client.scenario.Scenario;
+import com.chatflow.client.scenario.ScenarioGenerator;
+import com.chatflow.client.sender.AdaptiveConcurrency;
+import com.chatflow.client.sender.ResponseTimeouts;
+import com.chatflow.client.sender.SenderThread;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a scenario's phases against one server: one generator thread feeding a bounded queue, and a fresh
+ * sender pool per phase, all sharing one ConnectionManager. A {@link PhaseGate} lets a distributed worker
+ * hold each phase until the coordinator starts it. With {@code subscribersPerRoom > 0}, receive-only
+ * {@link SubscriberPool} connections join every room before the first phase and stay until the last.
+ */
+public class LoadTest {
+
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final long SUBSCRIBE_TIMEOUT_MS = 120_000;
+
+    /** Hooks around each phase; the standalone client uses the no-op defaults. */
+    public interface PhaseGate {
+        default void beforePhase(int index, Scenario.Phase phase) throws Exception {}
+        default void afterPhase(int index, Scenario.Phase phase) throws Exception {}
+    }
+
+    private final String serverUrl;
+    private final Scenario scenario;
+    private final MetricsCollector metrics;
+    private final DeflateSettings deflate;
+    private final int socketsPerRoom;
+    private final int subscribersPerRoom;
+    private final ResponseTimeouts timeouts = ResponseTimeouts.fromSystemProperties();
+    private long startTime;
+    private long endTime;
+
+    public LoadTest(String serverUrl, Scenario scenario, MetricsCollector metrics,
+                    DeflateSettings deflate, int socketsPerRoom) {
+        this(serverUrl, scenario, metrics, deflate, socketsPerRoom, 0);
+    }
+
+    public LoadTest(String serverUrl, Scenario scenario, MetricsCollector metrics,
+                    DeflateSettings deflate, int socketsPerRoom, int subscribersPerRoom) {
+        this.serverUrl = serverUrl;
+        this.scenario = scenario;
+        this.metrics = metrics;
+        this.deflate = deflate;
+        this.socketsPerRoom = socketsPerRoom;
+        this.subscribersPerRoom = subscribersPerRoom;
+    }
+
+    /** Epoch millis when the first phase started and the last one finished. */
+    public long getStartTime() { return startTime; }
+    public long getEndTime() { return endTime; }
+
+    public void run(PhaseGate gate) throws Exception {
+        BlockingQueue<ChatMessage> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+
+        // Start message generator thread
+        Thread generatorThread = new Thread(new ScenarioGenerator(queue, scenario), "msg-generator");
+        generatorThread.start();
+
+        Thread.sleep(500);
+
+        ConnectionManager connMgr = new ConnectionManager(serverUrl, metrics, deflate, socketsPerRoom);
+        SubscriberPool subscribers = subscribersPerRoom > 0
+                ? new SubscriberPool(serverUrl, scenario.getRooms(), subscribersPerRoom, metrics) : null;
+        List<Scenario.Phase> phases = scenario.getPhases();
+        if (timeouts.isHedging() && socketsPerRoom < 2) {
+            System.out.println("  Hedging needs at least 2 pooled sockets per room; sends won't be hedged");
+        }
+        try {
+            if (subscribers != null) openSubscribers(subscribers);
+            for (int p = 0; p < phases.size(); p++) {
+                Scenario.Phase phase = phases.get(p);
+                gate.beforePhase(p, phase);
+                if (p == 0) startTime = System.currentTimeMillis();
+                runPhase(phase, queue, connMgr);
+                endTime = System.currentTimeMillis();
+                gate.afterPhase(p, phase);
+            }
+
+            // Wait for generator
+            generatorThread.join();
+            if (timeouts.isAdaptive() || timeouts.isHedging()) timeouts.printReport();
+            if (subscribers != null) {
+                subscribers.close();
+                subscribers.printReport();
+            }
+        } finally {
+            generatorThread.interrupt();
+            connMgr.shutdown();
+            if (subscribers != null) subscribers.close();
+        }
+    }
+
+    private void openSubscribers(SubscriberPool subscribers) throws Exception {
+        System.out.println("\n>>> Opening " + subscribers.getTarget() + " receive-only subscribers ("
+                + subscribersPerRoom + " per room)");
+        long start = System.currentTimeMillis();
+        subscribers.open();
+        if (!subscribers.awaitSettled(SUBSCRIBE_TIMEOUT_MS)) {
+            System.out.println("  Still connecting after " + SUBSCRIBE_TIMEOUT_MS / 1000 + "s; starting anyway");
+        }
+        System.out.printf("  %,d open, %,d failed in %.1f seconds%n", subscribers.getOpen(),
+                subscribers.getFailed(), (System.currentTimeMillis() - start) / 1000.0);
+    }
+
+    private void runPhase(Scenario.Phase phase, BlockingQueue<ChatMessage> queue,
+                          ConnectionManager connMgr) throws InterruptedException {
+        System.out.println("\n>>> " + phase.getName() + " Phase: " + phase.getThreads() + " threads"
+                + (phase.isAdaptive() ? " (adaptive, starting at " + Math.min(AdaptiveConcurrency.INITIAL_LIMIT,
+                        phase.getThreads()) + ")" : "") + ", " + phase.getMessages() + " messages");
+
+        // Senders stop once the phase's share has been acked
+        AtomicInteger phaseCounter = new AtomicInteger(phase.getMessages());
+        long successBefore = metrics.getSuccessCount();
+
+        AdaptiveConcurrency concurrency = phase.isAdaptive()
+                ? new AdaptiveConcurrency(phase.getName(), phase.getThreads()) : null;
+        ExecutorService executor = Executors.newFixedThreadPool(phase.getThreads());
+        long phaseStart = System.currentTimeMillis();
+
+        for (int i = 0; i < phase.getThreads(); i++) {
+            executor.submit(new SenderThread(
+                    queue, connMgr, metrics,
+                    -1, phaseCounter, concurrency, timeouts));
+        }
+        if (concurrency != null) concurrency.start();
+
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.MINUTES);
+        if (concurrency != null) concurrency.stop();
+
+        long phaseEnd = System.currentTimeMillis();
+        long phaseSuccess = metrics.getSuccessCount() - successBefore;
+        double phaseSec = (phaseEnd - phaseStart) / 1000.0;
+        System.out.println();
+        System.out.println("========================================");
+        System.out.println("  " + phase.getName() + " Phase Results");
+        System.out.println("========================================");
+        System.out.printf("  Successful messages : %,d%n", phaseSuccess);
+        System.out.printf("  Total runtime       : %.2f seconds%n", phaseSec);
+        System.out.printf("  Throughput          : %,.0f msg/s%n", phaseSuccess / phaseSec);
+        System.out.println("========================================");
+        if (concurrency != null) concurrency.printReport();
+    }
+}
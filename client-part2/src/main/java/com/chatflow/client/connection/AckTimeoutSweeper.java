@@ -0,0 +1,43 @@
+package com.chatflow.client.connection;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One daemon thread that expires overdue acks for every open connection, instead of a timed wait or a
+ * timer task per message.
+ */
+final class AckTimeoutSweeper {
+
+    private static final long PERIOD_MS = 10;
+    private static final Set<PendingRequests> TABLES = ConcurrentHashMap.newKeySet();
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ack-timeout-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        TIMER.scheduleWithFixedDelay(AckTimeoutSweeper::sweepAll, PERIOD_MS, PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private AckTimeoutSweeper() {}
+
+    static void register(PendingRequests table) { TABLES.add(table); }
+
+    static void unregister(PendingRequests table) { TABLES.remove(table); }
+
+    private static void sweepAll() {
+        long now = System.nanoTime();
+        for (PendingRequests table : TABLES) {
+            try {
+                table.sweep(now);
+            } catch (RuntimeException e) {
+                System.err.println("[AckSweeper] " + e.getMessage());
+            }
+        }
+    }
+}
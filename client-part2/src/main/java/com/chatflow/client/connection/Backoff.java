@@ -0,0 +1,34 @@
+package com.chatflow.client.connection;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decorrelated-jitter backoff: each delay is random in [base, previous * 3], capped.
+ *
+ * A fixed 10·2^n schedule keeps senders that failed together retrying together. Drawing from
+ * a range that grows with the previous delay spreads them apart after the first retry, while still
+ * backing off about as fast as exponential. One instance per sender; not thread-safe.
+ */
+public class Backoff {
+
+    private final long baseMs;
+    private final long capMs;
+    private long previousMs;
+
+    public Backoff(long baseMs, long capMs) {
+        this.baseMs = baseMs;
+        this.capMs = capMs;
+        this.previousMs = baseMs;
+    }
+
+    public long nextDelayMs() {
+        long upper = Math.min(capMs, previousMs * 3);
+        previousMs = upper <= baseMs ? baseMs : ThreadLocalRandom.current().nextLong(baseMs, upper + 1);
+        return previousMs;
+    }
+
+    /** Call after a success so the next failure starts from the base delay again. */
+    public void reset() {
+        previousMs = baseMs;
+    }
+}
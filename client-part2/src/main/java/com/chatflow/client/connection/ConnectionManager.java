@@ -1,87 +1,461 @@
 package com.chatflow.client.connection;
 
 import com.chatflow.client.metrics.MetricsCollector;
+import com.chatflow.client.metrics.OrderingVerifier;
 import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
 import org.java_websocket.handshake.ServerHandshake;
 
 import java.net.URI;
-import java.util.concurrent.CountDownLatch;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Opens WebSocket connections to /chat/{roomId}.
+ *
+ * With {@code socketsPerRoom > 0} connections are pooled: {@link #acquire} hands out one of a fixed number of
+ * sockets per room, round-robin, and many sender threads share each socket. Acks are matched by messageId,
+ * so senders on the same socket never see each other's replies. The pool outlives a phase, so warmup and
+ * main reuse the same handshakes. A background check drops dead idle sockets and pings live ones.
+ *
+ * With {@code socketsPerRoom == 0} every acquire opens a dedicated socket and release closes it (one
+ * connection per sender, the original behaviour).
+ *
+ * A socket that is reopened presents the server's resume token from its last handshake, with the highest
+ * seq it saw. The server replays what the room broadcast in between, and the new socket's ordering check
+ * carries on from the old one's, so a reconnect that lost frames shows up as a sequence gap.
+ */
 public class ConnectionManager {
 
+    private static final long HEALTH_CHECK_MS = 5_000;
+    private static final long IDLE_PING_NANOS = TimeUnit.SECONDS.toNanos(15);
+    // Ask the server for acks as binary frames (serialised into its pooled buffers, no String per reply)
+    private static final boolean BINARY_FRAMES = Boolean.getBoolean("chatflow.binaryFrames");
+    // Resume the old session on reconnect when the server issued a token (-Dchatflow.resume=false to skip)
+    private static final boolean RESUME = Boolean.parseBoolean(System.getProperty("chatflow.resume", "true"));
+
     private final String serverBaseUrl;
     private final MetricsCollector metrics;
+    private final DeflateSettings deflate;
+    private final int socketsPerRoom;
+    private final ReconnectBudget reconnectBudget;
+    private final ConcurrentHashMap<Integer, Slot[]> pool = new ConcurrentHashMap<>();
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private final ScheduledExecutorService healthCheck;
 
     public ConnectionManager(String serverBaseUrl, MetricsCollector metrics) {
+        this(serverBaseUrl, metrics, DeflateSettings.disabled());
+    }
+
+    public ConnectionManager(String serverBaseUrl, MetricsCollector metrics, DeflateSettings deflate) {
+        this(serverBaseUrl, metrics, deflate, 0);
+    }
+
+    public ConnectionManager(String serverBaseUrl, MetricsCollector metrics, DeflateSettings deflate,
+                             int socketsPerRoom) {
+        this(serverBaseUrl, metrics, deflate, socketsPerRoom, ReconnectBudget.fromSystemProperties());
+    }
+
+    public ConnectionManager(String serverBaseUrl, MetricsCollector metrics, DeflateSettings deflate,
+                             int socketsPerRoom, ReconnectBudget reconnectBudget) {
         this.serverBaseUrl = serverBaseUrl;
         this.metrics = metrics;
+        this.deflate = deflate;
+        this.socketsPerRoom = socketsPerRoom;
+        this.reconnectBudget = reconnectBudget;
+        if (socketsPerRoom > 0) {
+            healthCheck = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "pool-health-check");
+                t.setDaemon(true);
+                return t;
+            });
+            healthCheck.scheduleWithFixedDelay(() -> checkIdle(System.nanoTime()),
+                    HEALTH_CHECK_MS, HEALTH_CHECK_MS, TimeUnit.MILLISECONDS);
+        } else {
+            healthCheck = null;
+        }
+    }
+
+    public int getSocketsPerRoom() { return socketsPerRoom; }
+
+    /** Number of pooled sockets currently open. */
+    public int getPooledSockets() {
+        int open = 0;
+        for (Slot[] slots : pool.values()) {
+            for (Slot slot : slots) {
+                ChatWebSocketClient c = slot.client;
+                if (c != null && c.isOpen()) open++;
+            }
+        }
+        return open;
+    }
+
+    /**
+     * A connection for {@code roomId}: a shared pooled socket, or a new dedicated one when pooling is off.
+     * Pair every call with {@link #release}.
+     */
+    public ChatWebSocketClient acquire(int roomId) throws Exception {
+        if (socketsPerRoom <= 0) return createConnection(roomId);
+
+        Slot[] slots = pool.computeIfAbsent(roomId, r -> {
+            Slot[] s = new Slot[socketsPerRoom];
+            for (int i = 0; i < s.length; i++) s[i] = new Slot(r);
+            return s;
+        });
+        Slot slot = slots[Math.floorMod(roundRobin.getAndIncrement(), slots.length)];
+        slot.users.incrementAndGet(); // before open, so the health check can't evict it under us
+        try {
+            return slot.open(null);
+        } catch (Exception e) {
+            slot.users.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Another open pooled socket of {@code roomId}, not {@code avoid}, for a hedged send. Null when pooling is
+     * off, the room has one socket, or no other socket is open. Pair a non-null result with {@link #release}.
+     */
+    public ChatWebSocketClient acquireAlternate(int roomId, ChatWebSocketClient avoid) {
+        Slot[] slots = socketsPerRoom > 1 ? pool.get(roomId) : null;
+        if (slots == null) return null;
+        int start = roundRobin.getAndIncrement();
+        for (int i = 0; i < slots.length; i++) {
+            Slot slot = slots[Math.floorMod(start + i, slots.length)];
+            ChatWebSocketClient c = slot.client;
+            if (c == null || c == avoid || !c.isOpen()) continue;
+            slot.users.incrementAndGet();
+            if (slot.client == c) return c;
+            slot.users.decrementAndGet(); // replaced under us; try the next one
+        }
+        return null;
+    }
+
+    public void release(ChatWebSocketClient client) {
+        if (client == null) return;
+        Slot slot = client.slot;
+        if (slot == null) {
+            if (client.isOpen()) client.close();
+            return;
+        }
+        slot.users.decrementAndGet();
+        slot.lastReleasedNanos = System.nanoTime();
+    }
+
+    /** Closes every pooled socket. */
+    public void shutdown() {
+        if (healthCheck != null) healthCheck.shutdownNow();
+        for (Slot[] slots : pool.values()) {
+            for (Slot slot : slots) {
+                ChatWebSocketClient c = slot.client;
+                if (c != null && c.isOpen()) c.close();
+            }
+        }
+        pool.clear();
     }
 
     public ChatWebSocketClient createConnection(int roomId) throws Exception {
-        String url = serverBaseUrl + "/chat/" + roomId;
-        ChatWebSocketClient client = new ChatWebSocketClient(new URI(url));
+        return connect(new URI(serverBaseUrl + "/chat/" + roomId), null);
+    }
+
+    public ChatWebSocketClient reconnect(ChatWebSocketClient oldClient) throws Exception {
+        // Shared socket: the first sender to notice reconnects it, the others pick up the replacement
+        if (oldClient.slot != null) return oldClient.slot.open(oldClient);
+
+        URI uri = oldClient.getURI();
+        oldClient.close(); // don't wait for the close handshake of a socket we're abandoning
+
+        oldClient.awaitReconnectHint();
+        reconnectBudget.acquire();
+        ChatWebSocketClient newClient = connect(new URI(uri.getScheme(), uri.getAuthority(), uri.getPath(), null, null),
+                oldClient);
+        metrics.recordReconnection();
+        return newClient;
+    }
+
+    /** Opens a socket to {@code endpoint}, resuming {@code previous}'s session if it has a token. */
+    private ChatWebSocketClient connect(URI endpoint, ChatWebSocketClient previous) throws Exception {
+        String token = RESUME && previous != null ? previous.resumeToken : null;
+        long lastSeq = token != null ? previous.ordering.getHighest() : 0;
+        StringBuilder query = new StringBuilder();
+        if (BINARY_FRAMES) query.append("&binary=true");
+        if (token != null) query.append("&resume=").append(token).append("&lastSeq=").append(lastSeq);
+        URI uri = query.length() == 0 ? endpoint : new URI(endpoint + "?" + query.substring(1));
+
+        ChatWebSocketClient client = new ChatWebSocketClient(uri, newDraft());
+        client.setMetrics(metrics);
+        client.ordering.startAfter(lastSeq);
         client.connectBlocking(10, TimeUnit.SECONDS);
 
         if (!client.isOpen()) {
-            throw new RuntimeException("Failed to connect to " + url);
+            throw new RuntimeException("Failed to connect to " + endpoint);
         }
 
         metrics.recordConnection();
         return client;
     }
 
-    public ChatWebSocketClient reconnect(ChatWebSocketClient oldClient) throws Exception {
-        URI uri = oldClient.getURI();
-        oldClient.closeBlocking();
+    // Drop dead idle sockets so the next acquire reopens them; ping live idle ones to keep NAT/LB state warm
+    void checkIdle(long now) {
+        for (Slot[] slots : pool.values()) {
+            for (Slot slot : slots) {
+                ChatWebSocketClient c = slot.client;
+                if (c == null || slot.users.get() > 0 || now - slot.lastReleasedNanos < IDLE_PING_NANOS) continue;
+                if (!c.isOpen()) {
+                    slot.evict(c);
+                    continue;
+                }
+                try {
+                    c.sendPing();
+                } catch (RuntimeException e) {
+                    slot.evict(c);
+                }
+            }
+        }
+    }
+
+    /** One pooled socket position. The lock is only taken to open or replace the socket. */
+    private final class Slot {
+        final int roomId;
+        final AtomicInteger users = new AtomicInteger();
+        final ReentrantLock lock = new ReentrantLock();
+        volatile ChatWebSocketClient client;
+        volatile long lastReleasedNanos = System.nanoTime();
 
-        ChatWebSocketClient newClient = new ChatWebSocketClient(uri);
-        newClient.connectBlocking(10, TimeUnit.SECONDS);
+        Slot(int roomId) { this.roomId = roomId; }
 
-        if (!newClient.isOpen()) {
-            throw new RuntimeException("Failed to reconnect to " + uri);
+        /** Returns the open socket, (re)connecting if it is missing, closed, or is the {@code stale} one. */
+        ChatWebSocketClient open(ChatWebSocketClient stale) throws Exception {
+            ChatWebSocketClient c = client;
+            if (c != null && c != stale && c.isOpen()) return c;
+            lock.lock();
+            try {
+                c = client;
+                if (c != null && c != stale && c.isOpen()) return c;
+                boolean replacing = c != null;
+                if (c != null) {
+                    c.close();
+                    c.awaitReconnectHint();
+                    reconnectBudget.acquire();
+                }
+                c = connect(new URI(serverBaseUrl + "/chat/" + roomId), c);
+                c.slot = this;
+                client = c;
+                if (replacing) metrics.recordReconnection();
+                return c;
+            } finally {
+                lock.unlock();
+            }
         }
 
-        metrics.recordReconnection();
-        metrics.recordConnection();
-        return newClient;
+        void evict(ChatWebSocketClient c) {
+            lock.lock();
+            try {
+                if (client == c && users.get() == 0) {
+                    client = null;
+                    c.close();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Drafts hold per-connection extension state, so every client needs its own
+    private Draft newDraft() {
+        if (!deflate.isEnabled()) return new Draft_6455();
+        return new Draft_6455(new MeteredDeflateExtension(deflate, metrics.getCompressionStats()));
     }
 
     public static class ChatWebSocketClient extends WebSocketClient {
 
-        private volatile String lastResponse;
-        private volatile CountDownLatch responseLatch;
+        // How long a timed-out id is remembered so its late reply is counted as stale
+        private static final long STALE_RETENTION_MS = 60_000;
+        // A hint past this is treated as this long, so a bad value can't park a sender for good
+        private static final long MAX_RECONNECT_HINT_MS = 60_000;
+        private static final String MESSAGE_ID_FIELD = "\"messageId\":\"";
+        private static final String RECONNECT_PREFIX = "{\"status\":\"RECONNECT\"";
+        private static final String RECONNECT_AFTER_FIELD = "\"reconnectAfterMs\":";
+        private static final String RESUME_HEADER = "X-Resume-Token";
+        private static final String RESUMED_PREFIX = "{\"status\":\"RESUMED\"";
+        private static final String REPLAYED_FIELD = "\"replayed\":";
+
+        private final PendingRequests pending = new PendingRequests(STALE_RETENTION_MS);
+        // Pooled sockets are written by several senders; the deflate extension is not thread-safe
+        private final ReentrantLock sendLock = new ReentrantLock();
+        private volatile MetricsCollector metrics;
+        private volatile Slot slot; // null for dedicated connections
+        private final OrderingVerifier ordering = new OrderingVerifier(); // read thread only
+        private final int roomId;
+        // Set by a draining server's RECONNECT frame: don't reopen this socket's slot before then
+        private volatile long reconnectNotBeforeNanos;
+        // From the handshake response; null when the server doesn't offer resumption
+        private volatile String resumeToken;
 
         public ChatWebSocketClient(URI serverUri) {
             super(serverUri);
+            this.roomId = roomIdOf(serverUri);
         }
 
+        public ChatWebSocketClient(URI serverUri, Draft draft) {
+            super(serverUri, draft);
+            this.roomId = roomIdOf(serverUri);
+        }
+
+        void setMetrics(MetricsCollector metrics) { this.metrics = metrics; }
+
         @Override
-        public void onOpen(ServerHandshake handshake) {}
+        public void onOpen(ServerHandshake handshake) {
+            String token = handshake.getFieldValue(RESUME_HEADER);
+            resumeToken = token == null || token.isEmpty() ? null : token;
+            AckTimeoutSweeper.register(pending);
+        }
 
         @Override
         public void onMessage(String message) {
-            this.lastResponse = message;
-            CountDownLatch latch = this.responseLatch;
-            if (latch != null) {
-                latch.countDown();
+            if (message.startsWith(RECONNECT_PREFIX)) {
+                onReconnectNotice(message);
+                return;
+            }
+            if (message.startsWith(RESUMED_PREFIX)) {
+                MetricsCollector m = metrics;
+                if (m != null) m.recordResume(readLong(message, REPLAYED_FIELD), message.contains("\"complete\":true"));
+                return;
+            }
+            ordering.accept(message, metrics);
+            long id = extractMessageId(message);
+            PendingRequests.Match match = id < 0 ? PendingRequests.Match.UNKNOWN : pending.complete(id, message);
+            if (match == PendingRequests.Match.COMPLETED) return;
+
+            MetricsCollector m = metrics;
+            if (match == PendingRequests.Match.STALE) {
+                if (m != null) m.recordStaleResponse();
+            } else if (id >= 0 || !pending.completeOnlyPending(message)) {
+                // Not an ack for anything we sent (e.g. another member's broadcast). A frame carrying some
+                // other messageId must not complete a lone id-less request.
+                if (m != null) {
+                    m.recordUncorrelatedResponse();
+                    m.getDeliveryStats().record(roomId, id, message, System.currentTimeMillis());
+                }
             }
         }
 
+        /** Binary frames (sessions opened with ?binary=true) carry the same UTF-8 JSON as text ones. */
         @Override
-        public void onClose(int code, String reason, boolean remote) {}
+        public void onMessage(ByteBuffer bytes) {
+            onMessage(StandardCharsets.UTF_8.decode(bytes).toString());
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote) {
+            AckTimeoutSweeper.unregister(pending);
+            pending.failAll(new java.io.IOException("Connection closed: " + code + " " + reason));
+        }
 
         @Override
         public void onError(Exception ex) {
             System.err.println("[WS Error] " + ex.getMessage());
         }
 
+        /**
+         * Send and get a future for the reply whose messageId equals {@code messageId}. The future fails with
+         * TimeoutException after {@code timeoutMs}, or with IOException if the connection closes first.
+         * Callers may block on it, pipeline several, or ignore it.
+         */
+        public CompletableFuture<String> sendAsync(long messageId, String json, long timeoutMs) {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            pending.register(messageId, future, System.nanoTime() + timeoutMs * 1_000_000L);
+            sendLock.lock();
+            try {
+                send(json);
+            } catch (RuntimeException e) {
+                pending.remove(messageId);
+                future.completeExceptionally(e);
+            } finally {
+                sendLock.unlock();
+            }
+            return future;
+        }
+
+        /**
+         * Blocking send for callers that don't track ids. Returns null on timeout or close.
+         */
         public String sendAndWait(String message, long timeoutMs) throws InterruptedException {
-            this.responseLatch = new CountDownLatch(1);
-            this.lastResponse = null;
-            send(message);
-            boolean received = responseLatch.await(timeoutMs, TimeUnit.MILLISECONDS);
-            return received ? lastResponse : null;
+            long id = extractMessageId(message);
+            if (id < 0) id = SYNTHETIC_IDS.decrementAndGet(); // never echoed; matched via completeOnlyPending
+            try {
+                return sendAsync(id, message, timeoutMs).get();
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+
+        public int getInFlight() { return pending.inFlight(); }
+
+        /**
+         * The server is draining and will close this socket. It says how long to wait before reconnecting, a
+         * different delay for each client, so the fleet doesn't get every socket back in the same second.
+         */
+        private void onReconnectNotice(String message) {
+            long afterMs = readLong(message, RECONNECT_AFTER_FIELD);
+            reconnectNotBeforeNanos = System.nanoTime() + Math.min(afterMs, MAX_RECONNECT_HINT_MS) * 1_000_000L;
+            MetricsCollector m = metrics;
+            if (m != null) m.recordReconnectNotice();
+        }
+
+        /** Sleeps out the server's reconnect hint, if it sent one. */
+        void awaitReconnectHint() throws InterruptedException {
+            long wait = reconnectNotBeforeNanos - System.nanoTime();
+            if (reconnectNotBeforeNanos != 0 && wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+        }
+
+        private static final AtomicLong SYNTHETIC_IDS = new AtomicLong(-1);
+
+        /** Unsigned number following {@code field} in a server status frame; 0 if absent. */
+        private static long readLong(String message, String field) {
+            int at = message.indexOf(field);
+            long value = 0;
+            for (int i = at < 0 ? message.length() : at + field.length(); i < message.length(); i++) {
+                char c = message.charAt(i);
+                if (c < '0' || c > '9') break;
+                value = value * 10 + (c - '0');
+            }
+            return value;
+        }
+
+        /** Room of a /chat/{roomId} URI, or -1 when the last path segment is not a number. */
+        static int roomIdOf(URI uri) {
+            String path = uri.getPath();
+            if (path == null) return -1;
+            try {
+                return Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        /** Reads "messageId":"123" from a frame without a JSON parse. Returns -1 if absent. */
+        static long extractMessageId(String json) {
+            int at = json.indexOf(MESSAGE_ID_FIELD);
+            if (at < 0) return -1;
+            long value = 0;
+            int digits = 0;
+            for (int i = at + MESSAGE_ID_FIELD.length(); i < json.length() && digits < 19; i++, digits++) {
+                char c = json.charAt(i);
+                if (c < '0' || c > '9') break;
+                value = value * 10 + (c - '0');
+            }
+            return digits == 0 ? -1 : value;
         }
     }
 }
@@ -0,0 +1,49 @@
+package com.chatflow.client.connection;
+
+/**
+ * permessage-deflate options for client connections.
+ * Read from system properties so a run can be switched without rebuilding:
+ *   -Dchatflow.deflate=true
+ *   -Dchatflow.deflate.threshold=256            (frames smaller than this are sent uncompressed)
+ *   -Dchatflow.deflate.clientContextTakeover=true
+ *   -Dchatflow.deflate.serverContextTakeover=true
+ */
+public class DeflateSettings {
+
+    private final boolean enabled;
+    private final int threshold;
+    private final boolean clientContextTakeover;
+    private final boolean serverContextTakeover;
+
+    public DeflateSettings(boolean enabled, int threshold,
+                           boolean clientContextTakeover, boolean serverContextTakeover) {
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.clientContextTakeover = clientContextTakeover;
+        this.serverContextTakeover = serverContextTakeover;
+    }
+
+    public static DeflateSettings disabled() {
+        return new DeflateSettings(false, 0, true, true);
+    }
+
+    public static DeflateSettings fromSystemProperties() {
+        return new DeflateSettings(
+                Boolean.parseBoolean(System.getProperty("chatflow.deflate", "false")),
+                Integer.parseInt(System.getProperty("chatflow.deflate.threshold", "256")),
+                Boolean.parseBoolean(System.getProperty("chatflow.deflate.clientContextTakeover", "true")),
+                Boolean.parseBoolean(System.getProperty("chatflow.deflate.serverContextTakeover", "true")));
+    }
+
+    public boolean isEnabled() { return enabled; }
+    public int getThreshold() { return threshold; }
+    public boolean isClientContextTakeover() { return clientContextTakeover; }
+    public boolean isServerContextTakeover() { return serverContextTakeover; }
+
+    @Override
+    public String toString() {
+        if (!enabled) return "off";
+        return "threshold=" + threshold + "B, clientContextTakeover=" + clientContextTakeover
+                + ", serverContextTakeover=" + serverContextTakeover;
+    }
+}
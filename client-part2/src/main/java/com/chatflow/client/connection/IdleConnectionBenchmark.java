@@ -0,0 +1,139 @@
+package com.chatflow.client.connection;
+
+import com.chatflow.client.metrics.MetricsCollector;
+import com.google.gson.Gson;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures what an idle WebSocket connection costs the server, so instances can be sized by connection count.
+ *
+ * For each target count it opens that many receive-only connections ({@link SubscriberPool}) across
+ * {@link #ROOMS} rooms, lets them settle, and reads the server's {@code GET /memory}: heap in use after a
+ * full GC. Bytes per connection is the growth over the same server with no sessions, read just before,
+ * divided by the sessions the server reports. Connections are closed between counts.
+ *
+ * The server needs {@code chatflow.session.memory-endpoint-enabled=true} and {@code server.tomcat.max-connections}
+ * above the largest count, and both ends a file-descriptor limit above it. One client address reaches about
+ * 28k connections to one server address (the ephemeral port range). For more, list several addresses of the
+ * same server in {@code -Dchatflow.idle.hosts} (e.g. 127.0.0.1,127.0.0.2,... over loopback); connections are
+ * spread evenly over them.
+ *
+ *   java -cp client-part2-1.0.0.jar com.chatflow.client.connection.IdleConnectionBenchmark \
+ *       ws://localhost:8080 10000,50000,100000
+ */
+public class IdleConnectionBenchmark {
+
+    private static final int ROOMS = 20;
+    private static final long SETTLE_MS = 3_000;
+    private static final long CLOSE_TIMEOUT_MS = 60_000;
+
+    private static final HttpClient HTTP = HttpClient.newHttpClient();
+    private static final Gson GSON = new Gson();
+
+    /** Body of the server's GET /memory. */
+    private static final class Memory {
+        long sessions;
+        long heapUsedBytes;
+        long directBytes;
+    }
+
+    private record Step(int target, int opened, int failed, long sessions, long heapBytes, long directBytes) {
+        double bytesPerConnection() { return sessions == 0 ? 0 : (double) heapBytes / sessions; }
+    }
+
+    public static void main(String[] args) throws Exception {
+        URI server = URI.create(args.length > 0 ? args[0] : "ws://localhost:8080");
+        String counts = args.length > 1 ? args[1] : "10000,50000,100000";
+        String[] hosts = System.getProperty("chatflow.idle.hosts", server.getHost()).split(",");
+        URI memory = URI.create("http://" + server.getHost() + ":" + server.getPort() + "/memory");
+
+        List<Step> steps = new ArrayList<>();
+        for (String count : counts.split(",")) {
+            int target = Integer.parseInt(count.trim());
+            Memory before = awaitSessions(memory, 0);
+            Step step = measure(server, hosts, target, memory, before);
+            steps.add(step);
+            System.out.printf("  %,d connections: %,.0f bytes each%n", step.sessions(), step.bytesPerConnection());
+        }
+        printReport(steps);
+    }
+
+    private static Step measure(URI server, String[] hosts, int target, URI memory, Memory before) throws Exception {
+        int perHost = (target + hosts.length - 1) / hosts.length;
+        int perRoom = (perHost + ROOMS - 1) / ROOMS;
+        MetricsCollector metrics = new MetricsCollector(false);
+        List<SubscriberPool> pools = new ArrayList<>();
+        try {
+            for (String host : hosts) {
+                SubscriberPool pool = new SubscriberPool("ws://" + host.trim() + ":" + server.getPort(),
+                        ROOMS, perRoom, metrics);
+                pools.add(pool);
+                pool.open();
+            }
+            for (SubscriberPool pool : pools) {
+                if (!pool.awaitSettled(Math.max(60_000, target * 10L))) {
+                    System.err.println("[Idle] Not every connection settled; measuring what opened");
+                }
+            }
+            Thread.sleep(SETTLE_MS);
+            Memory after = fetch(memory);
+            int opened = 0;
+            int failed = 0;
+            for (SubscriberPool pool : pools) {
+                opened += pool.getOpen();
+                failed += pool.getFailed() + pool.getDropped();
+            }
+            return new Step(target, opened, failed, after.sessions,
+                    after.heapUsedBytes - before.heapUsedBytes, after.directBytes - before.directBytes);
+        } finally {
+            for (SubscriberPool pool : pools) pool.close();
+        }
+    }
+
+    /** Polls /memory until the server has {@code sessions} open, so each step starts from an empty server. */
+    private static Memory awaitSessions(URI memory, long sessions) throws Exception {
+        long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MS;
+        Memory m = fetch(memory);
+        while (m.sessions != sessions && System.currentTimeMillis() < deadline) {
+            Thread.sleep(500);
+            m = fetch(memory);
+        }
+        return m;
+    }
+
+    private static Memory fetch(URI memory) throws Exception {
+        HttpResponse<String> response = HTTP.send(HttpRequest.newBuilder(memory).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("GET " + memory + " answered " + response.statusCode()
+                    + "; start the server with chatflow.session.memory-endpoint-enabled=true");
+        }
+        return GSON.fromJson(response.body(), Memory.class);
+    }
+
+    private static void printReport(List<Step> steps) {
+        System.out.println();
+        System.out.println("========================================");
+        System.out.println("  Idle Connection Memory (server heap)");
+        System.out.println("========================================");
+        System.out.println("  Target    Sessions  Failed  Heap growth  Bytes/conn  Direct/conn");
+        for (Step s : steps) {
+            System.out.printf("  %,7d  %,9d  %,6d  %8.1f MB  %,10.0f  %,11.0f%n", s.target(), s.sessions(),
+                    s.failed(), s.heapBytes() / 1048576.0, s.bytesPerConnection(),
+                    s.sessions() == 0 ? 0.0 : (double) s.directBytes() / s.sessions());
+        }
+        Step largest = steps.get(steps.size() - 1);
+        if (largest.sessions() > 0) {
+            System.out.printf("  100k idle connections need about %.1f GB of heap at the largest step's rate%n",
+                    largest.bytesPerConnection() * 100_000 / (1L << 30));
+        }
+        System.out.println("  Kernel socket buffers are not in these numbers (see /proc/net/sockstat)");
+        System.out.println("========================================");
+    }
+}
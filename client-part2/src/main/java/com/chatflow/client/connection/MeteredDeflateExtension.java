@@ -0,0 +1,75 @@
+package com.chatflow.client.connection;
+
+import com.chatflow.client.metrics.CompressionStats;
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.extensions.permessage_deflate.PerMessageDeflateExtension;
+import org.java_websocket.framing.DataFrame;
+import org.java_websocket.framing.Framedata;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * permessage-deflate for the client side, with byte and CPU accounting.
+ *
+ * Java-WebSocket's extension always offers both *_no_context_takeover parameters and names its
+ * reset flags from the server's point of view (deflater resets on serverNoContextTakeover). This
+ * subclass builds the offer from {@link DeflateSettings} and maps the flags to the client's side.
+ *
+ * Cost is measured as thread CPU time, not wall time: with hundreds of sender threads on a few cores,
+ * wall time mostly measures how long the thread waited to be scheduled.
+ */
+public class MeteredDeflateExtension extends PerMessageDeflateExtension {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final DeflateSettings settings;
+    private final CompressionStats stats;
+
+    public MeteredDeflateExtension(DeflateSettings settings, CompressionStats stats) {
+        this.settings = settings;
+        this.stats = stats;
+        setThreshold(settings.getThreshold());
+        // encodeFrame() resets the deflater on this flag, decodeFrame() resets the inflater on the other
+        setServerNoContextTakeover(!settings.isClientContextTakeover());
+        setClientNoContextTakeover(!settings.isServerContextTakeover());
+    }
+
+    @Override
+    public String getProvidedExtensionAsClient() {
+        StringBuilder offer = new StringBuilder("permessage-deflate");
+        if (!settings.isServerContextTakeover()) offer.append("; server_no_context_takeover");
+        if (!settings.isClientContextTakeover()) offer.append("; client_no_context_takeover");
+        return offer.toString();
+    }
+
+    @Override
+    public void encodeFrame(Framedata frame) {
+        if (!(frame instanceof DataFrame)) {
+            super.encodeFrame(frame);
+            return;
+        }
+        int raw = frame.getPayloadData().remaining();
+        long start = THREADS.getCurrentThreadCpuTime();
+        super.encodeFrame(frame);
+        stats.recordOutbound(raw, frame.getPayloadData().remaining(), THREADS.getCurrentThreadCpuTime() - start);
+    }
+
+    @Override
+    public void decodeFrame(Framedata frame) throws InvalidDataException {
+        if (!(frame instanceof DataFrame)) {
+            super.decodeFrame(frame);
+            return;
+        }
+        int wire = frame.getPayloadData().remaining();
+        long start = THREADS.getCurrentThreadCpuTime();
+        super.decodeFrame(frame);
+        stats.recordInbound(wire, frame.getPayloadData().remaining(), THREADS.getCurrentThreadCpuTime() - start);
+    }
+
+    @Override
+    public IExtension copyInstance() {
+        return new MeteredDeflateExtension(settings, stats);
+    }
+}
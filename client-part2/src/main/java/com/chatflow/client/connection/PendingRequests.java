@@ -0,0 +1,244 @@
+package com.chatflow.client.connection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-flight requests of one connection, keyed by the message id the server echoes back.
+ *
+ * Open addressing on a primitive {@code long[]} (no boxing, no per-entry node), linear probing with
+ * backward-shift deletion, guarded by one short ReentrantLock. The only contenders are the owning
+ * sender(s), the socket read thread and the sweeper.
+ *
+ * When a request times out its slot is kept for {@code staleRetentionNanos} with no future attached, so a
+ * reply that arrives late is recognised as stale instead of being credited to whatever was sent next.
+ */
+class PendingRequests {
+
+    enum Match { COMPLETED, STALE, UNKNOWN }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long staleRetentionNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] deadlines = new long[INITIAL_CAPACITY]; // nanoTime; for stale slots, when to forget them
+    private CompletableFuture<String>[] futures = newFutures(INITIAL_CAPACITY);
+    private boolean[] used = new boolean[INITIAL_CAPACITY];
+    private int size;
+    private int inFlight;
+
+    PendingRequests(long staleRetentionMs) {
+        this.staleRetentionNanos = staleRetentionMs * 1_000_000L;
+    }
+
+    void register(long id, CompletableFuture<String> future, long deadlineNanos) {
+        lock.lock();
+        try {
+            if ((size + 1) * 2 > ids.length) resize(ids.length * 2);
+            int i = find(id);
+            if (i < 0) {
+                i = -i - 1;
+                used[i] = true;
+                ids[i] = id;
+                size++;
+            } else if (futures[i] != null) {
+                // Same id re-sent while the previous attempt is still waiting: the newer caller wins
+                futures[i].cancel(false);
+                inFlight--;
+            }
+            futures[i] = future;
+            deadlines[i] = deadlineNanos;
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Hands {@code response} to the request waiting for {@code id}, if any. */
+    Match complete(long id, String response) {
+        CompletableFuture<String> future;
+        lock.lock();
+        try {
+            int i = find(id);
+            if (i < 0) return Match.UNKNOWN;
+            future = futures[i];
+            removeAt(i);
+            if (future == null) return Match.STALE;
+            inFlight--;
+        } finally {
+            lock.unlock();
+        }
+        future.complete(response);
+        return Match.COMPLETED;
+    }
+
+    /** Drops {@code id} without completing its future (the send itself failed). */
+    void remove(long id) {
+        lock.lock();
+        try {
+            int i = find(id);
+            if (i < 0) return;
+            if (futures[i] != null) inFlight--;
+            removeAt(i);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Completes the single outstanding request, if there is exactly one. Used for replies that carry no id,
+     * such as the error for a frame the server could not parse.
+     */
+    boolean completeOnlyPending(String response) {
+        CompletableFuture<String> future = null;
+        lock.lock();
+        try {
+            if (inFlight != 1) return false;
+            for (int i = 0; i < ids.length; i++) {
+                if (used[i] && futures[i] != null) {
+                    future = futures[i];
+                    removeAt(i);
+                    inFlight--;
+                    break;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (future == null) return false;
+        future.complete(response);
+        return true;
+    }
+
+    /** Times out overdue requests and forgets stale ids past their retention. Returns how many timed out. */
+    int sweep(long now) {
+        List<CompletableFuture<String>> expired = null;
+        lock.lock();
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                if (!used[i] || now - deadlines[i] < 0) continue;
+                if (futures[i] != null) {
+                    if (expired == null) expired = new ArrayList<>();
+                    expired.add(futures[i]);
+                    futures[i] = null;
+                    deadlines[i] = now + staleRetentionNanos;
+                    inFlight--;
+                } else {
+                    removeAt(i);
+                    i--; // backward shift may have moved another entry into this slot
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (expired == null) return 0;
+        TimeoutException timeout = new TimeoutException("No ack within deadline");
+        for (CompletableFuture<String> f : expired) f.completeExceptionally(timeout);
+        return expired.size();
+    }
+
+    void failAll(Throwable cause) {
+        List<CompletableFuture<String>> waiting = new ArrayList<>();
+        lock.lock();
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                if (used[i] && futures[i] != null) waiting.add(futures[i]);
+            }
+            clear();
+        } finally {
+            lock.unlock();
+        }
+        for (CompletableFuture<String> f : waiting) f.completeExceptionally(cause);
+    }
+
+    int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---- open addressing internals (caller holds lock) ----
+
+    /** @return slot index if present, otherwise -(insertion slot) - 1 */
+    private int find(long id) {
+        int mask = ids.length - 1;
+        int i = slot(id, mask);
+        while (used[i]) {
+            if (ids[i] == id) return i;
+            i = (i + 1) & mask;
+        }
+        return -i - 1;
+    }
+
+    private void removeAt(int i) {
+        int mask = ids.length - 1;
+        used[i] = false;
+        futures[i] = null;
+        size--;
+        // Backward-shift so later probes don't stop early at the hole
+        int hole = i;
+        int j = (i + 1) & mask;
+        while (used[j]) {
+            int home = slot(ids[j], mask);
+            boolean movable = hole <= j ? (home <= hole || home > j) : (home <= hole && home > j);
+            if (movable) {
+                ids[hole] = ids[j];
+                deadlines[hole] = deadlines[j];
+                futures[hole] = futures[j];
+                used[hole] = true;
+                used[j] = false;
+                futures[j] = null;
+                hole = j;
+            }
+            j = (j + 1) & mask;
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldIds = ids;
+        long[] oldDeadlines = deadlines;
+        CompletableFuture<String>[] oldFutures = futures;
+        boolean[] oldUsed = used;
+        ids = new long[capacity];
+        deadlines = new long[capacity];
+        futures = newFutures(capacity);
+        used = new boolean[capacity];
+        int mask = capacity - 1;
+        for (int k = 0; k < oldIds.length; k++) {
+            if (!oldUsed[k]) continue;
+            int i = slot(oldIds[k], mask);
+            while (used[i]) i = (i + 1) & mask;
+            used[i] = true;
+            ids[i] = oldIds[k];
+            deadlines[i] = oldDeadlines[k];
+            futures[i] = oldFutures[k];
+        }
+    }
+
+    private void clear() {
+        ids = new long[INITIAL_CAPACITY];
+        deadlines = new long[INITIAL_CAPACITY];
+        futures = newFutures(INITIAL_CAPACITY);
+        used = new boolean[INITIAL_CAPACITY];
+        size = 0;
+        inFlight = 0;
+    }
+
+    /** Generic arrays can't be created directly; this is the one unchecked cast. */
+    @SuppressWarnings("unchecked")
+    private static CompletableFuture<String>[] newFutures(int capacity) {
+        return (CompletableFuture<String>[]) new CompletableFuture<?>[capacity];
+    }
+
+    static int slot(long id, int mask) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,54 @@
+package com.chatflow.client.connection;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client-wide limit on reconnect attempts per second, shared by every sender.
+ *
+ * When the server restarts, every connection drops at the same moment. Without a shared budget, all
+ * senders reconnect together and the server sees a handshake spike. Here each attempt takes a token from one
+ * bucket, and callers beyond the rate wait their turn. Their attempts arrive spread out rather than
+ * all at once.
+ */
+public class ReconnectBudget {
+
+    private final double ratePerNano;
+    private final double burst;
+    private final ReentrantLock lock = new ReentrantLock();
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    public ReconnectBudget(int ratePerSecond, int burst) {
+        this.ratePerNano = ratePerSecond / 1e9;
+        this.burst = burst;
+        this.tokens = burst;
+    }
+
+    /** -Dchatflow.reconnect.ratePerSecond (default 50), burst equal to one second's worth. */
+    public static ReconnectBudget fromSystemProperties() {
+        int rate = Integer.getInteger("chatflow.reconnect.ratePerSecond", 50);
+        return new ReconnectBudget(rate, rate);
+    }
+
+    /** Blocks until an attempt is allowed. */
+    public void acquire() throws InterruptedException {
+        while (true) {
+            long waitNanos;
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerNano);
+                lastRefill = now;
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return;
+                }
+                waitNanos = (long) ((1 - tokens) / ratePerNano);
+            } finally {
+                lock.unlock();
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.max(waitNanos, 1_000_000));
+        }
+    }
+}
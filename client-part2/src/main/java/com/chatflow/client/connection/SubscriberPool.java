@@ -0,0 +1,381 @@
+package com.chatflow.client.connection;
+
+import com.chatflow.client.metrics.MetricsCollector;
+import com.chatflow.client.metrics.OrderingVerifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Receive-only connections: {@code perRoom} sockets in every room that never send, so the server's
+ * fan-out can be loaded at realistic reader:writer ratios (100:1 and up) without two threads per socket.
+ *
+ * One selector thread drives all of them with a minimal RFC 6455 client: a plain upgrade with no
+ * extensions, so the server never compresses towards them, unmasked frames in, pong and close replies
+ * out. A subscriber costs its channel, its selection key and a few fields. Reads share one buffer, and a
+ * frame is copied aside only when it straddles two reads. Each text frame is counted, timed into the
+ * collector's DeliveryStats, checked for seq order and dropped.
+ *
+ * Handshakes are paced ({@code chatflow.subscribers.maxConnecting} in flight) so that opening thousands
+ * doesn't trip the server's handshake admission limit. Failed or dropped subscribers are counted, not
+ * reopened.
+ */
+public class SubscriberPool {
+
+    private static final int MAX_CONNECTING = Integer.getInteger("chatflow.subscribers.maxConnecting", 32);
+    // Largest frame a subscriber accepts; broadcasts (and batch frames) are far smaller
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+
+    private final InetSocketAddress address;
+    private final String host;
+    private final int rooms;
+    private final int perRoom;
+    private final MetricsCollector metrics;
+    private final CountDownLatch settled;
+
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    // Selector thread only
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+    private final ArrayDeque<Integer> toOpen = new ArrayDeque<>();
+    private int connecting;
+
+    private Selector selector;
+    private Thread ioThread;
+    private volatile boolean running;
+    private long openedAt;
+    private long closedAt;
+
+    /**
+     * @param serverUrl ws://host:port (wss is not supported)
+     * @param rooms     subscribers go to rooms 1..rooms, like the generator's room ids
+     */
+    public SubscriberPool(String serverUrl, int rooms, int perRoom, MetricsCollector metrics) {
+        URI uri = URI.create(serverUrl);
+        if (!"ws".equals(uri.getScheme())) {
+            throw new IllegalArgumentException("Subscribers need a ws:// URL, got " + serverUrl);
+        }
+        int port = uri.getPort() > 0 ? uri.getPort() : 80;
+        this.address = new InetSocketAddress(uri.getHost(), port);
+        this.host = uri.getHost() + ":" + port;
+        this.rooms = rooms;
+        this.perRoom = perRoom;
+        this.metrics = metrics;
+        this.settled = new CountDownLatch(rooms * perRoom);
+    }
+
+    /** Starts connecting every subscriber in the background. */
+    public void open() throws IOException {
+        selector = Selector.open();
+        for (int i = 0; i < perRoom; i++) {
+            for (int room = 1; room <= rooms; room++) toOpen.add(room);
+        }
+        running = true;
+        openedAt = System.currentTimeMillis();
+        ioThread = new Thread(this::loop, "subscriber-io");
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    /** Waits until every subscriber is either upgraded or has failed. Returns false on timeout. */
+    public boolean awaitSettled(long timeoutMs) throws InterruptedException {
+        return settled.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Sends a close frame on every open subscriber and stops the selector thread. Idempotent. */
+    public void close() throws InterruptedException {
+        if (!running) return;
+        running = false;
+        selector.wakeup();
+        ioThread.join();
+        closedAt = System.currentTimeMillis();
+    }
+
+    public int getTarget() { return rooms * perRoom; }
+    public int getOpen() { return open.get(); }
+    public int getFailed() { return failed.get(); }
+    public int getDropped() { return dropped.get(); }
+    public long getFrames() { return frames.get(); }
+    public long getBytes() { return bytes.get(); }
+
+    public void printReport() {
+        double seconds = Math.max(1, (closedAt > 0 ? closedAt : System.currentTimeMillis()) - openedAt) / 1000.0;
+        System.out.println();
+        System.out.println("========================================");
+        System.out.println("  Subscribers (receive-only)");
+        System.out.println("========================================");
+        System.out.printf("  Connections         : %,d of %,d (%d per room x %d rooms)%n",
+                open.get() + dropped.get(), getTarget(), perRoom, rooms);
+        System.out.printf("  Failed / dropped    : %,d / %,d%n", failed.get(), dropped.get());
+        System.out.printf("  Frames received     : %,d (%,.0f/s)%n", frames.get(), frames.get() / seconds);
+        System.out.printf("  Bytes received      : %,d%n", bytes.get());
+        System.out.println("========================================");
+    }
+
+    private void loop() {
+        try {
+            while (running) {
+                startConnects();
+                selector.select(100);
+                long now = System.currentTimeMillis(); // one clock read per wakeup, not per frame
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    Subscriber s = (Subscriber) key.attachment();
+                    try {
+                        if (key.isConnectable()) {
+                            s.upgrade(key);
+                        } else if (key.isReadable()) {
+                            s.read(now);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        s.fail(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[Subscribers] Selector failed: " + e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) ((Subscriber) key.attachment()).shutdown(key);
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+            while (settled.getCount() > 0) settled.countDown();
+        }
+    }
+
+    private void startConnects() {
+        while (connecting < MAX_CONNECTING && !toOpen.isEmpty()) {
+            int room = toOpen.poll();
+            connecting++;
+            Subscriber s = null;
+            SelectionKey key = null;
+            try {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                s = new Subscriber(channel, room);
+                key = channel.register(selector, SelectionKey.OP_CONNECT, s);
+                if (channel.connect(address)) s.upgrade(key);
+            } catch (IOException e) {
+                if (s != null) {
+                    s.fail(key);
+                } else {
+                    connecting--;
+                    failed.incrementAndGet();
+                    settled.countDown();
+                }
+            }
+        }
+    }
+
+    private final class Subscriber {
+        private final SocketChannel channel;
+        private final int roomId;
+        private final OrderingVerifier ordering = new OrderingVerifier();
+        private boolean upgraded;
+        private byte[] carry;                    // unparsed tail of the last read, usually null
+        private ByteArrayOutputStream fragments; // only while a fragmented message is arriving
+
+        Subscriber(SocketChannel channel, int roomId) {
+            this.channel = channel;
+            this.roomId = roomId;
+        }
+
+        void upgrade(SelectionKey key) throws IOException {
+            if (channel.isConnectionPending()) channel.finishConnect();
+            byte[] nonce = new byte[16];
+            ThreadLocalRandom.current().nextBytes(nonce);
+            String request = "GET /chat/" + roomId + " HTTP/1.1\r\n"
+                    + "Host: " + host + "\r\n"
+                    + "Upgrade: websocket\r\n"
+                    + "Connection: Upgrade\r\n"
+                    + "Sec-WebSocket-Key: " + Base64.getEncoder().encodeToString(nonce) + "\r\n"
+                    + "Sec-WebSocket-Version: 13\r\n\r\n";
+            write(ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII)));
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        void read(long now) throws IOException {
+            ByteBuffer buf = readBuffer;
+            buf.clear();
+            if (carry != null) {
+                buf.put(carry);
+                carry = null;
+            }
+            int n = channel.read(buf);
+            if (n < 0) throw new EOFException();
+            bytes.addAndGet(n);
+            buf.flip();
+
+            if (upgraded || readUpgradeResponse(buf)) readFrames(buf, now);
+            if (buf.hasRemaining()) {
+                if (buf.remaining() == buf.capacity()) throw new IOException("Upgrade response too large");
+                carry = new byte[buf.remaining()];
+                buf.get(carry);
+            }
+        }
+
+        /** Consumes the HTTP response once it is complete. Returns false to wait for more bytes. */
+        private boolean readUpgradeResponse(ByteBuffer buf) throws IOException {
+            byte[] a = buf.array();
+            int end = indexOf(a, buf.position(), buf.limit(), HEADER_END);
+            if (end < 0) return false;
+            String status = new String(a, buf.position(), Math.min(12, end - buf.position()), StandardCharsets.US_ASCII);
+            if (!status.equals("HTTP/1.1 101")) {
+                int lineEnd = indexOf(a, buf.position(), end + 2, new byte[] {'\r', '\n'});
+                throw new IOException("Upgrade rejected: "
+                        + new String(a, buf.position(), lineEnd - buf.position(), StandardCharsets.US_ASCII));
+            }
+            buf.position(end + HEADER_END.length);
+            upgraded = true;
+            connecting--;
+            open.incrementAndGet();
+            settled.countDown();
+            return true;
+        }
+
+        private void readFrames(ByteBuffer buf, long now) throws IOException {
+            byte[] a = buf.array();
+            while (buf.remaining() >= 2) {
+                int p = buf.position();
+                int b0 = a[p] & 0xFF;
+                int b1 = a[p + 1] & 0xFF;
+                if ((b1 & 0x80) != 0) throw new IOException("Masked frame from server");
+                long length = b1 & 0x7F;
+                int header = 2;
+                if (length == 126) {
+                    if (buf.remaining() < 4) return;
+                    length = ((a[p + 2] & 0xFF) << 8) | (a[p + 3] & 0xFF);
+                    header = 4;
+                } else if (length == 127) {
+                    if (buf.remaining() < 10) return;
+                    length = 0;
+                    for (int i = 2; i < 10; i++) length = (length << 8) | (a[p + i] & 0xFF);
+                    header = 10;
+                }
+                if (header + length > buf.capacity()) {
+                    throw new IOException("Frame of " + length + " bytes exceeds the read buffer");
+                }
+                if (buf.remaining() < header + length) return;
+
+                frame((b0 & 0x80) != 0, b0 & 0x0F, a, p + header, (int) length, now);
+                buf.position(p + header + (int) length);
+            }
+        }
+
+        private void frame(boolean fin, int opcode, byte[] a, int off, int len, long now) throws IOException {
+            if (opcode == 0x1 || opcode == 0x0) {
+                if (fin && fragments == null) {
+                    text(new String(a, off, len, StandardCharsets.UTF_8), now);
+                    return;
+                }
+                if (fragments == null) fragments = new ByteArrayOutputStream(len * 2);
+                fragments.write(a, off, len);
+                if (fin) {
+                    text(fragments.toString(StandardCharsets.UTF_8), now);
+                    fragments = null;
+                }
+            } else if (opcode == 0x2) {
+                frames.incrementAndGet();
+            } else if (opcode == 0x8) {
+                sendControl(0x8, a, off, Math.min(len, 2)); // echo the status code back
+                throw new EOFException("Closed by server");
+            } else if (opcode == 0x9) {
+                sendControl(0xA, a, off, len);
+            }
+        }
+
+        private void text(String json, long now) {
+            frames.incrementAndGet();
+            ordering.accept(json, metrics);
+            metrics.getDeliveryStats().record(roomId,
+                    ConnectionManager.ChatWebSocketClient.extractMessageId(json), json, now);
+        }
+
+        /** Client frames must be masked (RFC 6455 5.3); control payloads are at most 125 bytes. */
+        private void sendControl(int opcode, byte[] payload, int off, int len) throws IOException {
+            ByteBuffer out = ByteBuffer.allocate(6 + len);
+            out.put((byte) (0x80 | opcode)).put((byte) (0x80 | len));
+            byte[] mask = new byte[4];
+            ThreadLocalRandom.current().nextBytes(mask);
+            out.put(mask);
+            for (int i = 0; i < len; i++) out.put((byte) (payload[off + i] ^ mask[i & 3]));
+            out.flip();
+            write(out);
+        }
+
+        /**
+         * Tiny frames on a socket that never sends anything else, so the send buffer has room unless the
+         * server stopped reading. Then the subscriber is dropped, rather than retried on the selector thread.
+         */
+        private void write(ByteBuffer out) throws IOException {
+            channel.write(out);
+            if (out.hasRemaining()) throw new IOException("Send buffer full");
+        }
+
+        void fail(SelectionKey key) {
+            if (key != null) key.cancel();
+            closeQuietly();
+            if (upgraded) {
+                open.decrementAndGet();
+                dropped.incrementAndGet();
+            } else {
+                connecting--;
+                failed.incrementAndGet();
+                settled.countDown();
+            }
+        }
+
+        void shutdown(SelectionKey key) {
+            if (upgraded) {
+                try {
+                    sendControl(0x8, new byte[] {0x03, (byte) 0xE8}, 0, 2); // 1000 normal closure
+                } catch (IOException ignored) {
+                }
+            }
+            key.cancel();
+            closeQuietly();
+        }
+
+        private void closeQuietly() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static int indexOf(byte[] a, int from, int to, byte[] needle) {
+        outer:
+        for (int i = from; i <= to - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (a[i + j] != needle[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,90 @@
+package com.chatflow.client.distributed;
+
+import com.chatflow.client.metrics.MetricsSnapshot;
+import com.google.gson.Gson;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Coordinator ⇄ worker link: one JSON object per line over a plain TCP socket. Only a handful of
+ * messages cross it per run (hello, scenario, phase start/done, final result), so nothing fancier is needed.
+ */
+class ControlChannel implements Closeable {
+
+    private static final Gson GSON = new Gson();
+
+    enum Type { HELLO, SCENARIO, START, DONE, RESULT }
+
+    /** Every control message; unused fields stay null/0 and are left out of the JSON. */
+    static class Message {
+        Type type;
+        String host;               // HELLO
+        int index;                 // SCENARIO: this worker's shard
+        int workers;
+        String serverUrl;
+        String scenario;           // SCENARIO: Scenario JSON for this shard
+        int phase;                 // START / DONE
+        long startAtMs;            // START: wall-clock time to begin the phase
+        long epochMs;              // START: second 0 of everyone's per-second series
+        long success;              // DONE: acks so far
+        long endTimeMs;            // RESULT
+        MetricsSnapshot snapshot;  // RESULT
+
+        Message(Type type) { this.type = type; }
+    }
+
+    private final Socket socket;
+    private final BufferedReader in;
+    private final PrintWriter out;
+
+    ControlChannel(Socket socket) throws IOException {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        this.out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+    }
+
+    void send(Message msg) throws IOException {
+        out.println(GSON.toJson(msg));
+        if (out.checkError()) throw new IOException("Control connection lost: " + socket.getRemoteSocketAddress());
+    }
+
+    /** Blocks for the next message, which must be of type {@code expected}. */
+    Message expect(Type expected) throws IOException {
+        return expect(expected, 0);
+    }
+
+    /**
+     * Like {@link #expect(Type)}, but gives up with SocketTimeoutException when nothing arrives for
+     * {@code timeoutMs} (0 = wait forever). The channel is unusable after a timeout.
+     */
+    Message expect(Type expected, long timeoutMs) throws IOException {
+        socket.setSoTimeout((int) Math.min(timeoutMs, Integer.MAX_VALUE));
+        String line;
+        try {
+            line = in.readLine();
+        } catch (SocketTimeoutException e) {
+            throw new SocketTimeoutException("No " + expected + " within " + timeoutMs + " ms: "
+                    + socket.getRemoteSocketAddress());
+        }
+        if (line == null) throw new EOFException("Control connection closed: " + socket.getRemoteSocketAddress());
+        Message msg = GSON.fromJson(line, Message.class);
+        if (msg.type != expected) throw new IOException("Expected " + expected + " but got " + msg.type);
+        return msg;
+    }
+
+    String remote() { return String.valueOf(socket.getRemoteSocketAddress()); }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,187 @@
+package com.chatflow.client.distributed;
+
+import com.chatflow.client.metrics.MetricsSnapshot;
+import com.chatflow.client.scenario.Scenario;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drives a distributed run. Waits for N workers, gives each an equal shard of the scenario, starts every
+ * phase on all of them at the same wall-clock instant, and waits for all to finish before starting the
+ * next phase. At the end it merges their snapshots into one report and throughput.csv.
+ *
+ * Phase starts are absolute timestamps, so workers on different machines need synchronised clocks (NTP is
+ * enough at this resolution). Over loopback they share one clock.
+ *
+ * A worker that hangs, or whose host dies without closing the connection, would otherwise leave the
+ * coordinator waiting forever. Each phase has a deadline: its paced length (an unpaced phase is assumed to
+ * run at no less than {@code chatflow.coordinator.minRate} msg/s) plus {@code chatflow.coordinator.marginMs}.
+ * A worker that hasn't reported by then fails the run, by name.
+ */
+public class Coordinator {
+
+    // Lead time between announcing a phase and starting it, so every worker has the message in hand
+    private static final long START_DELAY_MS = 1_000;
+    // Slowest rate an unpaced phase is expected to manage, for its deadline
+    private static final int MIN_RATE = Integer.getInteger("chatflow.coordinator.minRate", 100);
+
+    private final int port;
+    private final int workerCount;
+    private final String serverUrl;
+    private final Scenario scenario;
+    private final long marginMs;
+    private final List<String> names = new ArrayList<>();
+
+    public Coordinator(int port, int workerCount, String serverUrl, Scenario scenario) {
+        this(port, workerCount, serverUrl, scenario, Long.getLong("chatflow.coordinator.marginMs", 60_000));
+    }
+
+    /** @param marginMs how long past a phase's expected end, or past the hello and result, a worker may take */
+    Coordinator(int port, int workerCount, String serverUrl, Scenario scenario, long marginMs) {
+        this.port = port;
+        this.workerCount = workerCount;
+        this.serverUrl = serverUrl;
+        this.scenario = scenario;
+        this.marginMs = marginMs;
+    }
+
+    /** Runs the scenario on every worker and returns their merged metrics. */
+    public MetricsSnapshot run(String throughputCsv) throws Exception {
+        System.out.println("============================================");
+        System.out.println("  ChatFlow Load Test Coordinator");
+        System.out.println("  Server: " + serverUrl);
+        System.out.println("  Scenario: " + scenario);
+        System.out.println("  Workers: " + workerCount + " (listening on :" + port + ")");
+        System.out.println("============================================");
+
+        List<ControlChannel> workers = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(port)) {
+            while (workers.size() < workerCount) {
+                ControlChannel channel = new ControlChannel(server.accept());
+                ControlChannel.Message hello;
+                try {
+                    hello = channel.expect(ControlChannel.Type.HELLO, marginMs);
+                } catch (SocketTimeoutException e) {
+                    System.out.println("  Dropped a connection that sent no hello: " + channel.remote());
+                    channel.close();
+                    continue;
+                }
+                workers.add(channel);
+                names.add((workers.size() - 1) + " (" + hello.host + ", " + channel.remote() + ")");
+                System.out.println("  Worker " + names.get(names.size() - 1) + " joined");
+            }
+        }
+
+        try {
+            for (int i = 0; i < workers.size(); i++) {
+                ControlChannel.Message assignment = new ControlChannel.Message(ControlChannel.Type.SCENARIO);
+                assignment.index = i;
+                assignment.workers = workers.size();
+                assignment.serverUrl = serverUrl;
+                assignment.scenario = scenario.shard(i, workers.size()).toJson();
+                workers.get(i).send(assignment);
+            }
+
+            long epoch = System.currentTimeMillis() + START_DELAY_MS;
+            long previousSuccess = 0;
+            List<Scenario.Phase> phases = scenario.getPhases();
+            for (int p = 0; p < phases.size(); p++) {
+                ControlChannel.Message start = new ControlChannel.Message(ControlChannel.Type.START);
+                start.phase = p;
+                start.epochMs = epoch;
+                start.startAtMs = p == 0 ? epoch : System.currentTimeMillis() + START_DELAY_MS;
+                for (ControlChannel w : workers) w.send(start);
+                System.out.println("\n>>> " + phases.get(p).getName() + " Phase: " + phases.get(p).getThreads()
+                        + " threads, " + phases.get(p).getMessages() + " messages across " + workers.size() + " workers");
+
+                long deadline = start.startAtMs + expectedMs(phases.get(p)) + marginMs;
+                long success = 0;
+                for (int i = 0; i < workers.size(); i++) {
+                    success += expect(i, workers.get(i), ControlChannel.Type.DONE, deadline).success;
+                }
+                printPhase(phases.get(p).getName(), success - previousSuccess, start.startAtMs);
+                previousSuccess = success;
+            }
+
+            MetricsSnapshot merged = new MetricsSnapshot();
+            long end = epoch;
+            long deadline = System.currentTimeMillis() + marginMs;
+            for (int i = 0; i < workers.size(); i++) {
+                ControlChannel.Message result = expect(i, workers.get(i), ControlChannel.Type.RESULT, deadline);
+                merged.merge(result.snapshot);
+                end = Math.max(end, result.endTimeMs);
+            }
+            printSummary(merged, epoch, end);
+            merged.printStatistics();
+            merged.printThroughputOverTime(epoch);
+            if (merged.getDelivery() != null) merged.getDelivery().printReport();
+            merged.writeThroughputCsv(throughputCsv, epoch);
+            System.out.println("\n>>> Done! Check results/ directory for CSV files.");
+            return merged;
+        } finally {
+            for (ControlChannel w : workers) {
+                try {
+                    w.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /** How long {@code phase} should take: paced, or at the slowest rate we'd still call working. */
+    private static long expectedMs(Scenario.Phase phase) {
+        int rate = phase.getRatePerSecond() > 0 ? phase.getRatePerSecond() : MIN_RATE;
+        return phase.getMessages() * 1000L / rate;
+    }
+
+    /** Worker {@code i}'s next message; the run fails, naming the worker, if it hasn't come by {@code deadline}. */
+    private ControlChannel.Message expect(int i, ControlChannel worker, ControlChannel.Type type, long deadline)
+            throws IOException {
+        long timeoutMs = Math.max(1, deadline - System.currentTimeMillis());
+        try {
+            return worker.expect(type, timeoutMs);
+        } catch (SocketTimeoutException e) {
+            throw new IOException("Worker " + names.get(i) + " sent no " + type + " in time; failing the run", e);
+        } catch (EOFException e) {
+            throw new IOException("Worker " + names.get(i) + " disconnected before its " + type, e);
+        }
+    }
+
+    private static void printPhase(String name, long success, long startedAt) {
+        double sec = (System.currentTimeMillis() - startedAt) / 1000.0;
+        System.out.println();
+        System.out.println("========================================");
+        System.out.println("  " + name + " Phase Results (all workers)");
+        System.out.println("========================================");
+        System.out.printf("  Successful messages : %,d%n", success);
+        System.out.printf("  Total runtime       : %.2f seconds%n", sec);
+        System.out.printf("  Throughput          : %,.0f msg/s%n", success / sec);
+        System.out.println("========================================");
+    }
+
+    private void printSummary(MetricsSnapshot merged, long start, long end) {
+        double totalTimeSec = (end - start) / 1000.0;
+        System.out.println();
+        System.out.println("========================================");
+        System.out.println("  Overall Summary (" + workerCount + " workers)");
+        System.out.println("========================================");
+        System.out.printf("  Total successful    : %,d%n", merged.getSuccess());
+        System.out.printf("  Total failed        : %,d%n", merged.getFail());
+        System.out.printf("  Duplicate acks      : %,d%n", merged.getDuplicateAcks());
+        System.out.printf("  Stale responses     : %,d%n", merged.getStaleResponses());
+        System.out.printf("  Uncorrelated frames : %,d%n", merged.getUncorrelatedResponses());
+        if (merged.getSequencedFrames() > 0) {
+            System.out.printf("  Sequence gaps       : %,d (of %,d sequenced frames)%n",
+                    merged.getSequenceGaps(), merged.getSequencedFrames());
+            System.out.printf("  Reordered frames    : %,d%n", merged.getReorderedFrames());
+        }
+        System.out.printf("  Total wall time     : %.2f seconds%n", totalTimeSec);
+        System.out.printf("  Overall throughput  : %,.0f msg/s%n", merged.getSuccess() / totalTimeSec);
+        System.out.println("========================================");
+    }
+}
@@ -0,0 +1,89 @@
+package com.chatflow.client.distributed;
+
+import com.chatflow.client.LoadTest;
+import com.chatflow.client.connection.DeflateSettings;
+import com.chatflow.client.metrics.MetricsCollector;
+import com.chatflow.client.scenario.Scenario;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * One load-generating process in a distributed run. Connects to the coordinator, receives its shard of
+ * the scenario, runs each phase when told to, and reports back only a MetricsSnapshot. No per-message
+ * records are kept or shipped.
+ */
+public class Worker {
+
+    private static final long CONNECT_TIMEOUT_MS = 60_000;
+
+    private final String coordinator;
+    private final DeflateSettings deflate;
+    private final int socketsPerRoom;
+    private final int subscribersPerRoom;
+
+    /** @param subscribersPerRoom receive-only connections this worker opens in each room of its shard */
+    public Worker(String coordinator, DeflateSettings deflate, int socketsPerRoom, int subscribersPerRoom) {
+        this.coordinator = coordinator;
+        this.deflate = deflate;
+        this.socketsPerRoom = socketsPerRoom;
+        this.subscribersPerRoom = subscribersPerRoom;
+    }
+
+    public void run() throws Exception {
+        try (ControlChannel channel = new ControlChannel(connect())) {
+            ControlChannel.Message hello = new ControlChannel.Message(ControlChannel.Type.HELLO);
+            hello.host = InetAddress.getLocalHost().getHostName();
+            channel.send(hello);
+
+            ControlChannel.Message assignment = channel.expect(ControlChannel.Type.SCENARIO);
+            Scenario scenario = Scenario.parse(assignment.scenario);
+            System.out.println("[Worker " + assignment.index + "/" + assignment.workers + "] " + scenario
+                    + " -> " + assignment.serverUrl);
+
+            MetricsCollector metrics = new MetricsCollector(false);
+            LoadTest test = new LoadTest(assignment.serverUrl, scenario, metrics, deflate, socketsPerRoom,
+                    subscribersPerRoom);
+            test.run(new LoadTest.PhaseGate() {
+                @Override
+                public void beforePhase(int index, Scenario.Phase phase) throws Exception {
+                    ControlChannel.Message start = channel.expect(ControlChannel.Type.START);
+                    metrics.setEpoch(start.epochMs);
+                    long wait = start.startAtMs - System.currentTimeMillis();
+                    if (wait > 0) Thread.sleep(wait);
+                }
+
+                @Override
+                public void afterPhase(int index, Scenario.Phase phase) throws Exception {
+                    ControlChannel.Message done = new ControlChannel.Message(ControlChannel.Type.DONE);
+                    done.phase = index;
+                    done.success = metrics.getSuccessCount();
+                    channel.send(done);
+                }
+            });
+
+            ControlChannel.Message result = new ControlChannel.Message(ControlChannel.Type.RESULT);
+            result.endTimeMs = test.getEndTime();
+            result.snapshot = metrics.snapshot();
+            channel.send(result);
+            System.out.println("[Worker " + assignment.index + "] Done, results sent to coordinator.");
+        }
+    }
+
+    // The coordinator may come up after us; keep trying for a while
+    private Socket connect() throws IOException, InterruptedException {
+        int colon = coordinator.lastIndexOf(':');
+        String host = coordinator.substring(0, colon);
+        int port = Integer.parseInt(coordinator.substring(colon + 1));
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MS;
+        while (true) {
+            try {
+                return new Socket(host, port);
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) throw e;
+                Thread.sleep(500);
+            }
+        }
+    }
+}
@@ -6,7 +6,7 @@ import java.util.concurrent.ThreadLocalRandom;
 
 public class MessageGenerator implements Runnable {
 
-    private static final String[] MESSAGE_POOL = {
+    public static final String[] MESSAGE_POOL = {
         "Hello everyone!", "How's it going?", "Good morning!", "Good evening!",
         "Anyone here?", "What's the latest news?", "Great discussion today!",
         "I agree with that point.", "Can someone help me?", "Thanks for the info!",
@@ -27,6 +27,7 @@ public class MessageGenerator implements Runnable {
     };
 
     private final BlockingQueue<ChatMessage> queue;
+    private final Usernames usernames = new Usernames(100000);
     private final int totalMessages;
 
     public MessageGenerator(BlockingQueue<ChatMessage> queue, int totalMessages) {
@@ -40,13 +41,12 @@ public class MessageGenerator implements Runnable {
             ThreadLocalRandom rand = ThreadLocalRandom.current();
             for (int i = 0; i < totalMessages; i++) {
                 int userId = rand.nextInt(1, 100001);
-                String username = "user" + userId;
                 String message = MESSAGE_POOL[rand.nextInt(MESSAGE_POOL.length)];
                 int roomId = rand.nextInt(1, 21);
                 String messageType = pickMessageType(rand);
 
                 ChatMessage msg = new ChatMessage(
-                        String.valueOf(userId), username, message, messageType, roomId);
+                        userId, usernames.of(userId), message, messageType, roomId);
                 queue.put(msg);
             }
             System.out.println("[Generator] All " + totalMessages + " messages generated.");
@@ -0,0 +1,25 @@
+package com.chatflow.client.generator;
+
+/**
+ * "user" + id, built once per id and shared by every message from that user. Ids above the table's
+ * bound are built on demand.
+ */
+public class Usernames {
+
+    private final String[] names;
+
+    public Usernames(int maxUserId) {
+        this.names = new String[maxUserId + 1];
+    }
+
+    /** Single writer per instance (the generator thread), so no synchronisation. */
+    public String of(int userId) {
+        if (userId < 0 || userId >= names.length) return "user" + userId;
+        String name = names[userId];
+        if (name == null) {
+            name = "user" + userId;
+            names[userId] = name;
+        }
+        return name;
+    }
+}
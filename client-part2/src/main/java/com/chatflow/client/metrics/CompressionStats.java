@@ -0,0 +1,63 @@
+package com.chatflow.client.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wire bytes vs. uncompressed bytes for permessage-deflate, plus the thread CPU time spent in
+ * deflate/inflate. Lets us weigh bandwidth saved against CPU per deployment.
+ */
+public class CompressionStats {
+
+    private final LongAdder rawOut = new LongAdder();
+    private final LongAdder wireOut = new LongAdder();
+    private final LongAdder deflateNanos = new LongAdder();
+    private final LongAdder wireIn = new LongAdder();
+    private final LongAdder rawIn = new LongAdder();
+    private final LongAdder inflateNanos = new LongAdder();
+
+    public void recordOutbound(int rawBytes, int wireBytes, long nanos) {
+        rawOut.add(rawBytes);
+        wireOut.add(wireBytes);
+        deflateNanos.add(nanos);
+    }
+
+    public void recordInbound(int wireBytes, int rawBytes, long nanos) {
+        wireIn.add(wireBytes);
+        rawIn.add(rawBytes);
+        inflateNanos.add(nanos);
+    }
+
+    public boolean isEmpty() { return rawOut.sum() == 0 && rawIn.sum() == 0; }
+
+    public void printReport(long messages) {
+        long ro = rawOut.sum(), wo = wireOut.sum(), ri = rawIn.sum(), wi = wireIn.sum();
+        System.out.println();
+        System.out.println("========================================");
+        System.out.println("  permessage-deflate");
+        System.out.println("========================================");
+        System.out.printf("  Sent     : %,d B raw -> %,d B wire (%.1f%% saved)%n", ro, wo, saved(ro, wo));
+        System.out.printf("  Received : %,d B wire -> %,d B raw (%.1f%% saved)%n", wi, ri, saved(ri, wi));
+        System.out.printf("  Deflate  : %,.1f ms CPU, %.2f us/msg%n",
+                deflateNanos.sum() / 1e6, perMessageMicros(deflateNanos.sum(), messages));
+        System.out.printf("  Inflate  : %,.1f ms CPU, %.2f us/msg%n",
+                inflateNanos.sum() / 1e6, perMessageMicros(inflateNanos.sum(), messages));
+        System.out.println("========================================");
+    }
+
+    public void reset() {
+        rawOut.reset();
+        wireOut.reset();
+        deflateNanos.reset();
+        wireIn.reset();
+        rawIn.reset();
+        inflateNanos.reset();
+    }
+
+    private static double saved(long raw, long wire) {
+        return raw == 0 ? 0 : 100.0 * (raw - wire) / raw;
+    }
+
+    private static double perMessageMicros(long nanos, long messages) {
+        return messages == 0 ? 0 : nanos / 1000.0 / messages;
+    }
+}
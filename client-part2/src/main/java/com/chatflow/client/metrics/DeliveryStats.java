@@ -0,0 +1,204 @@
+package com.chatflow.client.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * What the other members of a room experience: for every broadcast frame a connection receives that is
+ * not its own ack, the delay from the sender's {@code timestamp} and from the server's
+ * {@code serverTimestamp} to arrival here, per room. Plus the fan-out spread, the time from the first to
+ * the last of this process's connections receiving the same message.
+ *
+ * Timestamps are read with {@link IsoInstant} straight from the frame, with no JSON parse and no
+ * allocation, so the read threads are not slowed. Memory is fixed: one {@link LatencyHistogram} per
+ * room seen, plus a small ring per room for matching copies of one message. Sender-to-receiver times
+ * compare clocks of two hosts in distributed runs; server-to-receiver likewise. Both are exact on a
+ * single host.
+ */
+public class DeliveryStats {
+
+    private static final int MAX_ROOMS = 1024;
+    private static final String TIMESTAMP_FIELD = "\"timestamp\":\"";
+    private static final String SERVER_TIMESTAMP_FIELD = "\"serverTimestamp\":\"";
+
+    private final LatencyHistogram endToEnd = new LatencyHistogram();
+    private final LatencyHistogram serverToReceiver = new LatencyHistogram();
+    private final LatencyHistogram fanOutSpread = new LatencyHistogram();
+    private final AtomicReferenceArray<LatencyHistogram> byRoom = new AtomicReferenceArray<>(MAX_ROOMS);
+    private final AtomicReferenceArray<SpreadTracker> spreads = new AtomicReferenceArray<>(MAX_ROOMS);
+
+    /**
+     * @param roomId     room of the receiving connection
+     * @param messageId  the frame's messageId, or -1 (no fan-out spread then)
+     * @param frame      the broadcast as received
+     * @param receivedMs wall clock at arrival
+     */
+    public void record(int roomId, long messageId, String frame, long receivedMs) {
+        long sent = timestampAfter(frame, TIMESTAMP_FIELD);
+        if (sent < 0) return;
+        long delay = receivedMs - sent;
+        endToEnd.record(delay);
+        if (roomId >= 0 && roomId < MAX_ROOMS) {
+            room(roomId).record(delay);
+            if (messageId >= 0) spreadTracker(roomId).arrived(messageId, receivedMs);
+        }
+        long served = timestampAfter(frame, SERVER_TIMESTAMP_FIELD);
+        if (served >= 0) serverToReceiver.record(receivedMs - served);
+    }
+
+    public boolean isEmpty() { return endToEnd.getCount() == 0; }
+
+    public LatencyHistogram getEndToEnd() { return endToEnd; }
+    public LatencyHistogram getServerToReceiver() { return serverToReceiver; }
+
+    /** Spreads of messages still being tracked are folded in first. */
+    public LatencyHistogram getFanOutSpread() {
+        for (int r = 0; r < MAX_ROOMS; r++) {
+            SpreadTracker t = spreads.get(r);
+            if (t != null) t.flush();
+        }
+        return fanOutSpread;
+    }
+
+    public Summary summary() {
+        Summary s = new Summary();
+        s.endToEnd = endToEnd.toCompact();
+        s.serverToReceiver = serverToReceiver.toCompact();
+        s.fanOutSpread = getFanOutSpread().toCompact();
+        for (int r = 0; r < MAX_ROOMS; r++) {
+            LatencyHistogram h = byRoom.get(r);
+            if (h != null) s.byRoom.put(r, h.toCompact());
+        }
+        return s;
+    }
+
+    public void printReport() {
+        summary().printReport();
+    }
+
+    public void reset() {
+        endToEnd.reset();
+        serverToReceiver.reset();
+        fanOutSpread.reset();
+        for (int r = 0; r < MAX_ROOMS; r++) {
+            byRoom.set(r, null);
+            spreads.set(r, null);
+        }
+    }
+
+    private LatencyHistogram room(int roomId) {
+        LatencyHistogram h = byRoom.get(roomId);
+        if (h == null) {
+            byRoom.compareAndSet(roomId, null, new LatencyHistogram());
+            h = byRoom.get(roomId);
+        }
+        return h;
+    }
+
+    private SpreadTracker spreadTracker(int roomId) {
+        SpreadTracker t = spreads.get(roomId);
+        if (t == null) {
+            spreads.compareAndSet(roomId, null, new SpreadTracker());
+            t = spreads.get(roomId);
+        }
+        return t;
+    }
+
+    private static long timestampAfter(String frame, String field) {
+        int at = frame.indexOf(field);
+        return at < 0 ? -1 : IsoInstant.parseMillis(frame, at + field.length());
+    }
+
+    /**
+     * First and last arrival of recent messages in one room, keyed by messageId in a small direct-mapped
+     * ring. A message's spread is recorded when a newer message takes its slot, or on flush.
+     */
+    private final class SpreadTracker {
+        private static final int SLOTS = 1024;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final long[] ids = new long[SLOTS];
+        private final long[] first = new long[SLOTS];
+        private final long[] last = new long[SLOTS];
+        private final int[] copies = new int[SLOTS];
+
+        void arrived(long messageId, long nowMs) {
+            int i = (int) ((messageId * 0x9E3779B97F4A7C15L) >>> 54); // top 10 bits
+            lock.lock();
+            try {
+                if (copies[i] > 0 && ids[i] == messageId) {
+                    first[i] = Math.min(first[i], nowMs);
+                    last[i] = Math.max(last[i], nowMs);
+                    copies[i]++;
+                    return;
+                }
+                if (copies[i] > 1) fanOutSpread.record(last[i] - first[i]);
+                ids[i] = messageId;
+                first[i] = nowMs;
+                last[i] = nowMs;
+                copies[i] = 1;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void flush() {
+            lock.lock();
+            try {
+                for (int i = 0; i < SLOTS; i++) {
+                    if (copies[i] > 1) fanOutSpread.record(last[i] - first[i]);
+                    copies[i] = 0;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /** Gson-friendly form shipped inside {@link MetricsSnapshot}; merges by adding histograms. */
+    public static class Summary {
+        long[] endToEnd = new LatencyHistogram().toCompact();
+        long[] serverToReceiver = new LatencyHistogram().toCompact();
+        long[] fanOutSpread = new LatencyHistogram().toCompact();
+        Map<Integer, long[]> byRoom = new TreeMap<>();
+
+        public void merge(Summary other) {
+            endToEnd = merged(endToEnd, other.endToEnd);
+            serverToReceiver = merged(serverToReceiver, other.serverToReceiver);
+            fanOutSpread = merged(fanOutSpread, other.fanOutSpread);
+            other.byRoom.forEach((room, h) -> byRoom.merge(room, h, DeliveryStats::merged));
+        }
+
+        public boolean isEmpty() { return LatencyHistogram.fromCompact(endToEnd).getCount() == 0; }
+
+        public void printReport() {
+            LatencyHistogram all = LatencyHistogram.fromCompact(endToEnd);
+            LatencyHistogram server = LatencyHistogram.fromCompact(serverToReceiver);
+            LatencyHistogram spread = LatencyHistogram.fromCompact(fanOutSpread);
+            System.out.println();
+            System.out.println("========================================");
+            System.out.println("  Broadcast Delivery (other members)");
+            System.out.println("========================================");
+            System.out.printf("  Deliveries          : %,d%n", all.getCount());
+            System.out.printf("  Sender -> receiver  : p50 %d / p95 %d / p99 %d / max %d ms%n",
+                    all.percentile(0.50), all.percentile(0.95), all.percentile(0.99), all.getMax());
+            System.out.printf("  Server -> receiver  : p50 %d / p95 %d / p99 %d / max %d ms%n",
+                    server.percentile(0.50), server.percentile(0.95), server.percentile(0.99), server.getMax());
+            System.out.printf("  Fan-out spread      : p50 %d / p99 %d / max %d ms (%,d messages)%n",
+                    spread.percentile(0.50), spread.percentile(0.99), spread.getMax(), spread.getCount());
+            byRoom.forEach((room, compact) -> {
+                LatencyHistogram h = LatencyHistogram.fromCompact(compact);
+                System.out.printf("  Room %2d : p50 %d / p99 %d ms (%,d deliveries)%n",
+                        room, h.percentile(0.50), h.percentile(0.99), h.getCount());
+            });
+            System.out.println("========================================");
+        }
+    }
+
+    private static long[] merged(long[] a, long[] b) {
+        LatencyHistogram h = LatencyHistogram.fromCompact(a);
+        h.merge(LatencyHistogram.fromCompact(b));
+        return h.toCompact();
+    }
+}
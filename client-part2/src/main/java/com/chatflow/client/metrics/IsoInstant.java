@@ -0,0 +1,65 @@
+package com.chatflow.client.metrics;
+
+/**
+ * Allocation-free parser for the UTC instants both sides put on the wire ({@code Instant.toString()}:
+ * {@code 2026-02-07T12:00:00Z}, optionally with 1-9 fraction digits). Anything else parses as -1.
+ */
+public final class IsoInstant {
+
+    private IsoInstant() {}
+
+    /** @return epoch milliseconds of the instant starting at {@code s[from]}, or -1 */
+    public static long parseMillis(String s, int from) {
+        // yyyy-MM-ddTHH:mm:ss is 19 chars, plus at least the 'Z'
+        if (from < 0 || from + 20 > s.length()) return -1;
+        int year = digits(s, from, 4);
+        int month = digits(s, from + 5, 2);
+        int day = digits(s, from + 8, 2);
+        int hour = digits(s, from + 11, 2);
+        int minute = digits(s, from + 14, 2);
+        int second = digits(s, from + 17, 2);
+        if ((year | month | day | hour | minute | second) < 0
+                || s.charAt(from + 4) != '-' || s.charAt(from + 7) != '-' || s.charAt(from + 10) != 'T'
+                || s.charAt(from + 13) != ':' || s.charAt(from + 16) != ':'
+                || month < 1 || month > 12 || day < 1 || day > 31) {
+            return -1;
+        }
+
+        int i = from + 19;
+        int millis = 0;
+        if (s.charAt(i) == '.') {
+            int fractionDigits = 0;
+            for (i++; i < s.length(); i++, fractionDigits++) {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9') break;
+                if (fractionDigits < 3) millis = millis * 10 + (c - '0');
+            }
+            if (fractionDigits == 0) return -1;
+            for (; fractionDigits < 3; fractionDigits++) millis *= 10;
+        }
+        if (i >= s.length() || s.charAt(i) != 'Z') return -1;
+
+        long days = daysFromCivil(year, month, day);
+        return ((days * 24 + hour) * 60 + minute) * 60_000L + second * 1000L + millis;
+    }
+
+    /** Days since 1970-01-01 for a proleptic Gregorian date (H. Hinnant's days_from_civil). */
+    static long daysFromCivil(int y, int m, int d) {
+        y -= m <= 2 ? 1 : 0;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yoe = y - era * 400;
+        int doy = (153 * (m + (m > 2 ? -3 : 9)) + 2) / 5 + d - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097L + doe - 719468;
+    }
+
+    private static int digits(String s, int at, int count) {
+        int v = 0;
+        for (int i = at; i < at + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+}
@@ -0,0 +1,63 @@
+package com.chatflow.client.metrics;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+
+/**
+ * A JFR recording around a test run (-Dchatflow.jfr=true). Uses the JDK's "profile" settings, with the
+ * lock thresholds lowered to 1 ms so contention that matters for p99 is captured. On stop it writes the
+ * .jfr file and a {@link JfrSummary} next to it.
+ *
+ * When the flag is off nothing is created, so there is no cost.
+ */
+public class JfrProfiler {
+
+    private static final Duration LOCK_THRESHOLD = Duration.ofMillis(1);
+
+    private final Recording recording;
+
+    public JfrProfiler() throws IOException, ParseException {
+        recording = new Recording(Configuration.getConfiguration("profile"));
+        recording.setName("chatflow-client");
+        recording.enable("jdk.JavaMonitorEnter").withThreshold(LOCK_THRESHOLD).withStackTrace();
+        recording.enable("jdk.ThreadPark").withThreshold(LOCK_THRESHOLD).withStackTrace();
+        recording.enable(RunTotals.class);
+    }
+
+    public void start() {
+        recording.start();
+    }
+
+    /**
+     * Stops, dumps to {@code jfrFile} and writes the summary to {@code summaryFile}.
+     * @param messages messages sent during the recording, for the per-message figures
+     * @return the summary
+     */
+    public String stop(Path jfrFile, Path summaryFile, long messages) throws IOException {
+        RunTotals totals = new RunTotals();
+        totals.messages = messages;
+        totals.commit();
+        recording.stop();
+        recording.dump(jfrFile);
+        recording.close();
+        String summary = JfrSummary.summarize(jfrFile, messages);
+        Files.writeString(summaryFile, summary);
+        return summary;
+    }
+
+    @Name("chatflow.RunTotals")
+    @Label("ChatFlow run totals")
+    static class RunTotals extends Event {
+        @Label("Messages")
+        long messages;
+    }
+}
@@ -0,0 +1,185 @@
+package com.chatflow.client.metrics;
+
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a JFR recording and answers "how much of the tail is GC and locking": allocation per message,
+ * the top allocation sites, a GC pause histogram, and lock contention hot spots.
+ *
+ * Works on the client's own recording ({@link JfrProfiler}) and on the server's
+ * ({@code chatflow.profiling.enabled}). Both record a {@code chatflow.RunTotals} event with the running
+ * message count; for other recordings pass the count on the command line:
+ * <pre>java -cp client-part2-1.0.0.jar com.chatflow.client.metrics.JfrSummary server.jfr [messages]</pre>
+ *
+ * Sites are keyed by the first frame outside the JDK, so {@code Arrays.copyOf} is charged to whoever
+ * called it. Allocation bytes are JFR's sampled estimate (the {@code weight} of each
+ * ObjectAllocationSample), not an exact count.
+ */
+public final class JfrSummary {
+
+    private static final int TOP_SITES = 10;
+    private static final long[] PAUSE_BUCKETS_MS = {1, 2, 5, 10, 20, 50, 100, 200};
+
+    private JfrSummary() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: JfrSummary <recording.jfr> [messages]");
+            System.exit(2);
+        }
+        System.out.print(summarize(Path.of(args[0]), args.length > 1 ? Long.parseLong(args[1]) : 0));
+    }
+
+    /** @param messages messages handled during the recording; 0 = take it from the chatflow.RunTotals event */
+    public static String summarize(Path recording, long messages) throws IOException {
+        Instant first = null;
+        Instant last = null;
+        long recordedMessages = 0;
+        long allocated = 0;
+        Map<String, long[]> allocationSites = new HashMap<>(); // site -> {bytes}
+        long[] pauseBuckets = new long[PAUSE_BUCKETS_MS.length + 1];
+        long pauses = 0;
+        long pauseNanos = 0;
+        long maxPauseNanos = 0;
+        Map<String, long[]> contention = new HashMap<>(); // site -> {count, nanos}
+
+        for (RecordedEvent e : RecordingFile.readAllEvents(recording)) {
+            if (first == null || e.getStartTime().isBefore(first)) first = e.getStartTime();
+            if (last == null || e.getEndTime().isAfter(last)) last = e.getEndTime();
+            switch (e.getEventType().getName()) {
+                case "chatflow.RunTotals":
+                    recordedMessages = Math.max(recordedMessages, e.getLong("messages")); // cumulative
+                    break;
+                case "jdk.ObjectAllocationSample": {
+                    if (isRecorderItself(e.getStackTrace())) break;
+                    long weight = e.getLong("weight");
+                    allocated += weight;
+                    RecordedClass type = e.getClass("objectClass");
+                    String site = site(e.getStackTrace()) + (type != null ? "  [" + type.getName() + "]" : "");
+                    allocationSites.computeIfAbsent(site, s -> new long[1])[0] += weight;
+                    break;
+                }
+                case "jdk.GCPhasePause": {
+                    long nanos = e.getDuration().toNanos();
+                    pauses++;
+                    pauseNanos += nanos;
+                    maxPauseNanos = Math.max(maxPauseNanos, nanos);
+                    pauseBuckets[bucket(nanos)]++;
+                    break;
+                }
+                case "jdk.JavaMonitorEnter":
+                    addContention(contention, "monitor  " + site(e.getStackTrace()), e.getDuration());
+                    break;
+                case "jdk.ThreadPark": {
+                    // Only parks on a lock; idle pool threads waiting for work are not contention
+                    RecordedClass blocker = e.getClass("parkedClass");
+                    if (blocker != null && blocker.getName().contains("Reentrant")) {
+                        addContention(contention, "lock     " + site(e.getStackTrace()), e.getDuration());
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+
+        if (messages <= 0) messages = recordedMessages;
+        double seconds = first == null ? 0 : Math.max(0.001, Duration.between(first, last).toMillis() / 1000.0);
+
+        StringWriter out = new StringWriter();
+        PrintWriter pw = new PrintWriter(out);
+        pw.println("========================================");
+        pw.println("  JFR Summary: " + recording.getFileName());
+        pw.println("========================================");
+        pw.printf("  Duration            : %.1f seconds%n", seconds);
+        pw.printf("  Messages            : %,d%n", messages);
+
+        pw.println();
+        pw.println("  Allocation (sampled estimate)");
+        pw.printf("    Total             : %,d MB (%,.0f MB/s)%n", allocated >> 20,
+                seconds > 0 ? (allocated >> 20) / seconds : 0);
+        if (messages > 0) pw.printf("    Per message       : %,d bytes%n", allocated / messages);
+        pw.println("    Top sites:");
+        long allocatedTotal = Math.max(1, allocated);
+        allocationSites.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]))
+                .limit(TOP_SITES)
+                .forEach(site -> pw.printf("    %5.1f%%  %s%n",
+                        100.0 * site.getValue()[0] / allocatedTotal, site.getKey()));
+
+        pw.println();
+        pw.println("  GC pauses");
+        pw.printf("    Count / total     : %,d / %,.1f ms (%.2f%% of wall time)%n", pauses, pauseNanos / 1e6,
+                seconds > 0 ? pauseNanos / 1e7 / seconds : 0);
+        pw.printf("    Max               : %.1f ms%n", maxPauseNanos / 1e6);
+        for (int i = 0; i < pauseBuckets.length; i++) {
+            if (pauseBuckets[i] == 0) continue;
+            String range = i == 0 ? "< " + PAUSE_BUCKETS_MS[0] + " ms"
+                    : i == PAUSE_BUCKETS_MS.length ? ">= " + PAUSE_BUCKETS_MS[i - 1] + " ms"
+                    : PAUSE_BUCKETS_MS[i - 1] + "-" + PAUSE_BUCKETS_MS[i] + " ms";
+            pw.printf("    %-17s : %,d%n", range, pauseBuckets[i]);
+        }
+
+        pw.println();
+        pw.println("  Lock contention (blocked >= 1 ms)");
+        if (contention.isEmpty()) pw.println("    none recorded");
+        contention.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]))
+                .limit(TOP_SITES)
+                .forEach(site -> pw.printf("    %,9.1f ms %,7d x  %s%n",
+                        site.getValue()[1] / 1e6, site.getValue()[0], site.getKey()));
+        pw.println("========================================");
+        pw.flush();
+        return out.toString();
+    }
+
+    private static void addContention(Map<String, long[]> contention, String site, Duration blocked) {
+        long[] v = contention.computeIfAbsent(site, s -> new long[2]);
+        v[0]++;
+        v[1] += blocked.toNanos();
+    }
+
+    private static int bucket(long nanos) {
+        int i = 0;
+        while (i < PAUSE_BUCKETS_MS.length && nanos >= PAUSE_BUCKETS_MS[i] * 1_000_000) i++;
+        return i;
+    }
+
+    /** JFR's own buffers, allocated while the recording starts, are not the workload's. */
+    private static boolean isRecorderItself(RecordedStackTrace stack) {
+        if (stack == null) return false;
+        for (RecordedFrame f : stack.getFrames()) {
+            if (f.getMethod().getType().getName().startsWith("jdk.jfr.")) return true;
+        }
+        return false;
+    }
+
+    /** First frame outside the JDK as class.method:line, or the top frame if the whole stack is JDK. */
+    static String site(RecordedStackTrace stack) {
+        if (stack == null || stack.getFrames().isEmpty()) return "(no stack)";
+        List<RecordedFrame> frames = stack.getFrames();
+        RecordedFrame pick = frames.get(0);
+        for (RecordedFrame f : frames) {
+            String type = f.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                pick = f;
+                break;
+            }
+        }
+        return pick.getMethod().getType().getName() + "." + pick.getMethod().getName() + ":" + pick.getLineNumber();
+    }
+}
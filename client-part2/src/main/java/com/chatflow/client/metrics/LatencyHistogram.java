@@ -0,0 +1,117 @@
+package com.chatflow.client.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-memory latency histogram in milliseconds.
+ *
+ * Log-linear buckets: values below 128 get one bucket each, above that every power of two is split into 64
+ * buckets, so any recorded value is reported within about 1.6%. 2,048 buckets cover up to ~9 hours in
+ * 16 KB, whatever the message count. Recording is one atomic increment. Histograms from different processes
+ * merge exactly by adding counts, which is what makes them cheap to ship instead of raw records.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 6;
+    private static final int SUB_COUNT = 1 << SUB_BITS;           // 64 buckets per power of two
+    private static final int BUCKETS = 2048;
+    static final long MAX_VALUE = valueAt(BUCKETS) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    public void record(long valueMs) {
+        long v = Math.max(0, Math.min(valueMs, MAX_VALUE));
+        counts.incrementAndGet(indexOf(v));
+        total.incrementAndGet();
+        sum.addAndGet(v);
+        min.accumulateAndGet(v, Math::min);
+        max.accumulateAndGet(v, Math::max);
+    }
+
+    public long getCount() { return total.get(); }
+    public long getMin() { return total.get() == 0 ? 0 : min.get(); }
+    public long getMax() { return total.get() == 0 ? 0 : max.get(); }
+    public double getMean() { long n = total.get(); return n == 0 ? 0 : (double) sum.get() / n; }
+
+    /** Value at quantile {@code q} (0..1), reported as the lowest value of its bucket, clamped to max. */
+    public long percentile(double q) {
+        long n = total.get();
+        if (n == 0) return 0;
+        long rank = Math.min(n - 1, (long) (q * n)); // same rank rule as the sorted-array statistics
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen > rank) return Math.max(getMin(), Math.min(valueAt(i), getMax()));
+        }
+        return getMax();
+    }
+
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = other.counts.get(i);
+            if (c != 0) counts.addAndGet(i, c);
+        }
+        mergeTotals(other.total.get(), other.sum.get(), other.min.get(), other.max.get());
+    }
+
+    /** Non-empty buckets as [index, count, index, count, ...] followed by count, sum, min, max. */
+    public long[] toCompact() {
+        int used = 0;
+        for (int i = 0; i < BUCKETS; i++) if (counts.get(i) != 0) used++;
+        long[] out = new long[used * 2 + 4];
+        int j = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = counts.get(i);
+            if (c == 0) continue;
+            out[j++] = i;
+            out[j++] = c;
+        }
+        out[j++] = total.get();
+        out[j++] = sum.get();
+        out[j++] = min.get();
+        out[j] = max.get();
+        return out;
+    }
+
+    public static LatencyHistogram fromCompact(long[] compact) {
+        LatencyHistogram h = new LatencyHistogram();
+        int pairsEnd = compact.length - 4;
+        for (int j = 0; j < pairsEnd; j += 2) h.counts.addAndGet((int) compact[j], compact[j + 1]);
+        h.mergeTotals(compact[pairsEnd], compact[pairsEnd + 1], compact[pairsEnd + 2], compact[pairsEnd + 3]);
+        return h;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        total.set(0);
+        sum.set(0);
+        min.set(Long.MAX_VALUE);
+        max.set(Long.MIN_VALUE);
+    }
+
+    private void mergeTotals(long n, long s, long lo, long hi) {
+        total.addAndGet(n);
+        sum.addAndGet(s);
+        min.accumulateAndGet(lo, Math::min);
+        max.accumulateAndGet(hi, Math::max);
+    }
+
+    static int indexOf(long v) {
+        if (v < 2 * SUB_COUNT) return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return (shift << SUB_BITS) + (int) (v >>> shift);
+    }
+
+    /** Lowest value that lands in bucket {@code index}. */
+    static long valueAt(int index) {
+        if (index < 2 * SUB_COUNT) return index;
+        int shift = (index >>> SUB_BITS) - 1;
+        long sub = index - (shift << SUB_BITS);
+        return sub << shift;
+    }
+}
@@ -6,29 +6,144 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 
 public class MetricsCollector {
 
+    // Per-second series covers this long after the epoch; later records are clamped into the last slot
+    private static final int MAX_SECONDS = 4 * 3600;
+    private static final int MAX_ROOMS = 1024;
+
     private final AtomicLong successCount = new AtomicLong(0);
     private final AtomicLong failCount = new AtomicLong(0);
     private final AtomicInteger totalConnections = new AtomicInteger(0);
     private final AtomicInteger reconnections = new AtomicInteger(0);
+    // Acks flagged "duplicate": a retry of a message the server had already accepted
+    private final AtomicLong duplicateAcks = new AtomicLong(0);
+    // Replies that arrived after their request timed out, and frames that matched no request at all
+    private final AtomicLong staleResponses = new AtomicLong(0);
+    private final AtomicLong uncorrelatedResponses = new AtomicLong(0);
+    // Broadcast ordering, from OrderingVerifier (only populated when the server stamps seq)
+    private final AtomicLong sequencedFrames = new AtomicLong(0);
+    private final AtomicLong sequenceGaps = new AtomicLong(0);
+    private final AtomicLong reorderedFrames = new AtomicLong(0);
+    // RECONNECT frames from a draining server (each followed by a close and a delayed reconnect)
+    private final AtomicLong reconnectNotices = new AtomicLong(0);
+    // Reconnects that resumed the old session: the server replayed what the room said in between
+    private final AtomicLong resumes = new AtomicLong(0);
+    private final AtomicLong replayedFrames = new AtomicLong(0);
+    private final AtomicLong incompleteResumes = new AtomicLong(0);
 
     // Per-message latency records (lock-free, thread-safe)
     private final ConcurrentLinkedQueue<LatencyRecord> latencyRecords = new ConcurrentLinkedQueue<>();
+    private final CompressionStats compressionStats = new CompressionStats();
+    // Other members' broadcasts as received here (only populated when the server fans out)
+    private final DeliveryStats deliveryStats = new DeliveryStats();
+
+    // Fixed-size aggregates of the same records, for snapshot() (distributed runs ship these, not records)
+    private final boolean keepRecords;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final AtomicLongArray perSecond = new AtomicLongArray(MAX_SECONDS);
+    // Room ids are small ints; anything past MAX_ROOMS falls back to the map
+    private final AtomicLongArray roomCounts = new AtomicLongArray(MAX_ROOMS);
+    private final ConcurrentHashMap<Integer, LongAdder> otherRoomCounts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> typeCounts = new ConcurrentHashMap<>();
+    private volatile long epochMs = System.currentTimeMillis();
+
+    public MetricsCollector() {
+        this(true);
+    }
+
+    /** @param keepRecords false = aggregates only; writeCsv/printStatistics then have nothing to show */
+    public MetricsCollector(boolean keepRecords) {
+        this.keepRecords = keepRecords;
+    }
 
     public void recordSuccess() { successCount.incrementAndGet(); }
     public void recordFailure() { failCount.incrementAndGet(); }
     public void recordConnection() { totalConnections.incrementAndGet(); }
     public void recordReconnection() { reconnections.incrementAndGet(); }
-    public void recordLatency(LatencyRecord record) { latencyRecords.add(record); }
+    public void recordDuplicateAck() { duplicateAcks.incrementAndGet(); }
+    public void recordStaleResponse() { staleResponses.incrementAndGet(); }
+    public void recordUncorrelatedResponse() { uncorrelatedResponses.incrementAndGet(); }
+    public void recordSequenced() { sequencedFrames.incrementAndGet(); }
+    public void recordSequenceGap(long missing) { sequenceGaps.addAndGet(missing); }
+    public void recordReordered() { reorderedFrames.incrementAndGet(); }
+    public void recordReconnectNotice() { reconnectNotices.incrementAndGet(); }
+    public void recordResume(long replayed, boolean complete) {
+        resumes.incrementAndGet();
+        replayedFrames.addAndGet(replayed);
+        if (!complete) incompleteResumes.incrementAndGet();
+    }
+    public void recordLatency(LatencyRecord record) {
+        if (keepRecords) latencyRecords.add(record);
+        if (record.getLatencyMs() >= 0) histogram.record(record.getLatencyMs());
+        long second = (record.getSendTimestamp() - epochMs) / 1000;
+        perSecond.incrementAndGet((int) Math.max(0, Math.min(second, MAX_SECONDS - 1)));
+        int room = record.getRoomId();
+        if (room >= 0 && room < MAX_ROOMS) {
+            roomCounts.incrementAndGet(room);
+        } else {
+            otherRoomCounts.computeIfAbsent(room, r -> new LongAdder()).increment();
+        }
+        typeCounts.computeIfAbsent(record.getMessageType(), t -> new LongAdder()).increment();
+    }
+
+    /** Second 0 of the per-second series; set before recording starts. */
+    public void setEpoch(long epochMs) { this.epochMs = epochMs; }
+
+    public LatencyHistogram getHistogram() { return histogram; }
+
+    public MetricsSnapshot snapshot() {
+        MetricsSnapshot s = new MetricsSnapshot();
+        s.success = successCount.get();
+        s.fail = failCount.get();
+        s.connections = totalConnections.get();
+        s.reconnections = reconnections.get();
+        s.duplicateAcks = duplicateAcks.get();
+        s.staleResponses = staleResponses.get();
+        s.uncorrelatedResponses = uncorrelatedResponses.get();
+        s.sequencedFrames = sequencedFrames.get();
+        s.sequenceGaps = sequenceGaps.get();
+        s.reorderedFrames = reorderedFrames.get();
+        s.histogram = histogram.toCompact();
+        if (!deliveryStats.isEmpty()) s.delivery = deliveryStats.summary();
+        s.epochMs = epochMs;
+        int last = MAX_SECONDS - 1;
+        while (last >= 0 && perSecond.get(last) == 0) last--;
+        s.perSecond = new long[last + 1];
+        for (int i = 0; i <= last; i++) s.perSecond[i] = perSecond.get(i);
+        for (int room = 0; room < MAX_ROOMS; room++) {
+            long n = roomCounts.get(room);
+            if (n > 0) s.rooms.put(room, n);
+        }
+        otherRoomCounts.forEach((room, n) -> s.rooms.put(room, n.sum()));
+        typeCounts.forEach((type, n) -> s.types.put(type, n.sum()));
+        return s;
+    }
 
     public long getSuccessCount() { return successCount.get(); }
     public long getFailCount() { return failCount.get(); }
+    public int getConnections() { return totalConnections.get(); }
+    public int getReconnections() { return reconnections.get(); }
+    public long getDuplicateAcks() { return duplicateAcks.get(); }
+    public long getStaleResponses() { return staleResponses.get(); }
+    public long getUncorrelatedResponses() { return uncorrelatedResponses.get(); }
+    public long getSequencedFrames() { return sequencedFrames.get(); }
+    public long getSequenceGaps() { return sequenceGaps.get(); }
+    public long getReorderedFrames() { return reorderedFrames.get(); }
+    public long getReconnectNotices() { return reconnectNotices.get(); }
+    public long getResumes() { return resumes.get(); }
+    public long getReplayedFrames() { return replayedFrames.get(); }
+    public long getIncompleteResumes() { return incompleteResumes.get(); }
     public List<LatencyRecord> getLatencyRecords() { return new ArrayList<>(latencyRecords); }
+    public CompressionStats getCompressionStats() { return compressionStats; }
+    public DeliveryStats getDeliveryStats() { return deliveryStats; }
 
     public void printReport(String phase, long startTime, long endTime) {
         long success = successCount.get();
@@ -46,6 +161,13 @@ public class MetricsCollector {
         System.out.printf("  Throughput          : %,.0f msg/s%n", throughput);
         System.out.printf("  Total connections   : %d%n", totalConnections.get());
         System.out.printf("  Reconnections       : %d%n", reconnections.get());
+        System.out.printf("  Duplicate acks      : %d%n", duplicateAcks.get());
+        System.out.printf("  Stale responses     : %d%n", staleResponses.get());
+        if (sequencedFrames.get() > 0) {
+            System.out.printf("  Sequence gaps       : %d (of %d sequenced frames)%n",
+                    sequenceGaps.get(), sequencedFrames.get());
+            System.out.printf("  Reordered frames    : %d%n", reorderedFrames.get());
+        }
         System.out.println("========================================");
     }
 
@@ -177,6 +299,19 @@ public class MetricsCollector {
         failCount.set(0);
         totalConnections.set(0);
         reconnections.set(0);
+        duplicateAcks.set(0);
+        staleResponses.set(0);
+        uncorrelatedResponses.set(0);
+        sequencedFrames.set(0);
+        sequenceGaps.set(0);
+        reorderedFrames.set(0);
         latencyRecords.clear();
+        compressionStats.reset();
+        deliveryStats.reset();
+        histogram.reset();
+        for (int i = 0; i < MAX_SECONDS; i++) perSecond.set(i, 0);
+        for (int i = 0; i < MAX_ROOMS; i++) roomCounts.set(i, 0);
+        otherRoomCounts.clear();
+        typeCounts.clear();
     }
 }
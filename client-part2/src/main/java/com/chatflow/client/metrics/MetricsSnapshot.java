@@ -0,0 +1,147 @@
+package com.chatflow.client.metrics;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compact, mergeable summary of a {@link MetricsCollector}: counters, the latency histogram, acks per
+ * second, and per-room / per-type counts. A few KB regardless of how many messages were sent, so
+ * distributed workers ship this instead of raw latency records. Serialised with Gson.
+ */
+public class MetricsSnapshot {
+
+    long success;
+    long fail;
+    long connections;
+    long reconnections;
+    long duplicateAcks;
+    long staleResponses;
+    long uncorrelatedResponses;
+    long sequencedFrames;
+    long sequenceGaps;
+    long reorderedFrames;
+    long[] histogram = new LatencyHistogram().toCompact();
+    long epochMs;               // second 0 of perSecond
+    long[] perSecond = new long[0];
+    Map<Integer, Long> rooms = new TreeMap<>();
+    Map<String, Long> types = new TreeMap<>();
+    DeliveryStats.Summary delivery; // null when no broadcasts were received
+
+    public long getSuccess() { return success; }
+    public long getFail() { return fail; }
+    public long getDuplicateAcks() { return duplicateAcks; }
+    public long getStaleResponses() { return staleResponses; }
+    public long getUncorrelatedResponses() { return uncorrelatedResponses; }
+    public long getSequencedFrames() { return sequencedFrames; }
+    public long getSequenceGaps() { return sequenceGaps; }
+    public long getReorderedFrames() { return reorderedFrames; }
+    public LatencyHistogram getHistogram() { return LatencyHistogram.fromCompact(histogram); }
+    public DeliveryStats.Summary getDelivery() { return delivery; }
+
+    /** Adds {@code other} into this snapshot. Per-second series are aligned on wall-clock seconds. */
+    public void merge(MetricsSnapshot other) {
+        success += other.success;
+        fail += other.fail;
+        connections += other.connections;
+        reconnections += other.reconnections;
+        duplicateAcks += other.duplicateAcks;
+        staleResponses += other.staleResponses;
+        uncorrelatedResponses += other.uncorrelatedResponses;
+        sequencedFrames += other.sequencedFrames;
+        sequenceGaps += other.sequenceGaps;
+        reorderedFrames += other.reorderedFrames;
+
+        LatencyHistogram merged = getHistogram();
+        merged.merge(other.getHistogram());
+        histogram = merged.toCompact();
+
+        if (perSecond.length == 0) epochMs = other.epochMs;
+        long base = Math.min(epochMs, other.epochMs);
+        int shiftThis = (int) ((epochMs - base) / 1000);
+        int shiftOther = (int) ((other.epochMs - base) / 1000);
+        long[] series = new long[Math.max(perSecond.length + shiftThis, other.perSecond.length + shiftOther)];
+        for (int i = 0; i < perSecond.length; i++) series[i + shiftThis] += perSecond[i];
+        for (int i = 0; i < other.perSecond.length; i++) series[i + shiftOther] += other.perSecond[i];
+        perSecond = series;
+        epochMs = base;
+
+        other.rooms.forEach((room, n) -> rooms.merge(room, n, Long::sum));
+        other.types.forEach((type, n) -> types.merge(type, n, Long::sum));
+        if (other.delivery != null) {
+            if (delivery == null) delivery = new DeliveryStats.Summary();
+            delivery.merge(other.delivery);
+        }
+    }
+
+    /** Same sections and format as {@link MetricsCollector#printStatistics()}, built from the summary. */
+    public void printStatistics() {
+        LatencyHistogram h = getHistogram();
+        System.out.println();
+        System.out.println("========================================");
+        System.out.println("  Latency Statistics (histogram, +/-1.6%)");
+        System.out.println("========================================");
+        System.out.printf("  Total records : %,d%n", h.getCount());
+        System.out.printf("  Mean          : %.2f ms%n", h.getMean());
+        System.out.printf("  Median        : %d ms%n", h.percentile(0.50));
+        System.out.printf("  P95           : %d ms%n", h.percentile(0.95));
+        System.out.printf("  P99           : %d ms%n", h.percentile(0.99));
+        System.out.printf("  Min           : %d ms%n", h.getMin());
+        System.out.printf("  Max           : %d ms%n", h.getMax());
+        System.out.printf("  Connections   : %,d (reconnections %,d)%n", connections, reconnections);
+        System.out.println("========================================");
+
+        System.out.println();
+        System.out.println("========================================");
+        System.out.println("  Throughput Per Room");
+        System.out.println("========================================");
+        rooms.forEach((room, n) -> System.out.printf("  Room %2d : %,d messages%n", room, n));
+        System.out.println("========================================");
+
+        long all = 0;
+        for (long n : types.values()) all += n;
+        long total = all;
+        System.out.println();
+        System.out.println("========================================");
+        System.out.println("  Message Type Distribution");
+        System.out.println("========================================");
+        types.forEach((type, n) -> System.out.printf("  %-6s : %,d (%.1f%%)%n", type, n, 100.0 * n / total));
+        System.out.println("========================================");
+    }
+
+    public void printThroughputOverTime(long testStartTime) {
+        Map<Long, Long> buckets = tenSecondBuckets(testStartTime);
+        if (buckets.isEmpty()) return;
+        System.out.println();
+        System.out.println("========================================");
+        System.out.println("  Throughput Over Time (10s buckets)");
+        System.out.println("========================================");
+        System.out.println("  Time(s)  | Messages | Throughput(msg/s)");
+        System.out.println("  ---------+----------+-----------------");
+        buckets.forEach((timeSec, count) ->
+                System.out.printf("  %4d-%4d | %,8d | %,.0f msg/s%n",
+                        timeSec, timeSec + 10, count, count / 10.0));
+        System.out.println("========================================");
+    }
+
+    public void writeThroughputCsv(String filename, long testStartTime) throws IOException {
+        try (PrintWriter pw = new PrintWriter(new FileWriter(filename))) {
+            pw.println("time_seconds,messages,throughput_per_second");
+            tenSecondBuckets(testStartTime).forEach((timeSec, count) ->
+                    pw.println(timeSec + "," + count + "," + String.format("%.1f", count / 10.0)));
+        }
+        System.out.println("  Throughput CSV written: " + filename);
+    }
+
+    private Map<Long, Long> tenSecondBuckets(long testStartTime) {
+        Map<Long, Long> buckets = new TreeMap<>();
+        for (int i = 0; i < perSecond.length; i++) {
+            if (perSecond[i] == 0) continue;
+            long second = (epochMs + i * 1000L - testStartTime) / 1000;
+            buckets.merge(Math.max(0, second / 10) * 10, perSecond[i], Long::sum);
+        }
+        return buckets;
+    }
+}
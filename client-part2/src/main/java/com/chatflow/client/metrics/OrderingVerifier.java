@@ -0,0 +1,59 @@
+package com.chatflow.client.metrics;
+
+/**
+ * Checks that one connection receives its room's broadcasts gap-free and in order, using the per-room
+ * {@code "seq"} the server stamps when broadcast is on. Frames without a seq (echo-only servers, errors)
+ * are ignored.
+ *
+ * The first seq seen is the baseline, so joining mid-stream is not a gap. A jump forward counts the
+ * numbers skipped as gaps; a seq at or below the highest seen counts as reordered (a gap that is filled
+ * late shows up in both). One instance per connection, fed from its read thread only.
+ */
+public class OrderingVerifier {
+
+    private static final String SEQ_FIELD = "\"seq\":";
+
+    private volatile long highest; // 0 = nothing seen yet; read by the thread that reconnects
+
+    /** @param metrics where to count; the connection's collector can change between phases */
+    public void accept(String json, MetricsCollector metrics) {
+        long seq = extractSeq(json);
+        if (seq > 0 && metrics != null) check(seq, metrics);
+    }
+
+    /** Highest seq seen so far, 0 if none: what a resumed session asks the server to replay after. */
+    public long getHighest() { return highest; }
+
+    /**
+     * Takes {@code seq} as already seen, so a resumed connection checks its replay and later frames against
+     * where the old one stopped. Call before the connection receives anything.
+     */
+    public void startAfter(long seq) { highest = seq; }
+
+    void check(long seq, MetricsCollector metrics) {
+        metrics.recordSequenced();
+        if (highest != 0) {
+            if (seq > highest + 1) {
+                metrics.recordSequenceGap(seq - highest - 1);
+            } else if (seq <= highest) {
+                metrics.recordReordered();
+                return;
+            }
+        }
+        highest = seq;
+    }
+
+    /** @return the top-level seq, or -1. The server writes it last, so search from the end. */
+    static long extractSeq(String json) {
+        int at = json.lastIndexOf(SEQ_FIELD);
+        if (at <= 0 || json.charAt(at - 1) == '\\') return -1; // absent, or quoted inside a message body
+        long value = 0;
+        int digits = 0;
+        for (int i = at + SEQ_FIELD.length(); i < json.length() && digits < 19; i++, digits++) {
+            char c = json.charAt(i);
+            if (c < '0' || c > '9') break;
+            value = value * 10 + (c - '0');
+        }
+        return digits == 0 ? -1 : value;
+    }
+}
@@ -2,33 +2,46 @@ package com.chatflow.client.model;
 
 import com.google.gson.Gson;
 import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ChatMessage {
     private static final Gson GSON = new Gson();
+    // Random high bits keep ids from separate client processes apart; low bits count up
+    private static final AtomicLong NEXT_ID =
+            new AtomicLong((long) ThreadLocalRandom.current().nextInt(1 << 30) << 32);
 
-    private final String userId;
-    private final String username;
+    private final int userId;
+    private final String username; // shared per user (see generator.Usernames)
     private final String message;
-    private final String timestamp;
     private final String messageType;
     private final int roomId;
+    // Sent with every attempt so the server can ack retries without re-broadcasting them
+    private final long messageId;
 
-    public ChatMessage(String userId, String username, String message,
+    public ChatMessage(int userId, String username, String message,
                        String messageType, int roomId) {
         this.userId = userId;
         this.username = username;
         this.message = message;
-        this.timestamp = Instant.now().toString();
         this.messageType = messageType;
         this.roomId = roomId;
+        this.messageId = NEXT_ID.incrementAndGet();
     }
 
+    /**
+     * Stamped with the current time, so call it when sending rather than when generating: receivers
+     * measure delivery latency from this timestamp, and the generator queue would otherwise be counted.
+     */
     public String toJson() {
-        return GSON.toJson(new JsonPayload(userId, username, message, timestamp, messageType));
+        return GSON.toJson(new JsonPayload(Integer.toString(userId), username, message, Instant.now().toString(),
+                messageType, Long.toString(messageId)));
     }
 
+    public int getUserId() { return userId; }
     public int getRoomId() { return roomId; }
     public String getMessageType() { return messageType; }
+    public long getMessageId() { return messageId; }
 
     private static class JsonPayload {
         final String userId;
@@ -36,14 +49,16 @@ public class ChatMessage {
         final String message;
         final String timestamp;
         final String messageType;
+        final String messageId;
 
         JsonPayload(String userId, String username, String message,
-                    String timestamp, String messageType) {
+                    String timestamp, String messageType, String messageId) {
             this.userId = userId;
             this.username = username;
             this.message = message;
             this.timestamp = timestamp;
             this.messageType = messageType;
+            this.messageId = messageId;
         }
     }
 }
@@ -0,0 +1,208 @@
+package com.chatflow.client.scenario;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Declarative description of a load test, read from a JSON file (see client-part2/scenarios/).
+ *
+ * Fields left out keep the defaults below, which reproduce the original hardcoded run: 500k messages,
+ * uniform users 1-100000 and rooms 1-20, the fixed message pool, a 90/5/5 TEXT/JOIN/LEAVE mix,
+ * 32 warmup threads for 32,000 messages, then 512 threads for the rest.
+ */
+public class Scenario {
+
+    private static final Gson GSON = new Gson();
+
+    String name = "default";
+    int totalMessages = 500_000;
+    int users = 100_000;          // server accepts userId 1-100000
+    int rooms = 20;
+    RoomPopularity roomPopularity = new RoomPopularity();
+    MessageSize messageSize = new MessageSize();
+    TypeMix typeMix = new TypeMix();
+    Sessions sessions = new Sessions();
+    List<Phase> phases = defaultPhases();
+
+    /** How often each room is picked. zipf: room k gets weight 1/k^exponent, so room 1 is the hottest. */
+    public static class RoomPopularity {
+        String distribution = "uniform"; // uniform | zipf
+        double exponent = 1.0;
+    }
+
+    /** Length of TEXT bodies in chars. The server accepts 1-500. */
+    public static class MessageSize {
+        String distribution = "pool"; // pool (fixed phrases) | uniform | lognormal
+        int min = 1;
+        int max = 500;
+        int median = 60;              // lognormal only
+        double sigma = 0.8;           // lognormal only
+    }
+
+    /** Independent per-message type mix, used when sessions are disabled. Percentages. */
+    public static class TypeMix {
+        int text = 90;
+        int join = 5;
+        int leave = 5;
+    }
+
+    /**
+     * User session lifecycles: each simulated user sends JOIN, then textMin-textMax TEXT messages, then
+     * LEAVE, all to one room, waiting a think time between messages. {@code concurrent} sessions are
+     * interleaved; a finished one is replaced by a new user.
+     */
+    public static class Sessions {
+        boolean enabled = false;
+        int concurrent = 1000;
+        int textMin = 5;
+        int textMax = 50;
+        long thinkTimeMinMs = 0;
+        long thinkTimeMaxMs = 0;
+    }
+
+    /**
+     * A run stage. messages = 0 means "whatever is left of totalMessages"; ratePerSecond = 0 means unpaced.
+     * With adaptive, threads is a ceiling: the number of senders with a message in flight starts low and
+     * is tuned from throughput and latency while the phase runs.
+     */
+    public static class Phase {
+        String name = "Main";
+        int threads = 512;
+        int messages = 0;
+        int ratePerSecond = 0;
+        boolean adaptive = false;
+
+        public Phase() {}
+
+        Phase(String name, int threads, int messages) {
+            this.name = name;
+            this.threads = threads;
+            this.messages = messages;
+        }
+
+        public String getName() { return name; }
+        public int getThreads() { return threads; }
+        public int getMessages() { return messages; }
+        public int getRatePerSecond() { return ratePerSecond; }
+        public boolean isAdaptive() { return adaptive; }
+    }
+
+    public static Scenario defaults() {
+        return new Scenario().validated();
+    }
+
+    public static Scenario load(Path path) throws IOException {
+        try (Reader in = Files.newBufferedReader(path)) {
+            return parse(in);
+        }
+    }
+
+    public static Scenario parse(String json) {
+        return parse(new StringReader(json));
+    }
+
+    public static Scenario parse(Reader in) {
+        Scenario s = GSON.fromJson(in, Scenario.class);
+        if (s == null) throw new JsonParseException("Empty scenario");
+        return s.validated();
+    }
+
+    private static List<Phase> defaultPhases() {
+        List<Phase> phases = new ArrayList<>();
+        phases.add(new Phase("Warmup", 32, 32_000));
+        phases.add(new Phase("Main", 512, 0));
+        return phases;
+    }
+
+    /** Checks ranges and resolves the "rest" phase so every phase has a concrete message count. */
+    private Scenario validated() {
+        if (users < 1 || users > 100_000) throw new IllegalArgumentException("users must be 1-100000");
+        if (rooms < 1) throw new IllegalArgumentException("rooms must be >= 1");
+        if (messageSize.min < 1 || messageSize.max > 500 || messageSize.min > messageSize.max) {
+            throw new IllegalArgumentException("messageSize must stay within 1-500 chars");
+        }
+        if (typeMix.text + typeMix.join + typeMix.leave != 100) {
+            throw new IllegalArgumentException("typeMix must add up to 100");
+        }
+        if (sessions.textMin < 0 || sessions.textMin > sessions.textMax || sessions.concurrent < 1) {
+            throw new IllegalArgumentException("invalid sessions settings");
+        }
+        if (phases == null || phases.isEmpty()) phases = defaultPhases();
+
+        int fixed = 0;
+        int open = 0;
+        for (Phase p : phases) {
+            if (p.threads < 1) throw new IllegalArgumentException("phase " + p.name + ": threads must be >= 1");
+            if (p.messages > 0) fixed += p.messages; else open++;
+        }
+        if (open == 0) {
+            totalMessages = fixed; // every phase is sized, so they define the total
+        } else if (fixed > totalMessages) {
+            throw new IllegalArgumentException("sized phases exceed totalMessages");
+        } else if (open > 1 && fixed < totalMessages) {
+            throw new IllegalArgumentException("only one phase may leave messages unset");
+        }
+        for (Phase p : phases) {
+            if (p.messages <= 0) p.messages = totalMessages - fixed;
+        }
+        return this;
+    }
+
+    /**
+     * This scenario's share for worker {@code index} of {@code count}: messages, rates, threads and
+     * concurrent sessions are divided so that all workers together generate the original load.
+     */
+    public Scenario shard(int index, int count) {
+        Scenario s = GSON.fromJson(toJson(), Scenario.class);
+        int total = 0;
+        for (Phase p : s.phases) {
+            p.messages = share(p.messages, index, count);
+            if (p.ratePerSecond > 0) p.ratePerSecond = Math.max(1, share(p.ratePerSecond, index, count));
+            p.threads = Math.max(1, (p.threads + count - 1) / count);
+            total += p.messages;
+        }
+        s.totalMessages = total;
+        s.sessions.concurrent = Math.max(1, (s.sessions.concurrent + count - 1) / count);
+        return s.validated();
+    }
+
+    /** Makes every phase adaptive, keeping its thread count as the ceiling. */
+    public Scenario withAdaptiveConcurrency() {
+        for (Phase p : phases) p.adaptive = true;
+        return this;
+    }
+
+    public String toJson() {
+        return GSON.toJson(this);
+    }
+
+    private static int share(int amount, int index, int count) {
+        return amount / count + (index < amount % count ? 1 : 0);
+    }
+
+    public String getName() { return name; }
+    public int getTotalMessages() { return totalMessages; }
+    public int getUsers() { return users; }
+    public int getRooms() { return rooms; }
+    public List<Phase> getPhases() { return phases; }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(name).append(": ");
+        sb.append(totalMessages).append(" msgs, ").append(users).append(" users, ").append(rooms).append(" rooms (")
+                .append(roomPopularity.distribution);
+        if ("zipf".equals(roomPopularity.distribution)) sb.append(" s=").append(roomPopularity.exponent);
+        sb.append("), size ").append(messageSize.distribution);
+        sb.append(sessions.enabled ? ", sessions x" + sessions.concurrent : ", mix " + typeMix.text + "/"
+                + typeMix.join + "/" + typeMix.leave);
+        return sb.toString();
+    }
+}
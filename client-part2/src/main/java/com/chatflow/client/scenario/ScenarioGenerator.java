@@ -0,0 +1,180 @@
+package com.chatflow.client.scenario;
+
+import com.chatflow.client.generator.MessageGenerator;
+import com.chatflow.client.generator.Usernames;
+import com.chatflow.client.model.ChatMessage;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds the send queue according to a {@link Scenario}.
+ *
+ * Rooms come from a precomputed CDF, bodies are slices of one prebuilt string, and usernames are
+ * cached, so producing a message is a few random draws plus the ChatMessage itself. That keeps one
+ * generator thread well ahead of the senders. With sessions enabled, each simulated user runs
+ * JOIN → TEXT* → LEAVE in one room. Sessions with a think time wait in a heap ordered by their next due
+ * time. Phases with a rate are paced against the phase's own start time.
+ */
+public class ScenarioGenerator implements Runnable {
+
+    private static final String[] TYPES = {"TEXT", "JOIN", "LEAVE"};
+
+    private final BlockingQueue<ChatMessage> queue;
+    private final Scenario scenario;
+    private final ZipfSampler rooms;
+    private final Usernames usernames;
+    private final String filler;
+    private final double logMedian;
+
+    public ScenarioGenerator(BlockingQueue<ChatMessage> queue, Scenario scenario) {
+        this.queue = queue;
+        this.scenario = scenario;
+        boolean zipf = "zipf".equals(scenario.roomPopularity.distribution);
+        this.rooms = new ZipfSampler(scenario.rooms, zipf ? scenario.roomPopularity.exponent : 0);
+        this.usernames = new Usernames(scenario.users);
+        this.filler = buildFiller(scenario.messageSize.max);
+        this.logMedian = Math.log(scenario.messageSize.median);
+    }
+
+    @Override
+    public void run() {
+        try {
+            Emitter emitter = scenario.sessions.enabled ? new SessionEmitter() : new MixEmitter();
+            for (Scenario.Phase phase : scenario.phases) {
+                long start = System.nanoTime();
+                double nanosPerMessage = phase.ratePerSecond > 0 ? 1e9 / phase.ratePerSecond : 0;
+                for (int i = 0; i < phase.messages; i++) {
+                    if (nanosPerMessage > 0) waitUntil(start + (long) (i * nanosPerMessage));
+                    queue.put(emitter.next(ThreadLocalRandom.current()));
+                }
+            }
+            System.out.println("[Generator] All " + scenario.totalMessages + " messages generated ("
+                    + scenario.name + ").");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("[Generator] Interrupted.");
+        }
+    }
+
+    private interface Emitter {
+        ChatMessage next(ThreadLocalRandom rand) throws InterruptedException;
+    }
+
+    /** Independent messages: random user, room and type per message (the original generator's model). */
+    private final class MixEmitter implements Emitter {
+        @Override
+        public ChatMessage next(ThreadLocalRandom rand) {
+            int roll = rand.nextInt(100);
+            Scenario.TypeMix mix = scenario.typeMix;
+            String type = roll < mix.text ? TYPES[0] : roll < mix.text + mix.join ? TYPES[1] : TYPES[2];
+            return message(rand.nextInt(1, scenario.users + 1), rooms.next(rand), type, rand);
+        }
+    }
+
+    /** Interleaved JOIN → TEXT* → LEAVE lifecycles. */
+    private final class SessionEmitter implements Emitter {
+        private final Session[] active;
+        private final PriorityQueue<Session> byDue; // only used when there is a think time
+        private final boolean thinking;
+
+        SessionEmitter() {
+            Scenario.Sessions cfg = scenario.sessions;
+            thinking = cfg.thinkTimeMaxMs > 0;
+            active = new Session[cfg.concurrent];
+            byDue = thinking ? new PriorityQueue<>(cfg.concurrent, (a, b) -> Long.compare(a.due, b.due)) : null;
+            ThreadLocalRandom rand = ThreadLocalRandom.current();
+            long now = System.nanoTime();
+            for (int i = 0; i < active.length; i++) {
+                active[i] = new Session();
+                active[i].start(rand, now);
+                if (thinking) byDue.add(active[i]);
+            }
+        }
+
+        @Override
+        public ChatMessage next(ThreadLocalRandom rand) throws InterruptedException {
+            Session s;
+            if (thinking) {
+                s = byDue.poll();
+                waitUntil(s.due);
+            } else {
+                s = active[rand.nextInt(active.length)];
+            }
+
+            String type;
+            if (!s.joined) {
+                s.joined = true;
+                type = TYPES[1];
+            } else if (s.textsLeft > 0) {
+                s.textsLeft--;
+                type = TYPES[0];
+            } else {
+                type = TYPES[2];
+            }
+            ChatMessage msg = message(s.userId, s.roomId, type, rand);
+
+            long now = System.nanoTime();
+            if (type == TYPES[2]) s.start(rand, now); else s.due = now + thinkNanos(rand);
+            if (thinking) byDue.add(s);
+            return msg;
+        }
+
+        private long thinkNanos(ThreadLocalRandom rand) {
+            Scenario.Sessions cfg = scenario.sessions;
+            if (!thinking) return 0;
+            return rand.nextLong(cfg.thinkTimeMinMs, cfg.thinkTimeMaxMs + 1) * 1_000_000L;
+        }
+
+        private final class Session {
+            int userId;
+            int roomId;
+            int textsLeft;
+            boolean joined;
+            long due;
+
+            void start(ThreadLocalRandom rand, long now) {
+                Scenario.Sessions cfg = scenario.sessions;
+                userId = rand.nextInt(1, scenario.users + 1);
+                roomId = rooms.next(rand);
+                textsLeft = rand.nextInt(cfg.textMin, cfg.textMax + 1);
+                joined = false;
+                due = now + thinkNanos(rand);
+            }
+        }
+    }
+
+    private ChatMessage message(int userId, int roomId, String type, ThreadLocalRandom rand) {
+        return new ChatMessage(userId, usernames.of(userId), body(rand), type, roomId);
+    }
+
+    private String body(ThreadLocalRandom rand) {
+        Scenario.MessageSize size = scenario.messageSize;
+        switch (size.distribution) {
+            case "uniform":
+                return filler.substring(0, rand.nextInt(size.min, size.max + 1));
+            case "lognormal": {
+                long len = Math.round(Math.exp(logMedian + size.sigma * rand.nextGaussian()));
+                return filler.substring(0, (int) Math.max(size.min, Math.min(size.max, len)));
+            }
+            default:
+                return MessageGenerator.MESSAGE_POOL[rand.nextInt(MessageGenerator.MESSAGE_POOL.length)];
+        }
+    }
+
+    private static void waitUntil(long deadline) throws InterruptedException {
+        long wait;
+        while ((wait = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    private static String buildFiller(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) sb.append("lorem ipsum dolor sit amet ");
+        return sb.substring(0, length);
+    }
+}
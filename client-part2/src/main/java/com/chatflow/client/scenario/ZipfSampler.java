@@ -0,0 +1,39 @@
+package com.chatflow.client.scenario;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Draws 1..n where k has probability proportional to 1/k^s (s = 0 is uniform).
+ * The CDF is built once; each draw is one random double and a binary search.
+ */
+class ZipfSampler {
+
+    private final double[] cdf;
+
+    ZipfSampler(int n, double exponent) {
+        cdf = new double[n];
+        double sum = 0;
+        for (int k = 1; k <= n; k++) {
+            sum += 1.0 / Math.pow(k, exponent);
+            cdf[k - 1] = sum;
+        }
+        for (int i = 0; i < n; i++) cdf[i] /= sum;
+        cdf[n - 1] = 1.0;
+    }
+
+    int next(ThreadLocalRandom rand) {
+        double u = rand.nextDouble();
+        int lo = 0;
+        int hi = cdf.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cdf[mid] < u) lo = mid + 1; else hi = mid;
+        }
+        return lo + 1;
+    }
+
+    /** Share of draws that land on {@code k}. */
+    double probability(int k) {
+        return k == 1 ? cdf[0] : cdf[k - 1] - cdf[k - 2];
+    }
+}
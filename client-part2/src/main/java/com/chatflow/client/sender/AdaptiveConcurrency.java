@@ -0,0 +1,225 @@
+package com.chatflow.client.sender;
+
+import com.chatflow.client.metrics.LatencyHistogram;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tunes how many of a phase's senders may have a message in flight, instead of a hand-picked thread count.
+ *
+ * Senders take a slot before each message and give it back after the ack. Once per interval the limit is
+ * adjusted from that interval's acks. By Little's Law the server keeps X * W0 messages busy (throughput
+ * times the lowest mean latency seen). Anything above that is only queueing:
+ * queued = limit - X * W0. Below alpha queued messages the limit grows: it doubles until the first sign of
+ * queueing, then grows by sqrt(limit). Above beta it shrinks by sqrt(limit). A failure, or a p99 past
+ * {@link #P99_TOLERANCE} times the best p99 seen, cuts it by a quarter. The limit settles just past the
+ * knee, where throughput stops growing and latency starts to.
+ */
+public class AdaptiveConcurrency {
+
+    public static final int INITIAL_LIMIT = 8;
+    static final long INTERVAL_MS = 1000;
+    // Fewer acks than this in an interval is too little to judge; the limit is held
+    static final int MIN_SAMPLES = 50;
+    static final double P99_TOLERANCE = 3.0;
+    static final long P99_SLACK_MS = 5;
+    static final double BACKOFF = 0.75;
+    // The chosen concurrency is the mean limit over this many final intervals
+    private static final int SETTLED_WINDOWS = 5;
+
+    private final String name;
+    private final int maxLimit;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+    private int limit;
+    private int active;
+    private boolean drained;
+
+    private final AtomicReference<LatencyHistogram> window = new AtomicReference<>(new LatencyHistogram());
+    private final AtomicLong failures = new AtomicLong();
+    private ScheduledExecutorService timer;
+
+    // Controller state; only touched from adjust()
+    private boolean slowStart = true;
+    private double minMeanMs = Double.MAX_VALUE;
+    private long minP99Ms = Long.MAX_VALUE;
+    private double bestRate;
+    private int bestRateLimit;
+    private double lastRate;
+    private double lastMeanMs;
+    private long lastP99Ms;
+    private int windows;
+    private long judged; // intervals that had acks or failures
+    private final int[] recentLimits = new int[SETTLED_WINDOWS];
+
+    public AdaptiveConcurrency(String name, int maxLimit) {
+        this.name = name;
+        this.maxLimit = Math.max(1, maxLimit);
+        this.limit = Math.min(INITIAL_LIMIT, this.maxLimit);
+    }
+
+    /** Adjusts the limit every {@link #INTERVAL_MS} on a daemon thread until {@link #stop}. */
+    public void start() {
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "concurrency-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(this::onInterval, INTERVAL_MS, INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // The timer's task: adjust, then print a progress line unless the interval was idle
+    private void onInterval() {
+        long before = judged;
+        int next = tick(INTERVAL_MS);
+        if (judged != before) {
+            System.out.printf("  [%s] limit %d, %,.0f msg/s, mean %.1f ms, p99 %d ms%n",
+                    name, next, lastRate, lastMeanMs, lastP99Ms);
+        }
+    }
+
+    public void stop() {
+        if (timer != null) timer.shutdownNow();
+    }
+
+    /** Blocks until fewer than {@code limit} senders hold a slot. Pair with {@link #release}. */
+    public void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (active >= limit && !drained) slotFreed.await();
+            active++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release() {
+        lock.lock();
+        try {
+            active--;
+            slotFreed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The queue came up empty: the phase is out of messages. Lets every waiting sender through so they all
+     * see that at once, rather than each taking a slot in turn just to find the queue empty.
+     */
+    public void drain() {
+        lock.lock();
+        try {
+            drained = true;
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onAck(long latencyMs) { window.get().record(latencyMs); }
+    public void onFailure() { failures.incrementAndGet(); }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the current interval of {@code windowMs} and adjusts the limit from it. Returns the new limit.
+     * Prints nothing; the timer started by {@link #start} reports each interval.
+     */
+    public int tick(long windowMs) {
+        LatencyHistogram h = window.getAndSet(new LatencyHistogram());
+        long failed = failures.getAndSet(0);
+        if (h.getCount() == 0 && failed == 0) return getLimit(); // idle, e.g. the phase is finishing
+        judged++;
+        return adjust(h.getCount(), failed, h.getMean(), h.percentile(0.99), windowMs);
+    }
+
+    private int adjust(long acks, long failed, double meanMs, long p99Ms, long windowMs) {
+        int current = getLimit();
+        lastRate = acks * 1000.0 / windowMs;
+        lastMeanMs = meanMs;
+        lastP99Ms = p99Ms;
+        if (acks < MIN_SAMPLES && failed == 0) return current;
+
+        int next;
+        if (failed > 0 || (minP99Ms != Long.MAX_VALUE && p99Ms > minP99Ms * P99_TOLERANCE + P99_SLACK_MS)) {
+            next = (int) (current * BACKOFF);
+            slowStart = false;
+        } else {
+            minMeanMs = Math.min(minMeanMs, Math.max(meanMs, 0.1));
+            minP99Ms = Math.min(minP99Ms, p99Ms);
+            if (lastRate > bestRate) {
+                bestRate = lastRate;
+                bestRateLimit = current;
+            }
+            double queued = current - lastRate * minMeanMs / 1000.0;
+            double log = Math.max(1, Math.log10(current));
+            int step = Math.max(1, (int) Math.sqrt(current));
+            if (queued < 3 * log) {
+                next = slowStart ? current * 2 : current + step;
+            } else {
+                slowStart = false;
+                next = queued > 6 * log ? current - step : current;
+            }
+        }
+        next = Math.max(1, Math.min(next, maxLimit));
+        recentLimits[windows++ % SETTLED_WINDOWS] = next;
+
+        lock.lock();
+        try {
+            limit = next;
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return next;
+    }
+
+    /** Mean limit over the last few adjusted intervals: what the controller converged on. */
+    public int getChosenLimit() {
+        int n = Math.min(windows, SETTLED_WINDOWS);
+        if (n == 0) return getLimit();
+        long sum = 0;
+        for (int i = 0; i < n; i++) sum += recentLimits[i];
+        return (int) Math.round((double) sum / n);
+    }
+
+    /** Senders needed to keep the server busy without queueing, by Little's Law: best rate x lowest mean. */
+    public double getLittleEstimate() {
+        return minMeanMs == Double.MAX_VALUE ? 0 : bestRate * minMeanMs / 1000.0;
+    }
+
+    public void printReport() {
+        System.out.println();
+        System.out.println("========================================");
+        System.out.println("  Adaptive Concurrency (" + name + ")");
+        System.out.println("========================================");
+        System.out.printf("  Start / cap           : %d / %d senders%n", Math.min(INITIAL_LIMIT, maxLimit), maxLimit);
+        System.out.printf("  Chosen concurrency    : %d (mean of last %d adjustments)%n",
+                getChosenLimit(), Math.min(windows, SETTLED_WINDOWS));
+        if (bestRateLimit > 0) {
+            System.out.printf("  Best interval         : %,.0f msg/s at %d senders%n", bestRate, bestRateLimit);
+            System.out.printf("  Lowest mean latency   : %.2f ms (p99 %d ms)%n", minMeanMs, minP99Ms);
+            System.out.printf("  Little's Law X*W0     : %.1f in flight keeps the server busy%n", getLittleEstimate());
+            System.out.printf("  Last interval X*W     : %.1f in flight (%,.0f msg/s x %.2f ms)%n",
+                    lastRate * lastMeanMs / 1000.0, lastRate, lastMeanMs);
+        } else {
+            System.out.println("  Too few acks per interval to adjust the limit");
+        }
+        System.out.println("========================================");
+    }
+}
@@ -0,0 +1,155 @@
+package com.chatflow.client.sender;
+
+import com.chatflow.client.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How long senders wait for an ack, and when they hedge. Shared by every sender of a run.
+ *
+ * Fixed by default: 5 s and no hedging, the original behaviour. With {@code adaptive} the timeout follows
+ * live latency instead, p99 of the last one-second window times {@code multiplier}, clamped to
+ * [floor, ceiling]. A sender on a stalled connection then gives up and retries after a few p99s rather than
+ * five seconds. A timed-out attempt is recorded as a sample at the timeout, so when many time out the p99 and
+ * the timeout both rise instead of chasing each other down. Until the first window has
+ * {@link #MIN_SAMPLES} acks the ceiling applies.
+ *
+ * With {@code hedge}, a send still unacked after the live p95 is repeated, with the same messageId, on a
+ * second pooled socket of the same room. The first ack wins. The server's dedup acks the other copy as a
+ * duplicate, so the message is stored and broadcast once. Hedging needs at least two pooled sockets per room.
+ *
+ *   -Dchatflow.timeout.adaptive=true
+ *   -Dchatflow.timeout.multiplier=3 -Dchatflow.timeout.floorMs=50 -Dchatflow.timeout.ceilingMs=5000
+ *   -Dchatflow.hedge=true
+ */
+public class ResponseTimeouts {
+
+    public static final long DEFAULT_TIMEOUT_MS = 5000;
+    static final long WINDOW_MS = 1000;
+    static final int MIN_SAMPLES = 100;
+
+    private final boolean adaptive;
+    private final double multiplier;
+    private final long floorMs;
+    private final long ceilingMs;
+    private final boolean hedge;
+
+    private final AtomicReference<LatencyHistogram> window = new AtomicReference<>(new LatencyHistogram());
+    private final AtomicBoolean rotating = new AtomicBoolean();
+    private volatile long windowStartMs = System.currentTimeMillis();
+    private volatile long timeoutMs;
+    private volatile long hedgeDelayMs; // 0 = don't hedge (yet)
+
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder hedgeDuplicates = new LongAdder();
+    private long minTimeoutMs = Long.MAX_VALUE;
+    private long maxTimeoutMs;
+
+    public ResponseTimeouts(boolean adaptive, double multiplier, long floorMs, long ceilingMs, boolean hedge) {
+        this.adaptive = adaptive;
+        this.multiplier = multiplier;
+        this.floorMs = floorMs;
+        this.ceilingMs = Math.max(floorMs, ceilingMs);
+        this.hedge = hedge;
+        this.timeoutMs = this.ceilingMs;
+    }
+
+    public static ResponseTimeouts fixed() {
+        return new ResponseTimeouts(false, 1, DEFAULT_TIMEOUT_MS, DEFAULT_TIMEOUT_MS, false);
+    }
+
+    public static ResponseTimeouts fromSystemProperties() {
+        return new ResponseTimeouts(
+                Boolean.getBoolean("chatflow.timeout.adaptive"),
+                Double.parseDouble(System.getProperty("chatflow.timeout.multiplier", "3")),
+                Long.getLong("chatflow.timeout.floorMs", 50),
+                Long.getLong("chatflow.timeout.ceilingMs", DEFAULT_TIMEOUT_MS),
+                Boolean.getBoolean("chatflow.hedge"));
+    }
+
+    public boolean isAdaptive() { return adaptive; }
+    public boolean isHedging() { return hedge; }
+
+    /** Ack timeout for the next attempt. */
+    public long timeoutMs() { return timeoutMs; }
+
+    /** How long to wait before hedging the next attempt; 0 = don't. */
+    public long hedgeDelayMs() { return hedgeDelayMs; }
+
+    public void record(long latencyMs) {
+        if (!adaptive && !hedge) return;
+        window.get().record(latencyMs);
+        long now = System.currentTimeMillis();
+        if (now - windowStartMs >= WINDOW_MS && rotating.compareAndSet(false, true)) {
+            try {
+                rotate();
+            } finally {
+                rotating.set(false);
+            }
+        }
+    }
+
+    /** An attempt got no ack within {@code waitedMs}: counted, and recorded as a sample of at least that. */
+    public void onTimeout(long waitedMs) {
+        timeouts.increment();
+        record(waitedMs);
+    }
+
+    public void onHedge() { hedges.increment(); }
+    public void onHedgeWin() { hedgeWins.increment(); }
+    public void onHedgeDuplicate() { hedgeDuplicates.increment(); }
+
+    /**
+     * Closes the current window and derives the timeout and hedge delay from it. Runs on its own from
+     * {@link #record} once a window is {@link #WINDOW_MS} old.
+     */
+    public void rotate() {
+        LatencyHistogram h = window.getAndSet(new LatencyHistogram());
+        windowStartMs = System.currentTimeMillis();
+        if (h.getCount() < MIN_SAMPLES) return; // too few to trust; keep the last values
+        if (adaptive) {
+            long t = Math.max(floorMs, Math.min(ceilingMs, (long) Math.ceil(h.percentile(0.99) * multiplier)));
+            timeoutMs = t;
+            synchronized (this) {
+                minTimeoutMs = Math.min(minTimeoutMs, t);
+                maxTimeoutMs = Math.max(maxTimeoutMs, t);
+            }
+        }
+        if (hedge) hedgeDelayMs = Math.max(1, h.percentile(0.95));
+    }
+
+    public long getTimeouts() { return timeouts.sum(); }
+    public long getHedges() { return hedges.sum(); }
+    public long getHedgeWins() { return hedgeWins.sum(); }
+    public long getHedgeDuplicates() { return hedgeDuplicates.sum(); }
+
+    public void printReport() {
+        System.out.println();
+        System.out.println("========================================");
+        System.out.println("  Ack Timeouts & Hedging");
+        System.out.println("========================================");
+        if (adaptive) {
+            synchronized (this) {
+                System.out.printf("  Timeout             : p99 x %.1f within %d-%d ms (used %s)%n",
+                        multiplier, floorMs, ceilingMs, maxTimeoutMs == 0 ? "ceiling only"
+                                : minTimeoutMs + "-" + maxTimeoutMs + " ms");
+            }
+        } else {
+            System.out.printf("  Timeout             : fixed %d ms%n", ceilingMs);
+        }
+        System.out.printf("  Attempts timed out  : %,d%n", getTimeouts());
+        if (hedge) {
+            long fired = getHedges();
+            System.out.printf("  Hedges fired        : %,d (after p95, last %d ms)%n", fired, hedgeDelayMs);
+            System.out.printf("  Hedges won          : %,d (%.1f%% of fired)%n", getHedgeWins(),
+                    fired == 0 ? 0.0 : 100.0 * getHedgeWins() / fired);
+            System.out.printf("  Acked as duplicate  : %,d (server dedup caught the second copy)%n",
+                    getHedgeDuplicates());
+        }
+        System.out.println("========================================");
+    }
+}
@@ -1,5 +1,6 @@
 package com.chatflow.client.sender;
 
+import com.chatflow.client.connection.Backoff;
 import com.chatflow.client.connection.ConnectionManager;
 import com.chatflow.client.connection.ConnectionManager.ChatWebSocketClient;
 import com.chatflow.client.metrics.MetricsCollector;
@@ -7,55 +8,111 @@ import com.chatflow.client.model.ChatMessage;
 import com.chatflow.client.model.LatencyRecord;
 
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 public class SenderThread implements Runnable {
 
     private static final int MAX_RETRIES = 5;
-    private static final long RESPONSE_TIMEOUT_MS = 5000;
+    private static final long BACKOFF_BASE_MS = 10;
+    private static final long BACKOFF_CAP_MS = 2000;
+    private static final String DUPLICATE = "\"duplicate\":true";
+    private static final String TIMESTAMP_FIELD = "\"timestamp\":\"";
 
     private final BlockingQueue<ChatMessage> queue;
     private final ConnectionManager connectionManager;
     private final MetricsCollector metrics;
     private final int maxMessages;
     private final AtomicInteger sharedCounter;
+    private final AdaptiveConcurrency concurrency; // null = every sender sends flat out
+    private final ResponseTimeouts timeouts;
+    private ChatWebSocketClient client; // replaced in place on reconnect so release() sees the live one
+    private final Backoff backoff = new Backoff(BACKOFF_BASE_MS, BACKOFF_CAP_MS);
 
     public SenderThread(BlockingQueue<ChatMessage> queue,
                         ConnectionManager connectionManager,
                         MetricsCollector metrics,
                         int maxMessages,
                         AtomicInteger sharedCounter) {
+        this(queue, connectionManager, metrics, maxMessages, sharedCounter, null);
+    }
+
+    public SenderThread(BlockingQueue<ChatMessage> queue,
+                        ConnectionManager connectionManager,
+                        MetricsCollector metrics,
+                        int maxMessages,
+                        AtomicInteger sharedCounter,
+                        AdaptiveConcurrency concurrency) {
+        this(queue, connectionManager, metrics, maxMessages, sharedCounter, concurrency, ResponseTimeouts.fixed());
+    }
+
+    public SenderThread(BlockingQueue<ChatMessage> queue,
+                        ConnectionManager connectionManager,
+                        MetricsCollector metrics,
+                        int maxMessages,
+                        AtomicInteger sharedCounter,
+                        AdaptiveConcurrency concurrency,
+                        ResponseTimeouts timeouts) {
         this.queue = queue;
         this.connectionManager = connectionManager;
         this.metrics = metrics;
         this.maxMessages = maxMessages;
         this.sharedCounter = sharedCounter;
+        this.concurrency = concurrency;
+        this.timeouts = timeouts;
     }
 
     @Override
     public void run() {
-        ChatWebSocketClient client = null;
         int sent = 0;
 
+        // Pooled sockets are cheap to pick per message, so each message goes to its own room's
+        // endpoint and the scenario's room skew reaches the server. Otherwise keep one socket.
+        boolean perMessageRoom = connectionManager.getSocketsPerRoom() > 0;
+
         try {
-            int connRoom = java.util.concurrent.ThreadLocalRandom.current().nextInt(1, 21);
-            client = connectionManager.createConnection(connRoom);
+            if (!perMessageRoom) {
+                int connRoom = java.util.concurrent.ThreadLocalRandom.current().nextInt(1, 21);
+                client = connectionManager.acquire(connRoom);
+            }
 
             while (shouldContinue(sent)) {
-                ChatMessage msg = queue.poll(2, TimeUnit.SECONDS);
-                if (msg == null) break;
+                if (concurrency != null) concurrency.acquire();
+                try {
+                    // The phase may have finished while this sender waited for a slot
+                    if (concurrency != null && !shouldContinue(sent)) break;
+                    ChatMessage msg = queue.poll(2, TimeUnit.SECONDS);
+                    if (msg == null) {
+                        if (concurrency != null) concurrency.drain();
+                        break;
+                    }
 
-                sent += sendWithRetry(client, msg);
+                    if (perMessageRoom && (client = acquireWithRetry(msg.getRoomId())) == null) {
+                        recordFailure(msg);
+                        continue;
+                    }
+                    try {
+                        sent += sendWithRetry(msg);
+                    } finally {
+                        if (perMessageRoom) {
+                            connectionManager.release(client);
+                            client = null;
+                        }
+                    }
+                } finally {
+                    if (concurrency != null) concurrency.release();
+                }
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         } catch (Exception e) {
             System.err.println("[Sender] Error: " + e.getMessage());
         } finally {
-            if (client != null && client.isOpen()) {
-                client.close();
-            }
+            connectionManager.release(client);
         }
     }
 
@@ -65,7 +122,7 @@ public class SenderThread implements Runnable {
         return true;
     }
 
-    private int sendWithRetry(ChatWebSocketClient client, ChatMessage msg) {
+    private int sendWithRetry(ChatMessage msg) {
         String json = msg.toJson();
 
         for (int attempt = 0; attempt <= MAX_RETRIES; attempt++) {
@@ -77,17 +134,23 @@ public class SenderThread implements Runnable {
                 // Record timestamp before send
                 long sendTime = System.currentTimeMillis();
 
-                String response = client.sendAndWait(json, RESPONSE_TIMEOUT_MS);
+                // Completed only by the reply carrying this message's id, so a late reply
+                // to an earlier attempt can't be mistaken for this one
+                String response = awaitAck(msg, json);
 
                 // Record timestamp after ACK
                 long ackTime = System.currentTimeMillis();
                 long latency = ackTime - sendTime;
 
                 if (response != null && response.contains("\"OK\"")) {
+                    if (response.contains(DUPLICATE)) metrics.recordDuplicateAck();
                     metrics.recordSuccess();
                     metrics.recordLatency(new LatencyRecord(
                             sendTime, msg.getMessageType(), latency, "OK", msg.getRoomId()));
                     if (sharedCounter != null) sharedCounter.decrementAndGet();
+                    if (concurrency != null) concurrency.onAck(latency);
+                    timeouts.record(latency);
+                    backoff.reset();
                     return 1;
                 }
 
@@ -101,7 +164,7 @@ public class SenderThread implements Runnable {
 
             if (attempt < MAX_RETRIES) {
                 try {
-                    Thread.sleep((long) (10 * Math.pow(2, attempt)));
+                    Thread.sleep(backoff.nextDelayMs());
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     break;
@@ -109,10 +172,108 @@ public class SenderThread implements Runnable {
             }
         }
 
+        recordFailure(msg);
+        return 0;
+    }
+
+    /** The ack for one attempt, hedged on a second socket if it is slow; null on timeout or close. */
+    private String awaitAck(ChatMessage msg, String json) throws InterruptedException {
+        long timeout = timeouts.timeoutMs();
+        long hedgeDelay = timeouts.hedgeDelayMs();
+        CompletableFuture<String> primary = client.sendAsync(msg.getMessageId(), json, timeout);
+        if (hedgeDelay <= 0 || hedgeDelay >= timeout) return await(primary, timeout);
+
+        try {
+            return primary.get(hedgeDelay, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            return failed(e, timeout);
+        } catch (TimeoutException e) {
+            // slower than p95: hedge below
+        }
+        ChatWebSocketClient other = connectionManager.acquireAlternate(msg.getRoomId(), client);
+        if (other == null) return await(primary, timeout);
+        try {
+            timeouts.onHedge();
+            // Restamped, so the ack shows which copy the server accepted. In broadcast mode the hedge socket
+            // also receives the primary copy's broadcast, which completes its future just like an ack would
+            String hedgeJson = msg.toJson();
+            CompletableFuture<String> hedge = other.sendAsync(msg.getMessageId(), hedgeJson, timeout - hedgeDelay);
+            CompletableFuture<String> first = new CompletableFuture<>();
+            AtomicInteger failures = new AtomicInteger();
+            BiConsumer<String, Throwable> race = (reply, error) -> {
+                if (error == null) {
+                    first.complete(reply);
+                } else if (failures.incrementAndGet() == 2) {
+                    first.completeExceptionally(error);
+                }
+            };
+            primary.whenComplete(race);
+            hedge.whenComplete(race);
+            // Both copies reached the server if both get acked; dedup marks the later one. With broadcast on,
+            // a socket's future may already hold the room's broadcast by then, so this can undercount
+            CompletableFuture.allOf(primary, hedge).thenRun(() -> {
+                if (primary.join().contains(DUPLICATE) || hedge.join().contains(DUPLICATE)) {
+                    timeouts.onHedgeDuplicate();
+                }
+            });
+
+            String response = await(first, timeout);
+            if (response != null && accepted(response, hedgeJson, json)) timeouts.onHedgeWin();
+            return response;
+        } finally {
+            connectionManager.release(other);
+        }
+    }
+
+    /**
+     * True when {@code ack} is the server accepting {@code copy} rather than {@code otherCopy} of the same
+     * message: not a duplicate, and carrying the timestamp only {@code copy} was sent with (echoed unchanged).
+     */
+    static boolean accepted(String ack, String copy, String otherCopy) {
+        String stamp = timestampOf(copy);
+        return stamp != null && !stamp.equals(timestampOf(otherCopy)) && !ack.contains(DUPLICATE)
+                && ack.contains(stamp);
+    }
+
+    /** The {@code "timestamp":"..."} member of a frame, or null if it has none. */
+    private static String timestampOf(String json) {
+        int at = json.indexOf(TIMESTAMP_FIELD);
+        int end = at < 0 ? -1 : json.indexOf('"', at + TIMESTAMP_FIELD.length());
+        return end < 0 ? null : json.substring(at, end + 1);
+    }
+
+    private String await(CompletableFuture<String> ack, long timeout) throws InterruptedException {
+        try {
+            return ack.get();
+        } catch (ExecutionException e) {
+            return failed(e, timeout);
+        }
+    }
+
+    private String failed(ExecutionException e, long timeout) {
+        if (e.getCause() instanceof TimeoutException) timeouts.onTimeout(timeout);
+        return null; // timed out or connection closed
+    }
+
+    // Same retry budget as a send, so a room endpoint that is down doesn't end the whole sender
+    private ChatWebSocketClient acquireWithRetry(int roomId) throws InterruptedException {
+        for (int attempt = 0; attempt <= MAX_RETRIES; attempt++) {
+            try {
+                return connectionManager.acquire(roomId);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                if (attempt < MAX_RETRIES) Thread.sleep(backoff.nextDelayMs());
+            }
+        }
+        return null;
+    }
+
+    private void recordFailure(ChatMessage msg) {
+        if (concurrency != null) concurrency.onFailure();
         // Record failed attempt with latency = -1
         metrics.recordFailure();
         metrics.recordLatency(new LatencyRecord(
                 System.currentTimeMillis(), msg.getMessageType(), -1, "FAIL", msg.getRoomId()));
-        return 0;
     }
 }
@@ -0,0 +1,84 @@
+package com.chatflow.client;
+
+import com.chatflow.client.sender.AdaptiveConcurrency;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyTest {
+
+    // Simulated server: 10 ms per message with nothing queued, 5,000 msg/s at most, so the knee is
+    // 5,000 x 0.010 = 50 messages in flight. Past it throughput stays flat and latency grows.
+    private static final long SERVICE_MS = 10;
+    private static final int CAPACITY = 5_000;
+
+    private static void simulateInterval(AdaptiveConcurrency c) {
+        int inFlight = c.getLimit();
+        int rate = (int) Math.min(inFlight * 1000L / SERVICE_MS, CAPACITY);
+        long latency = Math.max(SERVICE_MS, inFlight * 1000L / CAPACITY);
+        for (int i = 0; i < rate; i++) c.onAck(latency);
+        c.tick(1000);
+    }
+
+    @Test
+    void convergesNearTheKnee() {
+        AdaptiveConcurrency c = new AdaptiveConcurrency("test", 512);
+        assertEquals(AdaptiveConcurrency.INITIAL_LIMIT, c.getLimit());
+
+        for (int i = 0; i < 30; i++) simulateInterval(c);
+
+        int chosen = c.getChosenLimit();
+        assertTrue(chosen >= 50 && chosen <= 80, "chosen " + chosen);
+        assertEquals(50, c.getLittleEstimate(), 1.0);
+    }
+
+    @Test
+    void neverExceedsTheThreadCeiling() {
+        AdaptiveConcurrency c = new AdaptiveConcurrency("test", 20);
+        for (int i = 0; i < 10; i++) simulateInterval(c);
+        assertEquals(20, c.getLimit());
+    }
+
+    @Test
+    void failuresCutTheLimit() {
+        AdaptiveConcurrency c = new AdaptiveConcurrency("test", 512);
+        for (int i = 0; i < 3; i++) simulateInterval(c); // 8 -> 16 -> 32 -> 64
+        int before = c.getLimit();
+
+        c.onFailure();
+        int after = c.tick(1000);
+
+        assertEquals((int) (before * 0.75), after);
+    }
+
+    @Test
+    void tooFewAcks_holdsTheLimit() {
+        AdaptiveConcurrency c = new AdaptiveConcurrency("test", 512);
+        for (int i = 0; i < 10; i++) c.onAck(5);
+        assertEquals(AdaptiveConcurrency.INITIAL_LIMIT, c.tick(1000));
+    }
+
+    @Test
+    void acquire_blocksPastTheLimitUntilASlotIsReleased() throws Exception {
+        AdaptiveConcurrency c = new AdaptiveConcurrency("test", 512);
+        for (int i = 0; i < c.getLimit(); i++) c.acquire();
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread extra = new Thread(() -> {
+            try {
+                c.acquire();
+                acquired.countDown();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        extra.start();
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+
+        c.release();
+        assertTrue(acquired.await(1, TimeUnit.SECONDS));
+        extra.join();
+    }
+}
@@ -0,0 +1,74 @@
+package com.chatflow.client;
+
+import com.chatflow.client.connection.Backoff;
+import com.chatflow.client.connection.ReconnectBudget;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackoffTest {
+
+    @Test
+    void delays_stayWithinBaseAndThreeTimesPrevious_capped() {
+        Backoff backoff = new Backoff(10, 1_000);
+        long previous = 10;
+        for (int i = 0; i < 1_000; i++) {
+            long delay = backoff.nextDelayMs();
+            assertTrue(delay >= 10 && delay <= Math.min(1_000, previous * 3),
+                    "delay " + delay + " after " + previous);
+            previous = delay;
+        }
+    }
+
+    @Test
+    void delays_growUntilTheCap() {
+        Backoff backoff = new Backoff(10, 1_000);
+        long max = 0;
+        for (int i = 0; i < 200; i++) max = Math.max(max, backoff.nextDelayMs());
+        assertTrue(max > 500, "max " + max); // chance of staying under is negligible over 200 draws
+    }
+
+    @Test
+    void reset_startsFromTheBaseAgain() {
+        Backoff backoff = new Backoff(10, 1_000);
+        for (int i = 0; i < 50; i++) backoff.nextDelayMs();
+        backoff.reset();
+        assertTrue(backoff.nextDelayMs() <= 30);
+    }
+
+    @Test
+    void baseAtCap_alwaysReturnsBase() {
+        Backoff backoff = new Backoff(100, 100);
+        for (int i = 0; i < 10; i++) assertEquals(100, backoff.nextDelayMs());
+    }
+
+    @Test
+    void reconnectBudget_burstIsImmediate_thenPacedAtTheRate() throws Exception {
+        ReconnectBudget budget = new ReconnectBudget(50, 5);
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) budget.acquire();
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(50));
+
+        // 10 more at 50/s take about 200 ms
+        start = System.nanoTime();
+        for (int i = 0; i < 10; i++) budget.acquire();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMs >= 170 && elapsedMs < 1_000, "elapsed " + elapsedMs + " ms");
+    }
+
+    @Test
+    void reconnectBudget_refillsWhileIdle_upToTheBurst() throws Exception {
+        ReconnectBudget budget = new ReconnectBudget(100, 3);
+        for (int i = 0; i < 3; i++) budget.acquire();
+        Thread.sleep(100); // 10 tokens' worth, capped at 3
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) budget.acquire();
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(20));
+        start = System.nanoTime();
+        budget.acquire();
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(5));
+    }
+}
@@ -0,0 +1,62 @@
+package com.chatflow.client;
+
+import com.chatflow.client.metrics.DeliveryStats;
+import com.chatflow.client.metrics.IsoInstant;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeliveryStatsTest {
+
+    private static String frame(long messageId, String sent, String served) {
+        return "{\"userId\":\"1\",\"message\":\"hi\",\"timestamp\":\"" + sent + "\",\"messageId\":\"" + messageId
+                + "\",\"status\":\"OK\",\"serverTimestamp\":\"" + served + "\"}";
+    }
+
+    @Test
+    void isoInstant_matchesJavaTime() {
+        for (String s : new String[] {"2026-02-07T12:00:00Z", "1999-12-31T23:59:59.9Z",
+                "2024-02-29T00:00:00.123456789Z", "1970-01-01T00:00:00.050Z"}) {
+            assertEquals(Instant.parse(s).toEpochMilli(), IsoInstant.parseMillis(s, 0), s);
+        }
+        assertEquals(-1, IsoInstant.parseMillis("2026-02-07 12:00:00Z", 0));
+        assertEquals(-1, IsoInstant.parseMillis("2026-02-07T12:00:00", 0));
+        assertEquals(-1, IsoInstant.parseMillis("bad", 0));
+    }
+
+    @Test
+    void record_measuresFromSenderAndServerTimestamps() {
+        DeliveryStats stats = new DeliveryStats();
+        long sent = Instant.parse("2026-02-07T12:00:00Z").toEpochMilli();
+
+        stats.record(3, 1, frame(1, "2026-02-07T12:00:00Z", "2026-02-07T12:00:00.040Z"), sent + 100);
+
+        assertEquals(100, stats.getEndToEnd().getMax());
+        assertEquals(60, stats.getServerToReceiver().getMax());
+        assertFalse(stats.summary().isEmpty());
+    }
+
+    @Test
+    void fanOutSpread_firstToLastCopy() {
+        DeliveryStats stats = new DeliveryStats();
+        String f = frame(7, "2026-02-07T12:00:00Z", "2026-02-07T12:00:00Z");
+        long t = Instant.parse("2026-02-07T12:00:00Z").toEpochMilli();
+
+        stats.record(3, 7, f, t + 5);
+        stats.record(3, 7, f, t + 30);
+        stats.record(3, 7, f, t + 12);
+        stats.record(3, 8, frame(8, "2026-02-07T12:00:00Z", "2026-02-07T12:00:00Z"), t + 40); // one copy only
+
+        assertEquals(1, stats.getFanOutSpread().getCount());
+        assertEquals(25, stats.getFanOutSpread().getMax());
+    }
+
+    @Test
+    void frameWithoutTimestamp_ignored() {
+        DeliveryStats stats = new DeliveryStats();
+        stats.record(1, 1, "{\"status\":\"OK\"}", System.currentTimeMillis());
+        assertTrue(stats.isEmpty());
+    }
+}
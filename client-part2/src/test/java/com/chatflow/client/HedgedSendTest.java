@@ -0,0 +1,129 @@
+package com.chatflow.client;
+
+import com.chatflow.client.connection.ConnectionManager;
+import com.chatflow.client.connection.DeflateSettings;
+import com.chatflow.client.connection.ReconnectBudget;
+import com.chatflow.client.metrics.MetricsCollector;
+import com.chatflow.client.model.ChatMessage;
+import com.chatflow.client.sender.ResponseTimeouts;
+import com.chatflow.client.sender.SenderThread;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgedSendTest {
+
+    /**
+     * Loopback room in broadcast mode with dedup. Copies are handled in order on one thread after a per-copy
+     * delay. The first copy of an id is broadcast to the other members first and to its sender 100 ms later;
+     * a later copy gets a duplicate ack.
+     */
+    private static final class BroadcastRoom extends WebSocketServer {
+        final List<WebSocket> members = new CopyOnWriteArrayList<>();
+        final Set<String> seen = ConcurrentHashMap.newKeySet();
+        final Map<String, AtomicInteger> copies = new ConcurrentHashMap<>();
+        final ScheduledExecutorService loop = Executors.newSingleThreadScheduledExecutor();
+        final CountDownLatch started = new CountDownLatch(1);
+        final long[] delayMsByCopy;
+
+        BroadcastRoom(long... delayMsByCopy) {
+            super(new InetSocketAddress("127.0.0.1", 0));
+            setReuseAddr(true);
+            this.delayMsByCopy = delayMsByCopy;
+        }
+
+        @Override public void onOpen(WebSocket conn, ClientHandshake handshake) { members.add(conn); }
+        @Override public void onClose(WebSocket conn, int code, String reason, boolean remote) { members.remove(conn); }
+        @Override public void onError(WebSocket conn, Exception ex) { }
+        @Override public void onStart() { started.countDown(); }
+
+        @Override
+        public void onMessage(WebSocket sender, String message) {
+            String id = field(message, "messageId");
+            int copy = copies.computeIfAbsent(id, k -> new AtomicInteger()).getAndIncrement();
+            loop.schedule(() -> handle(sender, message, id), delayMsByCopy[copy], TimeUnit.MILLISECONDS);
+        }
+
+        private void handle(WebSocket sender, String message, String id) {
+            String ack = "{\"status\":\"OK\",\"messageId\":\"" + id + "\",\"timestamp\":\""
+                    + field(message, "timestamp") + "\"";
+            if (!seen.add(id)) {
+                sender.send(ack + ",\"duplicate\":true}");
+                return;
+            }
+            for (WebSocket m : members) if (m != sender) m.send(ack + "}");
+            loop.schedule(() -> sender.send(ack + "}"), 100, TimeUnit.MILLISECONDS);
+        }
+
+        private static String field(String json, String name) {
+            int at = json.indexOf("\"" + name + "\":\"") + name.length() + 4;
+            return json.substring(at, json.indexOf('"', at));
+        }
+    }
+
+    private BroadcastRoom room;
+    private ConnectionManager manager;
+    private final MetricsCollector metrics = new MetricsCollector(false);
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (manager != null) manager.shutdown();
+        room.loop.shutdownNow();
+        room.stop(1000);
+    }
+
+    private ResponseTimeouts sendOne(long... delayMsByCopy) throws Exception {
+        room = new BroadcastRoom(delayMsByCopy);
+        room.start();
+        assertTrue(room.started.await(5, TimeUnit.SECONDS));
+        manager = new ConnectionManager("ws://127.0.0.1:" + room.getPort(), metrics, DeflateSettings.disabled(), 2,
+                new ReconnectBudget(1000, 1000));
+        manager.release(manager.acquire(1));
+        manager.release(manager.acquire(1));
+
+        ResponseTimeouts timeouts = new ResponseTimeouts(false, 1, 5000, 5000, true);
+        for (int i = 0; i < 200; i++) timeouts.record(20);
+        timeouts.rotate(); // hedge after about 20 ms
+
+        var queue = new LinkedBlockingQueue<ChatMessage>();
+        queue.add(new ChatMessage(1, "user1", "hello", "TEXT", 1));
+        new SenderThread(queue, manager, metrics, 1, null, null, timeouts).run();
+        assertEquals(1, metrics.getSuccessCount());
+        assertEquals(1, timeouts.getHedges());
+        return timeouts;
+    }
+
+    @Test
+    void primaryAccepted_itsBroadcastOnTheHedgeSocketIsNotAHedgeWin() throws Exception {
+        // The primary is accepted after 200 ms; its broadcast reaches the hedge socket before its sender
+        ResponseTimeouts timeouts = sendOne(200, 400);
+
+        assertEquals(0, timeouts.getHedgeWins());
+    }
+
+    @Test
+    void hedgeAccepted_isAHedgeWinWhicheverSocketSeesItFirst() throws Exception {
+        // The primary stalls; the hedge is accepted at once and its broadcast reaches the primary socket first
+        ResponseTimeouts timeouts = sendOne(1000, 0);
+
+        assertEquals(1, timeouts.getHedgeWins());
+    }
+}
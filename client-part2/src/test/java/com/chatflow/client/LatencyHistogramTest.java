@@ -0,0 +1,77 @@
+package com.chatflow.client;
+
+import com.chatflow.client.metrics.LatencyHistogram;
+import com.chatflow.client.metrics.MetricsCollector;
+import com.chatflow.client.metrics.MetricsSnapshot;
+import com.chatflow.client.model.LatencyRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentiles_withinBucketPrecision() {
+        LatencyHistogram h = new LatencyHistogram();
+        long[] values = new long[100_000];
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(rand.nextGaussian() * 1.2 + 4); // ~55ms median, long tail
+            h.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double q : new double[]{0.5, 0.95, 0.99}) {
+            long exact = values[(int) (values.length * q)];
+            long approx = h.percentile(q);
+            assertTrue(Math.abs(approx - exact) <= Math.max(1, exact / 60),
+                    "q=" + q + " exact=" + exact + " approx=" + approx);
+        }
+        assertEquals(values[0], h.getMin());
+        assertEquals(values[values.length - 1], h.getMax());
+    }
+
+    @Test
+    void compactRoundTrip_andMerge_matchSingleHistogram() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        LatencyHistogram all = new LatencyHistogram();
+        for (int i = 0; i < 5_000; i++) {
+            long v = i % 700;
+            (i % 2 == 0 ? a : b).record(v);
+            all.record(v);
+        }
+
+        LatencyHistogram merged = LatencyHistogram.fromCompact(a.toCompact());
+        merged.merge(LatencyHistogram.fromCompact(b.toCompact()));
+
+        assertEquals(all.getCount(), merged.getCount());
+        assertEquals(all.getMean(), merged.getMean(), 1e-9);
+        assertEquals(all.percentile(0.99), merged.percentile(0.99));
+    }
+
+    @Test
+    void snapshotsFromTwoWorkers_mergeCountsAndSeconds() {
+        long epoch = 1_000_000L;
+        MetricsCollector w1 = new MetricsCollector(false);
+        MetricsCollector w2 = new MetricsCollector(false);
+        w1.setEpoch(epoch);
+        w2.setEpoch(epoch);
+        w1.recordSuccess();
+        w1.recordLatency(new LatencyRecord(epoch + 100, "TEXT", 10, "OK", 1));
+        w2.recordSuccess();
+        w2.recordLatency(new LatencyRecord(epoch + 2_500, "JOIN", 30, "OK", 2));
+
+        MetricsSnapshot merged = new MetricsSnapshot();
+        merged.merge(w1.snapshot());
+        merged.merge(w2.snapshot());
+
+        assertEquals(2, merged.getSuccess());
+        assertEquals(2, merged.getHistogram().getCount());
+        assertEquals(30, merged.getHistogram().getMax());
+        assertTrue(w1.getLatencyRecords().isEmpty(), "workers keep no raw records");
+    }
+}
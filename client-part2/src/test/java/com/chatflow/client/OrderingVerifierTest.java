@@ -0,0 +1,66 @@
+package com.chatflow.client;
+
+import com.chatflow.client.metrics.MetricsCollector;
+import com.chatflow.client.metrics.OrderingVerifier;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderingVerifierTest {
+
+    private static String frame(long seq) {
+        return "{\"userId\":\"1\",\"message\":\"hi\",\"status\":\"OK\",\"seq\":" + seq + "}";
+    }
+
+    @Test
+    void inOrder_midStreamStart_noGaps() {
+        MetricsCollector metrics = new MetricsCollector(false);
+        OrderingVerifier verifier = new OrderingVerifier();
+
+        for (long seq = 40; seq <= 50; seq++) verifier.accept(frame(seq), metrics);
+
+        assertEquals(11, metrics.getSequencedFrames());
+        assertEquals(0, metrics.getSequenceGaps());
+        assertEquals(0, metrics.getReorderedFrames());
+    }
+
+    @Test
+    void gapAndLateFill_countedOnce_each() {
+        MetricsCollector metrics = new MetricsCollector(false);
+        OrderingVerifier verifier = new OrderingVerifier();
+
+        verifier.accept(frame(1), metrics);
+        verifier.accept(frame(4), metrics); // 2 and 3 missing
+        verifier.accept(frame(2), metrics); // arrives late
+        verifier.accept(frame(5), metrics);
+
+        assertEquals(2, metrics.getSequenceGaps());
+        assertEquals(1, metrics.getReorderedFrames());
+    }
+
+    @Test
+    void framesWithoutSeq_ignored() {
+        MetricsCollector metrics = new MetricsCollector(false);
+        OrderingVerifier verifier = new OrderingVerifier();
+
+        verifier.accept("{\"status\":\"OK\",\"message\":\"say \\\"seq\\\":5\"}", metrics);
+        verifier.accept("{\"status\":\"ERROR\",\"error\":\"x\"}", metrics);
+
+        assertEquals(0, metrics.getSequencedFrames());
+    }
+
+    @Test
+    void startAfter_continuesFromThePreviousConnection() {
+        MetricsCollector metrics = new MetricsCollector(false);
+        OrderingVerifier old = new OrderingVerifier();
+        for (long seq = 1; seq <= 3; seq++) old.accept(frame(seq), metrics);
+
+        OrderingVerifier resumed = new OrderingVerifier();
+        resumed.startAfter(old.getHighest());
+        resumed.accept(frame(4), metrics); // replayed
+        resumed.accept(frame(6), metrics); // 5 lost
+
+        assertEquals(6, resumed.getHighest());
+        assertEquals(1, metrics.getSequenceGaps());
+    }
+}
@@ -0,0 +1,63 @@
+package com.chatflow.client;
+
+import com.chatflow.client.sender.ResponseTimeouts;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseTimeoutsTest {
+
+    private static void window(ResponseTimeouts t, int count, long latencyMs) {
+        for (int i = 0; i < count; i++) t.record(latencyMs);
+        t.rotate();
+    }
+
+    @Test
+    void fixed_isFiveSecondsAndNeverHedges() {
+        ResponseTimeouts t = ResponseTimeouts.fixed();
+        window(t, 1000, 3);
+        assertEquals(5000, t.timeoutMs());
+        assertEquals(0, t.hedgeDelayMs());
+    }
+
+    @Test
+    void adaptive_followsP99TimesMultiplierWithinBounds() {
+        ResponseTimeouts t = new ResponseTimeouts(true, 3, 50, 2000, false);
+        assertEquals(2000, t.timeoutMs()); // ceiling until a window has enough samples
+
+        window(t, 990, 10);
+        window(t, 0, 0); // empty window keeps the last value
+        for (int i = 0; i < 990; i++) t.record(10);
+        window(t, 10, 40);
+        assertEquals(120, t.timeoutMs());
+
+        window(t, 1000, 5);
+        assertEquals(50, t.timeoutMs()); // floor
+
+        window(t, 1000, 1500);
+        assertEquals(2000, t.timeoutMs()); // ceiling
+    }
+
+    @Test
+    void timeoutsCountAsSlowSamples_soTheTimeoutBacksOff() {
+        ResponseTimeouts t = new ResponseTimeouts(true, 2, 10, 5000, false);
+        window(t, 200, 20);
+        assertEquals(40, t.timeoutMs());
+
+        // A stall: everything times out at the current timeout, which then doubles each window
+        for (int i = 0; i < 200; i++) t.onTimeout(t.timeoutMs());
+        t.rotate();
+        assertEquals(80, t.timeoutMs());
+        assertEquals(200, t.getTimeouts());
+    }
+
+    @Test
+    void hedge_delayIsLiveP95() {
+        ResponseTimeouts t = new ResponseTimeouts(false, 3, 50, 5000, true);
+        assertEquals(0, t.hedgeDelayMs());
+        for (int i = 0; i < 940; i++) t.record(4);
+        window(t, 60, 30);
+        assertEquals(30, t.hedgeDelayMs());
+        assertEquals(5000, t.timeoutMs()); // not adaptive: timeout stays fixed
+    }
+}
@@ -0,0 +1,113 @@
+package com.chatflow.client;
+
+import com.chatflow.client.model.ChatMessage;
+import com.chatflow.client.scenario.Scenario;
+import com.chatflow.client.scenario.ScenarioGenerator;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScenarioGeneratorTest {
+
+    private static List<ChatMessage> generate(String json) throws InterruptedException {
+        Scenario scenario = Scenario.parse(new StringReader(json));
+        LinkedBlockingQueue<ChatMessage> queue = new LinkedBlockingQueue<>();
+        Thread t = new Thread(new ScenarioGenerator(queue, scenario));
+        t.start();
+        t.join(10_000);
+        return new ArrayList<>(queue);
+    }
+
+    private static JsonObject parse(ChatMessage msg) {
+        return JsonParser.parseString(msg.toJson()).getAsJsonObject();
+    }
+
+    @Test
+    void defaults_matchOriginalRun() {
+        Scenario s = Scenario.defaults();
+
+        assertEquals(500_000, s.getTotalMessages());
+        assertEquals(2, s.getPhases().size());
+        assertEquals(32, s.getPhases().get(0).getThreads());
+        assertEquals(32_000, s.getPhases().get(0).getMessages());
+        assertEquals(512, s.getPhases().get(1).getThreads());
+        assertEquals(468_000, s.getPhases().get(1).getMessages());
+    }
+
+    @Test
+    void invalidTypeMix_rejected() {
+        assertThrows(IllegalArgumentException.class, () -> Scenario.parse(new StringReader(
+                "{\"typeMix\":{\"text\":50,\"join\":5,\"leave\":5}}")));
+    }
+
+    @Test
+    void sizedPhases_defineTotal() throws InterruptedException {
+        List<ChatMessage> msgs = generate("""
+                {"totalMessages": 999, "phases": [{"threads": 1, "messages": 300}, {"threads": 2, "messages": 200}]}""");
+
+        assertEquals(500, msgs.size());
+    }
+
+    @Test
+    void zipfRooms_skewTowardRoomOne() throws InterruptedException {
+        List<ChatMessage> msgs = generate("""
+                {"totalMessages": 20000, "rooms": 20, "roomPopularity": {"distribution": "zipf", "exponent": 1.2},
+                 "phases": [{"threads": 1}]}""");
+
+        int[] perRoom = new int[21];
+        for (ChatMessage m : msgs) perRoom[m.getRoomId()]++;
+        assertTrue(perRoom[1] > 5 * perRoom[20], "room 1: " + perRoom[1] + ", room 20: " + perRoom[20]);
+    }
+
+    @Test
+    void sessions_followJoinTextLeave() throws InterruptedException {
+        List<ChatMessage> msgs = generate("""
+                {"totalMessages": 200, "sessions": {"enabled": true, "concurrent": 1, "textMin": 2, "textMax": 4},
+                 "phases": [{"threads": 1}]}""");
+
+        String user = null;
+        int room = -1;
+        int texts = 0;
+        for (ChatMessage m : msgs) {
+            JsonObject obj = parse(m);
+            switch (m.getMessageType()) {
+                case "JOIN" -> {
+                    assertNull(user, "JOIN before previous session ended");
+                    user = obj.get("userId").getAsString();
+                    room = m.getRoomId();
+                    texts = 0;
+                }
+                case "TEXT" -> {
+                    assertEquals(user, obj.get("userId").getAsString());
+                    assertEquals(room, m.getRoomId());
+                    texts++;
+                }
+                default -> {
+                    assertEquals(user, obj.get("userId").getAsString());
+                    assertTrue(texts >= 2 && texts <= 4, "texts in session: " + texts);
+                    user = null;
+                }
+            }
+        }
+    }
+
+    @Test
+    void lognormalSizes_stayWithinBounds() throws InterruptedException {
+        List<ChatMessage> msgs = generate("""
+                {"totalMessages": 5000,
+                 "messageSize": {"distribution": "lognormal", "median": 60, "sigma": 1.5, "min": 5, "max": 120},
+                 "phases": [{"threads": 1}]}""");
+
+        for (ChatMessage m : msgs) {
+            int len = parse(m).get("message").getAsString().length();
+            assertTrue(len >= 5 && len <= 120, "length " + len);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.chatflow.client;
+
+import com.chatflow.client.connection.SubscriberPool;
+import com.chatflow.client.metrics.MetricsCollector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Drives one subscriber against a loopback socket that writes canned upgrade responses and frames. */
+class SubscriberPoolTest {
+
+    private static final String SWITCHING = "HTTP/1.1 101 Switching Protocols\r\n"
+            + "Upgrade: websocket\r\nConnection: Upgrade\r\n\r\n";
+
+    private ServerSocket listener;
+    private Socket socket;
+    private final MetricsCollector metrics = new MetricsCollector(false);
+    private SubscriberPool pool;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        pool = new SubscriberPool("ws://127.0.0.1:" + listener.getLocalPort(), 1, 1, metrics);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        pool.close();
+        if (socket != null) socket.close();
+        listener.close();
+    }
+
+    /** Opens the pool, accepts its one connection and reads the upgrade request. */
+    private String accept() throws IOException {
+        pool.open();
+        listener.setSoTimeout(5_000);
+        socket = listener.accept();
+        socket.setSoTimeout(5_000);
+        socket.setTcpNoDelay(true);
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        InputStream in = socket.getInputStream();
+        while (!request.toString(StandardCharsets.US_ASCII).endsWith("\r\n\r\n")) {
+            int b = in.read();
+            if (b < 0) throw new IOException("closed during upgrade");
+            request.write(b);
+        }
+        return request.toString(StandardCharsets.US_ASCII);
+    }
+
+    private void send(byte[]... chunks) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        for (byte[] chunk : chunks) out.write(chunk);
+        out.flush();
+    }
+
+    private static byte[] ascii(String s) { return s.getBytes(StandardCharsets.US_ASCII); }
+
+    /** An unmasked server frame with the shortest length header for the payload. */
+    private static byte[] frame(int b0, byte[] payload) {
+        int n = payload.length;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(b0);
+        if (n < 126) {
+            out.write(n);
+        } else if (n < 65_536) {
+            out.write(126);
+            out.write(n >>> 8);
+            out.write(n);
+        } else {
+            out.write(127);
+            for (int shift = 56; shift >= 0; shift -= 8) out.write((int) ((long) n >>> shift));
+        }
+        out.writeBytes(payload);
+        return out.toByteArray();
+    }
+
+    private static byte[] text(String json) { return frame(0x81, json.getBytes(StandardCharsets.UTF_8)); }
+
+    /** A broadcast of {@code size} bytes or more, ending in the seq the ordering check reads. */
+    private static String broadcast(long seq, int size) {
+        String tail = ",\"seq\":" + seq + "}";
+        StringBuilder sb = new StringBuilder("{\"message\":\"");
+        while (sb.length() + 1 + tail.length() < size) sb.append('x');
+        return sb.append('"').append(tail).toString();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] p : parts) out.writeBytes(p);
+        return out.toByteArray();
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        assertTrue(condition.getAsBoolean(), what);
+    }
+
+    @Test
+    void upgradeRequest_isAPlainVersion13Upgrade() throws Exception {
+        String request = accept();
+        assertTrue(request.startsWith("GET /chat/1 HTTP/1.1\r\n"), request);
+        assertTrue(request.contains("Upgrade: websocket\r\n"));
+        assertTrue(request.contains("Sec-WebSocket-Version: 13\r\n"));
+        assertFalse(request.contains("Sec-WebSocket-Extensions"));
+    }
+
+    @Test
+    void framesInTheSameReadAsTheUpgrade_areCounted() throws Exception {
+        accept();
+        send(concat(ascii(SWITCHING), text(broadcast(1, 20)), text(broadcast(2, 20))));
+
+        assertTrue(pool.awaitSettled(5_000));
+        await(() -> pool.getFrames() == 2, "frames=" + pool.getFrames());
+        assertEquals(1, pool.getOpen());
+        assertEquals(2, metrics.getSequencedFrames());
+        assertEquals(0, metrics.getSequenceGaps());
+    }
+
+    @Test
+    void upgradeResponseSplitAcrossReads_waitsForTheBlankLine() throws Exception {
+        accept();
+        byte[] response = ascii(SWITCHING);
+        send(Arrays.copyOf(response, 20));
+        Thread.sleep(50);
+        assertEquals(0, pool.getOpen());
+        send(Arrays.copyOfRange(response, 20, response.length));
+
+        assertTrue(pool.awaitSettled(5_000));
+        assertEquals(1, pool.getOpen());
+    }
+
+    @Test
+    void frameSplitAcrossTwoReads_isReassembled() throws Exception {
+        accept();
+        send(ascii(SWITCHING));
+        assertTrue(pool.awaitSettled(5_000));
+
+        byte[] first = text(broadcast(1, 300));
+        byte[] second = text(broadcast(2, 40));
+        // Cut inside the first frame's extended length header, then inside the second frame's payload
+        byte[] both = concat(first, second);
+        send(Arrays.copyOf(both, 3));
+        Thread.sleep(50);
+        send(Arrays.copyOfRange(both, 3, first.length + 10));
+        await(() -> pool.getFrames() == 1, "first frame");
+        Thread.sleep(50);
+        assertEquals(1, pool.getFrames());
+        send(Arrays.copyOfRange(both, first.length + 10, both.length));
+
+        await(() -> pool.getFrames() == 2, "frames=" + pool.getFrames());
+        assertEquals(2, metrics.getSequencedFrames());
+        assertEquals(0, metrics.getSequenceGaps());
+        assertEquals(0, pool.getDropped());
+    }
+
+    @Test
+    void extendedLengths_126And127Headers() throws Exception {
+        accept();
+        send(ascii(SWITCHING));
+        assertTrue(pool.awaitSettled(5_000));
+
+        byte[] medium = text(broadcast(1, 1_000));
+        assertEquals(126, medium[1]);
+        // A 64-bit length header for a payload that would fit in less; still a valid frame to parse
+        byte[] payload = broadcast(2, 200).getBytes(StandardCharsets.UTF_8);
+        byte[] large = concat(new byte[] {(byte) 0x81, 127, 0, 0, 0, 0, 0, 0, 0, (byte) payload.length}, payload);
+        byte[] largest = text(broadcast(3, 60_000));
+        send(concat(medium, large, largest));
+
+        await(() -> pool.getFrames() == 3, "frames=" + pool.getFrames());
+        assertEquals(3, metrics.getSequencedFrames());
+        assertEquals(0, metrics.getSequenceGaps());
+    }
+
+    @Test
+    void frameLargerThanTheReadBuffer_dropsTheSubscriber() throws Exception {
+        accept();
+        send(ascii(SWITCHING));
+        assertTrue(pool.awaitSettled(5_000));
+
+        send(Arrays.copyOf(text(broadcast(1, 70_000)), 100));
+
+        await(() -> pool.getDropped() == 1, "dropped");
+        assertEquals(0, pool.getOpen());
+        assertEquals(0, pool.getFrames());
+    }
+
+    @Test
+    void fragmentedTextMessage_countsOnceWhenComplete() throws Exception {
+        accept();
+        send(ascii(SWITCHING));
+        assertTrue(pool.awaitSettled(5_000));
+
+        // The seq only parses from the whole message, so a fragment counted on its own would show up
+        String message = broadcast(5, 120);
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        send(frame(0x01, Arrays.copyOf(bytes, 50)),                   // text, not final
+                frame(0x00, Arrays.copyOfRange(bytes, 50, 100)),      // continuation
+                frame(0x80, Arrays.copyOfRange(bytes, 100, bytes.length)), // final continuation
+                text(broadcast(6, 20)));
+
+        await(() -> pool.getFrames() == 2, "frames=" + pool.getFrames());
+        assertEquals(2, metrics.getSequencedFrames());
+        assertEquals(0, metrics.getSequenceGaps());
+    }
+
+    @Test
+    void ping_getsAMaskedPongWithTheSamePayload() throws Exception {
+        accept();
+        send(ascii(SWITCHING));
+        assertTrue(pool.awaitSettled(5_000));
+
+        send(frame(0x89, ascii("hello")));
+
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        assertEquals(0x8A, in.readUnsignedByte());
+        int b1 = in.readUnsignedByte();
+        assertEquals(0x80, b1 & 0x80, "client frames are masked");
+        assertEquals(5, b1 & 0x7F);
+        byte[] mask = new byte[4];
+        in.readFully(mask);
+        byte[] payload = new byte[5];
+        in.readFully(payload);
+        for (int i = 0; i < payload.length; i++) payload[i] ^= mask[i & 3];
+        assertEquals("hello", new String(payload, StandardCharsets.US_ASCII));
+        assertEquals(1, pool.getOpen());
+        assertEquals(0, pool.getFrames());
+    }
+
+    @Test
+    void closeFrame_isEchoed_andTheSubscriberDropped() throws Exception {
+        accept();
+        send(ascii(SWITCHING));
+        assertTrue(pool.awaitSettled(5_000));
+
+        send(frame(0x88, new byte[] {0x03, (byte) 0xE9, 'b', 'y', 'e'})); // 1001 going away
+
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        assertEquals(0x88, in.readUnsignedByte());
+        assertEquals(0x82, in.readUnsignedByte()); // masked, 2 bytes: the status code only
+        byte[] mask = new byte[4];
+        in.readFully(mask);
+        int code = (((in.readUnsignedByte() ^ mask[0]) & 0xFF) << 8) | ((in.readUnsignedByte() ^ mask[1]) & 0xFF);
+        assertEquals(1001, code);
+        assertEquals(-1, in.read(), "client closes the socket after its close frame");
+
+        await(() -> pool.getDropped() == 1, "dropped");
+        assertEquals(0, pool.getOpen());
+    }
+
+    @Test
+    void rejectedUpgrade_countsAsFailed() throws Exception {
+        accept();
+        send(ascii("HTTP/1.1 503 Service Unavailable\r\nContent-Length: 0\r\n\r\n"));
+
+        assertTrue(pool.awaitSettled(5_000));
+        assertEquals(1, pool.getFailed());
+        assertEquals(0, pool.getOpen());
+        assertEquals(0, pool.getDropped());
+        assertEquals(-1, socket.getInputStream().read());
+    }
+
+    @Test
+    void close_sendsANormalClosureFrame() throws Exception {
+        accept();
+        send(ascii(SWITCHING));
+        assertTrue(pool.awaitSettled(5_000));
+
+        pool.close();
+
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        assertEquals(0x88, in.readUnsignedByte());
+        assertEquals(0x82, in.readUnsignedByte());
+        byte[] mask = new byte[4];
+        in.readFully(mask);
+        int code = (((in.readUnsignedByte() ^ mask[0]) & 0xFF) << 8) | ((in.readUnsignedByte() ^ mask[1]) & 0xFF);
+        assertEquals(1000, code);
+    }
+}
@@ -0,0 +1,235 @@
+package com.chatflow.client.connection;
+
+import com.chatflow.client.connection.ConnectionManager.ChatWebSocketClient;
+import com.chatflow.client.metrics.MetricsCollector;
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.handshake.ServerHandshakeBuilder;
+import org.java_websocket.server.WebSocketServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionManagerTest {
+
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(16); // past the 15 s idle ping threshold
+
+    /** Loopback server that records handshakes and pings, and issues a resume token per handshake. */
+    private static final class TestServer extends WebSocketServer {
+        final List<String> handshakes = new CopyOnWriteArrayList<>();
+        final AtomicInteger open = new AtomicInteger();
+        final AtomicInteger pings = new AtomicInteger();
+        final AtomicInteger tokens = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+
+        TestServer() {
+            super(new InetSocketAddress("127.0.0.1", 0));
+            setReuseAddr(true);
+        }
+
+        @Override
+        public ServerHandshakeBuilder onWebsocketHandshakeReceivedAsServer(WebSocket conn, Draft draft,
+                                                                           ClientHandshake request)
+                throws InvalidDataException {
+            ServerHandshakeBuilder response = super.onWebsocketHandshakeReceivedAsServer(conn, draft, request);
+            response.put("X-Resume-Token", "token-" + tokens.incrementAndGet());
+            return response;
+        }
+
+        @Override public void onOpen(WebSocket conn, ClientHandshake handshake) {
+            handshakes.add(handshake.getResourceDescriptor());
+            open.incrementAndGet();
+        }
+        @Override public void onClose(WebSocket conn, int code, String reason, boolean remote) { open.decrementAndGet(); }
+        @Override public void onMessage(WebSocket conn, String message) { }
+        @Override public void onError(WebSocket conn, Exception ex) { }
+        @Override public void onStart() { started.countDown(); }
+
+        @Override
+        public void onWebsocketPing(WebSocket conn, Framedata f) {
+            pings.incrementAndGet();
+            super.onWebsocketPing(conn, f);
+        }
+    }
+
+    private TestServer server;
+    private String url;
+    private final MetricsCollector metrics = new MetricsCollector(false);
+    private ConnectionManager manager;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new TestServer();
+        server.start();
+        assertTrue(server.started.await(5, TimeUnit.SECONDS));
+        url = "ws://127.0.0.1:" + server.getPort();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (manager != null) manager.shutdown();
+        server.stop(1000);
+    }
+
+    private ConnectionManager pooled(int socketsPerRoom) {
+        manager = new ConnectionManager(url, metrics, DeflateSettings.disabled(), socketsPerRoom,
+                new ReconnectBudget(1000, 1000));
+        return manager;
+    }
+
+    private void awaitServerOpen(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.open.get() != expected && System.nanoTime() < deadline) Thread.sleep(5);
+        assertEquals(expected, server.open.get());
+    }
+
+    @Test
+    void pooledAcquire_roundRobinsOverFixedSocketsPerRoom() throws Exception {
+        ConnectionManager cm = pooled(2);
+        ChatWebSocketClient[] room1 = new ChatWebSocketClient[4];
+        for (int i = 0; i < room1.length; i++) room1[i] = cm.acquire(1);
+
+        assertNotSame(room1[0], room1[1]);
+        assertSame(room1[0], room1[2]);
+        assertSame(room1[1], room1[3]);
+        ChatWebSocketClient room2 = cm.acquire(2);
+        assertEquals(3, cm.getPooledSockets());
+        awaitServerOpen(3);
+        assertEquals(3, metrics.getConnections());
+
+        // Releasing a pooled socket keeps it open for the next phase
+        for (ChatWebSocketClient c : room1) cm.release(c);
+        cm.release(room2);
+        assertTrue(room1[0].isOpen());
+        ChatWebSocketClient again = cm.acquire(1);
+        assertTrue(again == room1[0] || again == room1[1]);
+        assertEquals(3, metrics.getConnections());
+    }
+
+    @Test
+    void acquireAlternate_returnsAnotherOpenSocketOfTheRoom() throws Exception {
+        ConnectionManager cm = pooled(2);
+        ChatWebSocketClient first = cm.acquire(1);
+        ChatWebSocketClient second = cm.acquire(1);
+
+        for (int i = 0; i < 4; i++) {
+            ChatWebSocketClient alternate = cm.acquireAlternate(1, first);
+            assertSame(second, alternate);
+            cm.release(alternate);
+        }
+        assertNull(cm.acquireAlternate(7, first)); // no pool for that room yet
+
+        second.closeBlocking();
+        assertNull(cm.acquireAlternate(1, first)); // the only other socket is closed
+    }
+
+    @Test
+    void acquireAlternate_nullWithOneSocketPerRoom() throws Exception {
+        ConnectionManager cm = pooled(1);
+        ChatWebSocketClient only = cm.acquire(1);
+        assertNull(cm.acquireAlternate(1, only));
+    }
+
+    @Test
+    void reconnect_replacesSharedSocketOnce_andPresentsResumeToken() throws Exception {
+        ConnectionManager cm = pooled(1);
+        ChatWebSocketClient old = cm.acquire(1);
+        cm.acquire(1); // a second sender on the same socket
+        old.closeBlocking();
+
+        // Both senders notice the dead socket; only the first reopens it, the other picks up the replacement
+        CompletableFuture<ChatWebSocketClient> a = CompletableFuture.supplyAsync(() -> reconnect(cm, old));
+        CompletableFuture<ChatWebSocketClient> b = CompletableFuture.supplyAsync(() -> reconnect(cm, old));
+        ChatWebSocketClient replacement = a.get(10, TimeUnit.SECONDS);
+        assertSame(replacement, b.get(10, TimeUnit.SECONDS));
+        assertNotSame(old, replacement);
+        assertTrue(replacement.isOpen());
+        assertEquals(1, metrics.getReconnections());
+
+        assertEquals(2, server.handshakes.size());
+        assertEquals("/chat/1", server.handshakes.get(0));
+        assertEquals("/chat/1?resume=token-1&lastSeq=0", server.handshakes.get(1));
+    }
+
+    private static ChatWebSocketClient reconnect(ConnectionManager cm, ChatWebSocketClient old) {
+        try {
+            return cm.reconnect(old);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void checkIdle_evictsDeadIdleSockets_pingsLiveOnes_leavesBusyOnesAlone() throws Exception {
+        ConnectionManager cm = pooled(3);
+        ChatWebSocketClient dead = cm.acquire(1);
+        ChatWebSocketClient live = cm.acquire(1);
+        ChatWebSocketClient busy = cm.acquire(1);
+        cm.release(dead);
+        cm.release(live);
+        dead.closeBlocking();
+        busy.closeBlocking(); // dead too, but a sender still holds it
+
+        cm.checkIdle(System.nanoTime() + IDLE_NANOS);
+
+        assertEquals(1, cm.getPooledSockets());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.pings.get() == 0 && System.nanoTime() < deadline) Thread.sleep(5);
+        assertEquals(1, server.pings.get());
+        assertTrue(live.isOpen());
+
+        // The evicted slot opens afresh on its next turn; the busy one is still there, so it is reconnected
+        Set<ChatWebSocketClient> next = new HashSet<>();
+        for (int i = 0; i < 3; i++) next.add(cm.acquire(1));
+        assertTrue(next.contains(live));
+        assertFalse(next.contains(dead));
+        assertFalse(next.contains(busy));
+        assertEquals(3, cm.getPooledSockets());
+        assertEquals(1, metrics.getReconnections());
+    }
+
+    @Test
+    void checkIdle_leavesSocketsReleasedRecently() throws Exception {
+        ConnectionManager cm = pooled(1);
+        ChatWebSocketClient c = cm.acquire(1);
+        cm.release(c);
+        c.closeBlocking();
+
+        cm.checkIdle(System.nanoTime());
+
+        // Not evicted: the next acquire finds the closed socket in its slot and replaces it
+        assertNotSame(c, cm.acquire(1));
+        assertEquals(1, metrics.getReconnections());
+        assertEquals(0, server.pings.get());
+    }
+
+    @Test
+    void dedicatedMode_opensPerAcquire_closesOnRelease() throws Exception {
+        manager = new ConnectionManager(url, metrics);
+        ChatWebSocketClient a = manager.acquire(1);
+        ChatWebSocketClient b = manager.acquire(1);
+        assertNotSame(a, b);
+        awaitServerOpen(2);
+
+        manager.release(a);
+        awaitServerOpen(1);
+        assertFalse(a.isOpen());
+        assertTrue(b.isOpen());
+        assertEquals(0, manager.getPooledSockets());
+    }
+}
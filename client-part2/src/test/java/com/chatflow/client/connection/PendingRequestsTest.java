@@ -0,0 +1,143 @@
+package com.chatflow.client.connection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PendingRequestsTest {
+
+    private static final long NOW = 1_000_000_000L;
+    private static final long SECOND = 1_000_000_000L;
+    private static final int MASK = 15; // the table starts with 16 slots
+
+    /** {@code count} ids, from {@code after} up, whose home slot in a fresh table is {@code home}. */
+    private static List<Long> idsAt(int home, int count, long after) {
+        List<Long> ids = new ArrayList<>();
+        for (long id = after + 1; ids.size() < count; id++) {
+            if (PendingRequests.slot(id, MASK) == home) ids.add(id);
+        }
+        return ids;
+    }
+
+    private static CompletableFuture<String> register(PendingRequests pending, long id, long deadline) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        pending.register(id, future, deadline);
+        return future;
+    }
+
+    @Test
+    void collidingIds_eachCompletesItsOwnFuture() throws Exception {
+        PendingRequests pending = new PendingRequests(1000);
+        List<Long> ids = idsAt(5, 3, 0);
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (long id : ids) futures.add(register(pending, id, NOW + SECOND));
+
+        assertEquals(PendingRequests.Match.COMPLETED, pending.complete(ids.get(1), "b"));
+        assertEquals(PendingRequests.Match.COMPLETED, pending.complete(ids.get(2), "c"));
+        assertEquals(PendingRequests.Match.COMPLETED, pending.complete(ids.get(0), "a"));
+        assertEquals(List.of("a", "b", "c"), List.of(futures.get(0).get(), futures.get(1).get(), futures.get(2).get()));
+        assertEquals(PendingRequests.Match.UNKNOWN, pending.complete(ids.get(0), "again"));
+        assertEquals(0, pending.inFlight());
+    }
+
+    @Test
+    void removeInsideWrappedCluster_keepsLaterEntriesReachable() throws Exception {
+        PendingRequests pending = new PendingRequests(1000);
+        List<Long> atEnd = idsAt(15, 3, 0);
+        long atStart = idsAt(0, 1, 0).get(0);
+        // Cluster wraps: atEnd[0] -> 15, atEnd[1] -> 0, atStart -> 1, atEnd[2] -> 2
+        CompletableFuture<String> first = register(pending, atEnd.get(0), NOW + SECOND);
+        CompletableFuture<String> second = register(pending, atEnd.get(1), NOW + SECOND);
+        CompletableFuture<String> homeZero = register(pending, atStart, NOW + SECOND);
+        CompletableFuture<String> third = register(pending, atEnd.get(2), NOW + SECOND);
+
+        pending.remove(atEnd.get(0)); // the send failed: no completion, and the hole is shifted over
+        assertFalse(first.isDone());
+
+        assertEquals(PendingRequests.Match.COMPLETED, pending.complete(atEnd.get(2), "third"));
+        assertEquals(PendingRequests.Match.COMPLETED, pending.complete(atStart, "zero"));
+        assertEquals(PendingRequests.Match.COMPLETED, pending.complete(atEnd.get(1), "second"));
+        assertEquals("second", second.get());
+        assertEquals("zero", homeZero.get());
+        assertEquals("third", third.get());
+        assertEquals(PendingRequests.Match.UNKNOWN, pending.complete(atEnd.get(0), "late"));
+    }
+
+    @Test
+    void sweep_timesOutThenForgets_lateReplyIsStale() {
+        PendingRequests pending = new PendingRequests(100);
+        CompletableFuture<String> overdue = register(pending, 1, NOW);
+        CompletableFuture<String> waiting = register(pending, 2, NOW + SECOND);
+
+        assertEquals(1, pending.sweep(NOW));
+        ExecutionException e = assertThrows(ExecutionException.class, overdue::get);
+        assertInstanceOf(TimeoutException.class, e.getCause());
+        assertFalse(waiting.isDone());
+        assertEquals(1, pending.inFlight());
+
+        // A late reply is recognised, once, and not credited to anything else
+        assertEquals(PendingRequests.Match.STALE, pending.complete(1, "late"));
+        assertEquals(PendingRequests.Match.UNKNOWN, pending.complete(1, "later"));
+
+        // Stale ids are kept for the retention (100 ms here), then forgotten
+        register(pending, 3, NOW);
+        register(pending, 4, NOW);
+        assertEquals(2, pending.sweep(NOW));
+        assertEquals(0, pending.sweep(NOW + 50_000_000L));
+        assertEquals(PendingRequests.Match.STALE, pending.complete(3, "late"));
+        assertEquals(0, pending.sweep(NOW + 200_000_000L));
+        assertEquals(PendingRequests.Match.UNKNOWN, pending.complete(4, "too late"));
+    }
+
+    @Test
+    void sweep_forgetsCollidingStaleIdsAfterBackwardShift() {
+        PendingRequests pending = new PendingRequests(100);
+        List<Long> ids = idsAt(3, 3, 0);
+        for (long id : ids) register(pending, id, NOW);
+        assertEquals(3, pending.sweep(NOW));
+
+        // Removing the first shifts the next into its slot; sweep has to look at that slot again
+        assertEquals(0, pending.sweep(NOW + SECOND));
+        for (long id : ids) assertEquals(PendingRequests.Match.UNKNOWN, pending.complete(id, "late"));
+    }
+
+    @Test
+    void resize_keepsStaleAndLiveEntries() throws Exception {
+        PendingRequests pending = new PendingRequests(60_000);
+        List<Long> stale = idsAt(7, 3, 0);
+        for (long id : stale) register(pending, id, NOW);
+        assertEquals(3, pending.sweep(NOW));
+
+        List<CompletableFuture<String>> live = new ArrayList<>();
+        for (long id = 1_000; id < 1_040; id++) live.add(register(pending, id, NOW + SECOND)); // grows 16 -> 128
+
+        for (long id : stale) assertEquals(PendingRequests.Match.STALE, pending.complete(id, "late"));
+        for (int i = 0; i < live.size(); i++) {
+            assertEquals(PendingRequests.Match.COMPLETED, pending.complete(1_000 + i, "r" + i));
+            assertEquals("r" + i, live.get(i).get());
+        }
+        assertEquals(0, pending.inFlight());
+    }
+
+    @Test
+    void completeOnlyPending_onlyWhenExactlyOneIsWaiting() throws Exception {
+        PendingRequests pending = new PendingRequests(60_000);
+        register(pending, 1, NOW);
+        pending.sweep(NOW); // stale entries don't count
+        CompletableFuture<String> only = register(pending, 2, NOW + SECOND);
+
+        assertTrue(pending.completeOnlyPending("error"));
+        assertEquals("error", only.get());
+
+        register(pending, 3, NOW + SECOND);
+        register(pending, 4, NOW + SECOND);
+        assertFalse(pending.completeOnlyPending("error"));
+        assertEquals(2, pending.inFlight());
+    }
+}
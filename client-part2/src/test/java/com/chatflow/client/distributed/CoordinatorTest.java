@@ -0,0 +1,170 @@
+package com.chatflow.client.distributed;
+
+import com.chatflow.client.connection.DeflateSettings;
+import com.chatflow.client.metrics.MetricsSnapshot;
+import com.chatflow.client.scenario.Scenario;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** A coordinator and workers over loopback, against a server that acks every message. */
+class CoordinatorTest {
+
+    private static final String SCENARIO = "{\"name\":\"loopback\",\"totalMessages\":300,\"users\":50,\"rooms\":2,"
+            + "\"phases\":[{\"name\":\"Warmup\",\"threads\":2,\"messages\":60},{\"name\":\"Main\",\"threads\":4}]}";
+
+    /** Acks each message the way the server does: status OK and the sender's messageId. */
+    private static final class AckServer extends WebSocketServer {
+        final AtomicInteger received = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+
+        AckServer() {
+            super(new InetSocketAddress("127.0.0.1", 0));
+            setReuseAddr(true);
+        }
+
+        @Override public void onMessage(WebSocket conn, String message) {
+            received.incrementAndGet();
+            conn.send("{\"status\":\"OK\"," + message.substring(1));
+        }
+        @Override public void onOpen(WebSocket conn, ClientHandshake handshake) { }
+        @Override public void onClose(WebSocket conn, int code, String reason, boolean remote) { }
+        @Override public void onError(WebSocket conn, Exception ex) { }
+        @Override public void onStart() { started.countDown(); }
+    }
+
+    private AckServer server;
+    @TempDir Path results;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new AckServer();
+        server.start();
+        assertTrue(server.started.await(5, TimeUnit.SECONDS));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.stop(1000);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+
+    private static CompletableFuture<Void> worker(int port) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                new Worker("127.0.0.1:" + port, DeflateSettings.disabled(), 1, 0).run();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Test
+    void twoWorkers_mergedTotalsCoverTheWholeScenario() throws Exception {
+        int port = freePort();
+        Coordinator coordinator = new Coordinator(port, 2, "ws://127.0.0.1:" + server.getPort(),
+                Scenario.parse(SCENARIO), 30_000);
+        CompletableFuture<Void> a = worker(port);
+        CompletableFuture<Void> b = worker(port);
+
+        MetricsSnapshot merged = coordinator.run(results.resolve("throughput.csv").toString());
+
+        a.get(10, TimeUnit.SECONDS);
+        b.get(10, TimeUnit.SECONDS);
+        assertEquals(300, merged.getSuccess());
+        assertEquals(0, merged.getFail());
+        assertEquals(300, server.received.get());
+        assertTrue(Files.exists(results.resolve("throughput.csv")));
+    }
+
+    @Test
+    void workerThatStopsReporting_failsTheRunByName() throws Exception {
+        int port = freePort();
+        String scenario = "{\"name\":\"paced\",\"totalMessages\":10,\"rooms\":1,"
+                + "\"phases\":[{\"name\":\"Main\",\"threads\":1,\"ratePerSecond\":100}]}";
+        Coordinator coordinator = new Coordinator(port, 1, "ws://127.0.0.1:" + server.getPort(),
+                Scenario.parse(scenario), 300);
+
+        // Says hello, takes its shard and the phase start, then goes silent without closing the connection
+        CompletableFuture<ControlChannel> stuck = CompletableFuture.supplyAsync(() -> {
+            try {
+                ControlChannel channel = new ControlChannel(connect(port));
+                ControlChannel.Message hello = new ControlChannel.Message(ControlChannel.Type.HELLO);
+                hello.host = "stuck-host";
+                channel.send(hello);
+                channel.expect(ControlChannel.Type.SCENARIO);
+                channel.expect(ControlChannel.Type.START);
+                return channel;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        long start = System.currentTimeMillis();
+        IOException e = assertThrows(IOException.class,
+                () -> coordinator.run(results.resolve("throughput.csv").toString()));
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(e.getMessage().contains("stuck-host"), e.getMessage());
+        assertTrue(e.getMessage().contains("DONE"), e.getMessage());
+        // 1 s start delay + 100 ms paced phase + 300 ms margin
+        assertTrue(elapsed >= 1_300 && elapsed < 10_000, "elapsed " + elapsed + " ms");
+        stuck.get(5, TimeUnit.SECONDS).close();
+    }
+
+    @Test
+    void workerThatDisconnects_failsTheRunByName() throws Exception {
+        int port = freePort();
+        Coordinator coordinator = new Coordinator(port, 1, "ws://127.0.0.1:" + server.getPort(),
+                Scenario.parse(SCENARIO), 30_000);
+
+        CompletableFuture.runAsync(() -> {
+            try (ControlChannel channel = new ControlChannel(connect(port))) {
+                ControlChannel.Message hello = new ControlChannel.Message(ControlChannel.Type.HELLO);
+                hello.host = "gone-host";
+                channel.send(hello);
+                channel.expect(ControlChannel.Type.SCENARIO);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        IOException e = assertThrows(IOException.class,
+                () -> coordinator.run(results.resolve("throughput.csv").toString()));
+        assertTrue(e.getMessage().contains("gone-host"), e.getMessage());
+    }
+
+    private static Socket connect(int port) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (true) {
+            try {
+                return new Socket("127.0.0.1", port);
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) throw e;
+                Thread.sleep(20);
+            }
+        }
+    }
+}
@@ -1,11 +1,27 @@
 package com.chatflow.server;
 
+import com.chatflow.server.config.WebSocketConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 @SpringBootApplication
 public class ChatFlowServerApplication {
+
+    // Tomcat's WebSocket frame read, write and encode buffers, three per session (its own default is 8192)
+    private static final int DEFAULT_IO_BUFFER_BYTES = 2048;
+
     public static void main(String[] args) {
+        applyJvmDefaults();
         SpringApplication.run(ChatFlowServerApplication.class, args);
     }
+
+    /**
+     * JVM-wide settings Tomcat reads once, when its classes load, so they are set here before anything
+     * starts rather than from a bean. An explicit -D on the command line wins.
+     */
+    public static void applyJvmDefaults() {
+        if (System.getProperty(WebSocketConfig.TOMCAT_IO_BUFFER_PROPERTY) == null) {
+            System.setProperty(WebSocketConfig.TOMCAT_IO_BUFFER_PROPERTY, String.valueOf(DEFAULT_IO_BUFFER_BYTES));
+        }
+    }
 }
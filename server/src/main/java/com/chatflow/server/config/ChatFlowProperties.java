@@ -0,0 +1,306 @@
+package com.chatflow.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Tunables under the {@code chatflow.*} prefix in application.properties.
+ *
+ * Features that change what a client sees are off by default: broadcast, rate limiting, dedup, handshake
+ * admission, room history (and with it resumption), room event loops and profiling. Compression and the
+ * {@code ?batch=true} / {@code ?binary=true} framings only apply when the client asks for them. The defaults
+ * that do differ from the original A1 server:
+ * <ul>
+ *   <li>drain.on-shutdown: on SIGTERM sessions get a RECONNECT frame and are closed with 1012 over
+ *       {@code window-ms}, instead of all dropping when Tomcat stops</li>
+ *   <li>session: smaller per-session buffers, so less memory per connection. Text messages up to
+ *       {@code max-message-chars} (8192, as before) are still accepted; longer than {@code text-buffer-chars}
+ *       they arrive in parts and are assembled. Larger messages may cost a few more socket reads and writes</li>
+ *   <li>outbound: frames queued while a session is being written share socket writes (same frames, same
+ *       order)</li>
+ * </ul>
+ */
+@ConfigurationProperties(prefix = "chatflow")
+public class ChatFlowProperties {
+
+    private final Broadcast broadcast = new Broadcast();
+    private final Outbound outbound = new Outbound();
+    private final Compression compression = new Compression();
+    private final RateLimit rateLimit = new RateLimit();
+    private final Dedup dedup = new Dedup();
+    private final Handshake handshake = new Handshake();
+    private final Room room = new Room();
+    private final Profiling profiling = new Profiling();
+    private final Drain drain = new Drain();
+    private final Resume resume = new Resume();
+    private final Session session = new Session();
+
+    public Broadcast getBroadcast() { return broadcast; }
+    public Outbound getOutbound() { return outbound; }
+    public Compression getCompression() { return compression; }
+    public RateLimit getRateLimit() { return rateLimit; }
+    public Dedup getDedup() { return dedup; }
+    public Handshake getHandshake() { return handshake; }
+    public Room getRoom() { return room; }
+    public Profiling getProfiling() { return profiling; }
+    public Drain getDrain() { return drain; }
+    public Resume getResume() { return resume; }
+    public Session getSession() { return session; }
+
+    public static class Broadcast {
+        // Fan each accepted message out to every other session in the room
+        private boolean enabled = false;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    }
+
+    public static class Outbound {
+        // Extra time to hold queued frames before flushing; 0 = flush as soon as the socket is idle
+        private long flushIntervalMs = 0;
+        // Threads that write timed flushes and room event-loop fan-out; a session stuck in a write holds at
+        // most one of them
+        private int writerThreads = 4;
+        // Upper bounds for one coalesced write
+        private int maxBatchMessages = 64;
+        private int maxBatchBytes = 16 * 1024;
+        // Per-session backlog after which a slow consumer is disconnected
+        private int maxQueuedBytes = 512 * 1024;
+        // Allow clients to opt into [msg,msg,...] frames with ?batch=true on the connect URL
+        private boolean batchFramingAllowed = true;
+        // Allow clients to opt into binary frames with ?binary=true: acks are serialised into pooled buffers
+        private boolean binaryFramesAllowed = true;
+        // Debug aid: remember where each pooled buffer was taken and log the ones never returned
+        private boolean bufferLeakDetection = false;
+
+        public long getFlushIntervalMs() { return flushIntervalMs; }
+        public void setFlushIntervalMs(long flushIntervalMs) { this.flushIntervalMs = flushIntervalMs; }
+
+        public int getWriterThreads() { return writerThreads; }
+        public void setWriterThreads(int writerThreads) { this.writerThreads = writerThreads; }
+
+        public int getMaxBatchMessages() { return maxBatchMessages; }
+        public void setMaxBatchMessages(int maxBatchMessages) { this.maxBatchMessages = maxBatchMessages; }
+
+        public int getMaxBatchBytes() { return maxBatchBytes; }
+        public void setMaxBatchBytes(int maxBatchBytes) { this.maxBatchBytes = maxBatchBytes; }
+
+        public int getMaxQueuedBytes() { return maxQueuedBytes; }
+        public void setMaxQueuedBytes(int maxQueuedBytes) { this.maxQueuedBytes = maxQueuedBytes; }
+
+        public boolean isBatchFramingAllowed() { return batchFramingAllowed; }
+        public void setBatchFramingAllowed(boolean batchFramingAllowed) { this.batchFramingAllowed = batchFramingAllowed; }
+
+        public boolean isBinaryFramesAllowed() { return binaryFramesAllowed; }
+        public void setBinaryFramesAllowed(boolean binaryFramesAllowed) { this.binaryFramesAllowed = binaryFramesAllowed; }
+
+        public boolean isBufferLeakDetection() { return bufferLeakDetection; }
+        public void setBufferLeakDetection(boolean bufferLeakDetection) { this.bufferLeakDetection = bufferLeakDetection; }
+    }
+
+    public static class Compression {
+        // Accept permessage-deflate when the client offers it (Tomcat's default behaviour)
+        private boolean enabled = true;
+        // false = reset the server's compressor after every message (less memory, worse ratio)
+        private boolean serverContextTakeover = true;
+        // false = ask clients to reset theirs; only for clients that honour the response parameter
+        private boolean clientContextTakeover = true;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public boolean isServerContextTakeover() { return serverContextTakeover; }
+        public void setServerContextTakeover(boolean serverContextTakeover) { this.serverContextTakeover = serverContextTakeover; }
+
+        public boolean isClientContextTakeover() { return clientContextTakeover; }
+        public void setClientContextTakeover(boolean clientContextTakeover) { this.clientContextTakeover = clientContextTakeover; }
+    }
+
+    public static class RateLimit {
+        private boolean enabled = false;
+        // Sustained rate and burst per userId
+        private int userRatePerSecond = 20;
+        private int userBurst = 40;
+        // Sustained rate and burst per room
+        private int roomRatePerSecond = 5000;
+        private int roomBurst = 10000;
+        // Fixed table sizes; idle buckets are evicted so 100k users fit in far fewer slots
+        private int userSlots = 32768;
+        private int roomSlots = 1024;
+        private long idleEvictMs = 60_000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public int getUserRatePerSecond() { return userRatePerSecond; }
+        public void setUserRatePerSecond(int userRatePerSecond) { this.userRatePerSecond = userRatePerSecond; }
+
+        public int getUserBurst() { return userBurst; }
+        public void setUserBurst(int userBurst) { this.userBurst = userBurst; }
+
+        public int getRoomRatePerSecond() { return roomRatePerSecond; }
+        public void setRoomRatePerSecond(int roomRatePerSecond) { this.roomRatePerSecond = roomRatePerSecond; }
+
+        public int getRoomBurst() { return roomBurst; }
+        public void setRoomBurst(int roomBurst) { this.roomBurst = roomBurst; }
+
+        public int getUserSlots() { return userSlots; }
+        public void setUserSlots(int userSlots) { this.userSlots = userSlots; }
+
+        public int getRoomSlots() { return roomSlots; }
+        public void setRoomSlots(int roomSlots) { this.roomSlots = roomSlots; }
+
+        public long getIdleEvictMs() { return idleEvictMs; }
+        public void setIdleEvictMs(long idleEvictMs) { this.idleEvictMs = idleEvictMs; }
+    }
+
+    public static class Dedup {
+        // Only messages that carry a messageId are deduplicated
+        private boolean enabled = false;
+        private long windowMs = 60_000;
+        // Slots per generation: two generations of 8-byte slots are held (16 MB at the default), and each
+        // rotation allocates a fresh one (8 MB). Rotation also happens at half full, so about
+        // capacity / 2 ids per half window are remembered for the whole window
+        private int capacity = 1 << 20;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public long getWindowMs() { return windowMs; }
+        public void setWindowMs(long windowMs) { this.windowMs = windowMs; }
+
+        public int getCapacity() { return capacity; }
+        public void setCapacity(int capacity) { this.capacity = capacity; }
+    }
+
+    public static class Handshake {
+        // Admission control for WebSocket upgrades; limits only bite during reconnect storms
+        private boolean enabled = false;
+        private int maxConcurrent = 64;
+        // Handshakes allowed to wait for a permit, each parking a request worker; capped at a quarter of
+        // server.tomcat.threads.max. The rest are rejected with 503 immediately
+        private int maxQueued = 0;
+        private long queueTimeoutMs = 100;
+        private int retryAfterSeconds = 1;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public int getMaxConcurrent() { return maxConcurrent; }
+        public void setMaxConcurrent(int maxConcurrent) { this.maxConcurrent = maxConcurrent; }
+
+        public int getMaxQueued() { return maxQueued; }
+        public void setMaxQueued(int maxQueued) { this.maxQueued = maxQueued; }
+
+        public long getQueueTimeoutMs() { return queueTimeoutMs; }
+        public void setQueueTimeoutMs(long queueTimeoutMs) { this.queueTimeoutMs = queueTimeoutMs; }
+
+        public int getRetryAfterSeconds() { return retryAfterSeconds; }
+        public void setRetryAfterSeconds(int retryAfterSeconds) { this.retryAfterSeconds = retryAfterSeconds; }
+    }
+
+    public static class Room {
+        // Recent broadcast frames kept per room (rounded up to a power of two); 0 = keep none
+        private int historySize = 0;
+        // Threads that own the rooms (fan-out, sequencing, membership); 0 = do it on the socket thread
+        private int eventLoops = 0;
+        // Tasks one loop may hold before submitting sockets have to wait
+        private int eventLoopQueue = 8192;
+
+        public int getHistorySize() { return historySize; }
+        public void setHistorySize(int historySize) { this.historySize = historySize; }
+
+        public int getEventLoops() { return eventLoops; }
+        public void setEventLoops(int eventLoops) { this.eventLoops = eventLoops; }
+
+        public int getEventLoopQueue() { return eventLoopQueue; }
+        public void setEventLoopQueue(int eventLoopQueue) { this.eventLoopQueue = eventLoopQueue; }
+    }
+
+    public static class Profiling {
+        // Record the whole server run with JFR and dump it to file on shutdown
+        private boolean enabled = false;
+        private String file = "chatflow-server.jfr";
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public String getFile() { return file; }
+        public void setFile(String file) { this.file = file; }
+    }
+
+    public static class Drain {
+        // Drain before the web server stops, so a rolling restart doesn't cut every socket at once
+        private boolean onShutdown = true;
+        // Open sessions are closed evenly over this window
+        private long windowMs = 10_000;
+        // Each client is told to wait a random 0..this before reconnecting
+        private long reconnectJitterMs = 5_000;
+        // How long one session's queued frames may take to flush before it is closed anyway
+        private long flushTimeoutMs = 1_000;
+        // Expose POST /drain (unauthenticated; only for deployments that reach it privately)
+        private boolean endpointEnabled = false;
+
+        public boolean isOnShutdown() { return onShutdown; }
+        public void setOnShutdown(boolean onShutdown) { this.onShutdown = onShutdown; }
+
+        public long getWindowMs() { return windowMs; }
+        public void setWindowMs(long windowMs) { this.windowMs = windowMs; }
+
+        public long getReconnectJitterMs() { return reconnectJitterMs; }
+        public void setReconnectJitterMs(long reconnectJitterMs) { this.reconnectJitterMs = reconnectJitterMs; }
+
+        public long getFlushTimeoutMs() { return flushTimeoutMs; }
+        public void setFlushTimeoutMs(long flushTimeoutMs) { this.flushTimeoutMs = flushTimeoutMs; }
+
+        public boolean isEndpointEnabled() { return endpointEnabled; }
+        public void setEndpointEnabled(boolean endpointEnabled) { this.endpointEnabled = endpointEnabled; }
+    }
+
+    public static class Resume {
+        // Issue resume tokens and replay missed broadcasts from room history (needs room.history-size > 0)
+        private boolean enabled = true;
+        // How long a closed session's token can still be redeemed; also how long a token is kept if its
+        // handshake never produced a session
+        private long tokenTtlMs = 60_000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public long getTokenTtlMs() { return tokenTtlMs; }
+        public void setTokenTtlMs(long tokenTtlMs) { this.tokenTtlMs = tokenTtlMs; }
+    }
+
+    public static class Session {
+        // Tomcat allocates these per session when it opens and holds them until it closes. A text message
+        // longer than the text buffer arrives in parts and is assembled on demand, up to max-message-chars
+        private int textBufferChars = 1024;
+        private int binaryBufferBytes = 256; // clients only send text
+        private int maxMessageChars = 8192;
+        // NIO socket read and write buffers, per connection (Tomcat's default is 8192)
+        private int socketBufferBytes = 4096;
+        // Close sessions idle this long
+        private long idleTimeoutMs = 600_000;
+        // Expose GET /memory (heap after a forced GC, per open session; only for sizing runs)
+        private boolean memoryEndpointEnabled = false;
+
+        public int getTextBufferChars() { return textBufferChars; }
+        public void setTextBufferChars(int textBufferChars) { this.textBufferChars = textBufferChars; }
+
+        public int getBinaryBufferBytes() { return binaryBufferBytes; }
+        public void setBinaryBufferBytes(int binaryBufferBytes) { this.binaryBufferBytes = binaryBufferBytes; }
+
+        public int getMaxMessageChars() { return maxMessageChars; }
+        public void setMaxMessageChars(int maxMessageChars) { this.maxMessageChars = maxMessageChars; }
+
+        public int getSocketBufferBytes() { return socketBufferBytes; }
+        public void setSocketBufferBytes(int socketBufferBytes) { this.socketBufferBytes = socketBufferBytes; }
+
+        public long getIdleTimeoutMs() { return idleTimeoutMs; }
+        public void setIdleTimeoutMs(long idleTimeoutMs) { this.idleTimeoutMs = idleTimeoutMs; }
+
+        public boolean isMemoryEndpointEnabled() { return memoryEndpointEnabled; }
+        public void setMemoryEndpointEnabled(boolean memoryEndpointEnabled) {
+            this.memoryEndpointEnabled = memoryEndpointEnabled;
+        }
+    }
+}
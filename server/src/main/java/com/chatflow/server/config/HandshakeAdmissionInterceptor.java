@@ -0,0 +1,87 @@
+package com.chatflow.server.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps how many WebSocket handshakes run at once.
+ *
+ * When a server restarts, every client reconnects within the same second. Admitting them all at once
+ * pins the CPU on upgrade work and session setup, so connections time out and retry, which makes the
+ * storm worse. Here at most {@code maxConcurrent} handshakes proceed. Anything beyond that gets 503 with
+ * Retry-After straight away, which costs almost nothing.
+ *
+ * A waiting handshake parks the Tomcat worker it runs on, and that pool also serves /health and WebSocket
+ * message dispatch. So by default nothing waits ({@code maxQueued=0}); if waiting is configured, the
+ * waiters are capped at a quarter of the worker pool and should use a short {@code queueTimeoutMs}.
+ */
+public class HandshakeAdmissionInterceptor implements HandshakeInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(HandshakeAdmissionInterceptor.class);
+
+    private final ChatFlowProperties.Handshake settings;
+    private final Semaphore permits;
+    private final int maxWaiters;
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    /** @param workerThreads size of the request worker pool the handshakes run on */
+    public HandshakeAdmissionInterceptor(ChatFlowProperties.Handshake settings, int workerThreads) {
+        this.settings = settings;
+        this.permits = new Semaphore(settings.getMaxConcurrent(), true);
+        this.maxWaiters = Math.min(settings.getMaxQueued(), workerThreads / 4);
+        if (maxWaiters < settings.getMaxQueued()) {
+            log.warn("Handshake max-queued {} capped at {}, a quarter of {} worker threads",
+                    settings.getMaxQueued(), maxWaiters, workerThreads);
+        }
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) throws Exception {
+        if (!settings.isEnabled()) return true;
+
+        if (!permits.tryAcquire() && !awaitPermit()) {
+            rejected.increment();
+            log.debug("Handshake rejected: {}", request.getURI());
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            response.getHeaders().set("Retry-After", String.valueOf(settings.getRetryAfterSeconds()));
+            return false;
+        }
+        return true;
+    }
+
+    private boolean awaitPermit() throws InterruptedException {
+        if (waiters.incrementAndGet() > maxWaiters) {
+            waiters.decrementAndGet();
+            return false;
+        }
+        try {
+            return permits.tryAcquire(settings.getQueueTimeoutMs(), TimeUnit.MILLISECONDS);
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+        // Only reached for requests that passed beforeHandshake
+        if (settings.isEnabled()) permits.release();
+    }
+
+    public int getInProgress() { return settings.getMaxConcurrent() - permits.availablePermits(); }
+    public int getQueued() { return waiters.get(); }
+    public long getRejected() { return rejected.sum(); }
+}
@@ -0,0 +1,109 @@
+package com.chatflow.server.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Applies the chatflow.compression policy to WebSocket handshakes.
+ *
+ * Tomcat negotiates permessage-deflate straight from the client's Sec-WebSocket-Extensions offer and
+ * has no server-side switches, so the policy is enforced by rewriting that header before the upgrade:
+ * drop the offer when compression is disabled, or add *_no_context_takeover parameters, which RFC 7692
+ * lets the server impose regardless of what the client offered.
+ */
+public class PerMessageDeflateFilter extends OncePerRequestFilter {
+
+    static final String EXTENSIONS_HEADER = "Sec-WebSocket-Extensions";
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    private final ChatFlowProperties.Compression settings;
+
+    public PerMessageDeflateFilter(ChatFlowProperties.Compression settings) {
+        this.settings = settings;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Enumeration<String> offered = request.getHeaders(EXTENSIONS_HEADER);
+        if (offered == null || !offered.hasMoreElements()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        chain.doFilter(new ExtensionsRequest(request, rewrite(Collections.list(offered))), response);
+    }
+
+    List<String> rewrite(List<String> headerValues) {
+        List<String> offers = new ArrayList<>();
+        for (String value : headerValues) {
+            for (String offer : value.split(",")) {
+                String trimmed = offer.trim();
+                if (trimmed.isEmpty()) continue;
+                if (!isDeflate(trimmed)) {
+                    offers.add(trimmed);
+                } else if (settings.isEnabled()) {
+                    offers.add(applyContextTakeover(trimmed));
+                }
+            }
+        }
+        return offers.isEmpty() ? List.of() : List.of(String.join(", ", offers));
+    }
+
+    private String applyContextTakeover(String offer) {
+        StringBuilder sb = new StringBuilder(offer);
+        if (!settings.isServerContextTakeover() && !offer.contains("server_no_context_takeover")) {
+            sb.append("; server_no_context_takeover");
+        }
+        if (!settings.isClientContextTakeover() && !offer.contains("client_no_context_takeover")) {
+            sb.append("; client_no_context_takeover");
+        }
+        return sb.toString();
+    }
+
+    private static boolean isDeflate(String offer) {
+        int semi = offer.indexOf(';');
+        String name = (semi < 0 ? offer : offer.substring(0, semi)).trim();
+        return name.equalsIgnoreCase(PERMESSAGE_DEFLATE);
+    }
+
+    private static class ExtensionsRequest extends HttpServletRequestWrapper {
+        private final List<String> extensions;
+
+        ExtensionsRequest(HttpServletRequest request, List<String> extensions) {
+            super(request);
+            this.extensions = extensions;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            if (!EXTENSIONS_HEADER.equalsIgnoreCase(name)) return super.getHeader(name);
+            return extensions.isEmpty() ? null : extensions.get(0);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            if (!EXTENSIONS_HEADER.equalsIgnoreCase(name)) return super.getHeaders(name);
+            return Collections.enumeration(extensions);
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            if (!extensions.isEmpty()) return super.getHeaderNames();
+            List<String> names = new ArrayList<>();
+            for (String n : Collections.list(super.getHeaderNames())) {
+                if (!EXTENSIONS_HEADER.equalsIgnoreCase(n)) names.add(n);
+            }
+            return Collections.enumeration(names);
+        }
+    }
+}
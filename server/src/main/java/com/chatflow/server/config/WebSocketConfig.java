@@ -1,6 +1,15 @@
 package com.chatflow.server.config;
 
+import com.chatflow.server.drain.DrainCoordinator;
 import com.chatflow.server.handler.ChatWebSocketHandler;
+import com.chatflow.server.room.RoomHandshakeInterceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
@@ -8,28 +17,92 @@ import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
 import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
 
+import java.lang.reflect.Field;
+
 @Configuration
 @EnableWebSocket
+@EnableConfigurationProperties(ChatFlowProperties.class)
 public class WebSocketConfig implements WebSocketConfigurer {
 
+    private static final Logger log = LoggerFactory.getLogger(WebSocketConfig.class);
+
+    // Read once, by Tomcat's WebSocket Constants class, when it loads; set by ChatFlowServerApplication.main
+    public static final String TOMCAT_IO_BUFFER_PROPERTY = "org.apache.tomcat.websocket.DEFAULT_BUFFER_SIZE";
+    private static final int TOMCAT_IO_BUFFER_DEFAULT = 8192;
+
     private final ChatWebSocketHandler chatHandler;
+    private final ChatFlowProperties properties;
+    private final DrainCoordinator drain;
+    private final ServerProperties serverProperties;
 
-    public WebSocketConfig(ChatWebSocketHandler chatHandler) {
+    public WebSocketConfig(ChatWebSocketHandler chatHandler, ChatFlowProperties properties, DrainCoordinator drain,
+                           ServerProperties serverProperties) {
         this.chatHandler = chatHandler;
+        this.properties = properties;
+        this.drain = drain;
+        this.serverProperties = serverProperties;
     }
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
-        registry.addHandler(chatHandler, "/chat/{roomId}")
-                .setAllowedOrigins("*");
+        var chat = registry.addHandler(chatHandler, "/chat/{roomId}")
+                .addInterceptors(drain, handshakeAdmissionInterceptor(),
+                        new RoomHandshakeInterceptor(chatHandler.getRoomRegistry()));
+        if (chatHandler.getResumption() != null) chat.addInterceptors(chatHandler.getResumption());
+        chat.setAllowedOrigins("*");
+    }
+
+    @Bean
+    public HandshakeAdmissionInterceptor handshakeAdmissionInterceptor() {
+        return new HandshakeAdmissionInterceptor(properties.getHandshake(),
+                serverProperties.getTomcat().getThreads().getMax());
     }
 
     @Bean
     public ServletServerContainerFactoryBean createWebSocketContainer() {
+        var session = properties.getSession();
         var container = new ServletServerContainerFactoryBean();
-        container.setMaxTextMessageBufferSize(8192);
-        container.setMaxBinaryMessageBufferSize(8192);
-        container.setMaxSessionIdleTimeout(600000L); // 10 minutes
+        container.setMaxTextMessageBufferSize(session.getTextBufferChars());
+        container.setMaxBinaryMessageBufferSize(session.getBinaryBufferBytes());
+        container.setMaxSessionIdleTimeout(session.getIdleTimeoutMs());
         return container;
     }
+
+    /**
+     * The connector's per-connection NIO socket buffers, which Tomcat sizes outside the WebSocket container.
+     * Also logs the WebSocket frame I/O buffer size in effect; that one is a JVM-wide system property (see
+     * {@link com.chatflow.server.ChatFlowServerApplication#applyJvmDefaults}), not a Spring setting.
+     */
+    @Bean
+    public static WebServerFactoryCustomizer<TomcatServletWebServerFactory> sessionBufferCustomizer(
+            ChatFlowProperties properties) {
+        var session = properties.getSession();
+        return factory -> {
+            String socketBuffer = String.valueOf(session.getSocketBufferBytes());
+            factory.addConnectorCustomizers(connector -> {
+                connector.setProperty("socket.appReadBufSize", socketBuffer);
+                connector.setProperty("socket.appWriteBufSize", socketBuffer);
+            });
+            log.info("Per-session buffers: socket {} bytes, WebSocket I/O {} bytes (-D{})",
+                    socketBuffer, tomcatIoBufferBytes(), TOMCAT_IO_BUFFER_PROPERTY);
+        };
+    }
+
+    /** The frame I/O buffer size Tomcat actually uses: fixed when its Constants class loaded. */
+    static int tomcatIoBufferBytes() {
+        try {
+            Field field = Class.forName("org.apache.tomcat.websocket.Constants").getDeclaredField("DEFAULT_BUFFER_SIZE");
+            field.setAccessible(true);
+            return field.getInt(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Integer.getInteger(TOMCAT_IO_BUFFER_PROPERTY, TOMCAT_IO_BUFFER_DEFAULT);
+        }
+    }
+
+    @Bean
+    public FilterRegistrationBean<PerMessageDeflateFilter> perMessageDeflateFilter(ChatFlowProperties properties) {
+        var registration = new FilterRegistrationBean<>(new PerMessageDeflateFilter(properties.getCompression()));
+        registration.addUrlPatterns("/chat/*");
+        return registration;
+    }
 }
@@ -1,6 +1,11 @@
 package com.chatflow.server.controller;
 
+import com.chatflow.server.config.ChatFlowProperties;
+import com.chatflow.server.drain.DrainCoordinator;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.Instant;
@@ -9,11 +14,39 @@ import java.util.Map;
 @RestController
 public class HealthController {
 
+    private final DrainCoordinator drain;
+    private final ChatFlowProperties.Drain settings;
+
+    public HealthController(DrainCoordinator drain, ChatFlowProperties properties) {
+        this.drain = drain;
+        this.settings = properties.getDrain();
+    }
+
+    /** UP with 200 while serving; DRAINING with 503 once a drain has started, so balancers stop routing here. */
     @GetMapping("/health")
-    public Map<String, String> health() {
-        return Map.of(
+    public ResponseEntity<Map<String, String>> health() {
+        if (drain.isDraining()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of(
+                    "status", "DRAINING",
+                    "drain", drain.getState().name(),
+                    "timestamp", Instant.now().toString()
+            ));
+        }
+        return ResponseEntity.ok(Map.of(
                 "status", "UP",
                 "timestamp", Instant.now().toString()
-        );
+        ));
+    }
+
+    /** Starts a drain ahead of a restart; 404 unless chatflow.drain.endpoint-enabled=true. */
+    @PostMapping("/drain")
+    public ResponseEntity<Map<String, String>> drain() {
+        if (!settings.isEndpointEnabled()) return ResponseEntity.notFound().build();
+        boolean started = drain.startDrain();
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
+                "status", drain.getState().name(),
+                "started", String.valueOf(started), // false: a drain was already under way
+                "windowMs", String.valueOf(settings.getWindowMs())
+        ));
     }
 }
@@ -0,0 +1,44 @@
+package com.chatflow.server.controller;
+
+import com.chatflow.server.config.ChatFlowProperties;
+import com.chatflow.server.handler.ChatWebSocketHandler;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+@RestController
+public class MemoryController {
+
+    private final ChatWebSocketHandler handler;
+    private final ChatFlowProperties.Session settings;
+
+    public MemoryController(ChatWebSocketHandler handler, ChatFlowProperties properties) {
+        this.handler = handler;
+        this.settings = properties.getSession();
+    }
+
+    /**
+     * Heap in use after a full GC, direct buffer memory and open sessions, for sizing instances by the
+     * bytes each connection costs. 404 unless chatflow.session.memory-endpoint-enabled=true, since every
+     * call stops the world.
+     */
+    @GetMapping("/memory")
+    public ResponseEntity<Map<String, Long>> memory() {
+        if (!settings.isMemoryEndpointEnabled()) return ResponseEntity.notFound().build();
+        System.gc();
+        long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        long direct = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) direct = pool.getMemoryUsed();
+        }
+        return ResponseEntity.ok(Map.of(
+                "sessions", (long) handler.getOpenSessions().size(),
+                "heapUsedBytes", heap,
+                "directBytes", direct
+        ));
+    }
+}
@@ -0,0 +1,149 @@
+package com.chatflow.server.dedup;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Remembers recently seen (userId, messageId) pairs so client retries are acknowledged once and
+ * not fanned out again.
+ *
+ * Keys are 64-bit hashes kept in two fixed-size, lock-free open-addressing sets: {@code current} takes
+ * inserts, {@code previous} is only read. Every half window, or earlier when {@code current} is half
+ * full, the generations rotate and the oldest set is dropped. An id is therefore remembered for at least
+ * half the window and at most the full window. Memory is fixed at two generations of {@code capacity}
+ * longs, plus a fresh {@code capacity}-long array allocated at every rotation; at very high rates the
+ * memory cap wins and the effective window shrinks.
+ *
+ * An id whose message then fails to be delivered is {@link #forget forgotten}, so the client's retry is
+ * processed rather than acked as a duplicate of a message nobody received.
+ */
+public class MessageDeduplicator {
+
+    private static final int MAX_PROBES = 64;
+    /** Left in a forgotten key's slot so probes for keys inserted after it still find them. */
+    private static final long FORGOTTEN = -1;
+
+    private final int capacity;
+    private final long halfWindowNanos;
+    private final ReentrantLock rotateLock = new ReentrantLock();
+    private final LongAdder duplicates = new LongAdder();
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    /**
+     * @param windowMs  how long an id is remembered
+     * @param capacity  slots per generation, rounded up to a power of two (8 bytes each)
+     */
+    public MessageDeduplicator(long windowMs, int capacity) {
+        this.capacity = Integer.highestOneBit(Math.max(capacity, MAX_PROBES) - 1) << 1;
+        this.halfWindowNanos = windowMs * 1_000_000L / 2;
+        this.current = new Generation(this.capacity, System.nanoTime());
+        this.previous = new Generation(this.capacity, System.nanoTime());
+    }
+
+    /**
+     * @return true the first time this (userId, messageId) pair is seen inside the window
+     */
+    public boolean firstSeen(int userId, String messageId) {
+        return firstSeen(key(userId, messageId));
+    }
+
+    boolean firstSeen(long key) {
+        Generation cur = current;
+        if (System.nanoTime() - cur.createdNanos >= halfWindowNanos || cur.size.sum() >= capacity / 2) {
+            cur = rotate(cur);
+        }
+        if (previous.contains(key) || !cur.add(key)) {
+            duplicates.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Undo {@link #firstSeen} for a pair whose message was not delivered, so a retry counts as new.
+     */
+    public void forget(int userId, String messageId) {
+        forget(key(userId, messageId));
+    }
+
+    void forget(long key) {
+        current.remove(key);
+        previous.remove(key);
+    }
+
+    public long getDuplicates() { return duplicates.sum(); }
+
+    private Generation rotate(Generation seen) {
+        rotateLock.lock();
+        try {
+            if (current == seen) {
+                previous = seen;
+                current = new Generation(capacity, System.nanoTime());
+            }
+            return current;
+        } finally {
+            rotateLock.unlock();
+        }
+    }
+
+    /** FNV-1a 64 over userId, a separator and messageId; 0 and -1 are reserved for empty and forgotten slots. */
+    static long key(int userId, String messageId) {
+        long h = (0xcbf29ce484222325L ^ userId) * 0x100000001b3L;
+        h = (h ^ (userId >>> 16)) * 0x100000001b3L;
+        for (int i = 0; i < messageId.length(); i++) h = (h ^ messageId.charAt(i)) * 0x100000001b3L;
+        return h == 0 || h == FORGOTTEN ? 1 : h;
+    }
+
+    private static final class Generation {
+        final AtomicLongArray slots;
+        final int mask;
+        final long createdNanos;
+        final LongAdder size = new LongAdder();
+
+        Generation(int capacity, long createdNanos) {
+            this.slots = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+            this.createdNanos = createdNanos;
+        }
+
+        boolean contains(long key) {
+            int i = (int) (key ^ (key >>> 32)) & mask;
+            for (int p = 0; p < MAX_PROBES; p++, i = (i + 1) & mask) {
+                long v = slots.get(i);
+                if (v == key) return true;
+                if (v == 0) return false;
+            }
+            return false;
+        }
+
+        /** @return false if already present */
+        boolean add(long key) {
+            int i = (int) (key ^ (key >>> 32)) & mask;
+            for (int p = 0; p < MAX_PROBES; p++, i = (i + 1) & mask) {
+                long v = slots.get(i);
+                if (v == key) return false;
+                if (v == 0) {
+                    if (slots.compareAndSet(i, 0, key)) {
+                        size.increment();
+                        return true;
+                    }
+                    if (slots.get(i) == key) return false;
+                }
+            }
+            // Probe window exhausted: treat as new rather than risk dropping a real message
+            return true;
+        }
+
+        /** Forgotten slots are not reused; a generation only lives half a window. */
+        void remove(long key) {
+            int i = (int) (key ^ (key >>> 32)) & mask;
+            for (int p = 0; p < MAX_PROBES; p++, i = (i + 1) & mask) {
+                long v = slots.get(i);
+                if (v == 0) return;
+                if (v == key && slots.compareAndSet(i, key, FORGOTTEN)) return;
+            }
+        }
+    }
+}
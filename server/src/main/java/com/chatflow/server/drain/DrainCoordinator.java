@@ -0,0 +1,163 @@
+package com.chatflow.server.drain;
+
+import com.chatflow.server.config.ChatFlowProperties;
+import com.chatflow.server.handler.ChatWebSocketHandler;
+import com.chatflow.server.outbound.OutboundQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Takes the node out of service without cutting every socket in the same instant.
+ *
+ * Draining starts when the application shuts down (this bean stops in the first lifecycle phase, before
+ * the web server), or from {@code POST /drain}. From then on new handshakes get 503 with Retry-After, and
+ * /health answers DRAINING with 503, so a load balancer sends new clients to other nodes. Open sessions are
+ * closed one by one in random order, spread evenly over {@code window-ms}. Each session first gets a
+ * {@code {"status":"RECONNECT","reconnectAfterMs":N}} frame, N random up to {@code reconnect-jitter-ms}.
+ * Whatever is still queued for it is flushed, and it is closed with 1012 (Service Restart). Clients leave
+ * in a trickle and return spread over window plus jitter, rather than all reconnecting in the same second.
+ */
+@Component
+public class DrainCoordinator implements SmartLifecycle, HandshakeInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(DrainCoordinator.class);
+
+    public enum State { SERVING, DRAINING, DRAINED }
+
+    private final ChatFlowProperties.Drain settings;
+    private final ChatWebSocketHandler handler;
+    private final AtomicReference<State> state = new AtomicReference<>(State.SERVING);
+    private final CountDownLatch drained = new CountDownLatch(1);
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+    private volatile boolean running;
+
+    public DrainCoordinator(ChatFlowProperties properties, ChatWebSocketHandler handler) {
+        this.settings = properties.getDrain();
+        this.handler = handler;
+    }
+
+    public State getState() { return state.get(); }
+    public boolean isDraining() { return state.get() != State.SERVING; }
+    public long getRejected() { return rejected.sum(); }
+    public long getClosed() { return closed.sum(); }
+
+    /** Starts draining on a background thread. Returns false if a drain had already started. */
+    public boolean startDrain() {
+        if (!state.compareAndSet(State.SERVING, State.DRAINING)) return false;
+        Thread t = new Thread(this::drainSessions, "drain");
+        t.setDaemon(true);
+        t.start();
+        return true;
+    }
+
+    /** Waits for every session to be closed; true if that happened within {@code timeoutMs}. */
+    public boolean awaitDrained(long timeoutMs) throws InterruptedException {
+        return drained.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void drainSessions() {
+        try {
+            List<OutboundQueue> sessions = new ArrayList<>(handler.getOpenSessions());
+            Collections.shuffle(sessions);
+            int n = sessions.size();
+            log.info("Draining {} sessions over {} ms", n, settings.getWindowMs());
+            long start = System.nanoTime();
+            long windowNanos = TimeUnit.MILLISECONDS.toNanos(settings.getWindowMs());
+            for (int i = 0; i < n; i++) {
+                long wait = start + windowNanos * i / n - System.nanoTime();
+                if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+                close(sessions.get(i));
+            }
+            // Handshakes already past the check when draining started
+            Set<OutboundQueue> handled = Collections.newSetFromMap(new IdentityHashMap<>());
+            handled.addAll(sessions);
+            for (OutboundQueue out : new ArrayList<>(handler.getOpenSessions())) {
+                if (handled.add(out)) close(out);
+            }
+            log.info("Drained: {} sessions closed, {} handshakes rejected", closed.sum(), rejected.sum());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            state.set(State.DRAINED);
+            drained.countDown();
+        }
+    }
+
+    private void close(OutboundQueue out) throws InterruptedException {
+        WebSocketSession session = out.getSession();
+        if (!session.isOpen()) return;
+        long reconnectAfter = ThreadLocalRandom.current().nextLong(settings.getReconnectJitterMs() + 1);
+        try {
+            out.send("{\"status\":\"RECONNECT\",\"reason\":\"draining\",\"reconnectAfterMs\":" + reconnectAfter + "}");
+            if (!out.flush(settings.getFlushTimeoutMs())) {
+                log.debug("Flush timed out while draining: session={}", session.getId());
+            }
+            session.close(CloseStatus.SERVICE_RESTARTED.withReason("draining"));
+            closed.increment();
+        } catch (Exception e) {
+            log.debug("Drain close failed: session={}, error={}", session.getId(), e.getMessage());
+        }
+    }
+
+    // ---- HandshakeInterceptor: no new sessions once draining ----
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        if (!isDraining()) return true;
+        rejected.increment();
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set("Retry-After",
+                String.valueOf(Math.max(1, (settings.getReconnectJitterMs() + 999) / 1000)));
+        return false;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    // ---- SmartLifecycle: drain on shutdown, before the web server stops ----
+
+    @Override
+    public void start() { running = true; }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (!settings.isOnShutdown()) return;
+        startDrain();
+        try {
+            if (!awaitDrained(settings.getWindowMs() + settings.getFlushTimeoutMs() + 1_000)) {
+                log.warn("Drain did not finish before shutdown; closing the rest abruptly");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() { return running; }
+}
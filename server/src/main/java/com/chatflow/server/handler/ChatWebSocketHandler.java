@@ -1,56 +1,167 @@
 package com.chatflow.server.handler;
 
+import com.chatflow.server.config.ChatFlowProperties;
+import com.chatflow.server.dedup.MessageDeduplicator;
+import com.chatflow.server.identity.UserIdDeserializer;
 import com.chatflow.server.model.ChatMessage;
 import com.chatflow.server.model.ChatResponse;
 import com.chatflow.server.model.MessageType;
+import com.chatflow.server.outbound.BufferPool;
+import com.chatflow.server.outbound.OutboundQueue;
+import com.chatflow.server.outbound.OutboundStats;
+import com.chatflow.server.outbound.PooledJsonWriter;
+import com.chatflow.server.ratelimit.InboundRateLimiter;
+import com.chatflow.server.resume.SessionResumption;
+import com.chatflow.server.room.Room;
+import com.chatflow.server.room.RoomEventLoops;
+import com.chatflow.server.room.RoomRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
 public class ChatWebSocketHandler extends TextWebSocketHandler {
 
     private static final Logger log = LoggerFactory.getLogger(ChatWebSocketHandler.class);
+
     private final ObjectMapper mapper;
-    // Track sessions per room for future use (A2+)
-    private final ConcurrentHashMap<String, List<WebSocketSession>> rooms = new ConcurrentHashMap<>();
+    private final ChatFlowProperties properties;
+    // Rooms and their members; used for fan-out when chatflow.broadcast.enabled=true
+    private final RoomRegistry rooms;
+    // Write side of each open session, keyed by session id. Writers are serialised with a
+    // ReentrantLock instead of a monitor, so a virtual thread that blocks inside a send
+    // unmounts rather than pinning its carrier thread.
+    private final ConcurrentHashMap<String, OutboundQueue> outbound = new ConcurrentHashMap<>();
+    private final OutboundStats outboundStats = new OutboundStats();
+    private final ScheduledExecutorService flushTimer;
+    // Write timed flushes and event-loop fan-out, so a session stuck in a write holds up one writer rather
+    // than the timer or a room loop
+    private final ExecutorService writers;
+    // Acks for sessions that asked for binary frames
+    private final PooledJsonWriter pooledWriter;
+    private final InboundRateLimiter rateLimiter; // null when chatflow.rate-limit.enabled=false
+    private final MessageDeduplicator deduplicator; // null when chatflow.dedup.enabled=false
+    private final RoomEventLoops eventLoops; // null when chatflow.room.event-loops=0
+    private final SessionResumption resumption; // null when resume is disabled or rooms keep no history
+    // Text messages longer than the container's per-session buffer arrive in parts. They are collected
+    // here, by session id, only until the last part, so an idle session holds no assembly buffer.
+    private final ConcurrentHashMap<String, StringBuilder> partial = new ConcurrentHashMap<>();
 
     public ChatWebSocketHandler() {
+        this(new ChatFlowProperties());
+    }
+
+    @Autowired
+    public ChatWebSocketHandler(ChatFlowProperties properties) {
+        this.properties = properties;
+        this.rooms = new RoomRegistry(properties.getRoom().getHistorySize(), properties.getRoom().getEventLoops() > 0);
         this.mapper = new ObjectMapper();
         this.mapper.registerModule(new JavaTimeModule());
         this.mapper.disable(com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.pooledWriter = new PooledJsonWriter(mapper,
+                new BufferPool(properties.getOutbound().isBufferLeakDetection()));
+        this.flushTimer = properties.getOutbound().getFlushIntervalMs() > 0
+                ? Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "outbound-flush");
+                    t.setDaemon(true);
+                    return t;
+                })
+                : null;
+        this.writers = flushTimer != null || properties.getRoom().getEventLoops() > 0
+                ? newWriters(properties.getOutbound().getWriterThreads())
+                : null;
+        this.rateLimiter = properties.getRateLimit().isEnabled()
+                ? new InboundRateLimiter(properties.getRateLimit())
+                : null;
+        this.deduplicator = properties.getDedup().isEnabled()
+                ? new MessageDeduplicator(properties.getDedup().getWindowMs(), properties.getDedup().getCapacity())
+                : null;
+        this.eventLoops = properties.getRoom().getEventLoops() > 0
+                ? new RoomEventLoops(properties.getRoom().getEventLoops(), properties.getRoom().getEventLoopQueue())
+                : null;
+        this.resumption = properties.getResume().isEnabled() && properties.getRoom().getHistorySize() > 0
+                ? new SessionResumption(properties.getResume())
+                : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flushTimer != null) flushTimer.shutdownNow();
+        if (writers != null) writers.shutdownNow();
+        if (eventLoops != null) eventLoops.shutdown();
+        pooledWriter.getPool().reportLeaks(0);
     }
 
+    public OutboundStats getOutboundStats() { return outboundStats; }
+    public RoomRegistry getRoomRegistry() { return rooms; }
+    public RoomEventLoops getEventLoops() { return eventLoops; }
+    public SessionResumption getResumption() { return resumption; }
+    public BufferPool getBufferPool() { return pooledWriter.getPool(); }
+    public Collection<OutboundQueue> getOpenSessions() { return outbound.values(); }
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
-        String roomId = extractRoomId(session);
-        rooms.computeIfAbsent(roomId, k -> new java.util.concurrent.CopyOnWriteArrayList<>()).add(session);
-        log.info("Connection opened: session={}, room={}", session.getId(), roomId);
+        Room room = roomOf(session);
+        OutboundQueue out = new OutboundQueue(session, properties.getOutbound(), wantsBatchFraming(session),
+                wantsBinaryFrames(session) ? pooledWriter.getPool() : null, flushTimer, writers, outboundStats);
+        outbound.put(session.getId(), out);
+        if (resumption != null) resumption.bind(session);
+        // Set by SessionResumption when the client presented a resume token
+        Object resumeAfter = session.getAttributes().get(SessionResumption.RESUME_AFTER_ATTRIBUTE);
+        if (resumeAfter == null) {
+            onRoomThread(room, () -> room.join(out));
+        } else {
+            onRoomThread(room, () -> resumption.recordReplay(room.rejoin(out, (Long) resumeAfter)));
+        }
+        log.info("Connection opened: session={}, room={}, resumed={}", session.getId(), room.getId(),
+                resumeAfter != null);
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
-        String roomId = extractRoomId(session);
-        List<WebSocketSession> roomSessions = rooms.get(roomId);
-        if (roomSessions != null) {
-            roomSessions.remove(session);
+        Room room = roomOf(session);
+        OutboundQueue out = outbound.remove(session.getId());
+        if (out != null) {
+            out.close();
+            onRoomThread(room, () -> room.leave(out));
         }
-        log.info("Connection closed: session={}, room={}, status={}", session.getId(), roomId, status);
+        if (resumption != null) resumption.release(session);
+        partial.remove(session.getId());
+        log.info("Connection closed: session={}, room={}, status={}", session.getId(), room.getId(), status);
+    }
+
+    @Override
+    public boolean supportsPartialMessages() {
+        return true;
     }
 
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        String payload = message.getPayload();
+        String payload = assemble(session, message);
+        if (payload == null) return; // more parts to come, or too long
+
+        // Rate limit (before any parsing)
+        if (rateLimiter != null && rejectIfLimited(session, payload)) {
+            return;
+        }
 
         // Parse
         ChatMessage chatMsg;
@@ -64,14 +175,105 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         // Validate
         List<String> errors = validate(chatMsg);
         if (!errors.isEmpty()) {
-            sendError(session, "Validation failed: " + String.join("; ", errors));
+            // Echo a well-formed messageId so the client can match the error to its request
+            String id = chatMsg.getMessageId();
+            sendError(session, "Validation failed: " + String.join("; ", errors),
+                    id != null && !id.isEmpty() && id.length() <= 64 ? id : null);
             return;
         }
 
-        // Echo back with server timestamp and status
+        // Retry of a message we already accepted: ack it again, but don't fan it out twice
         ChatResponse response = new ChatResponse(chatMsg, "OK");
-        String responseJson = mapper.writeValueAsString(response);
-        session.sendMessage(new TextMessage(responseJson));
+        if (chatMsg.getMessageId() != null && deduplicator != null
+                && !deduplicator.firstSeen(chatMsg.getUserId(), chatMsg.getMessageId())) {
+            response.setDuplicate(true);
+            reply(session, response);
+            return;
+        }
+
+        Room room = roomOf(session);
+        // An echo has nothing to order, so only broadcasts go through the room's loop
+        if (eventLoops == null || !properties.getBroadcast().isEnabled()) {
+            try {
+                deliver(room, session, response);
+            } catch (Exception e) {
+                forget(chatMsg);
+                throw e;
+            }
+            return;
+        }
+        try {
+            eventLoops.execute(room, () -> {
+                try {
+                    deliver(room, session, response);
+                } catch (Exception e) {
+                    forget(chatMsg);
+                    log.warn("Delivery failed: session={}, error={}", session.getId(), e.getMessage());
+                }
+            });
+        } catch (RuntimeException e) {
+            forget(chatMsg);
+            throw e;
+        }
+    }
+
+    /** A message that was not delivered must not make its retry look like a duplicate. */
+    private void forget(ChatMessage chatMsg) {
+        if (chatMsg.getMessageId() != null && deduplicator != null) {
+            deduplicator.forget(chatMsg.getUserId(), chatMsg.getMessageId());
+        }
+    }
+
+    /**
+     * The whole message once its last part is in, else null. A message that fits the container's text buffer
+     * arrives in one part and is returned as is. A longer one is collected up to max-message-chars; past
+     * that the session is closed with 1009, as the container would have done with a buffer that size.
+     */
+    private String assemble(WebSocketSession session, TextMessage message) throws Exception {
+        StringBuilder sb = partial.get(session.getId());
+        if (sb == null && message.isLast()) return message.getPayload();
+        if (sb == null) {
+            sb = new StringBuilder(message.getPayloadLength() * 2);
+            partial.put(session.getId(), sb);
+        }
+        if (sb.length() + message.getPayloadLength() > properties.getSession().getMaxMessageChars()) {
+            partial.remove(session.getId());
+            session.close(CloseStatus.TOO_BIG_TO_PROCESS);
+            return null;
+        }
+        sb.append(message.getPayload());
+        if (!message.isLast()) return null;
+        partial.remove(session.getId());
+        return sb.toString();
+    }
+
+    private void deliver(Room room, WebSocketSession session, ChatResponse response) throws Exception {
+        room.recordMessage();
+        if (properties.getBroadcast().isEnabled()) {
+            broadcast(room, session, response);
+            return;
+        }
+
+        // Echo back with server timestamp and status
+        reply(session, response);
+    }
+
+    /** A response for this session only: binary straight from a pooled buffer if it opted in, else text. */
+    private void reply(WebSocketSession session, ChatResponse response) throws Exception {
+        OutboundQueue out = outboundOf(session);
+        if (out.isBinaryFraming()) {
+            out.send(pooledWriter.write(response));
+        } else {
+            out.send(mapper.writeValueAsString(response));
+        }
+    }
+
+    private void onRoomThread(Room room, Runnable task) {
+        if (eventLoops != null) {
+            eventLoops.execute(room, task);
+        } else {
+            task.run();
+        }
     }
 
     @Override
@@ -83,17 +285,13 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         List<String> errors = new ArrayList<>();
 
         // userId: must be string representing number between 1 and 100,000
-        if (msg.getUserId() == null || msg.getUserId().isBlank()) {
+        int userId = msg.getUserId();
+        if (userId == UserIdDeserializer.MISSING) {
             errors.add("userId is required");
-        } else {
-            try {
-                int id = Integer.parseInt(msg.getUserId());
-                if (id < 1 || id > 100000) {
-                    errors.add("userId must be between 1 and 100000");
-                }
-            } catch (NumberFormatException e) {
-                errors.add("userId must be a numeric string");
-            }
+        } else if (userId == UserIdDeserializer.INVALID) {
+            errors.add("userId must be a numeric string");
+        } else if (userId < 1 || userId > 100000) {
+            errors.add("userId must be between 1 and 100000");
         }
 
         // username: 3-20 alphanumeric characters
@@ -111,6 +309,11 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
             errors.add("timestamp is required and must be valid ISO-8601");
         }
 
+        // messageId: optional, but bounded so it can't be used to bloat responses
+        if (msg.getMessageId() != null && (msg.getMessageId().isEmpty() || msg.getMessageId().length() > 64)) {
+            errors.add("messageId must be 1-64 characters when present");
+        }
+
         // messageType: must be one of TEXT, JOIN, LEAVE
         if (msg.getMessageType() == null) {
             errors.add("messageType must be one of: TEXT, JOIN, LEAVE");
@@ -119,17 +322,93 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         return errors;
     }
 
-    private void sendError(WebSocketSession session, String errorMsg) throws Exception {
+    private boolean rejectIfLimited(WebSocketSession session, String payload) throws Exception {
+        // User first: a flooding user turned away here must not spend the room's shared tokens
+        int userId = InboundRateLimiter.peekUserId(payload);
+        if (userId > 0) {
+            long retryAfter = rateLimiter.checkUser(userId);
+            if (retryAfter > 0) {
+                sendRateLimited(session, "Rate limit exceeded for user " + userId, retryAfter);
+                return true;
+            }
+        }
+        Room room = roomOf(session);
+        long retryAfter = rateLimiter.checkRoom(room.getIndex());
+        if (retryAfter > 0) {
+            sendRateLimited(session, "Rate limit exceeded for room " + room.getId(), retryAfter);
+            return true;
+        }
+        return false;
+    }
+
+    private void sendRateLimited(WebSocketSession session, String errorMsg, long retryAfterMs) throws Exception {
         String json = mapper.writeValueAsString(
-                java.util.Map.of("status", "ERROR", "error", errorMsg)
+                java.util.Map.of("status", "ERROR", "error", errorMsg, "retryAfterMs", retryAfterMs)
         );
-        session.sendMessage(new TextMessage(json));
+        outboundOf(session).send(json);
+    }
+
+    private void sendError(WebSocketSession session, String errorMsg) throws Exception {
+        sendError(session, errorMsg, null);
+    }
+
+    private void sendError(WebSocketSession session, String errorMsg, String messageId) throws Exception {
+        String json = mapper.writeValueAsString(messageId == null
+                ? java.util.Map.of("status", "ERROR", "error", errorMsg)
+                : java.util.Map.of("status", "ERROR", "error", errorMsg, "messageId", messageId)
+        );
+        outboundOf(session).send(json);
+    }
+
+    /**
+     * Ack and fan-out in one step, numbered by the room, so every member (the sender included) sees the
+     * room's messages in the same order.
+     */
+    private void broadcast(Room room, WebSocketSession sender, ChatResponse response) throws Exception {
+        long seq = room.nextSeq();
+        response.setSeq(seq);
+        String json = null;
+        try {
+            json = mapper.writeValueAsString(response);
+        } finally {
+            room.publish(seq, json, outboundOf(sender));
+        }
+    }
+
+    private OutboundQueue outboundOf(WebSocketSession session) {
+        OutboundQueue out = outbound.get(session.getId());
+        if (out != null) return out;
+        // Sessions that never went through afterConnectionEstablished (e.g. unit tests) are written directly
+        return new OutboundQueue(session, properties.getOutbound(), false, null, outboundStats);
+    }
+
+    private boolean wantsBatchFraming(WebSocketSession session) {
+        return properties.getOutbound().isBatchFramingAllowed() && queryFlag(session, "batch");
+    }
+
+    private boolean wantsBinaryFrames(WebSocketSession session) {
+        return properties.getOutbound().isBinaryFramesAllowed() && queryFlag(session, "binary");
+    }
+
+    /** True when the connect URL has the query parameter {@code name=true} (exact key and value). */
+    static boolean queryFlag(WebSocketSession session, String name) {
+        if (session.getUri() == null || session.getUri().getRawQuery() == null) return false;
+        return "true".equals(UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams().getFirst(name));
+    }
+
+    private static ExecutorService newWriters(int threads) {
+        AtomicInteger n = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "outbound-writer-" + n.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
     }
 
-    private String extractRoomId(WebSocketSession session) {
-        // URI is like /chat/5 -> extract "5"
-        String path = session.getUri().getPath();
-        String[] parts = path.split("/");
-        return parts.length >= 3 ? parts[2] : "default";
+    Room roomOf(WebSocketSession session) {
+        // Set by RoomHandshakeInterceptor; sessions that skipped the handshake (unit tests) resolve from the URI
+        Object room = session.getAttributes().get(Room.ATTRIBUTE);
+        if (room != null) return (Room) room;
+        return rooms.room(RoomRegistry.roomIdOf(session.getUri() != null ? session.getUri().getPath() : null));
     }
 }
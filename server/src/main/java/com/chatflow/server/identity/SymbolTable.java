@@ -0,0 +1,81 @@
+package com.chatflow.server.identity;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size, lock-free intern table for short strings such as usernames.
+ *
+ * Lookups hash the caller's characters in place, so a symbol that is already in the table comes back
+ * without allocating a String. Memory stays at {@code capacity} references plus the symbols themselves.
+ * Once a probe window is full, new symbols are returned as fresh Strings and not added (fail open), so
+ * the table never grows and never evicts.
+ */
+public class SymbolTable {
+
+    private static final int MAX_PROBES = 8;
+
+    private final AtomicReferenceArray<String> slots;
+    private final int mask;
+    private final int maxLength;
+    private final LongAdder untracked = new LongAdder();
+
+    /**
+     * @param capacity  slot count, rounded up to a power of two
+     * @param maxLength longer strings are never interned
+     */
+    public SymbolTable(int capacity, int maxLength) {
+        int size = Integer.highestOneBit(Math.max(capacity, MAX_PROBES) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.maxLength = maxLength;
+    }
+
+    public String intern(String s) {
+        if (s.length() > maxLength) return s;
+        int h = s.hashCode();
+        int start = (h ^ (h >>> 16)) & mask;
+        for (int p = 0; p < MAX_PROBES; p++) {
+            int i = (start + p) & mask;
+            String existing = slots.get(i);
+            if (existing == null) {
+                if (slots.compareAndSet(i, null, s)) return s;
+                existing = slots.get(i); // lost the race; the winner may hold the same symbol
+            }
+            if (existing.equals(s)) return existing;
+        }
+        untracked.increment();
+        return s;
+    }
+
+    /** The canonical String for {@code chars[offset, offset + length)}; allocates only for a new symbol. */
+    public String intern(char[] chars, int offset, int length) {
+        if (length > maxLength) return new String(chars, offset, length);
+        int h = 0;
+        for (int i = 0; i < length; i++) h = 31 * h + chars[offset + i]; // same as String.hashCode
+        int start = (h ^ (h >>> 16)) & mask;
+        for (int p = 0; p < MAX_PROBES; p++) {
+            int i = (start + p) & mask;
+            String existing = slots.get(i);
+            if (existing == null) {
+                String symbol = new String(chars, offset, length);
+                if (slots.compareAndSet(i, null, symbol)) return symbol;
+                existing = slots.get(i);
+            }
+            if (existing.hashCode() == h && sameChars(existing, chars, offset, length)) return existing;
+        }
+        untracked.increment();
+        return new String(chars, offset, length);
+    }
+
+    public long getUntracked() { return untracked.sum(); }
+    public int getCapacity() { return mask + 1; }
+
+    private static boolean sameChars(String s, char[] chars, int offset, int length) {
+        if (s.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (s.charAt(i) != chars[offset + i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,67 @@
+package com.chatflow.server.identity;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Parses the wire's {@code "userId":"42"} into an int once, straight from the parser's buffer.
+ *
+ * Anything that is not a plain decimal maps to {@link #INVALID} and a blank or null value to
+ * {@link #MISSING}, so validation can still report which of the two it was.
+ */
+public class UserIdDeserializer extends JsonDeserializer<Integer> {
+
+    public static final int MISSING = Integer.MIN_VALUE;
+    public static final int INVALID = Integer.MIN_VALUE + 1;
+
+    @Override
+    public Integer deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return p.getNumberType() == JsonParser.NumberType.INT ? p.getIntValue() : INVALID;
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            return parse(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+        }
+        if (token.isScalarValue()) return INVALID;
+        return (Integer) ctxt.handleUnexpectedToken(Integer.class, p);
+    }
+
+    @Override
+    public Integer getNullValue(DeserializationContext ctxt) {
+        return MISSING;
+    }
+
+    /** Same accepted forms as {@link Integer#parseInt}; blank is {@link #MISSING}. */
+    static int parse(char[] chars, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        boolean blank = true;
+        for (int k = offset; k < end; k++) {
+            if (!Character.isWhitespace(chars[k])) {
+                blank = false;
+                break;
+            }
+        }
+        if (blank) return MISSING;
+
+        boolean negative = false;
+        if (chars[i] == '-' || chars[i] == '+') {
+            negative = chars[i] == '-';
+            i++;
+        }
+        if (i == end || end - i > 10) return INVALID;
+        long value = 0;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') return INVALID;
+            value = value * 10 + (c - '0');
+        }
+        value = negative ? -value : value;
+        return value < Integer.MIN_VALUE + 2 || value > Integer.MAX_VALUE ? INVALID : (int) value;
+    }
+}
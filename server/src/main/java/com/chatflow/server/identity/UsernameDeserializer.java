@@ -0,0 +1,28 @@
+package com.chatflow.server.identity;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Reads usernames straight from the parser's buffer into a shared {@link SymbolTable}, so a returning
+ * user's name costs a hash and a compare rather than a new String per message.
+ */
+public class UsernameDeserializer extends JsonDeserializer<String> {
+
+    // 100k users fit at under 40% load; names longer than the 20 validation allows are not worth keeping
+    private static final SymbolTable USERNAMES = new SymbolTable(1 << 18, 20);
+
+    @Override
+    public String deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_STRING) {
+            return USERNAMES.intern(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+        }
+        return ctxt.readValue(p, String.class);
+    }
+
+    public static SymbolTable getTable() { return USERNAMES; }
+}
@@ -1,20 +1,29 @@
 package com.chatflow.server.model;
 
+import com.chatflow.server.identity.UserIdDeserializer;
+import com.chatflow.server.identity.UsernameDeserializer;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import java.time.Instant;
 
 public class ChatMessage {
-    private String userId;
+    // Parsed once from the wire's string form; UserIdDeserializer.MISSING / INVALID when unusable
+    @JsonDeserialize(using = UserIdDeserializer.class)
+    private int userId = UserIdDeserializer.MISSING;
+    // Interned, so repeat senders share one String
+    @JsonDeserialize(using = UsernameDeserializer.class)
     private String username;
     private String message;
     @JsonFormat(shape = JsonFormat.Shape.STRING)
     private Instant timestamp;
     private MessageType messageType;
+    // Optional client-generated id; retries of the same message reuse it
+    private String messageId;
 
     public ChatMessage() {}
 
-    public String getUserId() { return userId; }
-    public void setUserId(String userId) { this.userId = userId; }
+    public int getUserId() { return userId; }
+    public void setUserId(int userId) { this.userId = userId; }
 
     public String getUsername() { return username; }
     public void setUsername(String username) { this.username = username; }
@@ -27,4 +36,7 @@ public class ChatMessage {
 
     public MessageType getMessageType() { return messageType; }
     public void setMessageType(MessageType messageType) { this.messageType = messageType; }
+
+    public String getMessageId() { return messageId; }
+    public void setMessageId(String messageId) { this.messageId = messageId; }
 }
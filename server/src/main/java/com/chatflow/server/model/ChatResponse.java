@@ -1,15 +1,30 @@
 package com.chatflow.server.model;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import java.time.Instant;
 
 public class ChatResponse {
-    private String userId;
+    // Kept as an int, written as a string to match what clients send
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private int userId;
     private String username;
     private String message;
+    @JsonSerialize(using = IsoInstantSerializer.class)
     private Instant timestamp;
     private MessageType messageType;
+    @JsonSerialize(using = IsoInstantSerializer.class)
     private Instant serverTimestamp;
     private String status;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String messageId;
+    // Set when this is the ack for a retry the server had already accepted
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean duplicate;
+    // Per-room broadcast order (1, 2, 3, ...); only set when broadcast is enabled
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private long seq;
 
     public ChatResponse() {}
 
@@ -21,10 +36,11 @@ public class ChatResponse {
         this.messageType = msg.getMessageType();
         this.serverTimestamp = Instant.now();
         this.status = status;
+        this.messageId = msg.getMessageId();
     }
 
-    public String getUserId() { return userId; }
-    public void setUserId(String userId) { this.userId = userId; }
+    public int getUserId() { return userId; }
+    public void setUserId(int userId) { this.userId = userId; }
 
     public String getUsername() { return username; }
     public void setUsername(String username) { this.username = username; }
@@ -43,4 +59,13 @@ public class ChatResponse {
 
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
+
+    public String getMessageId() { return messageId; }
+    public void setMessageId(String messageId) { this.messageId = messageId; }
+
+    public boolean isDuplicate() { return duplicate; }
+    public void setDuplicate(boolean duplicate) { this.duplicate = duplicate; }
+
+    public long getSeq() { return seq; }
+    public void setSeq(long seq) { this.seq = seq; }
 }
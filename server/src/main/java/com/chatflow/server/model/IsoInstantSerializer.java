@@ -0,0 +1,82 @@
+package com.chatflow.server.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Writes an Instant exactly as {@link Instant#toString()} does ({@code 2026-02-07T12:00:00.123Z}, with
+ * 0, 3, 6 or 9 fraction digits), but digit by digit into a per-thread char[] instead of through
+ * DateTimeFormatter, which builds a StringBuilder and a String for every timestamp. Years outside
+ * 0000-9999 fall back to toString().
+ */
+public class IsoInstantSerializer extends JsonSerializer<Instant> {
+
+    private static final ThreadLocal<char[]> BUFFERS = ThreadLocal.withInitial(() -> new char[30]);
+
+    @Override
+    public void serialize(Instant value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        char[] buf = BUFFERS.get();
+        int len = format(value, buf);
+        if (len < 0) {
+            gen.writeString(value.toString());
+        } else {
+            gen.writeString(buf, 0, len);
+        }
+    }
+
+    /** @return chars written to {@code buf} (at least 30 long), or -1 if the year needs toString() */
+    static int format(Instant value, char[] buf) {
+        long seconds = value.getEpochSecond();
+        long days = Math.floorDiv(seconds, 86_400);
+        int secondOfDay = (int) Math.floorMod(seconds, 86_400);
+        // LocalDate arithmetic without the object: civil_from_days (H. Hinnant)
+        long z = days + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long doe = z - era * 146_097;
+        long yoe = (doe - doe / 1460 + doe / 36_524 - doe / 146_096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 0 || year > 9999) return -1;
+
+        int i = digits(buf, 0, (int) year, 4);
+        buf[i++] = '-';
+        i = digits(buf, i, month, 2);
+        buf[i++] = '-';
+        i = digits(buf, i, day, 2);
+        buf[i++] = 'T';
+        i = digits(buf, i, secondOfDay / 3600, 2);
+        buf[i++] = ':';
+        i = digits(buf, i, secondOfDay / 60 % 60, 2);
+        buf[i++] = ':';
+        i = digits(buf, i, secondOfDay % 60, 2);
+
+        int nanos = value.getNano();
+        if (nanos != 0) {
+            buf[i++] = '.';
+            if (nanos % 1_000_000 == 0) {
+                i = digits(buf, i, nanos / 1_000_000, 3);
+            } else if (nanos % 1000 == 0) {
+                i = digits(buf, i, nanos / 1000, 6);
+            } else {
+                i = digits(buf, i, nanos, 9);
+            }
+        }
+        buf[i++] = 'Z';
+        return i;
+    }
+
+    private static int digits(char[] buf, int at, int value, int width) {
+        for (int i = at + width - 1; i >= at; i--) {
+            buf[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return at + width;
+    }
+}
@@ -0,0 +1,127 @@
+package com.chatflow.server.outbound;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Direct ByteBuffers for outbound frames, in power-of-two size classes from 256 B to 64 KB.
+ *
+ * Each thread keeps a small stack of free buffers per class, so the common case (serialise, send,
+ * release on the same socket thread) touches no shared state. A buffer released on another thread, or
+ * past a full local stack, goes to a bounded shared queue for its class; past that it is left to the
+ * GC. Larger requests get an unpooled buffer. The local stacks assume long-lived socket threads; a
+ * virtual thread per task would start each one empty.
+ *
+ * With leak detection on, every outstanding buffer remembers where it was acquired. A release of a
+ * buffer the pool doesn't know about is logged and the buffer is dropped rather than pooled twice.
+ * {@link #reportLeaks} logs what was never returned. This is a debugging aid: it costs a stack trace
+ * per acquire.
+ */
+public class BufferPool {
+
+    private static final Logger log = LoggerFactory.getLogger(BufferPool.class);
+
+    private static final int MIN_SHIFT = 8;  // 256 B
+    private static final int CLASSES = 9;    // 256 B .. 64 KB
+    private static final int LOCAL_CACHE = 32;
+    private static final int SHARED_CACHE = 1024;
+
+    private final ThreadLocal<LocalCache> local = ThreadLocal.withInitial(LocalCache::new);
+    @SuppressWarnings("unchecked")
+    private final ArrayBlockingQueue<ByteBuffer>[] shared = new ArrayBlockingQueue[CLASSES];
+    private final Map<ByteBuffer, Acquired> outstanding; // null unless leak detection is on
+
+    private final LongAdder allocated = new LongAdder();
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder released = new LongAdder();
+
+    public BufferPool(boolean leakDetection) {
+        for (int i = 0; i < CLASSES; i++) shared[i] = new ArrayBlockingQueue<>(SHARED_CACHE);
+        this.outstanding = leakDetection ? Collections.synchronizedMap(new IdentityHashMap<>()) : null;
+    }
+
+    /** A cleared buffer with at least {@code minBytes} remaining. Pair with {@link #release}. */
+    public ByteBuffer acquire(int minBytes) {
+        acquired.increment();
+        int c = sizeClass(minBytes);
+        ByteBuffer buf = null;
+        if (c < CLASSES) {
+            buf = local.get().pop(c);
+            if (buf == null) buf = shared[c].poll();
+        }
+        if (buf == null) {
+            allocated.increment();
+            buf = ByteBuffer.allocateDirect(c < CLASSES ? 1 << (c + MIN_SHIFT) : minBytes);
+        }
+        buf.clear();
+        if (outstanding != null) {
+            outstanding.put(buf, new Acquired(System.currentTimeMillis(), new Throwable("Acquired here")));
+        }
+        return buf;
+    }
+
+    public void release(ByteBuffer buf) {
+        if (buf == null) return;
+        if (outstanding != null && outstanding.remove(buf) == null) {
+            log.warn("Buffer released twice or not from this pool: capacity={}", buf.capacity(),
+                    new Throwable("Released here"));
+            return;
+        }
+        released.increment();
+        int c = sizeClass(buf.capacity());
+        if (c >= CLASSES || buf.capacity() != 1 << (c + MIN_SHIFT)) return; // unpooled size
+        if (!local.get().push(c, buf)) shared[c].offer(buf);
+    }
+
+    /** Logs every buffer held longer than {@code olderThanMs}. Returns how many; 0 with detection off. */
+    public int reportLeaks(long olderThanMs) {
+        if (outstanding == null) return 0;
+        long cutoff = System.currentTimeMillis() - olderThanMs;
+        List<Acquired> leaks = new ArrayList<>();
+        synchronized (outstanding) {
+            for (Acquired a : outstanding.values()) {
+                if (a.atMs <= cutoff) leaks.add(a);
+            }
+        }
+        for (Acquired a : leaks) log.warn("Buffer never released", a.site);
+        return leaks.size();
+    }
+
+    /** Direct buffers created so far; stops growing once the pool is warm. */
+    public long getAllocated() { return allocated.sum(); }
+    public long getOutstanding() { return acquired.sum() - released.sum(); }
+
+    static int sizeClass(int bytes) {
+        if (bytes <= 1 << MIN_SHIFT) return 0;
+        return 32 - Integer.numberOfLeadingZeros(bytes - 1) - MIN_SHIFT;
+    }
+
+    private record Acquired(long atMs, Throwable site) {}
+
+    private static final class LocalCache {
+        private final ByteBuffer[][] stacks = new ByteBuffer[CLASSES][LOCAL_CACHE];
+        private final int[] sizes = new int[CLASSES];
+
+        ByteBuffer pop(int c) {
+            if (sizes[c] == 0) return null;
+            ByteBuffer buf = stacks[c][--sizes[c]];
+            stacks[c][sizes[c]] = null;
+            return buf;
+        }
+
+        boolean push(int c, ByteBuffer buf) {
+            if (sizes[c] == LOCAL_CACHE) return false;
+            stacks[c][sizes[c]++] = buf;
+            return true;
+        }
+    }
+}
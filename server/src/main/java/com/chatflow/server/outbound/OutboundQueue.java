@@ -0,0 +1,404 @@
+package com.chatflow.server.outbound;
+
+import com.chatflow.server.config.ChatFlowProperties;
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write side of one WebSocket session.
+ *
+ * Any thread may call {@link #send}. Only one thread writes at a time; the others just enqueue and
+ * return, and the writer drains everything that piled up while it was busy in as few socket writes as
+ * possible. Under fan-out load that turns hundreds of small frames into a handful of writes. A caller
+ * that must not block on a slow socket at all (a room's deliverer) uses {@link #offer}, which only
+ * queues, and {@link #flushQueued} once it holds no lock of its own.
+ *
+ * A batch goes out either as one {@code [a,b,c]} frame (client opted in with {@code ?batch=true}) or as
+ * separate frames written through the container's JSR-356 batching, so they share one flush.
+ *
+ * A session that opted into binary frames ({@code ?binary=true}) can also be handed pooled ByteBuffers
+ * from {@link PooledJsonWriter}. They go out as binary frames, in order with any text frames, and return
+ * to the {@link BufferPool} once written or dropped. Binary frames are never folded into a
+ * {@code [a,b,c]} frame.
+ *
+ * Timed flushes are written on a pool of writer threads, not on the timer thread: the timer only hands a
+ * due session over. {@link #flushAsync} does the same for a caller that must never write itself (a room's
+ * event loop). A writer that finds the session already being written skips it, so a session stuck
+ * on a full send buffer ties up one writer and delays no other session's flush.
+ *
+ * The writer is guarded by a ReentrantLock, not a monitor, so it is safe on virtual threads.
+ */
+public class OutboundQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboundQueue.class);
+
+    private final WebSocketSession session;
+    private final ChatFlowProperties.Outbound settings;
+    private final boolean batchFraming;
+    private final ScheduledExecutorService flushTimer; // null = flush as soon as the socket is idle
+    private final Executor writers; // runs timed flushes and flushAsync; null = on the calling thread
+    private final OutboundStats stats;
+    private final BufferPool pool; // null = this session only ever gets text
+
+    // String (text frame), pooled ByteBuffer (binary frame) or Batch (offered text frames written together)
+    private final ConcurrentLinkedQueue<Object> pending = new ConcurrentLinkedQueue<>();
+    // Approximate: counts chars, which equals UTF-8 bytes for the ASCII payloads we generate
+    private final AtomicInteger queuedBytes = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicBoolean handedOff = new AtomicBoolean(); // a writer task is pending for flushAsync
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final List<Object> batch = new ArrayList<>(); // only touched while holding writeLock
+    private Batch held; // offered batch taken while filling the one above; only touched while holding writeLock
+    // Backlog at which offer() overflowed, until flushQueued closes the session; 0 = none
+    private final AtomicInteger overflowedAt = new AtomicInteger();
+    private volatile boolean closed;
+
+    private record Batch(List<Object> frames, int bytes) {}
+
+    public OutboundQueue(WebSocketSession session, ChatFlowProperties.Outbound settings,
+                         boolean batchFraming, ScheduledExecutorService flushTimer, OutboundStats stats) {
+        this(session, settings, batchFraming, null, flushTimer, stats);
+    }
+
+    /** @param pool non-null when the session takes binary frames; sent buffers are released to it */
+    public OutboundQueue(WebSocketSession session, ChatFlowProperties.Outbound settings, boolean batchFraming,
+                         BufferPool pool, ScheduledExecutorService flushTimer, OutboundStats stats) {
+        this(session, settings, batchFraming, pool, flushTimer, null, stats);
+    }
+
+    /**
+     * @param writers where timed flushes and {@link #flushAsync} are written, so neither the timer nor an
+     *                event loop ever blocks on a socket
+     */
+    public OutboundQueue(WebSocketSession session, ChatFlowProperties.Outbound settings, boolean batchFraming,
+                         BufferPool pool, ScheduledExecutorService flushTimer, Executor writers,
+                         OutboundStats stats) {
+        this.session = session;
+        this.settings = settings;
+        this.batchFraming = batchFraming;
+        this.pool = pool;
+        this.flushTimer = flushTimer;
+        this.writers = writers;
+        this.stats = stats;
+    }
+
+    public WebSocketSession getSession() { return session; }
+    public boolean isBatchFraming() { return batchFraming; }
+    public boolean isBinaryFraming() { return pool != null; }
+    public int getQueuedBytes() { return queuedBytes.get(); }
+
+    /**
+     * Queue one serialized message. Writes on the calling thread when the socket is idle,
+     * otherwise returns immediately and leaves the frame to the current writer or the flush timer.
+     */
+    public void send(String json) throws IOException {
+        if (closed) return;
+        enqueue(json, json.length());
+    }
+
+    /**
+     * Queue one serialized message held in a buffer from this session's pool. The queue owns the buffer
+     * from here on, including when the session is already closed.
+     */
+    public void send(ByteBuffer json) throws IOException {
+        if (closed) {
+            pool.release(json);
+            return;
+        }
+        enqueue(json, json.remaining());
+        if (closed) drop(); // closed while we enqueued; close() may have missed this buffer
+    }
+
+    /**
+     * Queue one serialized message without writing, for callers that must never block on this socket
+     * (a room's deliverer, holding its lock). Follow with {@link #flushQueued} once that lock is released.
+     * A backlog over the limit drops the queue here and closes the session in the next flushQueued.
+     */
+    public void offer(String json) {
+        if (closed) return;
+        int queued = queue(json, json.length(), 1);
+        if (queued > settings.getMaxQueuedBytes()) {
+            close();
+            overflowedAt.set(queued);
+        }
+    }
+
+    /**
+     * Like {@link #offer}, for {@code frames} that go out together after anything already queued: a single
+     * {@code [a,b,c]} frame if the session opted in, else one JSR-356 batch. Unlike single frames they are
+     * not cut into max-batch-messages pieces.
+     */
+    public void offerBatch(List<String> frames) {
+        if (closed || frames.isEmpty()) return;
+        List<Object> copy = new ArrayList<>(frames);
+        Batch batch = new Batch(copy, queuedLength(copy));
+        int queued = queue(batch, batch.bytes(), frames.size());
+        if (queued > settings.getMaxQueuedBytes()) {
+            close();
+            overflowedAt.set(queued);
+        }
+    }
+
+    /** Write what {@link #offer} queued: now, or on the flush timer, by the same rule as {@link #send}. */
+    public void flushQueued() throws IOException {
+        int overflowed = overflowedAt.getAndSet(0);
+        if (overflowed > 0) {
+            overflow(overflowed);
+            return;
+        }
+        if (!closed && !pending.isEmpty()) flushOrSchedule(queuedBytes.get());
+    }
+
+    /**
+     * Like {@link #flushQueued}, but the write always happens on the writer pool, never on the calling
+     * thread: for a room's event loop, which serves many rooms and must not wait on any one socket. Handing
+     * over again while a writer task is still pending is a no-op. Without a writer pool this is flushQueued.
+     */
+    public void flushAsync() throws IOException {
+        if (writers == null) {
+            flushQueued();
+            return;
+        }
+        boolean overflowed = overflowedAt.get() > 0;
+        if (!overflowed && (closed || pending.isEmpty())) return;
+        if (!overflowed && flushTimer != null && queuedBytes.get() < settings.getMaxBatchBytes()) {
+            scheduleFlush();
+        } else if (handedOff.compareAndSet(false, true)) {
+            try {
+                writers.execute(this::writeHandedOff);
+            } catch (RejectedExecutionException e) {
+                handedOff.set(false); // shutting down
+            }
+        }
+    }
+
+    private void writeHandedOff() {
+        handedOff.set(false); // before writing, so frames offered meanwhile hand off again or get drained here
+        writeQueued();
+    }
+
+    private void enqueue(Object frame, int length) throws IOException {
+        int queued = queue(frame, length, 1);
+        if (queued > settings.getMaxQueuedBytes()) {
+            overflow(queued);
+            return;
+        }
+        flushOrSchedule(queued);
+    }
+
+    private int queue(Object frame, int length, int messages) {
+        pending.offer(frame);
+        for (int i = 0; i < messages; i++) stats.recordQueued();
+        return queuedBytes.addAndGet(length);
+    }
+
+    private void flushOrSchedule(int queued) throws IOException {
+        if (flushTimer == null || queued >= settings.getMaxBatchBytes()) {
+            flush();
+        } else {
+            scheduleFlush();
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            flushTimer.schedule(this::timedFlush, settings.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write everything currently queued. If another thread holds the writer it will pick up our frames
+     * after it releases the lock, so losing the tryLock race never strands a message.
+     */
+    public void flush() throws IOException {
+        while (!closed && !pending.isEmpty() && writeLock.tryLock()) {
+            try {
+                drainLocked();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Write everything queued so far, waiting up to {@code timeoutMs} for a writer on another thread to
+     * finish first. Returns false if the writer was still busy at the deadline.
+     */
+    public boolean flush(long timeoutMs) throws IOException, InterruptedException {
+        if (!writeLock.tryLock(timeoutMs, TimeUnit.MILLISECONDS)) return false;
+        try {
+            if (!closed) drainLocked();
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void close() {
+        closed = true;
+        drop();
+        queuedBytes.set(0);
+    }
+
+    private void drop() {
+        Object frame;
+        while ((frame = pending.poll()) != null) {
+            if (frame instanceof ByteBuffer buf) pool.release(buf);
+        }
+    }
+
+    private void timedFlush() {
+        flushScheduled.set(false);
+        if (writers != null) {
+            try {
+                writers.execute(this::writeQueued);
+                return;
+            } catch (RejectedExecutionException e) {
+                // Shutting down; write here
+            }
+        }
+        writeQueued();
+    }
+
+    private void writeQueued() {
+        try {
+            int overflowed = overflowedAt.getAndSet(0);
+            if (overflowed > 0) {
+                overflow(overflowed);
+                return;
+            }
+            flush();
+        } catch (Exception e) {
+            log.warn("Flush failed: session={}, error={}", session.getId(), e.getMessage());
+        }
+    }
+
+    private void drainLocked() throws IOException {
+        while (true) {
+            batch.clear();
+            int bytes = 0;
+            boolean binary = false;
+            Object next;
+            while (batch.size() < settings.getMaxBatchMessages() && bytes < settings.getMaxBatchBytes()
+                    && (next = held != null ? held : pending.poll()) != null) {
+                if (next instanceof Batch offered) {
+                    // An offered batch goes out in a write of its own, after the frames ahead of it
+                    if (!batch.isEmpty()) {
+                        held = offered;
+                        break;
+                    }
+                    held = null;
+                    queuedBytes.addAndGet(-offered.bytes());
+                    write(offered.frames(), false);
+                    continue;
+                }
+                batch.add(next);
+                if (next instanceof ByteBuffer buf) {
+                    bytes += buf.remaining();
+                    binary = true;
+                } else {
+                    bytes += ((String) next).length();
+                }
+            }
+            if (batch.isEmpty()) return;
+            queuedBytes.addAndGet(-bytes);
+            try {
+                write(batch, binary);
+            } finally {
+                if (binary) {
+                    for (Object frame : batch) {
+                        if (frame instanceof ByteBuffer buf) pool.release(buf);
+                    }
+                }
+            }
+        }
+    }
+
+    private void write(List<Object> frames, boolean binary) throws IOException {
+        stats.recordWrite(frames.size());
+        if (frames.size() == 1) {
+            session.sendMessage(message(frames.get(0)));
+            return;
+        }
+
+        if (batchFraming && !binary) {
+            StringBuilder sb = new StringBuilder(queuedLength(frames) + frames.size() + 1);
+            sb.append('[');
+            for (int i = 0; i < frames.size(); i++) {
+                if (i > 0) sb.append(',');
+                sb.append((String) frames.get(i));
+            }
+            sb.append(']');
+            session.sendMessage(new TextMessage(sb));
+            return;
+        }
+
+        RemoteEndpoint.Basic remote = basicRemote();
+        if (remote == null) {
+            for (Object frame : frames) session.sendMessage(message(frame));
+            return;
+        }
+        // Frames land in the container's output buffer and go out together when batching is switched off
+        remote.setBatchingAllowed(true);
+        try {
+            for (Object frame : frames) {
+                if (frame instanceof ByteBuffer buf) {
+                    remote.sendBinary(buf);
+                } else {
+                    remote.sendText((String) frame);
+                }
+            }
+        } finally {
+            remote.setBatchingAllowed(false);
+        }
+    }
+
+    private RemoteEndpoint.Basic basicRemote() {
+        if (session instanceof NativeWebSocketSession nativeSession) {
+            Session ws = nativeSession.getNativeSession(Session.class);
+            return ws != null ? ws.getBasicRemote() : null;
+        }
+        return null;
+    }
+
+    private void overflow(int queued) {
+        log.warn("Outbound backlog exceeded: session={}, queuedBytes={}", session.getId(), queued);
+        close();
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            // Already closing
+        }
+    }
+
+    private static WebSocketMessage<?> message(Object frame) {
+        return frame instanceof ByteBuffer buf ? new BinaryMessage(buf) : new TextMessage((String) frame);
+    }
+
+    private static int queuedLength(List<Object> frames) {
+        int n = 0;
+        for (Object f : frames) n += ((String) f).length();
+        return n;
+    }
+}
@@ -0,0 +1,30 @@
+package com.chatflow.server.outbound;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-wide counters for the outbound path. messages / writes is the coalescing ratio:
+ * 1.0 means every message cost its own socket write.
+ */
+public class OutboundStats {
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+
+    void recordQueued() { queued.increment(); }
+
+    void recordWrite(int messages) {
+        writes.increment();
+        written.add(messages);
+    }
+
+    public long getQueuedMessages() { return queued.sum(); }
+    public long getWrittenMessages() { return written.sum(); }
+    public long getWrites() { return writes.sum(); }
+
+    public double messagesPerWrite() {
+        long w = writes.sum();
+        return w == 0 ? 0 : (double) written.sum() / w;
+    }
+}
@@ -0,0 +1,93 @@
+package com.chatflow.server.outbound;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ser.DefaultSerializerProvider;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Serialises straight into pooled direct buffers, for sessions that take binary frames.
+ *
+ * {@code writeValueAsString} builds a char[], copies it into a String, and the container then encodes
+ * that back to UTF-8 bytes. Here Jackson's UTF-8 generator writes bytes, and they are copied once into a
+ * {@link BufferPool} buffer that goes out as the frame payload. Each thread keeps one generator bound to
+ * a reusable sink and one serializer provider (ObjectMapper creates both per call), so a message
+ * allocates no generator, no provider and no intermediate text.
+ */
+public class PooledJsonWriter {
+
+    // Covers a typical ack; longer messages move up a size class while being written
+    private static final int INITIAL_BYTES = 512;
+
+    private final ObjectMapper mapper;
+    private final ObjectWriter writer;
+    private final BufferPool pool;
+    private final ThreadLocal<Sink> sinks = ThreadLocal.withInitial(Sink::new);
+
+    public PooledJsonWriter(ObjectMapper mapper, BufferPool pool) {
+        this.mapper = mapper;
+        this.writer = mapper.writer();
+        this.pool = pool;
+    }
+
+    public BufferPool getPool() { return pool; }
+
+    /** {@code value} as UTF-8 JSON, flipped for reading. The caller owns the buffer and releases it. */
+    public ByteBuffer write(Object value) throws IOException {
+        Sink sink = sinks.get();
+        sink.buf = pool.acquire(INITIAL_BYTES);
+        try {
+            JsonGenerator gen = sink.generator();
+            sink.provider.serializeValue(gen, value);
+            gen.flush();
+        } catch (IOException | RuntimeException e) {
+            pool.release(sink.buf);
+            sink.buf = null;
+            sink.gen = null; // may hold half a value; the next call starts a fresh generator
+            throw e;
+        }
+        ByteBuffer out = sink.buf;
+        sink.buf = null;
+        return out.flip();
+    }
+
+    /** The generator's target: appends to the current pooled buffer, moving up a size class when full. */
+    private final class Sink extends OutputStream {
+        private final DefaultSerializerProvider provider = ((DefaultSerializerProvider) mapper.getSerializerProvider())
+                .createInstance(mapper.getSerializationConfig(), mapper.getSerializerFactory());
+        private ByteBuffer buf;
+        private JsonGenerator gen;
+
+        JsonGenerator generator() throws IOException {
+            if (gen == null) {
+                gen = writer.createGenerator(this);
+                gen.setRootValueSeparator(null); // consecutive root values are separate messages
+            }
+            return gen;
+        }
+
+        @Override
+        public void write(int b) {
+            ensure(1);
+            buf.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensure(len);
+            buf.put(b, off, len);
+        }
+
+        private void ensure(int len) {
+            if (buf.remaining() >= len) return;
+            ByteBuffer bigger = pool.acquire(Math.max(buf.capacity() * 2, buf.position() + len));
+            bigger.put(buf.flip());
+            pool.release(buf);
+            buf = bigger;
+        }
+    }
+}
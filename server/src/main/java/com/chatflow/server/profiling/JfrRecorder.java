@@ -0,0 +1,100 @@
+package com.chatflow.server.profiling;
+
+import com.chatflow.server.config.ChatFlowProperties;
+import com.chatflow.server.handler.ChatWebSocketHandler;
+import com.chatflow.server.room.Room;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * JFR recording from startup to shutdown when {@code chatflow.profiling.enabled=true}: the JDK's
+ * "profile" settings (allocation samples, GC pauses) with monitor and lock-park thresholds lowered to
+ * 1 ms. The running message count is recorded every second, and the recording is written to
+ * {@code chatflow.profiling.file} on shutdown (by JFR's own exit hook if it runs before ours). Summarise
+ * it with client-part2's JfrSummary, which reads the message count from the recording.
+ *
+ * Disabled, it creates nothing and costs nothing.
+ */
+@Component
+public class JfrRecorder {
+
+    private static final Logger log = LoggerFactory.getLogger(JfrRecorder.class);
+    private static final Duration LOCK_THRESHOLD = Duration.ofMillis(1);
+
+    private final ChatFlowProperties.Profiling settings;
+    private final ChatWebSocketHandler handler;
+    private final Runnable totalsHook = this::recordTotals;
+    private Recording recording;
+
+    public JfrRecorder(ChatFlowProperties properties, ChatWebSocketHandler handler) {
+        this.settings = properties.getProfiling();
+        this.handler = handler;
+    }
+
+    @PostConstruct
+    public void start() throws Exception {
+        if (!settings.isEnabled()) return;
+        recording = new Recording(Configuration.getConfiguration("profile"));
+        recording.setName("chatflow-server");
+        recording.enable("jdk.JavaMonitorEnter").withThreshold(LOCK_THRESHOLD).withStackTrace();
+        recording.enable("jdk.ThreadPark").withThreshold(LOCK_THRESHOLD).withStackTrace();
+        recording.enable(RunTotals.class);
+        recording.setDestination(Path.of(settings.getFile()));
+        recording.setDumpOnExit(true);
+        FlightRecorder.addPeriodicEvent(RunTotals.class, totalsHook);
+        recording.start();
+        log.info("JFR recording started; dumps to {} on shutdown", settings.getFile());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recording == null) return;
+        FlightRecorder.removePeriodicEvent(totalsHook);
+        try {
+            if (recording.getState() == RecordingState.RUNNING) {
+                recordTotals();
+                recording.stop(); // writes to the destination
+            }
+            log.info("JFR recording written: file={}, messages={}", settings.getFile(), messagesHandled());
+        } catch (Exception e) {
+            log.warn("JFR dump failed: file={}, error={}", settings.getFile(), e.getMessage());
+        } finally {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    private void recordTotals() {
+        RunTotals totals = new RunTotals();
+        totals.messages = messagesHandled();
+        totals.commit();
+    }
+
+    private long messagesHandled() {
+        long messages = 0;
+        for (Room room : handler.getRoomRegistry().all()) messages += room.getMessageCount();
+        return messages;
+    }
+
+    @Name("chatflow.RunTotals")
+    @Label("ChatFlow run totals")
+    @Period("1 s")
+    static class RunTotals extends Event {
+        @Label("Messages")
+        long messages;
+    }
+}
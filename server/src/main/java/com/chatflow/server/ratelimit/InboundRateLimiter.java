@@ -0,0 +1,61 @@
+package com.chatflow.server.ratelimit;
+
+import com.chatflow.server.config.ChatFlowProperties;
+
+/**
+ * Per-user and per-room inbound limits, checked before a frame is parsed.
+ *
+ * The room comes from the connection, and the user id is read from the raw payload with a short scan, so
+ * a flooding client is turned away before Jackson or validation touch its frame. Frames whose userId cannot
+ * be found this way skip the user check; validation rejects them anyway.
+ */
+public class InboundRateLimiter {
+
+    private static final String USER_ID_FIELD = "\"userId\"";
+
+    private final TokenBucketTable users;
+    private final TokenBucketTable rooms;
+
+    public InboundRateLimiter(ChatFlowProperties.RateLimit settings) {
+        this.users = new TokenBucketTable(settings.getUserSlots(), settings.getUserRatePerSecond(),
+                settings.getUserBurst(), settings.getIdleEvictMs());
+        this.rooms = new TokenBucketTable(settings.getRoomSlots(), settings.getRoomRatePerSecond(),
+                settings.getRoomBurst(), settings.getIdleEvictMs());
+    }
+
+    /** @return 0 if the room may accept another message, otherwise retry-after in ms */
+    public long checkRoom(int roomIndex) {
+        return rooms.tryAcquire(roomIndex);
+    }
+
+    /** @return 0 if the user may send, otherwise retry-after in ms */
+    public long checkUser(int userId) {
+        return users.tryAcquire(userId);
+    }
+
+    public TokenBucketTable getUsers() { return users; }
+    public TokenBucketTable getRooms() { return rooms; }
+
+    /**
+     * Pull the numeric userId out of a raw JSON payload without parsing it.
+     *
+     * @return the id, or -1 if it is missing or not a plain decimal string/number
+     */
+    public static int peekUserId(String payload) {
+        int at = payload.indexOf(USER_ID_FIELD);
+        if (at < 0) return -1;
+        int i = at + USER_ID_FIELD.length();
+        int n = payload.length();
+        while (i < n && (payload.charAt(i) == ' ' || payload.charAt(i) == ':' || payload.charAt(i) == '"')) i++;
+        int value = 0;
+        int digits = 0;
+        while (i < n && digits < 9) {
+            char c = payload.charAt(i);
+            if (c < '0' || c > '9') break;
+            value = value * 10 + (c - '0');
+            digits++;
+            i++;
+        }
+        return digits == 0 ? -1 : value;
+    }
+}
@@ -0,0 +1,149 @@
+package com.chatflow.server.ratelimit;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size, lock-free table of token buckets keyed by int.
+ *
+ * Each slot is an int key plus one packed long: the upper 40 bits hold the last refill time (ms since the
+ * table was created), the lower 24 bits hold tokens in thousandths. Taking a token is one CAS on that long,
+ * so there are no locks and no allocation on the hot path.
+ *
+ * Memory stays fixed at {@code capacity} slots (12 bytes each). A bucket that has been idle for
+ * {@code idleEvictMs} has refilled completely, so its slot can be handed to another key without changing
+ * any limit. Slots are reclaimed lazily during lookups: a lookup scans its whole probe window for the key
+ * first and only then claims the first free or idle slot it saw, so a key never gets a second bucket while
+ * its live one sits further along. A claim moves the slot's state to {@code CLAIMING} before the key changes
+ * hands, so no caller can take a token from a slot whose key and state belong to different owners. If every
+ * slot in the probe window is busy, the request is allowed and counted as untracked (fail open), rather than
+ * sharing a bucket.
+ */
+public class TokenBucketTable {
+
+    private static final int EMPTY = Integer.MIN_VALUE;
+    private static final int MAX_PROBES = 16;
+    private static final int TOKEN_BITS = 24;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final long MILLI = 1000;
+    // State of a slot whose key is being replaced; never a packed state (its time would be 2^40 - 1 ms)
+    private static final long CLAIMING = -1L;
+    private static final long RETRY = -1L;
+
+    private final AtomicIntegerArray keys;
+    private final AtomicLongArray states;
+    private final int mask;
+    private final long ratePerSecond;      // == milli-tokens refilled per millisecond
+    private final long capacityMilli;
+    private final long idleEvictMs;
+    private final long epochNanos = System.nanoTime();
+    private final LongAdder untracked = new LongAdder();
+
+    /**
+     * @param slots        table size, rounded up to a power of two
+     * @param ratePerSecond sustained tokens per second per key
+     * @param burst        bucket capacity in tokens (at most 16,000)
+     * @param idleEvictMs  idle time after which a slot may be reused; raised to the full-refill time if lower
+     */
+    public TokenBucketTable(int slots, int ratePerSecond, int burst, long idleEvictMs) {
+        if (ratePerSecond <= 0 || burst <= 0 || burst * MILLI > TOKEN_MASK) {
+            throw new IllegalArgumentException("rate and burst must be positive, burst <= 16000");
+        }
+        int size = Integer.highestOneBit(Math.max(slots, MAX_PROBES) - 1) << 1;
+        this.keys = new AtomicIntegerArray(size);
+        this.states = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) keys.set(i, EMPTY);
+        this.mask = size - 1;
+        this.ratePerSecond = ratePerSecond;
+        this.capacityMilli = burst * MILLI;
+        long refillMs = (capacityMilli + ratePerSecond - 1) / ratePerSecond;
+        this.idleEvictMs = Math.max(idleEvictMs, refillMs);
+    }
+
+    /**
+     * Take one token for {@code key}.
+     *
+     * @return 0 if allowed, otherwise the number of milliseconds until a token is available
+     */
+    public long tryAcquire(int key) {
+        return tryAcquire(key, nowMs());
+    }
+
+    long tryAcquire(int key, long now) {
+        if (key == EMPTY) key = EMPTY + 1;
+        int start = mix(key) & mask;
+        while (true) {
+            int free = -1;
+            long freeState = 0;
+            boolean retry = false;
+            for (int p = 0; p < MAX_PROBES; p++) {
+                int i = (start + p) & mask;
+                long state = states.get(i);
+                int k = keys.get(i);
+                if (state == CLAIMING) {
+                    retry = true; // may be our key arriving; can't claim a slot until we know
+                } else if (k == key) {
+                    long wait = consume(i, key, now);
+                    if (wait != RETRY) return wait;
+                    retry = true; // the slot changed hands while we looked at it
+                } else if (free < 0 && (k == EMPTY || now - timeOf(state) >= idleEvictMs)) {
+                    free = i;
+                    freeState = state;
+                }
+            }
+            if (retry) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (free < 0) {
+                untracked.increment();
+                return 0;
+            }
+            // Key and state change hands together: nobody consumes from a CLAIMING slot
+            if (states.compareAndSet(free, freeState, CLAIMING)) {
+                keys.set(free, key);
+                // Fresh full bucket minus the token being taken
+                states.set(free, pack(now, capacityMilli - MILLI));
+                return 0;
+            }
+            // Lost the slot to another claimer or a consume; scan again
+        }
+    }
+
+    public long getUntracked() { return untracked.sum(); }
+    public int getSlots() { return mask + 1; }
+
+    // RETRY if slot i is no longer key's bucket
+    private long consume(int i, int key, long now) {
+        while (true) {
+            long cur = states.get(i);
+            if (cur == CLAIMING || keys.get(i) != key) return RETRY;
+            long last = timeOf(cur);
+            long elapsed = Math.max(0, now - last);
+            long tokens = Math.min(capacityMilli, tokensOf(cur) + elapsed * ratePerSecond);
+            if (tokens < MILLI) {
+                // Not enough: report how long until one whole token has accumulated
+                return (MILLI - tokens + ratePerSecond - 1) / ratePerSecond;
+            }
+            long next = pack(Math.max(now, last), tokens - MILLI);
+            if (states.compareAndSet(i, cur, next)) return 0;
+        }
+    }
+
+    private long nowMs() {
+        return (System.nanoTime() - epochNanos) / 1_000_000;
+    }
+
+    private static long pack(long timeMs, long tokensMilli) {
+        return (timeMs << TOKEN_BITS) | tokensMilli;
+    }
+
+    private static long timeOf(long state) { return state >>> TOKEN_BITS; }
+    private static long tokensOf(long state) { return state & TOKEN_MASK; }
+
+    static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
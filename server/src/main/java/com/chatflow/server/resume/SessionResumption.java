@@ -0,0 +1,168 @@
+package com.chatflow.server.resume;
+
+import com.chatflow.server.config.ChatFlowProperties;
+import com.chatflow.server.room.Room;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lets a client that lost its socket pick up where it left off instead of reloading the room.
+ *
+ * Every handshake to a room with history gets a random token in the {@value #HEADER} response header.
+ * Reconnecting with {@code ?resume=<token>&lastSeq=N} redeems it, once, while the old session is open or
+ * up to {@code token-ttl-ms} after it closed. A token whose handshake never produced a session (the upgrade
+ * failed, or the client left first) is dropped {@code token-ttl-ms} after it was issued. The new session then rejoins through {@link Room#rejoin},
+ * which replays the room's broadcasts after N in one write. N is raised to the seq the old session joined
+ * at, so a token never reveals what the room said before its holder arrived. A token that is unknown,
+ * expired or for another room still lets the session in; it gets an incomplete RESUMED frame and nothing
+ * replayed, and the client knows it has to reload.
+ *
+ * Runs after {@link com.chatflow.server.room.RoomHandshakeInterceptor}, which resolves the room.
+ */
+public class SessionResumption implements HandshakeInterceptor {
+
+    public static final String HEADER = "X-Resume-Token";
+    /** Session attribute: the token issued to this session. */
+    public static final String TOKEN_ATTRIBUTE = SessionResumption.class.getName() + ".token";
+    /** Session attribute: last seq the resumed session has seen, or -1 if its token was refused. */
+    public static final String RESUME_AFTER_ATTRIBUTE = SessionResumption.class.getName() + ".after";
+
+    // Expired tokens are swept once per this many issued
+    private static final int SWEEP_EVERY = 256;
+    private static final long OPEN = Long.MAX_VALUE;
+
+    private final long ttlNanos;
+    private final SecureRandom random = new SecureRandom();
+    private final ConcurrentHashMap<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private final AtomicInteger untilSweep = new AtomicInteger(SWEEP_EVERY);
+    private final LongAdder resumed = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder incomplete = new LongAdder();
+
+    private static final class Ticket {
+        final Room room;
+        final long joinedAfter;
+        final long issuedAtNanos;
+        volatile boolean bound; // its session was established
+        volatile long closedAtNanos = OPEN;
+
+        Ticket(Room room, long joinedAfter, long issuedAtNanos) {
+            this.room = room;
+            this.joinedAfter = joinedAfter;
+            this.issuedAtNanos = issuedAtNanos;
+        }
+    }
+
+    public SessionResumption(ChatFlowProperties.Resume settings) {
+        this.ttlNanos = settings.getTokenTtlMs() * 1_000_000L;
+    }
+
+    public int getTokens() { return tickets.size(); }
+    public long getResumed() { return resumed.sum(); }
+    public long getRefused() { return refused.sum(); }
+    public long getReplayedFrames() { return replayed.sum(); }
+    public long getIncompleteReplays() { return incomplete.sum(); }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        Room room = (Room) attributes.get(Room.ATTRIBUTE);
+        if (room == null || room.getHistoryCapacity() == 0) return true;
+
+        var params = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams();
+        String presented = params.getFirst("resume");
+        long joinedAfter = room.getLastDelivered();
+        if (presented != null) {
+            long after = redeem(presented, room, parseSeq(params.getFirst("lastSeq")));
+            attributes.put(RESUME_AFTER_ATTRIBUTE, after);
+            if (after >= 0) joinedAfter = Math.min(after, joinedAfter); // it is about to get the rest replayed
+        }
+        String token = issue(room, joinedAfter);
+        attributes.put(TOKEN_ATTRIBUTE, token);
+        response.getHeaders().set(HEADER, token);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    /** New token for a session in {@code room} that has seen everything up to {@code joinedAfter}. */
+    String issue(Room room, long joinedAfter) {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        tickets.put(token, new Ticket(room, joinedAfter, System.nanoTime()));
+        if (untilSweep.decrementAndGet() <= 0) {
+            untilSweep.set(SWEEP_EVERY);
+            sweep(System.nanoTime());
+        }
+        return token;
+    }
+
+    /** Consumes {@code token}; returns the seq to replay after, or -1 if the token can't be used here. */
+    long redeem(String token, Room room, long lastSeq) {
+        Ticket t = tickets.remove(token);
+        if (t == null || t.room != room || expired(t, System.nanoTime()) || lastSeq < 0) {
+            refused.increment();
+            return -1;
+        }
+        resumed.increment();
+        return Math.max(lastSeq, t.joinedAfter);
+    }
+
+    /** The session was established: its token no longer expires until the session closes. */
+    public void bind(WebSocketSession session) {
+        Ticket t = ticketOf(session);
+        if (t != null) t.bound = true;
+    }
+
+    /** The session closed: its token stays redeemable for the TTL from now. */
+    public void release(WebSocketSession session) {
+        Ticket t = ticketOf(session);
+        if (t != null) t.closedAtNanos = System.nanoTime();
+    }
+
+    private Ticket ticketOf(WebSocketSession session) {
+        Object token = session.getAttributes().get(TOKEN_ATTRIBUTE);
+        return token != null ? tickets.get(token) : null;
+    }
+
+    /** Record the outcome of a resumed session's {@link Room#rejoin}. */
+    public void recordReplay(Room.Replay replay) {
+        replayed.add(replay.frames());
+        if (!replay.complete()) incomplete.increment();
+    }
+
+    void sweep(long now) {
+        tickets.values().removeIf(t -> expired(t, now));
+    }
+
+    private boolean expired(Ticket t, long now) {
+        if (!t.bound) return now - t.issuedAtNanos > ttlNanos;
+        long closedAt = t.closedAtNanos;
+        return closedAt != OPEN && now - closedAt > ttlNanos;
+    }
+
+    private static long parseSeq(String value) {
+        if (value == null) return -1;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.chatflow.server.room;
+
+import com.chatflow.server.outbound.OutboundQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Everything the server keeps per chat room, resolved once at handshake and stored in the session's
+ * attributes, so per-message paths reach it by reference rather than by parsing the URI and hashing
+ * the id again.
+ *
+ * Broadcasts are numbered per room and delivered in that order. Numbers come from an AtomicLong, so
+ * any thread may take one; the frame then lands in a ring slot for its number, and whichever thread
+ * wins {@code deliverLock.tryLock()} queues consecutive ready frames to every member. Everyone else
+ * returns at once, the same shape as {@link OutboundQueue}'s writer. The deliverer never writes to a
+ * socket while it holds the lock ({@link OutboundQueue#offer} only queues); it flushes the members
+ * after letting go, so a member with a full send buffer stalls that flush and nothing else. Nothing is
+ * serialised beyond the room. A thread that is a full ring ahead of delivery parks for a while, then
+ * leaves its frame in a spill map rather than wait on. Under {@link RoomEventLoops} the room has a
+ * single publisher, so every frame is delivered as soon as it is published. The loop serves many rooms,
+ * so there the flush is not done by the deliverer either: it goes to the queues' writer pool
+ * ({@link OutboundQueue#flushAsync}), and a member that stopped reading holds up no other room.
+ *
+ * With history on, a resumed session rejoins through {@link #rejoin}, which replays the frames it missed
+ * from the history ring ahead of anything delivered after it.
+ */
+public class Room {
+
+    private static final Logger log = LoggerFactory.getLogger(Room.class);
+
+    /** Session attribute holding the connection's Room. */
+    public static final String ATTRIBUTE = Room.class.getName();
+
+    // Numbered frames that may be waiting for an earlier number at once; bounded by handler threads
+    private static final int REORDER_CAPACITY = 1024;
+    // How long a publisher a full ring ahead waits for its slot before spilling the frame
+    private static final long SLOT_WAIT_NANOS = 50_000_000;
+    private static final long MAX_PARK_NANOS = 1_000_000;
+
+    private final String id;
+    private final int index;
+    private final CopyOnWriteArrayList<OutboundQueue> members = new CopyOnWriteArrayList<>();
+    private final LongAdder messages = new LongAdder();
+
+    private final AtomicLong nextSeq = new AtomicLong(1); // 0 = not sequenced
+    private final AtomicReferenceArray<Numbered> reorder = new AtomicReferenceArray<>(REORDER_CAPACITY);
+    // Frames that found no ring slot in time, by seq; empty unless an earlier number is stuck
+    private final ConcurrentHashMap<Long, Numbered> spill = new ConcurrentHashMap<>();
+    private final ReentrantLock deliverLock = new ReentrantLock();
+    private volatile long nextToDeliver = 1;
+
+    // Delivered frames by seq & mask, written only by the delivering thread; null when history is disabled
+    private final AtomicReferenceArray<String> history;
+    // Flush members on their writer pool instead of the delivering thread (rooms owned by event loops)
+    private final boolean asyncFlush;
+
+    private record Numbered(String json, OutboundQueue sender) {}
+
+    /** Outcome of {@link #rejoin}: frames replayed, and whether they covered the whole gap. */
+    public record Replay(int frames, boolean complete) {}
+
+    Room(String id, int index, int historySize) {
+        this(id, index, historySize, false);
+    }
+
+    Room(String id, int index, int historySize, boolean asyncFlush) {
+        this.id = id;
+        this.asyncFlush = asyncFlush;
+        this.index = index;
+        this.history = historySize > 0
+                ? new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(historySize, 2) - 1) << 1)
+                : null;
+    }
+
+    public String getId() { return id; }
+
+    /**
+     * Dense, never reused index assigned in creation order (0, 1, 2, ...). Collision-free int key for
+     * per-room tables such as the rate limiter's buckets.
+     */
+    public int getIndex() { return index; }
+
+    public List<OutboundQueue> getMembers() { return members; }
+    public void join(OutboundQueue member) { members.add(member); }
+    public void leave(OutboundQueue member) { members.remove(member); }
+
+    public void recordMessage() { messages.increment(); }
+    public long getMessageCount() { return messages.sum(); }
+
+    /** Take the next sequence number. Every number taken must be passed to {@link #publish}. */
+    public long nextSeq() { return nextSeq.getAndIncrement(); }
+
+    /** Highest sequence number delivered so far (0 before the first). */
+    public long getLastDelivered() { return nextToDeliver - 1; }
+
+    /** Frames waiting outside the reorder ring because an earlier number is long overdue (normally 0). */
+    public int getSpilled() { return spill.size(); }
+
+    /**
+     * Queue {@code json} as broadcast number {@code seq}: {@code sender} gets it as its ack, every other
+     * member as a broadcast, once all lower numbers have gone out. A null {@code json} (serialisation
+     * failed) just releases the number.
+     */
+    public void publish(long seq, String json, OutboundQueue sender) {
+        Numbered frame = new Numbered(json, sender);
+        if (awaitSlot(seq)) {
+            reorder.set(slot(seq), frame);
+        } else {
+            spill.put(seq, frame);
+        }
+        deliverReady();
+    }
+
+    // A full ring ahead of delivery: park (not spin) while the earlier numbers land, up to SLOT_WAIT_NANOS
+    private boolean awaitSlot(long seq) {
+        if (seq - nextToDeliver < REORDER_CAPACITY) return true;
+        long deadline = System.nanoTime() + SLOT_WAIT_NANOS;
+        long park = 1_000;
+        while (seq - nextToDeliver >= REORDER_CAPACITY) {
+            if (System.nanoTime() - deadline >= 0) return false;
+            LockSupport.parkNanos(park);
+            park = Math.min(park << 1, MAX_PARK_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Join {@code member} as a resumed session that has seen the room's broadcasts up to {@code afterSeq}.
+     * A {@code {"status":"RESUMED"}} frame and every later frame still in history are written to it in one
+     * batch, before any broadcast that follows, then it joins. The replay is incomplete when part of the
+     * gap has already left the ring or {@code afterSeq} is not a number this room has reached (e.g. -1 for
+     * a token the caller rejected); the member joins either way.
+     */
+    public Replay rejoin(OutboundQueue member, long afterSeq) {
+        Replay replay;
+        deliverLock.lock();
+        try {
+            long last = nextToDeliver - 1;
+            long oldest = Math.max(1, last - getHistoryCapacity() + 1);
+            boolean inRange = afterSeq >= 0 && afterSeq <= last;
+            List<String> frames = new ArrayList<>();
+            frames.add(null); // the RESUMED frame, once the count is known
+            for (long seq = Math.max(afterSeq + 1, oldest); inRange && seq <= last; seq++) {
+                String json = history.get((int) (seq & (history.length() - 1)));
+                if (json != null) frames.add(json); // null: the number was released, never broadcast
+            }
+            replay = new Replay(frames.size() - 1, inRange && afterSeq + 1 >= oldest);
+            frames.set(0, "{\"status\":\"RESUMED\",\"lastSeq\":" + afterSeq + ",\"replayed\":" + replay.frames()
+                    + ",\"complete\":" + replay.complete() + "}");
+            member.offerBatch(frames);
+            members.add(member);
+        } finally {
+            deliverLock.unlock();
+        }
+        flush(member);
+        deliverReady(); // frames published while we held the lock
+        return replay;
+    }
+
+    // Whoever loses the tryLock race leaves its frame to the current deliverer, which re-checks after unlocking
+    private void deliverReady() {
+        while (ready(nextToDeliver) != null && deliverLock.tryLock()) {
+            List<OutboundQueue> senders;
+            try {
+                senders = deliverLocked();
+            } finally {
+                deliverLock.unlock();
+            }
+            // Socket writes happen here, outside the lock; a member whose writer is busy is skipped by
+            // tryLock in flush and picks up what we queued when its writer finishes
+            for (OutboundQueue member : members) flush(member);
+            for (OutboundQueue sender : senders) flush(sender); // acks to senders that are not members
+        }
+    }
+
+    private Numbered ready(long seq) {
+        Numbered next = reorder.get(slot(seq));
+        return next != null || spill.isEmpty() ? next : spill.get(seq);
+    }
+
+    // Queues every ready frame; returns the senders it acked, which the caller flushes after unlocking
+    private List<OutboundQueue> deliverLocked() {
+        List<OutboundQueue> senders = new ArrayList<>(1);
+        long seq = nextToDeliver;
+        Numbered next;
+        while ((next = ready(seq)) != null) {
+            reorder.set(slot(seq), null);
+            if (!spill.isEmpty()) spill.remove(seq);
+            // A released number clears its slot too, so a replay never picks up the frame a lap older
+            if (history != null) history.set((int) (seq & (history.length() - 1)), next.json());
+            if (next.json() != null) {
+                deliver(next.json(), next.sender());
+                if (senders.isEmpty() || senders.get(senders.size() - 1) != next.sender()) senders.add(next.sender());
+            }
+            nextToDeliver = ++seq;
+        }
+        return senders;
+    }
+
+    private void deliver(String json, OutboundQueue sender) {
+        sender.offer(json);
+        // Serialised once, queued to every member; each queue coalesces its own backlog
+        for (OutboundQueue member : members) {
+            if (member != sender) member.offer(json);
+        }
+    }
+
+    private void flush(OutboundQueue out) {
+        try {
+            if (asyncFlush) {
+                out.flushAsync();
+            } else {
+                out.flushQueued();
+            }
+        } catch (Exception e) {
+            log.warn("Broadcast failed: session={}, error={}", out.getSession().getId(), e.getMessage());
+        }
+    }
+
+    public int getHistoryCapacity() { return history == null ? 0 : history.length(); }
+
+    private static int slot(long seq) {
+        return (int) (seq & (REORDER_CAPACITY - 1));
+    }
+}
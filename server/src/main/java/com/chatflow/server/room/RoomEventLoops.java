@@ -0,0 +1,104 @@
+package com.chatflow.server.room;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed set of single-threaded event loops that own the rooms, partitioned by {@link Room#getIndex()}.
+ *
+ * Socket threads still parse and validate in parallel; they then hand the accepted message to the
+ * room's loop, which does membership changes, sequencing, history and fan-out for all of its rooms
+ * one task at a time. Room state then never sees two writers, and a hot room costs one core instead
+ * of every handler thread fighting over it. The loop only orders and queues frames; the socket writes
+ * happen on the sessions' writer pool, so a member that stopped reading never stalls the loop's other
+ * rooms.
+ *
+ * Each loop drains a lock-free multi-producer queue and parks when it is empty. A loop holds at most
+ * {@code maxQueued} tasks; past that, submitters wait, which pushes back on the sockets that are
+ * sending too fast instead of growing the heap.
+ */
+public class RoomEventLoops {
+
+    private static final Logger log = LoggerFactory.getLogger(RoomEventLoops.class);
+
+    private final Loop[] loops;
+
+    public RoomEventLoops(int threads, int maxQueued) {
+        this.loops = new Loop[threads];
+        for (int i = 0; i < threads; i++) {
+            loops[i] = new Loop(maxQueued);
+            Thread t = new Thread(loops[i], "room-loop-" + i);
+            t.setDaemon(true);
+            loops[i].thread = t;
+            t.start();
+        }
+    }
+
+    /** Run {@code task} on the loop that owns {@code room}, after every task submitted for it before. */
+    public void execute(Room room, Runnable task) {
+        loops[room.getIndex() % loops.length].submit(task);
+    }
+
+    public int getThreads() { return loops.length; }
+
+    /** Tasks waiting across all loops. */
+    public int getQueued() {
+        int n = 0;
+        for (Loop loop : loops) n += loop.size.get();
+        return n;
+    }
+
+    public void shutdown() {
+        for (Loop loop : loops) {
+            loop.running = false;
+            LockSupport.unpark(loop.thread);
+        }
+    }
+
+    private static final class Loop implements Runnable {
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final int maxQueued;
+        private volatile Thread thread;
+        private volatile boolean parked;
+        private volatile boolean running = true;
+
+        Loop(int maxQueued) {
+            this.maxQueued = maxQueued;
+        }
+
+        void submit(Runnable task) {
+            while (size.get() >= maxQueued && running) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+            }
+            size.incrementAndGet();
+            tasks.offer(task);
+            // Pairs with run(): it sets parked before its last isEmpty() check, we read it after offering
+            if (parked) LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                Runnable task = tasks.poll();
+                if (task == null) {
+                    parked = true;
+                    if (tasks.isEmpty() && running) LockSupport.park(this);
+                    parked = false;
+                    continue;
+                }
+                size.decrementAndGet();
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    log.warn("Room task failed: loop={}, error={}", Thread.currentThread().getName(), e.toString());
+                }
+            }
+        }
+    }
+}
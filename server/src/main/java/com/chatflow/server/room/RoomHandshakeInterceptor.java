@@ -0,0 +1,33 @@
+package com.chatflow.server.room;
+
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+
+/**
+ * Resolves the {@code {roomId}} path segment once per connection and stores the {@link Room} in the
+ * session attributes under {@link Room#ATTRIBUTE}.
+ */
+public class RoomHandshakeInterceptor implements HandshakeInterceptor {
+
+    private final RoomRegistry registry;
+
+    public RoomHandshakeInterceptor(RoomRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        attributes.put(Room.ATTRIBUTE, registry.room(RoomRegistry.roomIdOf(request.getURI().getPath())));
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
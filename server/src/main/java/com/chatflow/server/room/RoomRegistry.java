@@ -0,0 +1,70 @@
+package com.chatflow.server.room;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * All rooms, by id and by dense index. Looked up by id once per connection, at handshake; per-message
+ * paths go through the {@link Room} stored on the session instead, and per-room tables key on
+ * {@link Room#getIndex()}.
+ */
+public class RoomRegistry {
+
+    private final ConcurrentHashMap<String, Room> rooms = new ConcurrentHashMap<>();
+    private final int historySize;
+    private final boolean asyncFlush;
+    // Only grows; written under createLock and republished through the volatile field
+    private final ReentrantLock createLock = new ReentrantLock();
+    private volatile Room[] byIndex = new Room[32];
+    private int count;
+
+    public RoomRegistry(int historySize) {
+        this(historySize, false);
+    }
+
+    /** @param asyncFlush rooms are run by {@link RoomEventLoops}, which must not write to sockets themselves */
+    public RoomRegistry(int historySize, boolean asyncFlush) {
+        this.historySize = historySize;
+        this.asyncFlush = asyncFlush;
+    }
+
+    public Room room(String roomId) {
+        Room room = rooms.get(roomId);
+        return room != null ? room : rooms.computeIfAbsent(roomId, this::create);
+    }
+
+    public Room find(String roomId) { return rooms.get(roomId); }
+
+    /** @return the room with this index, or null if none has been created yet */
+    public Room byIndex(int index) {
+        Room[] table = byIndex;
+        return index >= 0 && index < table.length ? table[index] : null;
+    }
+
+    public int size() { return rooms.size(); }
+    public Collection<Room> all() { return rooms.values(); }
+
+    private Room create(String roomId) {
+        createLock.lock();
+        try {
+            Room room = new Room(roomId, count, historySize, asyncFlush);
+            Room[] table = count < byIndex.length ? byIndex : Arrays.copyOf(byIndex, count * 2);
+            table[count++] = room;
+            byIndex = table;
+            return room;
+        } finally {
+            createLock.unlock();
+        }
+    }
+
+    /** {@code /chat/5} -> {@code "5"}; anything without a room segment maps to {@code "default"}. */
+    public static String roomIdOf(String path) {
+        if (path == null) return "default";
+        int start = path.indexOf('/', 1);
+        if (start < 0 || start == path.length() - 1) return "default";
+        int end = path.indexOf('/', start + 1);
+        return end < 0 ? path.substring(start + 1) : path.substring(start + 1, end);
+    }
+}
@@ -23,4 +23,9 @@ class HealthControllerTest {
                 .andExpect(jsonPath("$.status").value("UP"))
                 .andExpect(jsonPath("$.timestamp").exists());
     }
+
+    @Test
+    void memoryEndpointDisabledByDefault() throws Exception {
+        mockMvc.perform(get("/memory")).andExpect(status().isNotFound());
+    }
 }
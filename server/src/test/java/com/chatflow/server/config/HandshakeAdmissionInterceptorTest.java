@@ -0,0 +1,139 @@
+package com.chatflow.server.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HandshakeAdmissionInterceptorTest {
+
+    private final ServletServerHttpRequest request =
+            new ServletServerHttpRequest(new MockHttpServletRequest("GET", "/chat/1"));
+
+    private static final int WORKERS = 200;
+
+    private static ChatFlowProperties.Handshake settings(int maxConcurrent, int maxQueued, long timeoutMs) {
+        var s = new ChatFlowProperties.Handshake();
+        s.setEnabled(true);
+        s.setMaxConcurrent(maxConcurrent);
+        s.setMaxQueued(maxQueued);
+        s.setQueueTimeoutMs(timeoutMs);
+        return s;
+    }
+
+    private boolean before(HandshakeAdmissionInterceptor interceptor, MockHttpServletResponse servletResponse)
+            throws Exception {
+        var response = new ServletServerHttpResponse(servletResponse);
+        boolean admitted = interceptor.beforeHandshake(request, response, null, new HashMap<>());
+        response.flush();
+        return admitted;
+    }
+
+    @Test
+    void underCap_admits() throws Exception {
+        var interceptor = new HandshakeAdmissionInterceptor(settings(2, 0, 0), WORKERS);
+
+        assertTrue(before(interceptor, new MockHttpServletResponse()));
+        assertTrue(before(interceptor, new MockHttpServletResponse()));
+        assertEquals(2, interceptor.getInProgress());
+    }
+
+    @Test
+    void overCap_rejectsWith503AndRetryAfter() throws Exception {
+        var interceptor = new HandshakeAdmissionInterceptor(settings(1, 0, 0), WORKERS);
+        assertTrue(before(interceptor, new MockHttpServletResponse()));
+
+        var rejected = new MockHttpServletResponse();
+        assertFalse(before(interceptor, rejected));
+
+        assertEquals(503, rejected.getStatus());
+        assertEquals("1", rejected.getHeader("Retry-After"));
+        assertEquals(1, interceptor.getRejected());
+    }
+
+    @Test
+    void afterHandshake_releasesPermit() throws Exception {
+        var interceptor = new HandshakeAdmissionInterceptor(settings(1, 0, 0), WORKERS);
+        assertTrue(before(interceptor, new MockHttpServletResponse()));
+
+        interceptor.afterHandshake(request, null, null, null);
+
+        assertEquals(0, interceptor.getInProgress());
+        assertTrue(before(interceptor, new MockHttpServletResponse()));
+    }
+
+    @Test
+    void queuedHandshake_admittedWhenPermitFreed() throws Exception {
+        var interceptor = new HandshakeAdmissionInterceptor(settings(1, 10, 5_000), WORKERS);
+        assertTrue(before(interceptor, new MockHttpServletResponse()));
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            interceptor.afterHandshake(request, null, null, null);
+        });
+        releaser.start();
+
+        assertTrue(before(interceptor, new MockHttpServletResponse()));
+        releaser.join();
+    }
+
+    @Test
+    void defaults_rejectAtOnceInsteadOfParkingAWorker() throws Exception {
+        var s = new ChatFlowProperties.Handshake();
+        s.setEnabled(true);
+        s.setMaxConcurrent(1);
+        var interceptor = new HandshakeAdmissionInterceptor(s, WORKERS);
+        assertTrue(before(interceptor, new MockHttpServletResponse()));
+
+        long start = System.nanoTime();
+        assertFalse(before(interceptor, new MockHttpServletResponse()));
+        assertTrue(System.nanoTime() - start < 50_000_000L);
+        assertFalse(new ChatFlowProperties.Handshake().isEnabled()); // opt-in
+    }
+
+    @Test
+    void waiters_cappedAtQuarterOfWorkerPool() throws Exception {
+        var interceptor = new HandshakeAdmissionInterceptor(settings(1, 2048, 5_000), 4); // one waiter at most
+        assertTrue(before(interceptor, new MockHttpServletResponse()));
+
+        CountDownLatch waiting = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                waiting.countDown();
+                before(interceptor, new MockHttpServletResponse());
+            } catch (Exception ignored) {
+            }
+        });
+        waiter.start();
+        waiting.await();
+        while (interceptor.getQueued() == 0) Thread.sleep(1);
+
+        var rejected = new MockHttpServletResponse();
+        long start = System.nanoTime();
+        assertFalse(before(interceptor, rejected)); // the cap is full: no second waiter
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+        assertEquals(503, rejected.getStatus());
+
+        interceptor.afterHandshake(request, null, null, null);
+        waiter.join(5_000);
+        assertEquals(0, interceptor.getQueued());
+    }
+
+    @Test
+    void disabled_admitsEverything() throws Exception {
+        var s = settings(1, 0, 0);
+        s.setEnabled(false);
+        var interceptor = new HandshakeAdmissionInterceptor(s, WORKERS);
+
+        for (int i = 0; i < 5; i++) assertTrue(before(interceptor, new MockHttpServletResponse()));
+    }
+}
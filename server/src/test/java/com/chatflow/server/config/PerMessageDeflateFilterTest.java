@@ -0,0 +1,68 @@
+package com.chatflow.server.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PerMessageDeflateFilterTest {
+
+    private static final String OFFER = "permessage-deflate; client_max_window_bits";
+
+    private HttpServletRequest filter(ChatFlowProperties.Compression settings, String header) throws Exception {
+        var request = new MockHttpServletRequest("GET", "/chat/1");
+        if (header != null) request.addHeader(PerMessageDeflateFilter.EXTENSIONS_HEADER, header);
+        var chain = new MockFilterChain();
+        new PerMessageDeflateFilter(settings).doFilter(request, new MockHttpServletResponse(), chain);
+        return (HttpServletRequest) chain.getRequest();
+    }
+
+    @Test
+    void defaults_passOfferThrough() throws Exception {
+        var req = filter(new ChatFlowProperties.Compression(), OFFER);
+        assertEquals(OFFER, req.getHeader(PerMessageDeflateFilter.EXTENSIONS_HEADER));
+    }
+
+    @Test
+    void disabled_removesDeflateOffer() throws Exception {
+        var settings = new ChatFlowProperties.Compression();
+        settings.setEnabled(false);
+
+        var req = filter(settings, OFFER);
+
+        assertNull(req.getHeader(PerMessageDeflateFilter.EXTENSIONS_HEADER));
+        assertFalse(req.getHeaders(PerMessageDeflateFilter.EXTENSIONS_HEADER).hasMoreElements());
+    }
+
+    @Test
+    void disabled_keepsOtherExtensions() {
+        var settings = new ChatFlowProperties.Compression();
+        settings.setEnabled(false);
+
+        var rewritten = new PerMessageDeflateFilter(settings).rewrite(List.of("x-foo, permessage-deflate"));
+
+        assertEquals(List.of("x-foo"), rewritten);
+    }
+
+    @Test
+    void noServerContextTakeover_isAddedToOffer() throws Exception {
+        var settings = new ChatFlowProperties.Compression();
+        settings.setServerContextTakeover(false);
+
+        var req = filter(settings, OFFER);
+
+        assertEquals(OFFER + "; server_no_context_takeover",
+                req.getHeader(PerMessageDeflateFilter.EXTENSIONS_HEADER));
+    }
+
+    @Test
+    void noOffer_requestUntouched() throws Exception {
+        var req = filter(new ChatFlowProperties.Compression(), null);
+        assertNull(req.getHeader(PerMessageDeflateFilter.EXTENSIONS_HEADER));
+    }
+}
@@ -0,0 +1,36 @@
+package com.chatflow.server.config;
+
+import org.apache.catalina.connector.Connector;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.tomcat.util.net.AbstractEndpoint;
+import org.apache.tomcat.util.net.SocketProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebSocketConfigTest {
+
+    @Test
+    void sessionBufferCustomizer_setsConnectorSocketBuffers() throws Exception {
+        var properties = new ChatFlowProperties();
+        properties.getSession().setSocketBufferBytes(3000);
+        var factory = new TomcatServletWebServerFactory();
+        String before = System.getProperty(WebSocketConfig.TOMCAT_IO_BUFFER_PROPERTY);
+
+        WebSocketConfig.sessionBufferCustomizer(properties).customize(factory);
+        Connector connector = new Connector(TomcatServletWebServerFactory.DEFAULT_PROTOCOL);
+        factory.getTomcatConnectorCustomizers().forEach(c -> c.customize(connector));
+
+        // What the NIO endpoint will allocate per connection, not just the attribute the connector stored
+        Method getEndpoint = AbstractProtocol.class.getDeclaredMethod("getEndpoint");
+        getEndpoint.setAccessible(true);
+        SocketProperties socket = ((AbstractEndpoint<?, ?>) getEndpoint.invoke(connector.getProtocolHandler()))
+                .getSocketProperties();
+        assertEquals(3000, socket.getAppReadBufSize());
+        assertEquals(3000, socket.getAppWriteBufSize());
+        assertEquals(before, System.getProperty(WebSocketConfig.TOMCAT_IO_BUFFER_PROPERTY)); // no JVM-wide side effect
+    }
+}
@@ -0,0 +1,70 @@
+package com.chatflow.server.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageDeduplicatorTest {
+
+    @Test
+    void sameIdFromSameUser_isDuplicate() {
+        MessageDeduplicator dedup = new MessageDeduplicator(60_000, 1024);
+
+        assertTrue(dedup.firstSeen(1, "abc"));
+        assertFalse(dedup.firstSeen(1, "abc"));
+        assertEquals(1, dedup.getDuplicates());
+    }
+
+    @Test
+    void sameIdFromDifferentUsers_isNotDuplicate() {
+        MessageDeduplicator dedup = new MessageDeduplicator(60_000, 1024);
+
+        assertTrue(dedup.firstSeen(1, "abc"));
+        assertTrue(dedup.firstSeen(2, "abc"));
+    }
+
+    @Test
+    void idsSurviveOneRotation() {
+        MessageDeduplicator dedup = new MessageDeduplicator(60_000, 128);
+
+        assertTrue(dedup.firstSeen(1, "first"));
+        // Half-fill the current generation to force a rotation
+        for (int i = 0; i < 64; i++) dedup.firstSeen(2, "m" + i);
+
+        assertFalse(dedup.firstSeen(1, "first"));
+    }
+
+    @Test
+    void idsAreForgottenAfterTwoRotations() {
+        MessageDeduplicator dedup = new MessageDeduplicator(60_000, 128);
+
+        assertTrue(dedup.firstSeen(1, "first"));
+        for (int i = 0; i < 200; i++) dedup.firstSeen(2, "m" + i);
+
+        assertTrue(dedup.firstSeen(1, "first"));
+    }
+
+    @Test
+    void forgottenId_isSeenAsNewAgain() {
+        MessageDeduplicator dedup = new MessageDeduplicator(60_000, 1024);
+
+        assertTrue(dedup.firstSeen(1, "abc"));
+        dedup.forget(1, "abc");
+
+        assertTrue(dedup.firstSeen(1, "abc"));
+        assertFalse(dedup.firstSeen(1, "abc"));
+    }
+
+    @Test
+    void forgettingAKey_keepsLaterKeysInItsProbeChainFindable() {
+        MessageDeduplicator dedup = new MessageDeduplicator(60_000, 128);
+
+        // Same home slot in a 128-slot table: the second key is stored one slot further along
+        assertTrue(dedup.firstSeen(5L));
+        assertTrue(dedup.firstSeen(5L + 128));
+        dedup.forget(5L);
+
+        assertFalse(dedup.firstSeen(5L + 128));
+        assertTrue(dedup.firstSeen(5L));
+    }
+}
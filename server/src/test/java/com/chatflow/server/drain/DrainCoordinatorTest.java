@@ -0,0 +1,129 @@
+package com.chatflow.server.drain;
+
+import com.chatflow.server.config.ChatFlowProperties;
+import com.chatflow.server.controller.HealthController;
+import com.chatflow.server.handler.ChatWebSocketHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.URI;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DrainCoordinatorTest {
+
+    private ChatFlowProperties properties;
+    private ChatWebSocketHandler handler;
+    private DrainCoordinator drain;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ChatFlowProperties();
+        properties.getDrain().setWindowMs(200);
+        properties.getDrain().setReconnectJitterMs(3000);
+        handler = new ChatWebSocketHandler(properties);
+        drain = new DrainCoordinator(properties, handler);
+    }
+
+    private WebSocketSession open(String id) {
+        WebSocketSession s = mock(WebSocketSession.class);
+        when(s.getId()).thenReturn(id);
+        when(s.getUri()).thenReturn(URI.create("ws://localhost:8080/chat/1"));
+        when(s.isOpen()).thenReturn(true);
+        handler.afterConnectionEstablished(s);
+        return s;
+    }
+
+    private boolean handshake(MockHttpServletResponse servletResponse) throws Exception {
+        var request = new ServletServerHttpRequest(new MockHttpServletRequest("GET", "/chat/1"));
+        var response = new ServletServerHttpResponse(servletResponse);
+        boolean admitted = drain.beforeHandshake(request, response, null, new HashMap<>());
+        response.flush();
+        return admitted;
+    }
+
+    @Test
+    void drain_sendsReconnectHintThenClosesEverySessionWithServiceRestart() throws Exception {
+        WebSocketSession a = open("a");
+        WebSocketSession b = open("b");
+
+        assertTrue(drain.startDrain());
+        assertTrue(drain.awaitDrained(5_000));
+
+        for (WebSocketSession s : new WebSocketSession[] {a, b}) {
+            InOrder order = inOrder(s);
+            var frame = ArgumentCaptor.forClass(TextMessage.class);
+            order.verify(s).sendMessage(frame.capture());
+            var close = ArgumentCaptor.forClass(CloseStatus.class);
+            order.verify(s).close(close.capture());
+
+            String hint = frame.getValue().getPayload();
+            assertTrue(hint.startsWith("{\"status\":\"RECONNECT\""), hint);
+            long after = Long.parseLong(hint.replaceAll(".*\"reconnectAfterMs\":(\\d+).*", "$1"));
+            assertTrue(after >= 0 && after <= 3000, hint);
+            assertEquals(CloseStatus.SERVICE_RESTARTED.getCode(), close.getValue().getCode());
+        }
+        assertEquals(2, drain.getClosed());
+        assertEquals(DrainCoordinator.State.DRAINED, drain.getState());
+    }
+
+    @Test
+    void drain_spreadsClosesOverTheWindow() throws Exception {
+        properties.getDrain().setWindowMs(400);
+        for (int i = 0; i < 4; i++) open("s" + i);
+
+        long start = System.nanoTime();
+        drain.startDrain();
+        assertTrue(drain.awaitDrained(5_000));
+
+        // The last of 4 sessions closes 3/4 of the way through the window
+        assertTrue(System.nanoTime() - start >= 300_000_000L);
+    }
+
+    @Test
+    void handshake_admittedWhileServing_rejectedWith503OnceDraining() throws Exception {
+        assertTrue(handshake(new MockHttpServletResponse()));
+
+        drain.startDrain();
+        var rejected = new MockHttpServletResponse();
+        assertFalse(handshake(rejected));
+        assertEquals(503, rejected.getStatus());
+        assertEquals("3", rejected.getHeader("Retry-After"));
+        assertEquals(1, drain.getRejected());
+        assertFalse(drain.startDrain()); // already under way
+    }
+
+    @Test
+    void health_reportsDrainingWith503() throws Exception {
+        HealthController health = new HealthController(drain, properties);
+        assertEquals(HttpStatus.OK, health.health().getStatusCode());
+
+        drain.startDrain();
+        var response = health.health();
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("DRAINING", response.getBody().get("status"));
+    }
+
+    @Test
+    void drainEndpoint_disabledByDefault() {
+        HealthController health = new HealthController(drain, properties);
+        assertEquals(HttpStatus.NOT_FOUND, health.drain().getStatusCode());
+        assertFalse(drain.isDraining());
+
+        properties.getDrain().setEndpointEnabled(true);
+        assertEquals(HttpStatus.ACCEPTED, health.drain().getStatusCode());
+        assertTrue(drain.isDraining());
+    }
+}
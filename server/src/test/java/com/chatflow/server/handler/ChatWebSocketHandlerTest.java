@@ -1,13 +1,21 @@
 package com.chatflow.server.handler;
 
+import com.chatflow.server.config.ChatFlowProperties;
+import com.chatflow.server.resume.SessionResumption;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
+import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -125,6 +133,18 @@ class ChatWebSocketHandlerTest {
         assertTrue(response.contains("userId"));
     }
 
+    @Test
+    void userId_jsonNumber_accepted_echoedAsString() throws Exception {
+        String json = """
+                {"userId":42,"username":"user42","message":"hi","timestamp":"2026-02-07T12:00:00Z","messageType":"TEXT"}""";
+        handler.handleTextMessage(session, new TextMessage(json));
+
+        JsonNode node = mapper.readTree(captureResponse());
+        assertEquals("OK", node.get("status").asText());
+        assertTrue(node.get("userId").isTextual());
+        assertEquals("42", node.get("userId").asText());
+    }
+
     @Test
     void userId_nonNumeric_returnsError() throws Exception {
         String msg = """
@@ -283,4 +303,339 @@ class ChatWebSocketHandlerTest {
         String response = captureResponse();
         assertTrue(response.contains("OK"));
     }
+
+    // ===== Connection lifecycle =====
+
+    @Test
+    void connectedSession_responsesStillReachUnderlyingSession() throws Exception {
+        when(session.isOpen()).thenReturn(true);
+        handler.afterConnectionEstablished(session);
+
+        String msg = """
+                {"userId":"1","username":"abc","message":"x","timestamp":"2026-02-07T12:00:00Z","messageType":"TEXT"}""";
+        handler.handleTextMessage(session, new TextMessage(msg));
+
+        String response = captureResponse();
+        assertTrue(response.contains("OK"));
+    }
+
+    @Test
+    void closedSession_fallsBackToDirectWrites() throws Exception {
+        when(session.isOpen()).thenReturn(true);
+        handler.afterConnectionEstablished(session);
+        handler.afterConnectionClosed(session, org.springframework.web.socket.CloseStatus.NORMAL);
+
+        handler.handleTextMessage(session, new TextMessage("not json"));
+
+        String response = captureResponse();
+        assertTrue(response.contains("ERROR"));
+    }
+
+    @Test
+    void binaryOptIn_ackIsBinaryFrame_bufferReturnedToPool() throws Exception {
+        when(session.getUri()).thenReturn(URI.create("ws://localhost:8080/chat/1?binary=true"));
+        when(session.isOpen()).thenReturn(true);
+        handler.afterConnectionEstablished(session);
+
+        String msg = """
+                {"userId":"7","username":"abc","message":"x","timestamp":"2026-02-07T12:00:00Z","messageType":"TEXT"}""";
+        handler.handleTextMessage(session, new TextMessage(msg));
+
+        var captor = ArgumentCaptor.forClass(BinaryMessage.class);
+        verify(session).sendMessage(captor.capture());
+        JsonNode node = mapper.readTree(StandardCharsets.UTF_8.decode(captor.getValue().getPayload()).toString());
+        assertEquals("OK", node.get("status").asText());
+        assertEquals("7", node.get("userId").asText());
+        assertEquals(0, handler.getBufferPool().getOutstanding());
+    }
+
+    @Test
+    void framingOptIns_matchExactQueryKeysOnly() {
+        assertTrue(queryFlag("batch=true", "batch"));
+        assertTrue(queryFlag("resume=abc&batch=true&lastSeq=3", "batch"));
+        assertFalse(queryFlag("nobatch=true", "batch"));
+        assertFalse(queryFlag("xbinary=true", "binary"));
+        assertFalse(queryFlag("note=batch=true", "batch"));
+        assertFalse(queryFlag("batch=truest", "batch"));
+        assertFalse(queryFlag("batch=false", "batch"));
+        assertFalse(queryFlag(null, "batch"));
+    }
+
+    private static boolean queryFlag(String query, String name) {
+        WebSocketSession s = mock(WebSocketSession.class);
+        when(s.getUri()).thenReturn(URI.create("ws://localhost:8080/chat/1" + (query != null ? "?" + query : "")));
+        return ChatWebSocketHandler.queryFlag(s, name);
+    }
+
+    // ===== Rate limiting =====
+
+    @Test
+    void userOverLimit_returnsErrorWithRetryAfter() throws Exception {
+        var props = new ChatFlowProperties();
+        props.getRateLimit().setEnabled(true);
+        props.getRateLimit().setUserRatePerSecond(1);
+        props.getRateLimit().setUserBurst(1);
+        handler = new ChatWebSocketHandler(props);
+
+        String msg = """
+                {"userId":"5","username":"abc","message":"x","timestamp":"2026-02-07T12:00:00Z","messageType":"TEXT"}""";
+        handler.handleTextMessage(session, new TextMessage(msg));
+        handler.handleTextMessage(session, new TextMessage(msg));
+
+        var captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, times(2)).sendMessage(captor.capture());
+        assertEquals("OK", mapper.readTree(captor.getAllValues().get(0).getPayload()).get("status").asText());
+        JsonNode limited = mapper.readTree(captor.getAllValues().get(1).getPayload());
+        assertEquals("ERROR", limited.get("status").asText());
+        assertTrue(limited.get("error").asText().contains("user 5"));
+        assertTrue(limited.get("retryAfterMs").asLong() > 0);
+    }
+
+    @Test
+    void userOverLimit_doesNotSpendRoomTokens() throws Exception {
+        var props = new ChatFlowProperties();
+        props.getRateLimit().setEnabled(true);
+        props.getRateLimit().setUserRatePerSecond(1);
+        props.getRateLimit().setUserBurst(1);
+        props.getRateLimit().setRoomRatePerSecond(1);
+        props.getRateLimit().setRoomBurst(2);
+        handler = new ChatWebSocketHandler(props);
+
+        String flood = """
+                {"userId":"5","username":"abc","message":"x","timestamp":"2026-02-07T12:00:00Z","messageType":"TEXT"}""";
+        String other = """
+                {"userId":"6","username":"def","message":"y","timestamp":"2026-02-07T12:00:00Z","messageType":"TEXT"}""";
+        for (int i = 0; i < 5; i++) handler.handleTextMessage(session, new TextMessage(flood));
+        handler.handleTextMessage(session, new TextMessage(other));
+
+        var captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, times(6)).sendMessage(captor.capture());
+        JsonNode last = mapper.readTree(captor.getAllValues().get(5).getPayload());
+        assertEquals("OK", last.get("status").asText());
+        assertEquals("6", last.get("userId").asText());
+    }
+
+    // ===== Deduplication =====
+
+    @Test
+    void retriedMessageId_isAckedAsDuplicate() throws Exception {
+        var props = new ChatFlowProperties();
+        props.getDedup().setEnabled(true);
+        handler = new ChatWebSocketHandler(props);
+        String msg = """
+                {"userId":"9","username":"abc","message":"x","timestamp":"2026-02-07T12:00:00Z","messageType":"TEXT","messageId":"m-1"}""";
+
+        handler.handleTextMessage(session, new TextMessage(msg));
+        handler.handleTextMessage(session, new TextMessage(msg));
+
+        var captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, times(2)).sendMessage(captor.capture());
+        JsonNode first = mapper.readTree(captor.getAllValues().get(0).getPayload());
+        JsonNode retry = mapper.readTree(captor.getAllValues().get(1).getPayload());
+        assertEquals("m-1", first.get("messageId").asText());
+        assertNull(first.get("duplicate"));
+        assertEquals("OK", retry.get("status").asText());
+        assertTrue(retry.get("duplicate").asBoolean());
+    }
+
+    @Test
+    void retryOfUndeliveredMessage_isProcessedAgain() throws Exception {
+        var props = new ChatFlowProperties();
+        props.getDedup().setEnabled(true);
+        handler = new ChatWebSocketHandler(props);
+        String msg = """
+                {"userId":"9","username":"abc","message":"x","timestamp":"2026-02-07T12:00:00Z","messageType":"TEXT","messageId":"m-1"}""";
+        doThrow(new IOException("broken pipe")).doNothing().when(session).sendMessage(any());
+
+        assertThrows(IOException.class, () -> handler.handleTextMessage(session, new TextMessage(msg)));
+        handler.handleTextMessage(session, new TextMessage(msg));
+
+        var captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, times(2)).sendMessage(captor.capture());
+        assertNull(mapper.readTree(captor.getAllValues().get(1).getPayload()).get("duplicate"));
+    }
+
+    @Test
+    void messageId_tooLong_returnsError() throws Exception {
+        String msg = String.format("""
+                {"userId":"1","username":"abc","message":"x","timestamp":"2026-02-07T12:00:00Z","messageType":"TEXT","messageId":"%s"}""",
+                "m".repeat(65));
+
+        handler.handleTextMessage(session, new TextMessage(msg));
+
+        assertTrue(captureResponse().contains("messageId must be"));
+    }
+
+    @Test
+    void validationError_echoesMessageId() throws Exception {
+        String msg = """
+                {"userId":"0","username":"abc","message":"x","timestamp":"2026-02-07T12:00:00Z","messageType":"TEXT","messageId":"m-7"}""";
+
+        handler.handleTextMessage(session, new TextMessage(msg));
+
+        JsonNode error = mapper.readTree(captureResponse());
+        assertEquals("ERROR", error.get("status").asText());
+        assertEquals("m-7", error.get("messageId").asText());
+    }
+
+    // ===== partial messages =====
+
+    @Test
+    void partialTextMessage_assembledBeforeParsing() throws Exception {
+        String msg = """
+                {"userId":"5","username":"user5","message":"split","timestamp":"2026-02-07T12:00:00Z","messageType":"TEXT"}""";
+        int cut = msg.length() / 2;
+
+        handler.handleTextMessage(session, new TextMessage(msg.substring(0, cut), false));
+        verify(session, never()).sendMessage(any());
+        handler.handleTextMessage(session, new TextMessage(msg.substring(cut), true));
+
+        JsonNode node = mapper.readTree(captureResponse());
+        assertEquals("OK", node.get("status").asText());
+        assertEquals("split", node.get("message").asText());
+    }
+
+    @Test
+    void partialTextMessage_pastMaxMessageChars_closesWith1009() throws Exception {
+        var props = new ChatFlowProperties();
+        props.getSession().setMaxMessageChars(100);
+        handler = new ChatWebSocketHandler(props);
+
+        handler.handleTextMessage(session, new TextMessage("x".repeat(60), false));
+        handler.handleTextMessage(session, new TextMessage("x".repeat(60), false));
+
+        verify(session).close(CloseStatus.TOO_BIG_TO_PROCESS);
+        verify(session, never()).sendMessage(any());
+    }
+
+    // ===== broadcast ordering =====
+
+    @Test
+    void broadcast_stampsRoomSeq_onAckAndFanOut() throws Exception {
+        var props = new ChatFlowProperties();
+        props.getBroadcast().setEnabled(true);
+        handler = new ChatWebSocketHandler(props);
+        WebSocketSession other = mock(WebSocketSession.class);
+        when(other.getId()).thenReturn("other");
+        when(other.getUri()).thenReturn(URI.create("ws://localhost:8080/chat/1"));
+        handler.afterConnectionEstablished(session);
+        handler.afterConnectionEstablished(other);
+
+        String msg = """
+                {"userId":"1","username":"abc","message":"x","timestamp":"2026-02-07T12:00:00Z","messageType":"TEXT"}""";
+        handler.handleTextMessage(session, new TextMessage(msg));
+        handler.handleTextMessage(session, new TextMessage(msg));
+
+        var captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(other, times(2)).sendMessage(captor.capture());
+        assertEquals(1, mapper.readTree(captor.getAllValues().get(0).getPayload()).get("seq").asLong());
+        assertEquals(2, mapper.readTree(captor.getAllValues().get(1).getPayload()).get("seq").asLong());
+        verify(session, times(2)).sendMessage(any(TextMessage.class));
+    }
+
+    @Test
+    void echoOnly_hasNoSeq() throws Exception {
+        String msg = """
+                {"userId":"1","username":"abc","message":"x","timestamp":"2026-02-07T12:00:00Z","messageType":"TEXT"}""";
+
+        handler.handleTextMessage(session, new TextMessage(msg));
+
+        assertNull(mapper.readTree(captureResponse()).get("seq"));
+    }
+
+    @Test
+    void eventLoops_broadcastDeliveredInOrder_fromRoomThread() throws Exception {
+        var props = new ChatFlowProperties();
+        props.getBroadcast().setEnabled(true);
+        props.getRoom().setEventLoops(2);
+        handler = new ChatWebSocketHandler(props);
+        WebSocketSession other = mock(WebSocketSession.class);
+        when(other.getId()).thenReturn("other");
+        when(other.getUri()).thenReturn(URI.create("ws://localhost:8080/chat/1"));
+        handler.afterConnectionEstablished(session);
+        handler.afterConnectionEstablished(other);
+
+        String msg = """
+                {"userId":"1","username":"abc","message":"x","timestamp":"2026-02-07T12:00:00Z","messageType":"TEXT"}""";
+        for (int i = 0; i < 3; i++) handler.handleTextMessage(session, new TextMessage(msg));
+
+        var captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(other, timeout(5_000).times(3)).sendMessage(captor.capture());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i + 1, mapper.readTree(captor.getAllValues().get(i).getPayload()).get("seq").asLong());
+        }
+        verify(session, timeout(5_000).times(3)).sendMessage(any(TextMessage.class));
+        handler.shutdown();
+    }
+
+    @Test
+    void eventLoops_memberThatStopsReading_doesNotStallOtherRoomsOnTheLoop() throws Exception {
+        var props = new ChatFlowProperties();
+        props.getBroadcast().setEnabled(true);
+        props.getRoom().setEventLoops(1); // every room on the same loop
+        handler = new ChatWebSocketHandler(props);
+        CountDownLatch unblock = new CountDownLatch(1);
+        CountDownLatch stalledWriting = new CountDownLatch(1);
+        WebSocketSession stalled = mock(WebSocketSession.class);
+        when(stalled.getId()).thenReturn("stalled");
+        when(stalled.getUri()).thenReturn(URI.create("ws://localhost:8080/chat/1"));
+        doAnswer(inv -> {
+            stalledWriting.countDown();
+            unblock.await(); // stopped reading: the send never returns
+            return null;
+        }).when(stalled).sendMessage(any());
+        WebSocketSession elsewhere = mock(WebSocketSession.class);
+        when(elsewhere.getId()).thenReturn("elsewhere");
+        when(elsewhere.getUri()).thenReturn(URI.create("ws://localhost:8080/chat/2"));
+        handler.afterConnectionEstablished(session);
+        handler.afterConnectionEstablished(stalled);
+        handler.afterConnectionEstablished(elsewhere);
+        String msg = """
+                {"userId":"1","username":"abc","message":"x","timestamp":"2026-02-07T12:00:00Z","messageType":"TEXT"}""";
+        try {
+            handler.handleTextMessage(session, new TextMessage(msg));
+            assertTrue(stalledWriting.await(5, TimeUnit.SECONDS));
+
+            for (int i = 0; i < 3; i++) handler.handleTextMessage(elsewhere, new TextMessage(msg));
+
+            verify(elsewhere, timeout(5_000).times(3)).sendMessage(any(TextMessage.class));
+            verify(session, timeout(5_000)).sendMessage(any(TextMessage.class)); // its own room's sender too
+        } finally {
+            unblock.countDown();
+            handler.shutdown();
+        }
+    }
+
+    @Test
+    void resumedSession_getsMissedBroadcastsBeforeLiveOnes() throws Exception {
+        var props = new ChatFlowProperties();
+        props.getBroadcast().setEnabled(true);
+        props.getRoom().setHistorySize(16);
+        handler = new ChatWebSocketHandler(props);
+        assertNotNull(handler.getResumption());
+        handler.afterConnectionEstablished(session);
+
+        String msg = """
+                {"userId":"1","username":"abc","message":"x","timestamp":"2026-02-07T12:00:00Z","messageType":"TEXT"}""";
+        for (int i = 0; i < 3; i++) handler.handleTextMessage(session, new TextMessage(msg));
+
+        WebSocketSession resumed = mock(WebSocketSession.class);
+        when(resumed.getId()).thenReturn("resumed");
+        when(resumed.getUri()).thenReturn(URI.create("ws://localhost:8080/chat/1"));
+        when(resumed.getAttributes()).thenReturn(new java.util.HashMap<>(
+                java.util.Map.of(SessionResumption.RESUME_AFTER_ATTRIBUTE, 1L)));
+        handler.afterConnectionEstablished(resumed);
+        handler.handleTextMessage(session, new TextMessage(msg));
+
+        var captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(resumed, times(4)).sendMessage(captor.capture());
+        JsonNode status = mapper.readTree(captor.getAllValues().get(0).getPayload());
+        assertEquals("RESUMED", status.get("status").asText());
+        assertEquals(2, status.get("replayed").asInt());
+        assertTrue(status.get("complete").asBoolean());
+        for (int i = 1; i < 4; i++) {
+            assertEquals(i + 1, mapper.readTree(captor.getAllValues().get(i).getPayload()).get("seq").asLong());
+        }
+        assertEquals(2, handler.getResumption().getReplayedFrames());
+    }
 }
@@ -0,0 +1,41 @@
+package com.chatflow.server.identity;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolTableTest {
+
+    @Test
+    void sameChars_returnSameInstance() {
+        SymbolTable table = new SymbolTable(64, 20);
+        char[] buf = "xxuser42yy".toCharArray();
+
+        String first = table.intern(buf, 2, 6);
+        String second = table.intern(buf, 2, 6);
+
+        assertEquals("user42", first);
+        assertSame(first, second);
+        assertSame(first, table.intern(new String("user42")));
+    }
+
+    @Test
+    void tooLong_notInterned() {
+        SymbolTable table = new SymbolTable(64, 4);
+
+        String a = table.intern(new String("abcdef"));
+        String b = table.intern(new String("abcdef"));
+
+        assertEquals(a, b);
+        assertNotSame(a, b);
+    }
+
+    @Test
+    void full_failsOpen() {
+        SymbolTable table = new SymbolTable(8, 20);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("u" + i, table.intern("u" + i));
+        }
+        assertTrue(table.getUntracked() > 0);
+    }
+}
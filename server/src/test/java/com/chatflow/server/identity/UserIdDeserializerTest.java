@@ -0,0 +1,25 @@
+package com.chatflow.server.identity;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserIdDeserializerTest {
+
+    @Test
+    void parse_matchesParseIntAndFlagsBlank() {
+        assertEquals(42, parse("42"));
+        assertEquals(-5, parse("-5"));
+        assertEquals(7, parse("+7"));
+        assertEquals(UserIdDeserializer.MISSING, parse(""));
+        assertEquals(UserIdDeserializer.MISSING, parse("  "));
+        assertEquals(UserIdDeserializer.INVALID, parse("abc"));
+        assertEquals(UserIdDeserializer.INVALID, parse("1 2"));
+        assertEquals(UserIdDeserializer.INVALID, parse("99999999999"));
+        assertEquals(UserIdDeserializer.INVALID, parse("-"));
+    }
+
+    private static int parse(String s) {
+        return UserIdDeserializer.parse(s.toCharArray(), 0, s.length());
+    }
+}
@@ -0,0 +1,41 @@
+package com.chatflow.server.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IsoInstantSerializerTest {
+
+    private static String format(Instant instant) {
+        char[] buf = new char[30];
+        int len = IsoInstantSerializer.format(instant, buf);
+        return len < 0 ? null : new String(buf, 0, len);
+    }
+
+    @Test
+    void matchesInstantToString_forEveryFractionWidth() {
+        for (String s : new String[] {"2026-02-07T12:00:00Z", "2026-02-07T12:00:00.100Z",
+                "2024-02-29T23:59:59.000001Z", "1970-01-01T00:00:00.000000001Z", "0001-01-01T00:00:00Z",
+                "1969-12-31T23:59:59.999Z"}) {
+            assertEquals(s, format(Instant.parse(s)));
+        }
+    }
+
+    @Test
+    void matchesInstantToString_randomInstants() {
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
+        for (int i = 0; i < 10_000; i++) {
+            Instant instant = Instant.ofEpochSecond(rand.nextLong(-62_135_596_800L, 253_402_300_799L),
+                    rand.nextInt(4) == 0 ? 0 : rand.nextInt(1_000_000_000));
+            assertEquals(instant.toString(), format(instant));
+        }
+    }
+
+    @Test
+    void yearsPastFourDigits_fallBack() {
+        assertNull(format(Instant.parse("+10000-01-01T00:00:00Z")));
+    }
+}
@@ -0,0 +1,66 @@
+package com.chatflow.server.outbound;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BufferPoolTest {
+
+    @Test
+    void sizeClasses_roundUpToPowersOfTwo() {
+        BufferPool pool = new BufferPool(false);
+
+        assertEquals(256, pool.acquire(1).capacity());
+        assertEquals(256, pool.acquire(256).capacity());
+        assertEquals(512, pool.acquire(257).capacity());
+        assertEquals(64 * 1024, pool.acquire(40_000).capacity());
+        assertEquals(100_000, pool.acquire(100_000).capacity()); // past the largest class: unpooled
+    }
+
+    @Test
+    void released_isReusedCleared() {
+        BufferPool pool = new BufferPool(false);
+        ByteBuffer first = pool.acquire(300);
+        first.put((byte) 1);
+        pool.release(first);
+
+        ByteBuffer second = pool.acquire(400);
+
+        assertSame(first, second);
+        assertEquals(0, second.position());
+        assertEquals(1, pool.getAllocated());
+        assertEquals(1, pool.getOutstanding());
+    }
+
+    @Test
+    void releasedOnAnotherThread_reachesSharedQueue() throws Exception {
+        BufferPool pool = new BufferPool(false);
+        ByteBuffer buf = pool.acquire(300);
+        Thread t = new Thread(() -> {
+            // fill the other thread's local stack so the release spills to the shared queue
+            ByteBuffer[] held = new ByteBuffer[32];
+            for (int i = 0; i < held.length; i++) held[i] = pool.acquire(300);
+            for (ByteBuffer b : held) pool.release(b);
+            pool.release(buf);
+        });
+        t.start();
+        t.join();
+
+        assertSame(buf, pool.acquire(300));
+    }
+
+    @Test
+    void leakDetection_reportsUnreleased_andRejectsDoubleRelease() {
+        BufferPool pool = new BufferPool(true);
+        ByteBuffer kept = pool.acquire(100);
+        ByteBuffer returned = pool.acquire(100);
+        pool.release(returned);
+        pool.release(returned); // logged and ignored, so it can't be handed out twice
+
+        assertEquals(1, pool.reportLeaks(0));
+        assertNotSame(pool.acquire(100), pool.acquire(100));
+        assertNotNull(kept);
+    }
+}
@@ -0,0 +1,184 @@
+package com.chatflow.server.outbound;
+
+import com.chatflow.server.config.ChatFlowProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class OutboundQueueTest {
+
+    private WebSocketSession session;
+    private ChatFlowProperties.Outbound settings;
+    private OutboundStats stats;
+    private ScheduledExecutorService timer;
+
+    @BeforeEach
+    void setUp() {
+        session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s1");
+        settings = new ChatFlowProperties.Outbound();
+        stats = new OutboundStats();
+        timer = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.shutdownNow();
+    }
+
+    @Test
+    void noFlushInterval_writesImmediately() throws Exception {
+        OutboundQueue q = new OutboundQueue(session, settings, false, null, stats);
+
+        q.send("{\"a\":1}");
+
+        var captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session).sendMessage(captor.capture());
+        assertEquals("{\"a\":1}", captor.getValue().getPayload());
+        assertEquals(1, stats.getWrites());
+    }
+
+    @Test
+    void batchFraming_coalescesQueuedMessagesIntoOneArrayFrame() throws Exception {
+        settings.setFlushIntervalMs(50);
+        OutboundQueue q = new OutboundQueue(session, settings, true, timer, stats);
+
+        q.send("{\"a\":1}");
+        q.send("{\"a\":2}");
+        q.send("{\"a\":3}");
+        verify(session, never()).sendMessage(any());
+
+        var captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, timeout(2000)).sendMessage(captor.capture());
+        assertEquals("[{\"a\":1},{\"a\":2},{\"a\":3}]", captor.getValue().getPayload());
+        assertEquals(3.0, stats.messagesPerWrite());
+    }
+
+    @Test
+    void maxBatchBytes_flushesBeforeTimer() throws Exception {
+        settings.setFlushIntervalMs(60_000);
+        settings.setMaxBatchBytes(10);
+        OutboundQueue q = new OutboundQueue(session, settings, true, timer, stats);
+
+        q.send("{\"a\":1}");
+        q.send("{\"a\":2}");
+
+        verify(session).sendMessage(any());
+    }
+
+    @Test
+    void backlogOverLimit_closesSession() throws Exception {
+        settings.setFlushIntervalMs(60_000);
+        settings.setMaxBatchBytes(1000);
+        settings.setMaxQueuedBytes(10);
+        OutboundQueue q = new OutboundQueue(session, settings, false, timer, stats);
+
+        q.send("{\"a\":1}");
+        q.send("{\"a\":2}");
+
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(0, q.getQueuedBytes());
+    }
+
+    @Test
+    void offer_neverWrites_flushQueuedWritesAndClosesOverflow() throws Exception {
+        settings.setMaxQueuedBytes(25);
+        OutboundQueue q = new OutboundQueue(session, settings, true, null, stats);
+
+        q.offer("{\"a\":1}");
+        q.offerBatch(List.of("{\"r\":1}", "{\"r\":2}"));
+        verify(session, never()).sendMessage(any());
+        q.flushQueued();
+
+        var captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, times(2)).sendMessage(captor.capture());
+        assertEquals(List.of("{\"a\":1}", "[{\"r\":1},{\"r\":2}]"),
+                captor.getAllValues().stream().map(TextMessage::getPayload).toList());
+
+        for (int i = 2; i <= 5; i++) q.offer("{\"a\":" + i + "}"); // over 25 bytes: dropped now, closed later
+        verify(session, never()).close(any());
+        q.flushQueued();
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+        verify(session, times(2)).sendMessage(any());
+    }
+
+    @Test
+    void binaryFrames_keepOrderWithText_andReturnBuffers() throws Exception {
+        settings.setFlushIntervalMs(50);
+        BufferPool pool = new BufferPool(true);
+        OutboundQueue q = new OutboundQueue(session, settings, true, pool, timer, stats);
+        ByteBuffer buf = pool.acquire(16);
+        buf.put("{\"b\":1}".getBytes(StandardCharsets.UTF_8)).flip();
+
+        q.send("{\"a\":1}");
+        q.send(buf);
+
+        var captor = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(session, timeout(2000).times(2)).sendMessage(captor.capture());
+        assertInstanceOf(TextMessage.class, captor.getAllValues().get(0)); // binary disables [a,b] framing
+        assertInstanceOf(BinaryMessage.class, captor.getAllValues().get(1));
+        assertEquals(0, pool.getOutstanding());
+    }
+
+    @Test
+    void closedQueue_releasesBinaryFrames() throws Exception {
+        BufferPool pool = new BufferPool(true);
+        settings.setFlushIntervalMs(60_000);
+        OutboundQueue q = new OutboundQueue(session, settings, false, pool, timer, stats);
+
+        q.send(pool.acquire(16));
+        q.close();
+        q.send(pool.acquire(16));
+
+        verify(session, never()).sendMessage(any());
+        assertEquals(0, pool.reportLeaks(0));
+    }
+
+    @Test
+    void timedFlush_stuckSessionDoesNotDelayOthers() throws Exception {
+        settings.setFlushIntervalMs(20);
+        ExecutorService writers = Executors.newFixedThreadPool(2);
+        CountDownLatch unblock = new CountDownLatch(1);
+        CountDownLatch stuckWriting = new CountDownLatch(1);
+        WebSocketSession stuck = mock(WebSocketSession.class);
+        when(stuck.getId()).thenReturn("stuck");
+        doAnswer(inv -> {
+            stuckWriting.countDown();
+            unblock.await(); // a client that stopped reading: the send never returns
+            return null;
+        }).when(stuck).sendMessage(any());
+        try {
+            OutboundQueue slow = new OutboundQueue(stuck, settings, false, null, timer, writers, stats);
+            OutboundQueue fast = new OutboundQueue(session, settings, false, null, timer, writers, stats);
+
+            slow.send("{\"a\":1}");
+            assertTrue(stuckWriting.await(2, TimeUnit.SECONDS));
+            slow.send("{\"a\":2}"); // its next timed flush finds the writer busy and skips it
+            fast.send("{\"b\":1}");
+
+            verify(session, timeout(2000)).sendMessage(any());
+            verify(stuck, times(1)).sendMessage(any());
+        } finally {
+            unblock.countDown();
+            writers.shutdownNow();
+        }
+    }
+}
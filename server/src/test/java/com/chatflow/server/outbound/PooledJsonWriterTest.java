@@ -0,0 +1,41 @@
+package com.chatflow.server.outbound;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PooledJsonWriterTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void consecutiveValues_matchWriteValueAsString() throws Exception {
+        PooledJsonWriter writer = new PooledJsonWriter(mapper, new BufferPool(false));
+
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> value = Map.of("status", "OK", "n", i);
+            ByteBuffer buf = writer.write(value);
+            assertEquals(mapper.writeValueAsString(value), StandardCharsets.UTF_8.decode(buf).toString());
+            writer.getPool().release(buf);
+        }
+    }
+
+    @Test
+    void largeValue_growsThroughSizeClasses() throws Exception {
+        BufferPool pool = new BufferPool(true);
+        PooledJsonWriter writer = new PooledJsonWriter(mapper, pool);
+        Map<String, String> value = Map.of("message", "é".repeat(5000));
+
+        ByteBuffer buf = writer.write(value);
+
+        assertEquals(mapper.writeValueAsString(value), StandardCharsets.UTF_8.decode(buf).toString());
+        assertEquals(1, pool.getOutstanding()); // the smaller buffers went back
+        pool.release(buf);
+        assertEquals(0, pool.reportLeaks(0));
+    }
+}
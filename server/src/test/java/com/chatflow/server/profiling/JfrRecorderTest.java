@@ -0,0 +1,48 @@
+package com.chatflow.server.profiling;
+
+import com.chatflow.server.config.ChatFlowProperties;
+import com.chatflow.server.handler.ChatWebSocketHandler;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JfrRecorderTest {
+
+    @Test
+    void disabled_recordsNothing(@TempDir Path dir) throws Exception {
+        ChatFlowProperties props = new ChatFlowProperties();
+        props.getProfiling().setFile(dir.resolve("off.jfr").toString());
+        JfrRecorder recorder = new JfrRecorder(props, new ChatWebSocketHandler(props));
+
+        recorder.start();
+        recorder.stop();
+
+        assertFalse(Files.exists(dir.resolve("off.jfr")));
+    }
+
+    @Test
+    void enabled_dumpsRecordingWithMessageCount(@TempDir Path dir) throws Exception {
+        ChatFlowProperties props = new ChatFlowProperties();
+        props.getProfiling().setEnabled(true);
+        props.getProfiling().setFile(dir.resolve("run.jfr").toString());
+        ChatWebSocketHandler handler = new ChatWebSocketHandler(props);
+        handler.getRoomRegistry().room("3").recordMessage();
+        handler.getRoomRegistry().room("4").recordMessage();
+        JfrRecorder recorder = new JfrRecorder(props, handler);
+
+        recorder.start();
+        recorder.stop();
+
+        long messages = -1;
+        for (RecordedEvent e : RecordingFile.readAllEvents(dir.resolve("run.jfr"))) {
+            if (e.getEventType().getName().equals("chatflow.RunTotals")) messages = e.getLong("messages");
+        }
+        assertEquals(2, messages);
+    }
+}
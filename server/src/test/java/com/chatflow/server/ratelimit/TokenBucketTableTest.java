@@ -0,0 +1,85 @@
+package com.chatflow.server.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTableTest {
+
+    @Test
+    void burstIsAllowedThenRejectedWithRetryAfter() {
+        TokenBucketTable table = new TokenBucketTable(64, 10, 3, 60_000);
+
+        assertEquals(0, table.tryAcquire(7, 1000));
+        assertEquals(0, table.tryAcquire(7, 1000));
+        assertEquals(0, table.tryAcquire(7, 1000));
+
+        long retryAfter = table.tryAcquire(7, 1000);
+        assertEquals(100, retryAfter); // 10 tokens/s -> one token every 100 ms
+    }
+
+    @Test
+    void tokensRefillOverTime() {
+        TokenBucketTable table = new TokenBucketTable(64, 10, 1, 60_000);
+
+        assertEquals(0, table.tryAcquire(1, 1000));
+        assertTrue(table.tryAcquire(1, 1050) > 0);
+        assertEquals(0, table.tryAcquire(1, 1100));
+    }
+
+    @Test
+    void keysAreIndependent() {
+        TokenBucketTable table = new TokenBucketTable(64, 1, 1, 60_000);
+
+        assertEquals(0, table.tryAcquire(1, 1000));
+        assertTrue(table.tryAcquire(1, 1000) > 0);
+        assertEquals(0, table.tryAcquire(2, 1000));
+    }
+
+    @Test
+    void idleSlotsAreReusedSoMemoryStaysBounded() {
+        TokenBucketTable table = new TokenBucketTable(16, 100, 1, 1000);
+
+        // Fill far more keys than slots, spaced past the idle window so each one can evict an old one
+        for (int user = 1; user <= 100_000; user++) {
+            assertEquals(0, table.tryAcquire(user, user * 2000L));
+        }
+        assertEquals(16, table.getSlots());
+        assertEquals(0, table.getUntracked());
+    }
+
+    @Test
+    void fullTableFailsOpen() {
+        TokenBucketTable table = new TokenBucketTable(16, 1, 1, 60_000);
+
+        for (int user = 1; user <= 16; user++) table.tryAcquire(user, 1000);
+
+        assertEquals(0, table.tryAcquire(999, 1000));
+        assertEquals(1, table.getUntracked());
+    }
+
+    @Test
+    void keyBehindAnIdleSlot_keepsItsBucket() {
+        TokenBucketTable table = new TokenBucketTable(16, 1, 2, 2000);
+        int first = 1;
+        int second = 2;
+        while ((TokenBucketTable.mix(second) & 15) != (TokenBucketTable.mix(first) & 15)) second++;
+
+        assertEquals(0, table.tryAcquire(first, 0));       // home slot
+        assertEquals(0, table.tryAcquire(second, 1000));   // the next one along
+        assertEquals(0, table.tryAcquire(second, 1000));
+        assertEquals(0, table.tryAcquire(second, 2000));   // refilled one token; first's slot is now idle
+
+        // Must find its drained bucket, not claim first's idle slot with a fresh burst
+        assertEquals(1000, table.tryAcquire(second, 2000));
+        assertEquals(1000, table.tryAcquire(second, 2000));
+    }
+
+    @Test
+    void peekUserId_readsIdWithoutParsing() {
+        assertEquals(123, InboundRateLimiter.peekUserId("{\"userId\":\"123\",\"username\":\"x\"}"));
+        assertEquals(42, InboundRateLimiter.peekUserId("{\"userId\": 42}"));
+        assertEquals(-1, InboundRateLimiter.peekUserId("{\"userId\":\"abc\"}"));
+        assertEquals(-1, InboundRateLimiter.peekUserId("not json"));
+    }
+}
@@ -0,0 +1,132 @@
+package com.chatflow.server.resume;
+
+import com.chatflow.server.config.ChatFlowProperties;
+import com.chatflow.server.room.Room;
+import com.chatflow.server.room.RoomRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SessionResumptionTest {
+
+    private final RoomRegistry registry = new RoomRegistry(16);
+    private final ChatFlowProperties.Resume settings = new ChatFlowProperties.Resume();
+    private final SessionResumption resumption = new SessionResumption(settings);
+
+    private Map<String, Object> handshake(String roomId, String query, MockHttpServletResponse servletResponse)
+            throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/chat/" + roomId);
+        request.setQueryString(query);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(Room.ATTRIBUTE, registry.room(roomId));
+        var response = new ServletServerHttpResponse(servletResponse);
+        assertTrue(resumption.beforeHandshake(new ServletServerHttpRequest(request), response, null, attributes));
+        response.flush();
+        return attributes;
+    }
+
+    private static WebSocketSession session(String token) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getAttributes()).thenReturn(Map.of(SessionResumption.TOKEN_ATTRIBUTE, token));
+        return session;
+    }
+
+    private void publish(String roomId, int count) {
+        Room room = registry.room(roomId);
+        for (int i = 0; i < count; i++) room.publish(room.nextSeq(), null, null); // numbers only
+    }
+
+    @Test
+    void handshake_issuesTokenInHeader_redeemedOnceForSameRoom() throws Exception {
+        var first = new MockHttpServletResponse();
+        Map<String, Object> attributes = handshake("1", null, first);
+        String token = first.getHeader(SessionResumption.HEADER);
+        assertNotNull(token);
+        assertEquals(token, attributes.get(SessionResumption.TOKEN_ATTRIBUTE));
+        assertFalse(attributes.containsKey(SessionResumption.RESUME_AFTER_ATTRIBUTE));
+
+        publish("1", 5);
+        var resumed = new MockHttpServletResponse();
+        Map<String, Object> again = handshake("1", "resume=" + token + "&lastSeq=3", resumed);
+        assertEquals(3L, again.get(SessionResumption.RESUME_AFTER_ATTRIBUTE));
+        assertNotEquals(token, resumed.getHeader(SessionResumption.HEADER)); // a fresh one for next time
+
+        assertEquals(-1L, handshake("1", "resume=" + token + "&lastSeq=3", new MockHttpServletResponse())
+                .get(SessionResumption.RESUME_AFTER_ATTRIBUTE));
+        assertEquals(1, resumption.getResumed());
+        assertEquals(1, resumption.getRefused());
+    }
+
+    @Test
+    void redeem_neverReplaysFromBeforeTheSessionJoined() throws Exception {
+        publish("1", 4);
+        var response = new MockHttpServletResponse();
+        handshake("1", null, response);
+
+        Map<String, Object> attributes = handshake("1",
+                "resume=" + response.getHeader(SessionResumption.HEADER) + "&lastSeq=0", new MockHttpServletResponse());
+        assertEquals(4L, attributes.get(SessionResumption.RESUME_AFTER_ATTRIBUTE));
+    }
+
+    @Test
+    void redeem_refusesOtherRoomsMalformedSeqAndExpiredTokens() throws Exception {
+        settings.setTokenTtlMs(0);
+        SessionResumption shortLived = new SessionResumption(settings);
+        Room room = registry.room("1");
+
+        assertEquals(-1, shortLived.redeem(shortLived.issue(room, 0), registry.room("2"), 0));
+        assertEquals(-1, shortLived.redeem(shortLived.issue(room, 0), room, -1));
+        assertEquals(-1, shortLived.redeem("unknown", room, 0));
+
+        // Open sessions never expire; closed ones do after the TTL
+        String open = shortLived.issue(room, 0);
+        String closed = shortLived.issue(room, 0);
+        shortLived.bind(session(open));
+        shortLived.bind(session(closed));
+        shortLived.release(session(closed));
+        Thread.sleep(2);
+        shortLived.sweep(System.nanoTime());
+        assertEquals(1, shortLived.getTokens());
+        assertEquals(7, shortLived.redeem(open, room, 7));
+        assertEquals(-1, shortLived.redeem(closed, room, 7));
+    }
+
+    @Test
+    void tokenWhoseSessionNeverOpened_expiresAfterTtlFromIssue() throws Exception {
+        settings.setTokenTtlMs(0);
+        SessionResumption shortLived = new SessionResumption(settings);
+        Room room = registry.room("1");
+
+        String failed = shortLived.issue(room, 0); // handshake failed after the interceptors ran
+        shortLived.bind(session(shortLived.issue(room, 0)));
+        Thread.sleep(2);
+        shortLived.sweep(System.nanoTime());
+
+        assertEquals(1, shortLived.getTokens());
+        assertEquals(-1, shortLived.redeem(failed, room, 0));
+    }
+
+    @Test
+    void roomWithoutHistory_issuesNoToken() throws Exception {
+        RoomRegistry noHistory = new RoomRegistry(0);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(Room.ATTRIBUTE, noHistory.room("1"));
+        var servletResponse = new MockHttpServletResponse();
+        var response = new ServletServerHttpResponse(servletResponse);
+        resumption.beforeHandshake(new ServletServerHttpRequest(new MockHttpServletRequest("GET", "/chat/1")),
+                response, null, attributes);
+        response.flush();
+
+        assertNull(servletResponse.getHeader(SessionResumption.HEADER));
+        assertFalse(attributes.containsKey(SessionResumption.TOKEN_ATTRIBUTE));
+    }
+}
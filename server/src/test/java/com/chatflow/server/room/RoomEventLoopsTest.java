@@ -0,0 +1,93 @@
+package com.chatflow.server.room;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomEventLoopsTest {
+
+    private final RoomRegistry registry = new RoomRegistry(0);
+    private RoomEventLoops loops;
+
+    @AfterEach
+    void tearDown() {
+        if (loops != null) loops.shutdown();
+    }
+
+    @Test
+    void roomTasks_runInSubmissionOrder_onOneThread() throws Exception {
+        loops = new RoomEventLoops(2, 1024);
+        Room room = registry.room("1");
+        List<Integer> seen = new ArrayList<>(); // only touched by the room's loop
+        List<String> threads = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        for (int i = 0; i < 5_000; i++) {
+            int n = i;
+            loops.execute(room, () -> {
+                seen.add(n);
+                String name = Thread.currentThread().getName();
+                if (!threads.contains(name)) threads.add(name);
+            });
+        }
+        loops.execute(room, done::countDown);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(5_000, seen.size());
+        for (int i = 0; i < seen.size(); i++) assertEquals(i, seen.get(i));
+        assertEquals(1, threads.size());
+    }
+
+    @Test
+    void roomsPartitionedByIndex() throws Exception {
+        loops = new RoomEventLoops(2, 1024);
+        String[] names = new String[3];
+        CountDownLatch done = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            int n = i;
+            loops.execute(registry.room("r" + i), () -> {
+                names[n] = Thread.currentThread().getName();
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals("room-loop-0", names[0]);
+        assertEquals("room-loop-1", names[1]);
+        assertEquals("room-loop-0", names[2]);
+    }
+
+    @Test
+    void fullLoop_makesSubmitterWait_notDropped() throws Exception {
+        loops = new RoomEventLoops(1, 4);
+        Room room = registry.room("1");
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch ran = new CountDownLatch(20);
+
+        loops.execute(room, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 20; i++) loops.execute(room, ran::countDown);
+        });
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive()); // blocked on the full queue
+        assertTrue(loops.getQueued() <= 4);
+
+        release.countDown();
+        assertTrue(ran.await(10, TimeUnit.SECONDS));
+        producer.join(1_000);
+        assertFalse(producer.isAlive());
+    }
+}
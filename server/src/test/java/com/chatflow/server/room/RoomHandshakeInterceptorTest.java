@@ -0,0 +1,37 @@
+package com.chatflow.server.room;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomHandshakeInterceptorTest {
+
+    private final RoomRegistry registry = new RoomRegistry(0);
+    private final RoomHandshakeInterceptor interceptor = new RoomHandshakeInterceptor(registry);
+
+    private Map<String, Object> handshake(String path) throws Exception {
+        Map<String, Object> attributes = new HashMap<>();
+        boolean admitted = interceptor.beforeHandshake(
+                new ServletServerHttpRequest(new MockHttpServletRequest("GET", path)),
+                new ServletServerHttpResponse(new MockHttpServletResponse()), null, attributes);
+        assertTrue(admitted);
+        return attributes;
+    }
+
+    @Test
+    void storesRoomHandle_sharedBySessionsOfSameRoom() throws Exception {
+        Room first = (Room) handshake("/chat/5").get(Room.ATTRIBUTE);
+        Room second = (Room) handshake("/chat/5").get(Room.ATTRIBUTE);
+
+        assertSame(first, second);
+        assertEquals("5", first.getId());
+        assertSame(first, registry.find("5"));
+    }
+}
@@ -0,0 +1,39 @@
+package com.chatflow.server.room;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomRegistryTest {
+
+    private final RoomRegistry registry = new RoomRegistry(0);
+
+    @Test
+    void roomIdOf_matchesPathSegment() {
+        assertEquals("12", RoomRegistry.roomIdOf("/chat/12"));
+        assertEquals("12", RoomRegistry.roomIdOf("/chat/12/extra"));
+        assertEquals("lobby", RoomRegistry.roomIdOf("/chat/lobby"));
+        assertEquals("default", RoomRegistry.roomIdOf("/chat/"));
+        assertEquals("default", RoomRegistry.roomIdOf("/chat"));
+        assertEquals("default", RoomRegistry.roomIdOf(null));
+    }
+
+    @Test
+    void rooms_getDenseIndices() {
+        Room a = registry.room("17");
+        Room b = registry.room("lobby");
+        for (int i = 0; i < 100; i++) registry.room("r" + i);
+
+        assertEquals(0, a.getIndex());
+        assertEquals(1, b.getIndex());
+        assertSame(b, registry.byIndex(1));
+        assertEquals(101, registry.room("r99").getIndex());
+        assertNull(registry.byIndex(102));
+    }
+
+    @Test
+    void history_roundedToPowerOfTwo_disabledByDefault() {
+        assertEquals(0, registry.room("1").getHistoryCapacity());
+        assertEquals(64, new RoomRegistry(50).room("1").getHistoryCapacity());
+    }
+}
@@ -0,0 +1,216 @@
+package com.chatflow.server.room;
+
+import com.chatflow.server.config.ChatFlowProperties;
+import com.chatflow.server.outbound.OutboundQueue;
+import com.chatflow.server.outbound.OutboundStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RoomTest {
+
+    private final OutboundStats stats = new OutboundStats();
+
+    /** A member whose written frames end up in {@code received}, in write order. */
+    private OutboundQueue member(String id, List<String> received) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        doAnswer(inv -> received.add(inv.<TextMessage>getArgument(0).getPayload()))
+                .when(session).sendMessage(any(TextMessage.class));
+        return new OutboundQueue(session, new ChatFlowProperties.Outbound(), false, null, stats);
+    }
+
+    @Test
+    void outOfOrderPublish_deliveredInSeqOrder_senderGetsAck() throws Exception {
+        Room room = new Room("1", 0, 0);
+        List<String> senderFrames = new ArrayList<>();
+        List<String> otherFrames = new ArrayList<>();
+        OutboundQueue sender = member("a", senderFrames);
+        room.join(sender);
+        room.join(member("b", otherFrames));
+
+        long first = room.nextSeq();
+        long second = room.nextSeq();
+        room.publish(second, "m2", sender);
+        assertTrue(otherFrames.isEmpty()); // held until 1 arrives
+        room.publish(first, "m1", sender);
+
+        assertEquals(List.of("m1", "m2"), otherFrames);
+        assertEquals(List.of("m1", "m2"), senderFrames); // once each, as the ack
+        assertEquals(2, room.getLastDelivered());
+    }
+
+    @Test
+    void failedSerialisation_releasesItsNumber() throws Exception {
+        Room room = new Room("1", 0, 0);
+        List<String> frames = new ArrayList<>();
+        OutboundQueue sender = member("a", new ArrayList<>());
+        room.join(member("b", frames));
+
+        long lost = room.nextSeq();
+        long ok = room.nextSeq();
+        room.publish(ok, "m2", sender);
+        room.publish(lost, null, sender);
+
+        assertEquals(List.of("m2"), frames);
+        assertEquals(2, room.getLastDelivered());
+    }
+
+    @Test
+    void concurrentPublishers_everyMemberSeesSameGapFreeOrder() throws Exception {
+        Room room = new Room("1", 0, 0);
+        List<String> a = Collections.synchronizedList(new ArrayList<>());
+        List<String> b = Collections.synchronizedList(new ArrayList<>());
+        room.join(member("a", a));
+        room.join(member("b", b));
+        OutboundQueue outsider = member("x", new ArrayList<>());
+
+        int threads = 8;
+        int perThread = 2_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        long seq = room.nextSeq();
+                        room.publish(seq, Long.toString(seq), outsider);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(threads * perThread, a.size());
+        for (int i = 0; i < a.size(); i++) {
+            assertEquals(Long.toString(i + 1), a.get(i));
+        }
+        assertEquals(a, b);
+    }
+
+    private static void publishAll(Room room, OutboundQueue sender, String... frames) {
+        for (String json : frames) room.publish(room.nextSeq(), json, sender);
+    }
+
+    @Test
+    void rejoin_replaysGapAheadOfLaterBroadcasts() throws Exception {
+        Room room = new Room("1", 0, 8);
+        OutboundQueue sender = member("a", new ArrayList<>());
+        publishAll(room, sender, "m1", "m2", "m3", "m4");
+
+        List<String> frames = new ArrayList<>();
+        Room.Replay replay = room.rejoin(member("b", frames), 2);
+        publishAll(room, sender, "m5");
+
+        assertEquals(new Room.Replay(2, true), replay);
+        assertEquals(List.of("{\"status\":\"RESUMED\",\"lastSeq\":2,\"replayed\":2,\"complete\":true}",
+                "m3", "m4", "m5"), frames);
+    }
+
+    @Test
+    void rejoin_gapOlderThanHistory_replaysWhatIsLeftAsIncomplete() throws Exception {
+        Room room = new Room("1", 0, 4);
+        OutboundQueue sender = member("a", new ArrayList<>());
+        publishAll(room, sender, "m1", "m2", "m3", "m4", "m5", "m6");
+
+        List<String> frames = new ArrayList<>();
+        assertEquals(new Room.Replay(4, false), room.rejoin(member("b", frames), 1));
+        assertEquals(List.of("m3", "m4", "m5", "m6"), frames.subList(1, frames.size()));
+
+        // A refused token, or a seq the room never reached: nothing replayed, joined all the same
+        List<String> refused = new ArrayList<>();
+        assertEquals(new Room.Replay(0, false), room.rejoin(member("c", refused), -1));
+        assertEquals(new Room.Replay(0, false), room.rejoin(member("d", new ArrayList<>()), 99));
+        publishAll(room, sender, "m7");
+        assertEquals("m7", refused.get(refused.size() - 1));
+    }
+
+    @Test
+    void rejoin_skipsReleasedNumbers() throws Exception {
+        Room room = new Room("1", 0, 4);
+        OutboundQueue sender = member("a", new ArrayList<>());
+        publishAll(room, sender, "m1", "m2", "m3", "m4", "m5");
+        room.publish(room.nextSeq(), null, sender); // 6 released: its slot must not replay m2
+
+        List<String> frames = new ArrayList<>();
+        assertEquals(new Room.Replay(1, true), room.rejoin(member("b", frames), 4));
+        assertEquals(List.of("m5"), frames.subList(1, frames.size()));
+    }
+
+    @Test
+    void memberBlockedInWrite_othersStillGetFrames_rejoinDoesNotWait() throws Exception {
+        Room room = new Room("1", 0, 8);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch unblock = new CountDownLatch(1);
+        WebSocketSession stuck = mock(WebSocketSession.class);
+        when(stuck.getId()).thenReturn("stuck");
+        doAnswer(inv -> {
+            writing.countDown();
+            unblock.await(); // a full TCP send buffer
+            return null;
+        }).when(stuck).sendMessage(any());
+        room.join(new OutboundQueue(stuck, new ChatFlowProperties.Outbound(), false, null, stats));
+        List<String> b = Collections.synchronizedList(new ArrayList<>());
+        List<String> c = Collections.synchronizedList(new ArrayList<>());
+        OutboundQueue sender = member("b", b);
+        room.join(sender);
+        room.join(member("c", c));
+
+        Thread first = new Thread(() -> room.publish(room.nextSeq(), "m1", sender));
+        first.start();
+        assertTrue(writing.await(5, TimeUnit.SECONDS)); // first publisher is now inside the stuck member's write
+
+        List<String> resumed = new ArrayList<>();
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            room.publish(room.nextSeq(), "m2", sender);
+            room.rejoin(member("d", resumed), 1);
+        });
+        assertEquals(List.of("m1", "m2"), b);
+        assertEquals(List.of("m1", "m2"), c);
+        assertEquals("m2", resumed.get(resumed.size() - 1));
+
+        unblock.countDown();
+        first.join(5_000);
+        assertFalse(first.isAlive());
+    }
+
+    @Test
+    void publisherFullRingAhead_spillsAfterBoundedWait_andIsDeliveredInOrder() throws Exception {
+        Room room = new Room("1", 0, 0);
+        List<String> frames = new ArrayList<>();
+        OutboundQueue sender = member("a", frames);
+        room.join(sender);
+
+        long stuck = room.nextSeq();
+        for (int i = 0; i < 1024; i++) room.nextSeq(); // 2..1025 taken
+        long start = System.nanoTime();
+        room.publish(1025, "last", sender); // a full ring ahead of seq 1
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, room.getSpilled());
+
+        for (long seq = 2; seq < 1025; seq++) room.publish(seq, null, sender);
+        assertTrue(frames.isEmpty());
+        room.publish(stuck, "first", sender);
+
+        assertEquals(List.of("first", "last"), frames);
+        assertEquals(0, room.getSpilled());
+        assertEquals(1025, room.getLastDelivered());
+    }
+}